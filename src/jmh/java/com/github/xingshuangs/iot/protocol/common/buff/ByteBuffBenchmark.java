@@ -0,0 +1,68 @@
+package com.github.xingshuangs.iot.protocol.common.buff;
+
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ByteReadBuff和ByteWriteBuff的性能测试，数据大小与PDU为240时单次读取的字节数相当
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteBuffBenchmark {
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        ByteWriteBuff buff = ByteWriteBuff.newInstance(230);
+        for (int i = 0; i < 12; i++) {
+            buff.putShort(i).putInteger(i * 1000).putFloat(i * 1.5f).putDouble(i * 2.5);
+        }
+        buff.putString("abcdefghijklmn");
+        this.data = buff.getData();
+    }
+
+    @Benchmark
+    public void readMixedTypes(Blackhole bh) {
+        ByteReadBuff buff = ByteReadBuff.newInstance(this.data);
+        for (int i = 0; i < 12; i++) {
+            bh.consume(buff.getInt16());
+            bh.consume(buff.getInt32());
+            bh.consume(buff.getFloat32());
+            bh.consume(buff.getFloat64());
+        }
+        bh.consume(buff.getString(14));
+    }
+
+    @Benchmark
+    public void readFloat32Format(Blackhole bh) {
+        ByteReadBuff buff = ByteReadBuff.newInstance(this.data, EByteBuffFormat.BA_DC);
+        for (int i = 0; i + 4 <= this.data.length; i += 4) {
+            bh.consume(buff.getFloat32(i));
+        }
+    }
+
+    @Benchmark
+    public void readBytes(Blackhole bh) {
+        ByteReadBuff buff = ByteReadBuff.newInstance(this.data);
+        bh.consume(buff.getBytes(0, this.data.length));
+    }
+
+    @Benchmark
+    public byte[] writeMixedTypes() {
+        ByteWriteBuff buff = ByteWriteBuff.newInstance(230);
+        for (int i = 0; i < 12; i++) {
+            buff.putShort(i).putInteger(i * 1000).putFloat(i * 1.5f).putDouble(i * 2.5);
+        }
+        return buff.putString("abcdefghijklmn").getData();
+    }
+}
@@ -0,0 +1,314 @@
+package com.github.xingshuangs.iot.protocol.common.serializer;
+
+
+import com.github.xingshuangs.iot.protocol.common.enums.EDataType;
+import lombok.Data;
+
+/**
+ * 100个字段的数据对象，用于序列化性能测试，int16、int32、float32、float64、uint16循环排列
+ *
+ * @author xingshuang
+ */
+@Data
+public class Bean100 {
+
+    @ByteArrayVariable(byteOffset = 0, count = 1, type = EDataType.INT16)
+    Short field0;
+
+    @ByteArrayVariable(byteOffset = 2, count = 1, type = EDataType.INT32)
+    Integer field1;
+
+    @ByteArrayVariable(byteOffset = 6, count = 1, type = EDataType.FLOAT32)
+    Float field2;
+
+    @ByteArrayVariable(byteOffset = 10, count = 1, type = EDataType.FLOAT64)
+    Double field3;
+
+    @ByteArrayVariable(byteOffset = 18, count = 1, type = EDataType.UINT16)
+    Integer field4;
+
+    @ByteArrayVariable(byteOffset = 20, count = 1, type = EDataType.INT16)
+    Short field5;
+
+    @ByteArrayVariable(byteOffset = 22, count = 1, type = EDataType.INT32)
+    Integer field6;
+
+    @ByteArrayVariable(byteOffset = 26, count = 1, type = EDataType.FLOAT32)
+    Float field7;
+
+    @ByteArrayVariable(byteOffset = 30, count = 1, type = EDataType.FLOAT64)
+    Double field8;
+
+    @ByteArrayVariable(byteOffset = 38, count = 1, type = EDataType.UINT16)
+    Integer field9;
+
+    @ByteArrayVariable(byteOffset = 40, count = 1, type = EDataType.INT16)
+    Short field10;
+
+    @ByteArrayVariable(byteOffset = 42, count = 1, type = EDataType.INT32)
+    Integer field11;
+
+    @ByteArrayVariable(byteOffset = 46, count = 1, type = EDataType.FLOAT32)
+    Float field12;
+
+    @ByteArrayVariable(byteOffset = 50, count = 1, type = EDataType.FLOAT64)
+    Double field13;
+
+    @ByteArrayVariable(byteOffset = 58, count = 1, type = EDataType.UINT16)
+    Integer field14;
+
+    @ByteArrayVariable(byteOffset = 60, count = 1, type = EDataType.INT16)
+    Short field15;
+
+    @ByteArrayVariable(byteOffset = 62, count = 1, type = EDataType.INT32)
+    Integer field16;
+
+    @ByteArrayVariable(byteOffset = 66, count = 1, type = EDataType.FLOAT32)
+    Float field17;
+
+    @ByteArrayVariable(byteOffset = 70, count = 1, type = EDataType.FLOAT64)
+    Double field18;
+
+    @ByteArrayVariable(byteOffset = 78, count = 1, type = EDataType.UINT16)
+    Integer field19;
+
+    @ByteArrayVariable(byteOffset = 80, count = 1, type = EDataType.INT16)
+    Short field20;
+
+    @ByteArrayVariable(byteOffset = 82, count = 1, type = EDataType.INT32)
+    Integer field21;
+
+    @ByteArrayVariable(byteOffset = 86, count = 1, type = EDataType.FLOAT32)
+    Float field22;
+
+    @ByteArrayVariable(byteOffset = 90, count = 1, type = EDataType.FLOAT64)
+    Double field23;
+
+    @ByteArrayVariable(byteOffset = 98, count = 1, type = EDataType.UINT16)
+    Integer field24;
+
+    @ByteArrayVariable(byteOffset = 100, count = 1, type = EDataType.INT16)
+    Short field25;
+
+    @ByteArrayVariable(byteOffset = 102, count = 1, type = EDataType.INT32)
+    Integer field26;
+
+    @ByteArrayVariable(byteOffset = 106, count = 1, type = EDataType.FLOAT32)
+    Float field27;
+
+    @ByteArrayVariable(byteOffset = 110, count = 1, type = EDataType.FLOAT64)
+    Double field28;
+
+    @ByteArrayVariable(byteOffset = 118, count = 1, type = EDataType.UINT16)
+    Integer field29;
+
+    @ByteArrayVariable(byteOffset = 120, count = 1, type = EDataType.INT16)
+    Short field30;
+
+    @ByteArrayVariable(byteOffset = 122, count = 1, type = EDataType.INT32)
+    Integer field31;
+
+    @ByteArrayVariable(byteOffset = 126, count = 1, type = EDataType.FLOAT32)
+    Float field32;
+
+    @ByteArrayVariable(byteOffset = 130, count = 1, type = EDataType.FLOAT64)
+    Double field33;
+
+    @ByteArrayVariable(byteOffset = 138, count = 1, type = EDataType.UINT16)
+    Integer field34;
+
+    @ByteArrayVariable(byteOffset = 140, count = 1, type = EDataType.INT16)
+    Short field35;
+
+    @ByteArrayVariable(byteOffset = 142, count = 1, type = EDataType.INT32)
+    Integer field36;
+
+    @ByteArrayVariable(byteOffset = 146, count = 1, type = EDataType.FLOAT32)
+    Float field37;
+
+    @ByteArrayVariable(byteOffset = 150, count = 1, type = EDataType.FLOAT64)
+    Double field38;
+
+    @ByteArrayVariable(byteOffset = 158, count = 1, type = EDataType.UINT16)
+    Integer field39;
+
+    @ByteArrayVariable(byteOffset = 160, count = 1, type = EDataType.INT16)
+    Short field40;
+
+    @ByteArrayVariable(byteOffset = 162, count = 1, type = EDataType.INT32)
+    Integer field41;
+
+    @ByteArrayVariable(byteOffset = 166, count = 1, type = EDataType.FLOAT32)
+    Float field42;
+
+    @ByteArrayVariable(byteOffset = 170, count = 1, type = EDataType.FLOAT64)
+    Double field43;
+
+    @ByteArrayVariable(byteOffset = 178, count = 1, type = EDataType.UINT16)
+    Integer field44;
+
+    @ByteArrayVariable(byteOffset = 180, count = 1, type = EDataType.INT16)
+    Short field45;
+
+    @ByteArrayVariable(byteOffset = 182, count = 1, type = EDataType.INT32)
+    Integer field46;
+
+    @ByteArrayVariable(byteOffset = 186, count = 1, type = EDataType.FLOAT32)
+    Float field47;
+
+    @ByteArrayVariable(byteOffset = 190, count = 1, type = EDataType.FLOAT64)
+    Double field48;
+
+    @ByteArrayVariable(byteOffset = 198, count = 1, type = EDataType.UINT16)
+    Integer field49;
+
+    @ByteArrayVariable(byteOffset = 200, count = 1, type = EDataType.INT16)
+    Short field50;
+
+    @ByteArrayVariable(byteOffset = 202, count = 1, type = EDataType.INT32)
+    Integer field51;
+
+    @ByteArrayVariable(byteOffset = 206, count = 1, type = EDataType.FLOAT32)
+    Float field52;
+
+    @ByteArrayVariable(byteOffset = 210, count = 1, type = EDataType.FLOAT64)
+    Double field53;
+
+    @ByteArrayVariable(byteOffset = 218, count = 1, type = EDataType.UINT16)
+    Integer field54;
+
+    @ByteArrayVariable(byteOffset = 220, count = 1, type = EDataType.INT16)
+    Short field55;
+
+    @ByteArrayVariable(byteOffset = 222, count = 1, type = EDataType.INT32)
+    Integer field56;
+
+    @ByteArrayVariable(byteOffset = 226, count = 1, type = EDataType.FLOAT32)
+    Float field57;
+
+    @ByteArrayVariable(byteOffset = 230, count = 1, type = EDataType.FLOAT64)
+    Double field58;
+
+    @ByteArrayVariable(byteOffset = 238, count = 1, type = EDataType.UINT16)
+    Integer field59;
+
+    @ByteArrayVariable(byteOffset = 240, count = 1, type = EDataType.INT16)
+    Short field60;
+
+    @ByteArrayVariable(byteOffset = 242, count = 1, type = EDataType.INT32)
+    Integer field61;
+
+    @ByteArrayVariable(byteOffset = 246, count = 1, type = EDataType.FLOAT32)
+    Float field62;
+
+    @ByteArrayVariable(byteOffset = 250, count = 1, type = EDataType.FLOAT64)
+    Double field63;
+
+    @ByteArrayVariable(byteOffset = 258, count = 1, type = EDataType.UINT16)
+    Integer field64;
+
+    @ByteArrayVariable(byteOffset = 260, count = 1, type = EDataType.INT16)
+    Short field65;
+
+    @ByteArrayVariable(byteOffset = 262, count = 1, type = EDataType.INT32)
+    Integer field66;
+
+    @ByteArrayVariable(byteOffset = 266, count = 1, type = EDataType.FLOAT32)
+    Float field67;
+
+    @ByteArrayVariable(byteOffset = 270, count = 1, type = EDataType.FLOAT64)
+    Double field68;
+
+    @ByteArrayVariable(byteOffset = 278, count = 1, type = EDataType.UINT16)
+    Integer field69;
+
+    @ByteArrayVariable(byteOffset = 280, count = 1, type = EDataType.INT16)
+    Short field70;
+
+    @ByteArrayVariable(byteOffset = 282, count = 1, type = EDataType.INT32)
+    Integer field71;
+
+    @ByteArrayVariable(byteOffset = 286, count = 1, type = EDataType.FLOAT32)
+    Float field72;
+
+    @ByteArrayVariable(byteOffset = 290, count = 1, type = EDataType.FLOAT64)
+    Double field73;
+
+    @ByteArrayVariable(byteOffset = 298, count = 1, type = EDataType.UINT16)
+    Integer field74;
+
+    @ByteArrayVariable(byteOffset = 300, count = 1, type = EDataType.INT16)
+    Short field75;
+
+    @ByteArrayVariable(byteOffset = 302, count = 1, type = EDataType.INT32)
+    Integer field76;
+
+    @ByteArrayVariable(byteOffset = 306, count = 1, type = EDataType.FLOAT32)
+    Float field77;
+
+    @ByteArrayVariable(byteOffset = 310, count = 1, type = EDataType.FLOAT64)
+    Double field78;
+
+    @ByteArrayVariable(byteOffset = 318, count = 1, type = EDataType.UINT16)
+    Integer field79;
+
+    @ByteArrayVariable(byteOffset = 320, count = 1, type = EDataType.INT16)
+    Short field80;
+
+    @ByteArrayVariable(byteOffset = 322, count = 1, type = EDataType.INT32)
+    Integer field81;
+
+    @ByteArrayVariable(byteOffset = 326, count = 1, type = EDataType.FLOAT32)
+    Float field82;
+
+    @ByteArrayVariable(byteOffset = 330, count = 1, type = EDataType.FLOAT64)
+    Double field83;
+
+    @ByteArrayVariable(byteOffset = 338, count = 1, type = EDataType.UINT16)
+    Integer field84;
+
+    @ByteArrayVariable(byteOffset = 340, count = 1, type = EDataType.INT16)
+    Short field85;
+
+    @ByteArrayVariable(byteOffset = 342, count = 1, type = EDataType.INT32)
+    Integer field86;
+
+    @ByteArrayVariable(byteOffset = 346, count = 1, type = EDataType.FLOAT32)
+    Float field87;
+
+    @ByteArrayVariable(byteOffset = 350, count = 1, type = EDataType.FLOAT64)
+    Double field88;
+
+    @ByteArrayVariable(byteOffset = 358, count = 1, type = EDataType.UINT16)
+    Integer field89;
+
+    @ByteArrayVariable(byteOffset = 360, count = 1, type = EDataType.INT16)
+    Short field90;
+
+    @ByteArrayVariable(byteOffset = 362, count = 1, type = EDataType.INT32)
+    Integer field91;
+
+    @ByteArrayVariable(byteOffset = 366, count = 1, type = EDataType.FLOAT32)
+    Float field92;
+
+    @ByteArrayVariable(byteOffset = 370, count = 1, type = EDataType.FLOAT64)
+    Double field93;
+
+    @ByteArrayVariable(byteOffset = 378, count = 1, type = EDataType.UINT16)
+    Integer field94;
+
+    @ByteArrayVariable(byteOffset = 380, count = 1, type = EDataType.INT16)
+    Short field95;
+
+    @ByteArrayVariable(byteOffset = 382, count = 1, type = EDataType.INT32)
+    Integer field96;
+
+    @ByteArrayVariable(byteOffset = 386, count = 1, type = EDataType.FLOAT32)
+    Float field97;
+
+    @ByteArrayVariable(byteOffset = 390, count = 1, type = EDataType.FLOAT64)
+    Double field98;
+
+    @ByteArrayVariable(byteOffset = 398, count = 1, type = EDataType.UINT16)
+    Integer field99;
+}
@@ -0,0 +1,45 @@
+package com.github.xingshuangs.iot.protocol.common.serializer;
+
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 字节数组序列化的性能测试，100个字段的数据对象
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteArraySerializerBenchmark {
+
+    private final ByteArraySerializer serializer = ByteArraySerializer.newInstance();
+
+    private Bean100 bean;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        this.data = new byte[400];
+        for (int i = 0; i < this.data.length; i++) {
+            this.data[i] = (byte) i;
+        }
+        this.bean = this.serializer.toObject(Bean100.class, this.data);
+    }
+
+    @Benchmark
+    public Bean100 toObject() {
+        return this.serializer.toObject(Bean100.class, this.data);
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return this.serializer.toByteArray(this.bean);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.xingshuangs.iot.protocol.modbus.model;
+
+
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modbus TCP报文编码和解析的性能测试
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MbTcpRequestBenchmark {
+
+    private final byte[] registers = new byte[246];
+
+    private MbapHeader responseHeader;
+
+    private byte[] responsePdu;
+
+    @Setup
+    public void setup() {
+        MbReadHoldRegisterResponse response = new MbReadHoldRegisterResponse();
+        response.setFunctionCode(EMbFunctionCode.READ_HOLD_REGISTER);
+        response.setCount(this.registers.length);
+        response.setRegister(this.registers);
+        this.responsePdu = response.toByteArray();
+        this.responseHeader = new MbapHeader();
+        this.responseHeader.setLength(this.responsePdu.length + 1);
+    }
+
+    @Benchmark
+    public byte[] encodeReadHoldRegister() {
+        MbTcpRequest request = MbTcpRequest.createDefault();
+        request.setPdu(new MbReadHoldRegisterRequest(0, 125));
+        request.selfCheck();
+        return request.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeWriteMultipleRegister() {
+        MbTcpRequest request = MbTcpRequest.createDefault();
+        request.setPdu(new MbWriteMultipleRegisterRequest(0, 123, this.registers));
+        request.selfCheck();
+        return request.toByteArray();
+    }
+
+    @Benchmark
+    public MbTcpResponse decodeReadHoldRegister() {
+        return MbTcpResponse.fromBytes(this.responseHeader, this.responsePdu);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端回环性能测试，进程内启动ModbusTcpServer，多个ModbusTcp客户端并发访问
+ * <p>
+ * 吞吐量模式给出requests/s，采样模式给出p50/p99/p999延时；
+ * 并发客户端数量默认4个，可以通过JMH的-t参数调整，例如：-Djmh.args="ModbusTcpServerLoopback -t 16"
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class ModbusTcpServerLoopbackBenchmark {
+
+    /**
+     * 服务端端口号，避免和本机的502端口冲突
+     */
+    private static final int PORT = 10502;
+
+    /**
+     * 服务端，所有客户端共享
+     */
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        ModbusTcpServer server;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            this.server = new ModbusTcpServer(PORT);
+            this.server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.server.stop();
+        }
+    }
+
+    /**
+     * 客户端，每个线程一个连接
+     */
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        ModbusTcp modbusTcp;
+
+        @Setup(Level.Trial)
+        public void setup(ServerState serverState) {
+            this.modbusTcp = new ModbusTcp(1, ModbusTcp.IP, PORT);
+            // 建立连接，避免连接计入测量
+            this.modbusTcp.readUInt16(0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.modbusTcp.close();
+        }
+    }
+
+    @Benchmark
+    public int singleRegisterRead(ClientState client) {
+        return client.modbusTcp.readUInt16(0);
+    }
+
+    @Benchmark
+    public byte[] maxRegisterRead(ClientState client) {
+        return client.modbusTcp.readHoldRegister(0, 125);
+    }
+
+    @Benchmark
+    public List<Boolean> coilRead(ClientState client) {
+        return client.modbusTcp.readCoil(0, 200);
+    }
+
+    @Benchmark
+    public void registerWrite(ClientState client) {
+        client.modbusTcp.writeInt32(10, 12345);
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.xingshuangs.iot.protocol.s7.algorithm;
+
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顺序分组算法的性能测试，200个变量的扫描列表，PDU长度分别为240、480、960
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class S7SequentialGroupAlgBenchmark {
+
+    /**
+     * PDU长度
+     */
+    @Param({"240", "480", "960"})
+    public int pduLength;
+
+    private List<Integer> scanList;
+
+    @Setup
+    public void setup() {
+        // 大部分是1、2、4、8字节的变量，夹杂少量大块数据
+        Random random = new Random(42);
+        int[] sizes = {1, 2, 4, 8};
+        this.scanList = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            this.scanList.add(i % 40 == 0 ? 300 + random.nextInt(400) : sizes[random.nextInt(sizes.length)]);
+        }
+    }
+
+    @Benchmark
+    public List<S7ComGroup> readRecombination() {
+        return S7SequentialGroupAlg.readRecombination(this.scanList, this.pduLength - 14, 5, 12);
+    }
+
+    @Benchmark
+    public List<S7ComGroup> writeRecombination() {
+        return S7SequentialGroupAlg.writeRecombination(this.scanList, this.pduLength - 12, 17);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.xingshuangs.iot.protocol.s7.model;
+
+
+import com.github.xingshuangs.iot.protocol.s7.enums.EDataVariableType;
+import com.github.xingshuangs.iot.protocol.s7.utils.AddressUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * S7Data报文编码和解析的性能测试，单个数据项和20个数据项的读请求及响应
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class S7DataBenchmark {
+
+    /**
+     * 数据项个数
+     */
+    @Param({"1", "20"})
+    public int itemCount;
+
+    private List<RequestItem> requestItems;
+
+    private List<DataItem> dataItems;
+
+    private byte[] readResponse;
+
+    @Setup
+    public void setup() {
+        this.requestItems = new ArrayList<>();
+        this.dataItems = new ArrayList<>();
+        List<ReturnItem> returnItems = new ArrayList<>();
+        for (int i = 0; i < this.itemCount; i++) {
+            this.requestItems.add(AddressUtil.parseByte("DB1." + i * 4, 4));
+            DataItem dataItem = DataItem.createReqByByte(new byte[]{(byte) i, 0x01, 0x02, 0x03});
+            this.dataItems.add(dataItem);
+            returnItems.add(DataItem.createAckBy(dataItem.getData(), EDataVariableType.BYTE_WORD_DWORD));
+        }
+        S7Data request = S7Data.createReadRequest(this.requestItems);
+        this.readResponse = S7Data.createReadWriteResponse(request, returnItems).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeReadRequest() {
+        return S7Data.createReadRequest(this.requestItems).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeWriteRequest() {
+        return S7Data.createWriteRequest(this.requestItems, this.dataItems).toByteArray();
+    }
+
+    @Benchmark
+    public S7Data decodeReadResponse() {
+        return S7Data.fromBytes(this.readResponse);
+    }
+}
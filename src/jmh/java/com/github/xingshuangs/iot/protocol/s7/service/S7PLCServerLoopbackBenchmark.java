@@ -0,0 +1,199 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.net.enums.EJitterDistribution;
+import com.github.xingshuangs.iot.net.server.NetworkImpairment;
+import com.github.xingshuangs.iot.protocol.s7.enums.EPlcType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端回环性能测试，进程内启动S7PLCServer，多个S7PLC客户端并发访问
+ * <p>
+ * 吞吐量模式给出requests/s，附加计数器bytes给出有效数据的bytes/s，采样模式给出p50/p99/p999延时；
+ * 并发客户端数量默认4个，可以通过JMH的-t参数调整，例如：-Djmh.args="S7PLCServerLoopback -t 16"；
+ * 通过-p参数模拟现场网络，例如：-Djmh.args="S7PLCServerLoopback -p latency=20 -p jitter=5 -p bandwidth=125000 -p pduLength=240"
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class S7PLCServerLoopbackBenchmark {
+
+    /**
+     * 服务端端口号，避免和本机的102端口冲突
+     */
+    private static final int PORT = 10102;
+
+    /**
+     * 分组读取的变量个数
+     */
+    private static final int TAG_COUNT = 200;
+
+    /**
+     * 大数据块的字节数
+     */
+    private static final int BLOCK_SIZE = 16384;
+
+    /**
+     * 服务端，所有客户端共享
+     */
+    @State(Scope.Benchmark)
+    public static class ServerState {
+
+        /**
+         * 模拟的网络延时，单位毫秒
+         */
+        @Param({"0"})
+        public int latency;
+
+        /**
+         * 模拟的网络抖动，单位毫秒，指数分布
+         */
+        @Param({"0"})
+        public int jitter;
+
+        /**
+         * 模拟的带宽，单位字节/秒，0表示不限制
+         */
+        @Param({"0"})
+        public int bandwidth;
+
+        /**
+         * 服务端通告的PDU长度，0表示与客户端一致
+         */
+        @Param({"0"})
+        public int pduLength;
+
+        S7PLCServer server;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            this.server = new S7PLCServer(PORT);
+            this.server.addDBArea(1, 2, 3);
+            this.server.setPduLength(this.pduLength);
+            NetworkImpairment impairment = new NetworkImpairment();
+            impairment.setLatency(this.latency);
+            impairment.setJitter(this.jitter);
+            impairment.setJitterDistribution(EJitterDistribution.EXPONENTIAL);
+            impairment.setBandwidth(this.bandwidth);
+            this.server.setImpairment(impairment);
+            this.server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.server.stop();
+        }
+    }
+
+    /**
+     * 客户端，每个线程一个连接，模拟多个HMI/SCADA同时访问
+     */
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        S7PLC s7PLC;
+
+        /**
+         * 200个变量的扫描列表，1、2、4、8字节的变量交替，地址不连续
+         */
+        MultiAddressRead scanList;
+
+        /**
+         * 写入的变量列表
+         */
+        MultiAddressWrite writeList;
+
+        int scanBytes;
+
+        int writeBytes;
+
+        @Setup(Level.Trial)
+        public void setup(ServerState serverState) {
+            this.s7PLC = new S7PLC(EPlcType.S1200, S7PLC.IP, PORT, 0, 0);
+            this.scanList = new MultiAddressRead();
+            int[] sizes = {1, 2, 4, 8};
+            int offset = 0;
+            for (int i = 0; i < TAG_COUNT; i++) {
+                int size = sizes[i % sizes.length];
+                this.scanList.addData("DB1." + offset, size);
+                this.scanBytes += size;
+                offset += size + 2;
+            }
+            this.writeList = new MultiAddressWrite();
+            for (int i = 0; i < 20; i++) {
+                this.writeList.addInt16("DB3." + i * 10, (short) i)
+                        .addFloat32("DB3." + (i * 10 + 2), i * 1.5f);
+                this.writeBytes += 6;
+            }
+            // 建立连接，避免握手计入测量
+            this.s7PLC.readByte("DB1.0");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.s7PLC.close();
+        }
+    }
+
+    /**
+     * 有效数据字节数，吞吐量模式下输出为bytes/ms
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Traffic {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public short singleItemRead(ClientState client, Traffic traffic) {
+        short value = client.s7PLC.readInt16("DB1.0");
+        traffic.bytes += 2;
+        return value;
+    }
+
+    @Benchmark
+    public List<byte[]> groupedRead200(ClientState client, Traffic traffic) {
+        List<byte[]> values = client.s7PLC.readMultiByte(client.scanList);
+        traffic.bytes += client.scanBytes;
+        return values;
+    }
+
+    @Benchmark
+    public byte[] largeBlockRead(ClientState client, Traffic traffic) {
+        byte[] values = client.s7PLC.readByte("DB2.0", BLOCK_SIZE);
+        traffic.bytes += BLOCK_SIZE;
+        return values;
+    }
+
+    /**
+     * 混合读写，3个线程读取扫描列表，1个线程写入变量
+     */
+    @Benchmark
+    @Group("mixedReadWrite")
+    @GroupThreads(3)
+    public List<byte[]> mixedRead(ClientState client, Traffic traffic) {
+        return this.groupedRead200(client, traffic);
+    }
+
+    @Benchmark
+    @Group("mixedReadWrite")
+    @GroupThreads(1)
+    public void mixedWrite(ClientState client, Traffic traffic) {
+        client.s7PLC.writeMultiData(client.writeList);
+        traffic.bytes += client.writeBytes;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.xingshuangs.iot.protocol.s7.utils;
+
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 地址解析的性能测试
+ *
+ * @author xingshuang
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressUtilBenchmark {
+
+    private final String[] byteAddresses = {"DB1.0", "DB14.100", "DB200.4095", "M10", "I0", "Q1", "V100", "T2", "C3"};
+
+    private final String[] bitAddresses = {"DB1.0.1", "DB14.100.7", "M10.2", "I0.0", "Q1.5", "V100.3"};
+
+    @Benchmark
+    public void parseByte(Blackhole bh) {
+        for (String address : this.byteAddresses) {
+            bh.consume(AddressUtil.parseByte(address, 4));
+        }
+    }
+
+    @Benchmark
+    public void parseBit(Blackhole bh) {
+        for (String address : this.bitAddresses) {
+            bh.consume(AddressUtil.parseBit(address));
+        }
+    }
+}
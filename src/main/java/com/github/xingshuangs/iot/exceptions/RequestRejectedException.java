@@ -0,0 +1,26 @@
+package com.github.xingshuangs.iot.exceptions;
+
+/**
+ * 请求被调度器拒绝的异常，例如等待队列已满
+ *
+ * @author xingshuang
+ */
+public class RequestRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RequestRejectedException() {
+        super();
+    }
+
+    public RequestRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+
+    public RequestRejectedException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+/**
+ * 通信事件，用于Java Flight Recorder(JFR)的自定义事件记录
+ * 该类为Java8版本的空实现，不产生任何记录；在Java11及以上运行时，多版本JAR中META-INF/versions/11下的同名类
+ * 会替换该类，将事件写入JFR，便于把PLC通信延时与GC停顿、线程竞争进行关联分析
+ * <p>
+ * 使用方式：
+ * <pre>
+ * CommEvent event = CommEvent.s7Request().address(address);
+ * try {
+ *     // 通信
+ *     event.bytes(length).success();
+ * } finally {
+ *     event.commit();
+ * }
+ * </pre>
+ *
+ * @author xingshuang
+ */
+public final class CommEvent {
+
+    /**
+     * 空事件，Java8下所有事件都是该对象，不产生额外的对象分配
+     */
+    private static final CommEvent NOOP = new CommEvent();
+
+    private CommEvent() {
+        // NOOP
+    }
+
+    //region 事件创建
+
+    /**
+     * S7协议单次请求响应事件，一次PDU的交互
+     *
+     * @return 事件
+     */
+    public static CommEvent s7Request() {
+        return NOOP;
+    }
+
+    /**
+     * S7协议批量读写事件，一次读写可能被拆分为多个PDU
+     *
+     * @return 事件
+     */
+    public static CommEvent s7Batch() {
+        return NOOP;
+    }
+
+    /**
+     * Modbus协议单次请求响应事件
+     *
+     * @return 事件
+     */
+    public static CommEvent modbusRequest() {
+        return NOOP;
+    }
+
+    /**
+     * 握手事件
+     *
+     * @return 事件
+     */
+    public static CommEvent handshake() {
+        return NOOP;
+    }
+
+    /**
+     * 客户端重新创建socket并连接的事件
+     *
+     * @return 事件
+     */
+    public static CommEvent reconnect() {
+        return NOOP;
+    }
+
+    /**
+     * 服务端处理客户端请求的事件
+     *
+     * @return 事件
+     */
+    public static CommEvent serverRequest() {
+        return NOOP;
+    }
+
+    //endregion
+
+    //region 事件参数
+
+    /**
+     * 设置通信地址，在提交的时候才转换为字符串
+     *
+     * @param address 地址
+     * @return 事件本身
+     */
+    public CommEvent address(Object address) {
+        return this;
+    }
+
+    /**
+     * 设置功能码
+     *
+     * @param functionCode 功能码
+     * @return 事件本身
+     */
+    public CommEvent functionCode(Object functionCode) {
+        return this;
+    }
+
+    /**
+     * 设置数据项个数
+     *
+     * @param itemCount 数据项个数
+     * @return 事件本身
+     */
+    public CommEvent itemCount(int itemCount) {
+        return this;
+    }
+
+    /**
+     * 设置PDU个数
+     *
+     * @param pduCount PDU个数
+     * @return 事件本身
+     */
+    public CommEvent pduCount(int pduCount) {
+        return this;
+    }
+
+    /**
+     * 累加字节数
+     *
+     * @param bytes 字节数
+     * @return 事件本身
+     */
+    public CommEvent bytes(int bytes) {
+        return this;
+    }
+
+    /**
+     * 标记成功
+     *
+     * @return 事件本身
+     */
+    public CommEvent success() {
+        return this;
+    }
+
+    /**
+     * 提交事件，持续时间为创建事件到提交事件的时间
+     */
+    public void commit() {
+        // NOOP
+    }
+
+    //endregion
+}
@@ -2,6 +2,7 @@ package com.github.xingshuangs.iot.net.client;
 
 
 import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
 import com.github.xingshuangs.iot.net.SocketUtils;
 import lombok.extern.slf4j.Slf4j;
 
@@ -97,6 +98,7 @@ public class TcpClientBasic {
         // 未连接，表示已断开，需要手动关闭socket，创建新的socket
         this.close();
 
+        CommEvent event = CommEvent.reconnect().address(this.socketAddress);
         try {
             // 重新创建对象，并连接
             this.socket = new Socket();
@@ -105,9 +107,12 @@ public class TcpClientBasic {
             this.socketError.set(false);
             log.debug("创建并连接服务端[{}]成功", this.socketAddress);
             this.doAfterConnected();
+            event.success();
             return socket;
         } catch (IOException e) {
             throw new SocketRuntimeException(e);
+        } finally {
+            event.commit();
         }
     }
 
@@ -123,6 +128,22 @@ public class TcpClientBasic {
         }
     }
 
+    /**
+     * 关闭指定的socket，只有仍然是当前socket的时候才清空，已经重新连接的不受影响
+     *
+     * @param target 需要关闭的socket
+     */
+    protected void close(Socket target) {
+        try {
+            SocketUtils.close(target);
+            if (this.socket == target) {
+                this.socket = null;
+            }
+        } catch (IOException e) {
+            throw new SocketRuntimeException(e);
+        }
+    }
+
     //endregion
 
     /**
@@ -0,0 +1,366 @@
+package com.github.xingshuangs.iot.net.client;
+
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 同一个设备的多个TCP客户端组成的连接池，每个客户端独占一个socket，不同的请求可以在不同的socket上并行执行；
+ * 租借按照先来先得的公平顺序，空闲超时的连接在保留最小连接数的前提下被关闭，空闲连接定期做健康检查
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class TcpClientPool<T extends TcpClientBasic> {
+
+    /**
+     * 后台维护任务的执行周期，单位ms
+     */
+    private static final int MAINTAIN_INTERVAL = 1000;
+
+    /**
+     * 客户端工厂，创建的客户端还没有连接
+     */
+    private final Supplier<T> factory;
+
+    /**
+     * 最小连接数，后台维护任务会预先建立
+     */
+    private final int minSize;
+
+    /**
+     * 最大连接数
+     */
+    private final int maxSize;
+
+    /**
+     * 公平的租借许可，数量为最大连接数
+     */
+    private final Semaphore permits;
+
+    /**
+     * 空闲的客户端，最近归还的在队首，优先复用，队尾的长时间不用就会超时关闭
+     */
+    private final LinkedBlockingDeque<PooledClient<T>> idleClients = new LinkedBlockingDeque<>();
+
+    /**
+     * 当前已经创建的客户端数量，包括空闲和租借中的
+     */
+    private final AtomicInteger totalSize = new AtomicInteger();
+
+    /**
+     * 后台维护任务
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 空闲超时时间，默认60s，单位ms
+     */
+    private int idleTimeout = 60_000;
+
+    /**
+     * 租借的等待超时时间，默认10s，单位ms
+     */
+    private int leaseTimeout = 10_000;
+
+    /**
+     * 空闲连接的健康检查，返回false的连接被关闭，默认校验socket连接状态
+     */
+    private Predicate<T> healthCheck = TcpClientBasic::checkConnected;
+
+    /**
+     * 是否已经关闭
+     */
+    private volatile boolean closed = false;
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        if (idleTimeout <= 0) {
+            throw new IllegalArgumentException("idleTimeout<=0");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(int leaseTimeout) {
+        if (leaseTimeout <= 0) {
+            throw new IllegalArgumentException("leaseTimeout<=0");
+        }
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    public void setHealthCheck(Predicate<T> healthCheck) {
+        if (healthCheck == null) {
+            throw new IllegalArgumentException("healthCheck不能为null");
+        }
+        this.healthCheck = healthCheck;
+    }
+
+    /**
+     * 当前已经创建的连接数量
+     *
+     * @return 连接数量
+     */
+    public int getTotalSize() {
+        return this.totalSize.get();
+    }
+
+    /**
+     * 当前空闲的连接数量
+     *
+     * @return 连接数量
+     */
+    public int getIdleSize() {
+        return this.idleClients.size();
+    }
+
+    public TcpClientPool(Supplier<T> factory, int minSize, int maxSize) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory不能为null");
+        }
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("连接数需要满足0<=minSize<=maxSize且maxSize>=1");
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "iot-tcp-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::maintain, 0, MAINTAIN_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    //region 公共方法
+
+    /**
+     * 租借一个客户端执行操作，执行完毕自动归还；发生socket异常的客户端被关闭丢弃，不再归还到池中，
+     * 同时关闭所有空闲的客户端，例如设备重启之后池中的旧连接都已经失效
+     *
+     * @param action 操作
+     * @param <R>    返回值类型
+     * @return 操作结果
+     */
+    public <R> R execute(Function<T, R> action) {
+        T client = this.lease();
+        // 只有socket异常才认为连接损坏，协议的错误响应不影响连接本身
+        boolean broken = false;
+        try {
+            return action.apply(client);
+        } catch (SocketRuntimeException e) {
+            broken = true;
+            throw e;
+        } finally {
+            this.release(client, broken);
+        }
+    }
+
+    /**
+     * 租借客户端，等待超过租借超时时间则抛出异常，使用完毕必须调用{@link #release(TcpClientBasic, boolean)}归还
+     *
+     * @return 客户端
+     */
+    public T lease() {
+        if (this.closed) {
+            throw new SocketRuntimeException("连接池已经关闭");
+        }
+        try {
+            if (!this.permits.tryAcquire(this.leaseTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SocketRuntimeException(String.format("连接池获取连接超时[%d]ms，最大连接数[%d]", this.leaseTimeout, this.maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketRuntimeException(e);
+        }
+        PooledClient<T> pooled = this.idleClients.pollFirst();
+        if (pooled != null) {
+            return pooled.client;
+        }
+        try {
+            T client = this.factory.get();
+            this.totalSize.incrementAndGet();
+            return client;
+        } catch (RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 归还客户端
+     *
+     * @param client 客户端
+     * @param broken 是否已经损坏，损坏的客户端被关闭丢弃
+     */
+    public void release(T client, boolean broken) {
+        try {
+            if (this.closed) {
+                this.discard(client);
+            } else if (broken) {
+                this.discard(client);
+                this.discardIdle();
+            } else {
+                this.idleClients.offerFirst(new PooledClient<>(client));
+            }
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * 关闭连接池以及所有空闲的连接，租借中的连接在归还的时候关闭
+     */
+    public void close() {
+        this.closed = true;
+        this.scheduler.shutdownNow();
+        this.discardIdle();
+    }
+
+    //endregion
+
+    /**
+     * 后台维护，关闭空闲超时和健康检查失败的连接，补足最小连接数
+     */
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledClient<T>> iterator = this.idleClients.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledClient<T> pooled = iterator.next();
+                boolean expired = now - pooled.idleSince > this.idleTimeout && this.totalSize.get() > this.minSize;
+                if (expired) {
+                    // 移除失败表示刚刚被租借走了
+                    if (this.idleClients.remove(pooled)) {
+                        log.debug("连接池关闭空闲超时的连接[{}]", pooled.client.socketAddress);
+                        this.discard(pooled.client);
+                    }
+                    continue;
+                }
+                this.checkHealth(pooled);
+            }
+            while (!this.closed && this.totalSize.get() < this.minSize && this.permits.tryAcquire()) {
+                T client = null;
+                try {
+                    client = this.factory.get();
+                    this.totalSize.incrementAndGet();
+                    client.getAvailableSocket();
+                    this.idleClients.offerLast(new PooledClient<>(client));
+                    client = null;
+                } finally {
+                    if (client != null) {
+                        this.discard(client);
+                    }
+                    this.permits.release();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("连接池维护失败，{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 健康检查，先从空闲队列中取出并占用一个许可再检查，检查期间不会被同时租借走，也不会因此多创建连接；
+     * 没有可用许可的时候跳过，下一轮再检查
+     *
+     * @param pooled 空闲的客户端
+     * @throws InterruptedException 中断异常
+     */
+    private void checkHealth(PooledClient<T> pooled) throws InterruptedException {
+        if (!this.permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        try {
+            // 移除失败表示刚刚被租借走了
+            if (!this.idleClients.remove(pooled)) {
+                return;
+            }
+            boolean healthy;
+            try {
+                healthy = !this.closed && this.healthCheck.test(pooled.client);
+            } catch (RuntimeException e) {
+                log.warn("连接池健康检查异常，{}", e.getMessage());
+                healthy = false;
+            }
+            if (healthy) {
+                this.idleClients.offerLast(pooled);
+                // 检查期间连接池被关闭，放回之后再清理一次
+                if (this.closed && this.idleClients.remove(pooled)) {
+                    this.discard(pooled.client);
+                }
+            } else {
+                log.debug("连接池关闭健康检查失败的连接[{}]", pooled.client.socketAddress);
+                this.discard(pooled.client);
+            }
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    /**
+     * 关闭并丢弃所有空闲的客户端
+     */
+    private void discardIdle() {
+        PooledClient<T> pooled;
+        while ((pooled = this.idleClients.pollFirst()) != null) {
+            this.discard(pooled.client);
+        }
+    }
+
+    /**
+     * 关闭并丢弃客户端
+     *
+     * @param client 客户端
+     */
+    private void discard(T client) {
+        this.totalSize.decrementAndGet();
+        try {
+            client.close();
+        } catch (Exception e) {
+            log.debug("连接池关闭连接失败，{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 池中的客户端
+     */
+    private static class PooledClient<T> {
+
+        private final T client;
+
+        /**
+         * 开始空闲的时间
+         */
+        private final long idleSince = System.currentTimeMillis();
+
+        private PooledClient(T client) {
+            this.client = client;
+        }
+    }
+}
@@ -37,6 +37,10 @@ public class UdpClientBasic {
         this.serverAddress = new InetSocketAddress(ip, port);
     }
 
+    public InetSocketAddress getServerAddress() {
+        return serverAddress;
+    }
+
     public void close() {
         if (this.socket != null && !this.socket.isClosed()) {
             this.socket.close();
@@ -48,9 +52,9 @@ public class UdpClientBasic {
      *
      * @return socket
      */
-    public DatagramSocket getAvailableSocket() {
-        // 已连接的直接返回socket
-        if (this.socket != null) {
+    public synchronized DatagramSocket getAvailableSocket() {
+        // 已连接的直接返回socket，关闭之后重新创建
+        if (this.socket != null && !this.socket.isClosed()) {
             return this.socket;
         }
         try {
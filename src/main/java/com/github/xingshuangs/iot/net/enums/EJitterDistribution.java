@@ -0,0 +1,25 @@
+package com.github.xingshuangs.iot.net.enums;
+
+
+/**
+ * 延时抖动的分布类型
+ *
+ * @author xingshuang
+ */
+public enum EJitterDistribution {
+
+    /**
+     * 均匀分布，抖动在[0, jitter]之间
+     */
+    UNIFORM,
+
+    /**
+     * 正态分布，标准差为jitter，取绝对值，大部分抖动落在jitter以内
+     */
+    NORMAL,
+
+    /**
+     * 指数分布，均值为jitter，存在长尾，接近无线网络或者拥塞的广域网
+     */
+    EXPONENTIAL
+}
@@ -0,0 +1,104 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 阻塞式报文读取器，按照报文帧解析器每次读取一个完整的报文
+ * <p>
+ * 一个客户端一个读取器，读缓存重复使用，一次读取可以拿到多个连续的报文，减少系统调用
+ *
+ * @author xingshuang
+ */
+class FrameReader {
+
+    /**
+     * 读缓存的初始大小
+     */
+    private static final int INIT_BUFFER_SIZE = 1024;
+
+    /**
+     * 输入流
+     */
+    private final InputStream in;
+
+    /**
+     * 报文帧解析器
+     */
+    private final IFrameDecoder decoder;
+
+    /**
+     * 单个报文的最大长度
+     */
+    private final int maxFrameLength;
+
+    /**
+     * 读缓存
+     */
+    private byte[] buffer = new byte[INIT_BUFFER_SIZE];
+
+    /**
+     * 未处理数据的起始位置
+     */
+    private int position = 0;
+
+    /**
+     * 未处理数据的结束位置
+     */
+    private int limit = 0;
+
+    FrameReader(InputStream in, IFrameDecoder decoder, int maxFrameLength) {
+        this.in = in;
+        this.decoder = decoder;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 读取一个完整的报文
+     *
+     * @return 报文
+     * @throws IOException IO异常
+     */
+    byte[] readFrame() throws IOException {
+        this.fill(this.decoder.headerLength());
+        int frameLength = this.decoder.frameLength(this.buffer, this.position);
+        if (frameLength <= 0 || frameLength > this.maxFrameLength) {
+            throw new SocketRuntimeException(String.format("报文长度[%d]无效", frameLength));
+        }
+        this.fill(frameLength);
+        byte[] frame = Arrays.copyOfRange(this.buffer, this.position, this.position + frameLength);
+        this.position += frameLength;
+        return frame;
+    }
+
+    /**
+     * 保证读缓存中至少有指定长度的未处理数据
+     *
+     * @param length 长度
+     * @throws IOException IO异常
+     */
+    private void fill(int length) throws IOException {
+        if (this.limit - this.position >= length) {
+            return;
+        }
+        // 剩余空间不够时，把未处理的数据移到开头，不够容纳一个报文时扩容
+        if (this.buffer.length - this.position < length) {
+            byte[] target = length > this.buffer.length ? new byte[Math.max(length, this.buffer.length * 2)] : this.buffer;
+            System.arraycopy(this.buffer, this.position, target, 0, this.limit - this.position);
+            this.limit -= this.position;
+            this.position = 0;
+            this.buffer = target;
+        }
+        while (this.limit - this.position < length) {
+            int num = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (num < 0) {
+                throw new SocketRuntimeException("客户端主动断开");
+            }
+            this.limit += num;
+        }
+    }
+}
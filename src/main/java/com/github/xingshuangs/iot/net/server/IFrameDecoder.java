@@ -0,0 +1,26 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+/**
+ * 报文帧解析器，从字节流中确定一个完整报文的长度，用于TCP的拆包和粘包处理
+ *
+ * @author xingshuang
+ */
+public interface IFrameDecoder {
+
+    /**
+     * 确定报文长度所需的报文头字节数
+     *
+     * @return 报文头字节数
+     */
+    int headerLength();
+
+    /**
+     * 根据报文头计算完整报文的长度，包括报文头
+     *
+     * @param src    字节数组
+     * @param offset 报文头在字节数组中的偏移量
+     * @return 完整报文的长度，小于等于0表示报文无效
+     */
+    int frameLength(byte[] src, int offset);
+}
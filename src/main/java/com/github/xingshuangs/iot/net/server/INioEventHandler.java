@@ -0,0 +1,19 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * NIO选择器事件处理
+ *
+ * @author xingshuang
+ */
+interface INioEventHandler {
+
+    /**
+     * 通道就绪后的处理，在IO线程中执行
+     *
+     * @param key 选择键
+     */
+    void onSelected(SelectionKey key);
+}
@@ -0,0 +1,80 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+/**
+ * 基于报文头中长度字段的报文帧解析器，长度字段为大端无符号整数
+ * <p>
+ * S7协议的TPKT：报文头4字节，长度字段偏移2，2个字节，长度包含报文头，修正值0
+ * Modbus TCP的MBAP：报文头7字节，长度字段偏移4，2个字节，长度包含单元标识及之后的字节，修正值6
+ *
+ * @author xingshuang
+ */
+public class LengthFieldFrameDecoder implements IFrameDecoder {
+
+    /**
+     * 报文头字节数
+     */
+    private final int headerLength;
+
+    /**
+     * 长度字段的偏移量
+     */
+    private final int lengthOffset;
+
+    /**
+     * 长度字段的字节数，1、2、4
+     */
+    private final int lengthSize;
+
+    /**
+     * 长度修正值，完整报文长度 = 长度字段的值 + 修正值
+     */
+    private final int lengthAdjustment;
+
+    public LengthFieldFrameDecoder(int headerLength, int lengthOffset, int lengthSize, int lengthAdjustment) {
+        if (lengthSize != 1 && lengthSize != 2 && lengthSize != 4) {
+            throw new IllegalArgumentException("lengthSize只能是1、2、4");
+        }
+        if (lengthOffset < 0 || lengthOffset + lengthSize > headerLength) {
+            throw new IllegalArgumentException("长度字段超出报文头的范围");
+        }
+        this.headerLength = headerLength;
+        this.lengthOffset = lengthOffset;
+        this.lengthSize = lengthSize;
+        this.lengthAdjustment = lengthAdjustment;
+    }
+
+    /**
+     * 创建S7协议TPKT报文的解析器
+     *
+     * @return 报文帧解析器
+     */
+    public static LengthFieldFrameDecoder createTpkt() {
+        return new LengthFieldFrameDecoder(4, 2, 2, 0);
+    }
+
+    /**
+     * 创建Modbus TCP协议MBAP报文的解析器
+     *
+     * @return 报文帧解析器
+     */
+    public static LengthFieldFrameDecoder createMbap() {
+        return new LengthFieldFrameDecoder(7, 4, 2, 6);
+    }
+
+    @Override
+    public int headerLength() {
+        return this.headerLength;
+    }
+
+    @Override
+    public int frameLength(byte[] src, int offset) {
+        int index = offset + this.lengthOffset;
+        long length = 0;
+        for (int i = 0; i < this.lengthSize; i++) {
+            length = (length << 8) | (src[index + i] & 0xFF);
+        }
+        length += this.lengthAdjustment;
+        return length < this.headerLength || length > Integer.MAX_VALUE ? -1 : (int) length;
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import com.github.xingshuangs.iot.net.enums.EJitterDistribution;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网络损伤配置，用于模拟服务端在真实现场网络下的表现，默认不产生任何损伤
+ * <p>
+ * 每次响应的延时 = 扫描周期等待时间 + 链路排队及发送时间 + 固定延时 + 抖动；
+ * 使用同一个配置的服务端的所有连接共享一条链路，响应按照带宽依次占用链路，并发连接和流水线响应不会各自获得完整的带宽
+ *
+ * @author xingshuang
+ */
+@Data
+public class NetworkImpairment {
+
+    /**
+     * 每次请求的固定延时，单位毫秒
+     */
+    private int latency = 0;
+
+    /**
+     * 抖动，单位毫秒，含义由抖动分布决定
+     */
+    private int jitter = 0;
+
+    /**
+     * 抖动分布类型
+     */
+    private EJitterDistribution jitterDistribution = EJitterDistribution.UNIFORM;
+
+    /**
+     * 带宽上限，单位字节/秒，0表示不限制
+     */
+    private int bandwidth = 0;
+
+    /**
+     * 连接中断的概率，[0, 1]，每次响应之前按照该概率断开客户端连接
+     */
+    private double dropRate = 0;
+
+    /**
+     * PLC的CPU扫描周期，单位毫秒，请求在当前扫描周期结束之后才响应，0表示不等待
+     */
+    private int scanTime = 0;
+
+    /**
+     * 链路空闲的时间点，单位纳秒，与{@link System#nanoTime()}可比
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicLong linkFreeNanos = new AtomicLong(System.nanoTime());
+
+    public void setLatency(int latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("latency<0");
+        }
+        this.latency = latency;
+    }
+
+    public void setJitter(int jitter) {
+        if (jitter < 0) {
+            throw new IllegalArgumentException("jitter<0");
+        }
+        this.jitter = jitter;
+    }
+
+    public void setBandwidth(int bandwidth) {
+        if (bandwidth < 0) {
+            throw new IllegalArgumentException("bandwidth<0");
+        }
+        this.bandwidth = bandwidth;
+    }
+
+    public void setDropRate(double dropRate) {
+        if (dropRate < 0 || dropRate > 1) {
+            throw new IllegalArgumentException("dropRate<0||dropRate>1");
+        }
+        this.dropRate = dropRate;
+    }
+
+    public void setScanTime(int scanTime) {
+        if (scanTime < 0) {
+            throw new IllegalArgumentException("scanTime<0");
+        }
+        this.scanTime = scanTime;
+    }
+
+    /**
+     * 是否存在损伤
+     *
+     * @return true：存在，false：不存在
+     */
+    public boolean isEnabled() {
+        return this.latency > 0 || this.jitter > 0 || this.bandwidth > 0 || this.dropRate > 0 || this.scanTime > 0;
+    }
+
+    /**
+     * 是否断开连接
+     *
+     * @return true：断开，false：不断开
+     */
+    public boolean shouldDrop() {
+        return this.dropRate > 0 && ThreadLocalRandom.current().nextDouble() < this.dropRate;
+    }
+
+    /**
+     * 计算响应指定字节数所需的延时，包括扫描周期、带宽限制、固定延时以及抖动；
+     * 限制带宽时响应在链路上排队，占用链路直到发送完成
+     *
+     * @param length 响应的字节数
+     * @return 延时，单位纳秒
+     */
+    public long delayNanos(int length) {
+        long now = System.nanoTime();
+        long nanos = this.scanWaitNanos(now);
+        if (this.bandwidth > 0) {
+            nanos = this.transmitEndNanos(now + nanos, length * 1_000_000_000L / this.bandwidth) - now;
+        }
+        nanos += TimeUnit.MILLISECONDS.toNanos(this.latency);
+        nanos += (long) (this.nextJitter() * 1_000_000);
+        return nanos;
+    }
+
+    /**
+     * 在共享链路上占用发送时间
+     *
+     * @param ready    可以开始发送的时间点，单位纳秒
+     * @param transmit 发送所需的时间，单位纳秒
+     * @return 发送完成的时间点，单位纳秒
+     */
+    private long transmitEndNanos(long ready, long transmit) {
+        while (true) {
+            long free = this.linkFreeNanos.get();
+            long end = Math.max(ready, free) + transmit;
+            if (this.linkFreeNanos.compareAndSet(free, end)) {
+                return end;
+            }
+        }
+    }
+
+    /**
+     * 距离当前扫描周期结束的时间
+     *
+     * @param now 当前时间，单位纳秒
+     * @return 等待时间，单位纳秒
+     */
+    long scanWaitNanos(long now) {
+        if (this.scanTime <= 0) {
+            return 0;
+        }
+        long cycle = TimeUnit.MILLISECONDS.toNanos(this.scanTime);
+        return cycle - Math.floorMod(now, cycle);
+    }
+
+    /**
+     * 按照抖动分布生成抖动值
+     *
+     * @return 抖动，单位毫秒
+     */
+    private double nextJitter() {
+        if (this.jitter <= 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (this.jitterDistribution) {
+            case NORMAL:
+                return Math.abs(random.nextGaussian()) * this.jitter;
+            case EXPONENTIAL:
+                return -Math.log(1 - random.nextDouble()) * this.jitter;
+            case UNIFORM:
+            default:
+                return random.nextDouble() * this.jitter;
+        }
+    }
+}
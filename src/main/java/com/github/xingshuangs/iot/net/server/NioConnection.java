@@ -0,0 +1,338 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NIO服务端的客户端连接
+ * <p>
+ * 每个连接拥有独立的读缓存，IO线程从读缓存中拆出完整的报文放入接收队列，业务线程按照顺序逐个处理，
+ * 同一时刻一个连接最多只有一个业务线程在处理，因此连接上的会话状态不需要额外同步
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class NioConnection implements INioEventHandler {
+
+    /**
+     * 读缓存的初始大小
+     */
+    private static final int INIT_BUFFER_SIZE = 1024;
+
+    /**
+     * 所属服务端
+     */
+    private final NioTcpServerBasic server;
+
+    /**
+     * 通道
+     */
+    private final SocketChannel channel;
+
+    /**
+     * 所属IO线程
+     */
+    private final NioIoLoop loop;
+
+    /**
+     * 远程地址
+     */
+    private final SocketAddress remoteAddress;
+
+    /**
+     * 选择键
+     */
+    private volatile SelectionKey key;
+
+    /**
+     * 读缓存，只在IO线程中使用
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INIT_BUFFER_SIZE);
+
+    /**
+     * 已接收待处理的报文
+     */
+    private final Queue<byte[]> inbound = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否有业务线程正在处理
+     */
+    private final AtomicBoolean processing = new AtomicBoolean(false);
+
+    /**
+     * 待发送的数据，使用writeLock同步
+     */
+    private final Queue<ByteBuffer> outbound = new ArrayDeque<>();
+
+    /**
+     * 发送锁
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * 当前报文处理过程中延时发送的数据，只在业务线程中使用
+     */
+    private final List<byte[]> delayedData = new ArrayList<>();
+
+    /**
+     * 当前报文处理过程中各响应延时的最大值，单位纳秒
+     */
+    private long delayNanos = 0;
+
+    /**
+     * 是否关闭
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * 附件，用于保存协议的会话状态
+     */
+    private volatile Object attachment;
+
+    NioConnection(NioTcpServerBasic server, SocketChannel channel, NioIoLoop loop) {
+        this.server = server;
+        this.channel = channel;
+        this.loop = loop;
+        this.remoteAddress = channel.socket().getRemoteSocketAddress();
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * 是否打开
+     *
+     * @return true：打开，false：关闭
+     */
+    public boolean isOpen() {
+        return !this.closed.get();
+    }
+
+    //region IO线程
+
+    @Override
+    public void onSelected(SelectionKey key) {
+        if (key.isReadable()) {
+            this.read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            this.flush();
+        }
+    }
+
+    /**
+     * 读取数据并拆出完整的报文
+     */
+    private void read() {
+        int len;
+        try {
+            len = this.channel.read(this.readBuffer);
+        } catch (IOException e) {
+            log.debug("客户端[{}]读取异常，{}", this.remoteAddress, e.getMessage());
+            this.close();
+            return;
+        }
+        if (len < 0) {
+            this.close();
+            return;
+        }
+        this.readBuffer.flip();
+        IFrameDecoder decoder = this.server.getFrameDecoder();
+        if (decoder == null) {
+            // 没有报文解析器的时候，一次读取的数据作为一个报文
+            byte[] frame = new byte[this.readBuffer.remaining()];
+            this.readBuffer.get(frame);
+            this.inbound.add(frame);
+        } else {
+            while (this.readBuffer.remaining() >= decoder.headerLength()) {
+                int frameLength = decoder.frameLength(this.readBuffer.array(), this.readBuffer.position());
+                if (frameLength <= 0 || frameLength > this.server.getMaxFrameLength()) {
+                    log.error("客户端[{}]报文长度[{}]无效，断开连接", this.remoteAddress, frameLength);
+                    this.close();
+                    return;
+                }
+                if (this.readBuffer.remaining() < frameLength) {
+                    this.ensureCapacity(frameLength);
+                    break;
+                }
+                byte[] frame = new byte[frameLength];
+                this.readBuffer.get(frame);
+                this.inbound.add(frame);
+            }
+        }
+        this.readBuffer.compact();
+        this.schedule();
+    }
+
+    /**
+     * 扩容读缓存，保证可以容纳一个完整的报文
+     *
+     * @param frameLength 报文长度
+     */
+    private void ensureCapacity(int frameLength) {
+        if (this.readBuffer.capacity() >= frameLength) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(frameLength);
+        buffer.put(this.readBuffer);
+        buffer.flip();
+        this.readBuffer = buffer;
+    }
+
+    /**
+     * 发送缓存中的数据
+     */
+    private void flush() {
+        synchronized (this.writeLock) {
+            try {
+                while (!this.outbound.isEmpty()) {
+                    ByteBuffer buffer = this.outbound.peek();
+                    this.channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    this.outbound.poll();
+                }
+                this.key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                log.debug("客户端[{}]发送异常，{}", this.remoteAddress, e.getMessage());
+                this.close();
+            }
+        }
+    }
+
+    //endregion
+
+    //region 业务线程
+
+    /**
+     * 有待处理的报文且没有业务线程在处理时，提交给业务线程
+     */
+    private void schedule() {
+        if (!this.inbound.isEmpty() && this.processing.compareAndSet(false, true)) {
+            this.server.getReactor().getWorkers().execute(this::process);
+        }
+    }
+
+    /**
+     * 依次处理接收到的报文
+     */
+    private void process() {
+        byte[] frame;
+        while ((frame = this.inbound.poll()) != null) {
+            if (this.closed.get()) {
+                this.inbound.clear();
+                break;
+            }
+            try {
+                this.server.onFrame(this, frame);
+            } catch (Exception e) {
+                log.error("客户端[{}]报文处理异常，{}", this.remoteAddress, e.getMessage());
+                this.close();
+                break;
+            }
+            // 存在延时响应的时候，延时之后再发送并继续处理后续报文，保证响应的顺序
+            if (this.delayNanos > 0) {
+                long nanos = this.delayNanos;
+                List<byte[]> data = new ArrayList<>(this.delayedData);
+                this.delayNanos = 0;
+                this.delayedData.clear();
+                this.server.getReactor().getScheduler().schedule(() -> this.server.getReactor().getWorkers().execute(() -> {
+                    data.forEach(this::send);
+                    this.process();
+                }), nanos, TimeUnit.NANOSECONDS);
+                return;
+            }
+        }
+        this.processing.set(false);
+        // 防止设置标识之前IO线程放入了新报文
+        this.schedule();
+    }
+
+    /**
+     * 延时发送数据，在当前报文处理完之后统一延时，多个响应按照最晚的一个发送，
+     * 各响应的延时都从当前时间算起，链路排队已经包含在延时中，不能累加
+     *
+     * @param data  数据
+     * @param nanos 延时，单位纳秒
+     */
+    void sendDelayed(byte[] data, long nanos) {
+        this.delayedData.add(data);
+        this.delayNanos = Math.max(this.delayNanos, nanos);
+    }
+
+    /**
+     * 发送数据，先尝试直接写入通道，写不完的部分交给IO线程
+     *
+     * @param data 数据
+     */
+    void send(byte[] data) {
+        if (this.closed.get()) {
+            return;
+        }
+        synchronized (this.writeLock) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (this.outbound.isEmpty()) {
+                try {
+                    this.channel.write(buffer);
+                } catch (IOException e) {
+                    log.debug("客户端[{}]发送异常，{}", this.remoteAddress, e.getMessage());
+                    this.close();
+                    return;
+                }
+                if (!buffer.hasRemaining()) {
+                    return;
+                }
+            }
+            this.outbound.add(buffer);
+        }
+        this.loop.execute(() -> {
+            if (this.key != null && this.key.isValid()) {
+                this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        });
+    }
+
+    //endregion
+
+    /**
+     * 关闭连接
+     */
+    public void close() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+        this.loop.close(this.channel).whenComplete((v, e) -> {
+            if (e != null) {
+                log.error(e.getMessage());
+            }
+        });
+        this.server.removeClient(this);
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * NIO的IO线程，一个线程一个选择器，通道的注册以及关注事件的修改都在该线程中执行
+ *
+ * @author xingshuang
+ */
+@Slf4j
+class NioIoLoop implements Runnable {
+
+    /**
+     * 选择器
+     */
+    private final Selector selector;
+
+    /**
+     * 待执行的任务
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已关闭等待选择器注销选择键的通道
+     */
+    private final List<CompletableFuture<Void>> closing = new ArrayList<>();
+
+    /**
+     * 线程
+     */
+    private final Thread thread;
+
+    /**
+     * 是否运行
+     */
+    private volatile boolean running = true;
+
+    NioIoLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new SocketRuntimeException(e);
+        }
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 在IO线程中执行任务
+     *
+     * @param task 任务
+     */
+    void execute(Runnable task) {
+        // 已经停止的时候直接执行，避免任务丢失
+        if (Thread.currentThread() == this.thread || !this.running) {
+            task.run();
+            return;
+        }
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * 注册通道
+     *
+     * @param channel 通道
+     * @param ops     关注的事件
+     * @param handler 事件处理
+     * @return 选择键
+     */
+    CompletableFuture<SelectionKey> register(SelectableChannel channel, int ops, INioEventHandler handler) {
+        return this.register(channel, ops, handler, null);
+    }
+
+    /**
+     * 注册通道，注册成功的回调在IO线程中、该通道第一次被选择之前执行，
+     * 因此回调中完成的初始化对后续的读写事件一定可见
+     *
+     * @param channel      通道
+     * @param ops          关注的事件
+     * @param handler      事件处理
+     * @param onRegistered 注册成功的回调，可以为null
+     * @return 选择键
+     */
+    CompletableFuture<SelectionKey> register(SelectableChannel channel, int ops, INioEventHandler handler,
+                                             Consumer<SelectionKey> onRegistered) {
+        CompletableFuture<SelectionKey> future = new CompletableFuture<>();
+        this.execute(() -> {
+            try {
+                SelectionKey key = channel.register(this.selector, ops, handler);
+                if (onRegistered != null) {
+                    onRegistered.accept(key);
+                }
+                future.complete(key);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 关闭通道，已注册的通道要在选择器注销选择键之后才真正关闭，因此关闭之后在下一轮立即执行一次选择
+     *
+     * @param channel 通道
+     * @return 关闭结果
+     */
+    CompletableFuture<Void> close(SelectableChannel channel) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        this.execute(() -> {
+            try {
+                channel.close();
+                if (this.running) {
+                    this.closing.add(future);
+                } else {
+                    future.complete(null);
+                }
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 停止
+     */
+    void shutdown() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (this.running) {
+            try {
+                // 有关闭的通道时不阻塞，选择的同时注销其选择键
+                if (this.closing.isEmpty()) {
+                    this.selector.select();
+                } else {
+                    this.selector.selectNow();
+                    this.closing.forEach(x -> x.complete(null));
+                    this.closing.clear();
+                }
+                this.runTasks();
+                Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (key.isValid()) {
+                        ((INioEventHandler) key.attachment()).onSelected(key);
+                    }
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+        try {
+            for (SelectionKey key : this.selector.keys()) {
+                key.channel().close();
+            }
+            this.selector.close();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+        this.closing.forEach(x -> x.complete(null));
+        this.closing.clear();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
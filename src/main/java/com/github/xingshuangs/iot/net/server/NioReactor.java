@@ -0,0 +1,119 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NIO反应器，包含IO线程组和业务线程池，可以被多个服务端共享
+ * <p>
+ * IO线程只负责读写字节和拆包，完整的报文交给业务线程处理，同一个连接的报文按照顺序依次处理
+ *
+ * @author xingshuang
+ */
+public class NioReactor {
+
+    /**
+     * IO线程组
+     */
+    private final NioIoLoop[] loops;
+
+    /**
+     * 业务线程池
+     */
+    private final ExecutorService workers;
+
+    /**
+     * 延时任务线程，用于网络损伤的延时响应
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 轮询分配IO线程的索引
+     */
+    private final AtomicInteger index = new AtomicInteger();
+
+    private volatile boolean shutdown = false;
+
+    private NioReactor(int ioThreads, int workerThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads<=0");
+        }
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("workerThreads<=0");
+        }
+        this.loops = new NioIoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            this.loops[i] = new NioIoLoop("iot-nio-io-" + i);
+        }
+        this.workers = Executors.newFixedThreadPool(workerThreads, daemonFactory("iot-nio-worker-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonFactory("iot-nio-scheduler-"));
+    }
+
+    /**
+     * 创建反应器，1个IO线程，业务线程数与CPU核数一致
+     *
+     * @return 反应器
+     */
+    public static NioReactor newInstance() {
+        return new NioReactor(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 创建反应器
+     *
+     * @param ioThreads     IO线程数
+     * @param workerThreads 业务线程数
+     * @return 反应器
+     */
+    public static NioReactor newInstance(int ioThreads, int workerThreads) {
+        return new NioReactor(ioThreads, workerThreads);
+    }
+
+    /**
+     * 轮询获取下一个IO线程
+     *
+     * @return IO线程
+     */
+    NioIoLoop next() {
+        return this.loops[Math.floorMod(this.index.getAndIncrement(), this.loops.length)];
+    }
+
+    Executor getWorkers() {
+        return this.workers;
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * 是否已经停止
+     *
+     * @return true：停止，false：运行中
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * 停止所有线程，关闭所有注册的通道
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        for (NioIoLoop loop : this.loops) {
+            loop.shutdown();
+        }
+        this.workers.shutdown();
+        this.scheduler.shutdownNow();
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,366 @@
+package com.github.xingshuangs.iot.net.server;
+
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * 基于NIO选择器的TCP服务端基础类
+ * <p>
+ * 与{@link TcpServerBasic}的一个客户端占用一个线程不同，所有客户端共享反应器中的IO线程和业务线程，
+ * 可以支撑成千上万的客户端同时连接；反应器可以由多个服务端共享
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class NioTcpServerBasic implements INioEventHandler {
+
+    /**
+     * 端口号
+     */
+    protected int port = 8088;
+
+    /**
+     * 绑定的本地地址，null表示所有地址
+     */
+    protected String host;
+
+    /**
+     * 报文帧解析器，null表示一次读取的数据作为一个报文
+     */
+    protected IFrameDecoder frameDecoder;
+
+    /**
+     * 单个报文的最大长度
+     */
+    private int maxFrameLength = 65536;
+
+    /**
+     * IO线程数，使用自身反应器时有效
+     */
+    private int ioThreads = 1;
+
+    /**
+     * 业务线程数，使用自身反应器时有效
+     */
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 反应器
+     */
+    private NioReactor reactor;
+
+    /**
+     * 是否共享外部的反应器，共享的反应器在服务端停止的时候不关闭
+     */
+    private final boolean sharedReactor;
+
+    /**
+     * 服务端通道
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * 服务端通道所在的IO线程
+     */
+    private NioIoLoop acceptLoop;
+
+    /**
+     * 客户端
+     */
+    private final Set<NioConnection> clients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 网络损伤配置，默认无损伤
+     */
+    private NetworkImpairment impairment = new NetworkImpairment();
+
+    public NioTcpServerBasic() {
+        this.sharedReactor = false;
+    }
+
+    public NioTcpServerBasic(NioReactor reactor) {
+        if (reactor == null) {
+            throw new IllegalArgumentException("reactor不能为null");
+        }
+        this.reactor = reactor;
+        this.sharedReactor = true;
+    }
+
+    public NioReactor getReactor() {
+        return reactor;
+    }
+
+    public IFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength<=0");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads<=0");
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("workerThreads<=0");
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    public NetworkImpairment getImpairment() {
+        return impairment;
+    }
+
+    public void setImpairment(NetworkImpairment impairment) {
+        if (impairment == null) {
+            throw new IllegalArgumentException("impairment不能为null");
+        }
+        this.impairment = impairment;
+    }
+
+    //region 服务端
+
+    /**
+     * 启动
+     */
+    public void start() {
+        this.start(this.port);
+    }
+
+    /**
+     * 启动
+     *
+     * @param port 端口号
+     */
+    public void start(int port) {
+        this.start(this.host, port);
+    }
+
+    /**
+     * 启动
+     *
+     * @param host 绑定的本地地址，null表示所有地址
+     * @param port 端口号
+     */
+    public void start(String host, int port) {
+        this.stop();
+        this.host = host;
+        this.port = port;
+        try {
+            if (!this.sharedReactor && (this.reactor == null || this.reactor.isShutdown())) {
+                this.reactor = NioReactor.newInstance(this.ioThreads, this.workerThreads);
+            }
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            this.serverChannel.bind(host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port), 1024);
+            this.serverChannel.configureBlocking(false);
+            this.acceptLoop = this.reactor.next();
+            this.acceptLoop.register(this.serverChannel, SelectionKey.OP_ACCEPT, this).join();
+            log.debug("启动NIO服务端，地址[{}]，端口号[{}]", host, port);
+        } catch (IOException e) {
+            this.stop();
+            throw new SocketRuntimeException(e);
+        }
+    }
+
+    /**
+     * 停止，关闭所有客户端
+     */
+    public void stop() {
+        try {
+            if (this.serverChannel != null) {
+                this.closeServerChannel();
+                log.debug("关闭NIO服务端，端口号[{}]", this.port);
+            }
+        } finally {
+            this.clients.forEach(NioConnection::close);
+            if (!this.sharedReactor && this.reactor != null) {
+                this.reactor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 关闭服务端通道，在IO线程中关闭并等待选择键注销，保证端口真正释放，否则立即重新启动会端口绑定失败
+     */
+    private void closeServerChannel() {
+        ServerSocketChannel channel = this.serverChannel;
+        NioIoLoop loop = this.acceptLoop;
+        this.serverChannel = null;
+        this.acceptLoop = null;
+        try {
+            if (loop == null || this.reactor.isShutdown()) {
+                channel.close();
+                return;
+            }
+            loop.close(channel).get(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            log.error("关闭NIO服务端失败，端口号[{}]，{}", this.port, e.getMessage());
+        }
+    }
+
+    /**
+     * 是否活跃着
+     *
+     * @return ture：活跃着，false：死了
+     */
+    public boolean isAlive() {
+        return this.serverChannel != null && this.serverChannel.isOpen();
+    }
+
+    @Override
+    public void onSelected(SelectionKey key) {
+        if (!key.isAcceptable()) {
+            return;
+        }
+        try {
+            SocketChannel channel;
+            while ((channel = this.serverChannel.accept()) != null) {
+                if (!this.checkClientValid(channel)) {
+                    channel.close();
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                NioIoLoop loop = this.reactor.next();
+                NioConnection connection = new NioConnection(this, channel, loop);
+                this.clients.add(connection);
+                // 连接的初始化在所属IO线程中、第一次读取之前完成，否则多个IO线程时客户端立即发送的报文可能先于会话初始化被处理
+                loop.register(channel, SelectionKey.OP_READ, connection, k -> {
+                    connection.setKey(k);
+                    log.debug("有客户端[{}]连入，当前客户端数量[{}]", connection.getRemoteAddress(), this.clients.size());
+                    this.onConnected(connection);
+                }).whenComplete((k, e) -> {
+                    if (e != null) {
+                        log.error(e.getMessage());
+                        connection.close();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    //endregion
+
+    //region 客户端
+
+    /**
+     * 获取客户端连入数量
+     *
+     * @return 客户端连入数量
+     */
+    public int getClientSum() {
+        return this.clients.size();
+    }
+
+    /**
+     * 客户端断开后移除
+     *
+     * @param connection 连接
+     */
+    void removeClient(NioConnection connection) {
+        if (this.clients.remove(connection)) {
+            log.debug("有客户端[{}]断开，当前客户端数量[{}]", connection.getRemoteAddress(), this.clients.size());
+            this.onDisconnected(connection);
+        }
+    }
+
+    /**
+     * 校验客户端是否允许连入
+     *
+     * @param channel 客户端通道
+     * @return true:验证成功，false：验证失败
+     * @throws IOException IO异常
+     */
+    protected boolean checkClientValid(SocketChannel channel) throws IOException {
+        return true;
+    }
+
+    /**
+     * 客户端连入之后的处理，在IO线程中执行，不能阻塞
+     *
+     * @param connection 连接
+     */
+    protected void onConnected(NioConnection connection) {
+        // NOOP
+    }
+
+    /**
+     * 客户端断开之后的处理
+     *
+     * @param connection 连接
+     */
+    protected void onDisconnected(NioConnection connection) {
+        // NOOP
+    }
+
+    /**
+     * 处理客户端的一个完整报文，在业务线程中执行，同一个连接的报文按照顺序处理，可重写
+     *
+     * @param connection 连接
+     * @param frame      报文
+     */
+    protected void onFrame(NioConnection connection, byte[] frame) {
+        log.debug(new String(frame));
+    }
+
+    /**
+     * 写数据，按照网络损伤配置断开连接或者延时发送
+     *
+     * @param connection 连接
+     * @param data       字节数组数据
+     */
+    protected void write(final NioConnection connection, final byte[] data) {
+        NetworkImpairment config = this.impairment;
+        if (!config.isEnabled()) {
+            connection.send(data);
+            return;
+        }
+        if (config.shouldDrop()) {
+            connection.close();
+            throw new SocketRuntimeException(String.format("模拟网络中断，断开客户端[%s]", connection.getRemoteAddress()));
+        }
+        long nanos = config.delayNanos(data.length);
+        if (nanos > 0) {
+            connection.sendDelayed(data, nanos);
+        } else {
+            connection.send(data);
+        }
+    }
+
+    //endregion
+}
@@ -14,6 +14,9 @@ import java.util.concurrent.*;
 
 /**
  * TCP socket服务端的基础类
+ * <p>
+ * 阻塞式实现，一个客户端占用一个线程，客户端线程由服务端独立的线程池提供，不占用公共线程池；
+ * 大量客户端连接的场景使用{@link NioTcpServerBasic}
  *
  * @author xingshuang
  */
@@ -25,6 +28,16 @@ public class TcpServerBasic {
      */
     private ServerSocket serverSocket;
 
+    /**
+     * 等待客户端连入的线程
+     */
+    private CompletableFuture<Void> acceptFuture;
+
+    /**
+     * 服务端独立的线程池，包含等待客户端连入的线程和客户端线程
+     */
+    private ExecutorService executor;
+
     /**
      * 端口号
      */
@@ -35,6 +48,56 @@ public class TcpServerBasic {
      */
     private final ConcurrentHashMap<String, Socket> clientMap = new ConcurrentHashMap<>();
 
+    /**
+     * 客户端的报文读取器
+     */
+    private final ConcurrentHashMap<Socket, FrameReader> readerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 报文帧解析器，null表示按照输入流中可读取的字节数读取
+     */
+    protected IFrameDecoder frameDecoder;
+
+    /**
+     * 单个报文的最大长度
+     */
+    private int maxFrameLength = 65536;
+
+    /**
+     * 网络损伤配置，默认无损伤
+     */
+    private NetworkImpairment impairment = new NetworkImpairment();
+
+    public IFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    public void setFrameDecoder(IFrameDecoder frameDecoder) {
+        this.frameDecoder = frameDecoder;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public void setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength<=0");
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public NetworkImpairment getImpairment() {
+        return impairment;
+    }
+
+    public void setImpairment(NetworkImpairment impairment) {
+        if (impairment == null) {
+            throw new IllegalArgumentException("impairment不能为null");
+        }
+        this.impairment = impairment;
+    }
+
     //region 服务端
 
     /**
@@ -54,7 +117,12 @@ public class TcpServerBasic {
             this.port = port;
             this.stop();
             this.serverSocket = new ServerSocket(port);
-            CompletableFuture.runAsync(this::waitForClients);
+            this.executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "iot-tcp-server-" + port);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.acceptFuture = CompletableFuture.runAsync(this::waitForClients, this.executor);
         } catch (IOException e) {
             throw new SocketRuntimeException(e);
         }
@@ -69,6 +137,15 @@ public class TcpServerBasic {
                 this.serverSocket.close();
                 log.debug("关闭服务端，端口号[{}]", this.port);
             }
+            // 等待客户端连入线程退出，阻塞在accept中的线程退出后端口才真正释放，否则立即重新启动会端口绑定失败
+            if (this.acceptFuture != null) {
+                this.acceptFuture.join();
+                this.acceptFuture = null;
+            }
+            if (this.executor != null) {
+                this.executor.shutdown();
+                this.executor = null;
+            }
         } catch (IOException e) {
             throw new SocketRuntimeException(e);
         }
@@ -93,8 +170,9 @@ public class TcpServerBasic {
                 Socket client = this.serverSocket.accept();
                 if (!this.checkClientValid(client)) {
                     SocketUtils.close(client);
+                    continue;
                 }
-                CompletableFuture.runAsync(() -> this.doClientConnected(client));
+                this.executor.execute(() -> this.doClientConnected(client));
             } catch (IOException e) {
                 log.error(e.getMessage());
             }
@@ -144,6 +222,7 @@ public class TcpServerBasic {
         } catch (Exception e) {
             log.error(e.getMessage());
         } finally {
+            this.readerMap.remove(client);
             try {
                 SocketUtils.close(client);
             } catch (Exception ex) {
@@ -176,13 +255,21 @@ public class TcpServerBasic {
     }
 
     /**
-     * 读取客户端数据
+     * 读取客户端数据，设置了报文帧解析器时每次读取一个完整的报文
      *
      * @param socket 客户端socket对象
      * @return 读取的字节数据
      */
     protected byte[] readClientData(Socket socket) {
         try {
+            if (this.frameDecoder != null) {
+                FrameReader reader = this.readerMap.get(socket);
+                if (reader == null) {
+                    reader = new FrameReader(socket.getInputStream(), this.frameDecoder, this.maxFrameLength);
+                    this.readerMap.put(socket, reader);
+                }
+                return reader.readFrame();
+            }
             InputStream in = socket.getInputStream();
             int firstByte = in.read();
             if (firstByte == -1) {
@@ -205,12 +292,41 @@ public class TcpServerBasic {
      */
     protected void write(final Socket socket, final byte[] data) {
         try {
+            this.impair(socket, data.length);
             SocketUtils.write(socket, data);
         } catch (IOException e) {
             throw new SocketRuntimeException(e);
         }
     }
 
+    /**
+     * 按照网络损伤配置在响应之前断开连接或者延时
+     *
+     * @param socket socket
+     * @param length 响应的字节数
+     * @throws IOException IO异常
+     */
+    private void impair(final Socket socket, final int length) throws IOException {
+        NetworkImpairment config = this.impairment;
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (config.shouldDrop()) {
+            SocketUtils.close(socket);
+            throw new SocketRuntimeException(String.format("模拟网络中断，断开客户端[%s]", socket.getRemoteSocketAddress()));
+        }
+        long nanos = config.delayNanos(length);
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SocketRuntimeException(e);
+        }
+    }
+
     /**
      * 读数据
      *
@@ -0,0 +1,210 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+
+import com.github.xingshuangs.iot.exceptions.RequestRejectedException;
+import com.github.xingshuangs.iot.protocol.common.enums.ERejectPolicy;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * 按照优先级分配的流水线窗口许可，用于一个连接上同时等待多个响应的场景；
+ * 许可释放时直接交给等待中优先级最高、同一优先级最先到达的请求，不会被刚释放许可的线程抢走。
+ * 请求的优先级取自{@link RequestScheduler#currentPriority()}，等待队列的长度限制和拒绝策略沿用所属连接的调度器
+ *
+ * @author xingshuang
+ */
+public class PriorityWindow {
+
+    /**
+     * 等待顺序，优先级高的在前，同一优先级先到的在前
+     */
+    private static final Comparator<Ticket> ORDER = Comparator.<Ticket>comparingInt(x -> x.priority.getLevel())
+            .thenComparingLong(x -> x.sequence);
+
+    /**
+     * 所属连接的调度器，提供等待队列的长度限制和拒绝策略
+     */
+    private final RequestScheduler scheduler;
+
+    /**
+     * 等待许可的请求
+     */
+    private final PriorityQueue<Ticket> waiters = new PriorityQueue<>(ORDER);
+
+    /**
+     * 可用的许可数量
+     */
+    private int available;
+
+    /**
+     * 到达序号
+     */
+    private long sequence = 0;
+
+    public PriorityWindow(RequestScheduler scheduler, int size) {
+        if (scheduler == null) {
+            throw new IllegalArgumentException("scheduler不能为null");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("size<1");
+        }
+        this.scheduler = scheduler;
+        this.available = size;
+    }
+
+    /**
+     * 当前等待许可的请求数量
+     *
+     * @return 数量
+     */
+    public synchronized int getQueueDepth() {
+        return this.waiters.size();
+    }
+
+    /**
+     * 申请许可，没有等待的请求且有可用许可时立即获得，否则按照当前线程的优先级排队；
+     * 排队期间调用方可以先处理自己的其他事情，例如读取自己已发出请求的响应，再通过{@link #isGranted(Ticket)}或者
+     * {@link #await(Ticket, long)}确认，不再需要时必须调用{@link #cancel(Ticket)}
+     *
+     * @return 许可申请
+     */
+    public synchronized Ticket request() {
+        Ticket ticket = new Ticket(RequestScheduler.currentPriority(), this.sequence++);
+        if (this.waiters.isEmpty() && this.available > 0) {
+            this.available--;
+            ticket.state = Ticket.GRANTED;
+            return ticket;
+        }
+        int maxQueueDepth = this.scheduler.getMaxQueueDepth();
+        if (maxQueueDepth > 0 && this.waiters.size() >= maxQueueDepth) {
+            this.reject(ticket, maxQueueDepth);
+        }
+        this.waiters.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * 是否已经获得许可
+     *
+     * @param ticket 许可申请
+     * @return true：已获得，false：还在排队
+     */
+    public synchronized boolean isGranted(Ticket ticket) {
+        this.checkRejected(ticket);
+        return ticket.state == Ticket.GRANTED;
+    }
+
+    /**
+     * 等待获得许可
+     *
+     * @param ticket        许可申请
+     * @param timeoutMillis 超时时间，单位毫秒
+     * @return true：获得许可，false：超时
+     */
+    public synchronized boolean await(Ticket ticket, long timeoutMillis) {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        try {
+            while (ticket.state == Ticket.WAITING) {
+                long remain = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remain <= 0) {
+                    return false;
+                }
+                this.wait(remain);
+            }
+        } catch (InterruptedException e) {
+            this.cancel(ticket);
+            Thread.currentThread().interrupt();
+            throw new RequestRejectedException("等待流水线窗口的过程中被中断", e);
+        }
+        this.checkRejected(ticket);
+        return true;
+    }
+
+    /**
+     * 撤销许可申请，已经获得的许可被释放，排队中的从队列中移除，可以重复调用
+     *
+     * @param ticket 许可申请
+     */
+    public synchronized void cancel(Ticket ticket) {
+        if (ticket.state == Ticket.GRANTED) {
+            ticket.state = Ticket.DONE;
+            this.release();
+        } else if (ticket.state == Ticket.WAITING) {
+            ticket.state = Ticket.DONE;
+            this.waiters.remove(ticket);
+        }
+    }
+
+    /**
+     * 释放一个许可，有等待的请求时直接交给排在最前面的请求
+     */
+    public synchronized void release() {
+        Ticket next = this.waiters.poll();
+        if (next == null) {
+            this.available++;
+            return;
+        }
+        next.state = Ticket.GRANTED;
+        this.notifyAll();
+    }
+
+    /**
+     * 等待队列已满时按照拒绝策略处理，拒绝新请求时抛出异常
+     *
+     * @param ticket        新请求
+     * @param maxQueueDepth 最大等待队列长度
+     */
+    private void reject(Ticket ticket, int maxQueueDepth) {
+        if (this.scheduler.getRejectPolicy() == ERejectPolicy.REJECT_LOWEST) {
+            Ticket lowest = this.waiters.stream().max(ORDER).orElse(null);
+            if (lowest != null && lowest.priority.getLevel() > ticket.priority.getLevel()) {
+                this.waiters.remove(lowest);
+                lowest.state = Ticket.REJECTED;
+                this.notifyAll();
+                return;
+            }
+        }
+        throw new RequestRejectedException(String.format("流水线窗口等待队列已满[%d]，优先级[%s]", maxQueueDepth, ticket.priority));
+    }
+
+    private void checkRejected(Ticket ticket) {
+        if (ticket.state == Ticket.REJECTED) {
+            ticket.state = Ticket.DONE;
+            throw new RequestRejectedException(String.format("流水线窗口等待队列已满，被更高优先级的请求挤出，优先级[%s]",
+                    ticket.priority));
+        }
+    }
+
+    /**
+     * 许可申请
+     */
+    public static class Ticket {
+
+        private static final int WAITING = 0;
+
+        private static final int GRANTED = 1;
+
+        private static final int REJECTED = 2;
+
+        /**
+         * 已经撤销或者被拒绝并通知过调用方
+         */
+        private static final int DONE = 3;
+
+        private final ERequestPriority priority;
+
+        private final long sequence;
+
+        /**
+         * 状态，使用所属窗口同步
+         */
+        private int state = WAITING;
+
+        private Ticket(ERequestPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+
+import com.github.xingshuangs.iot.exceptions.RequestRejectedException;
+import com.github.xingshuangs.iot.protocol.common.enums.ERejectPolicy;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Supplier;
+
+/**
+ * 单个连接的请求调度器，同一时刻只有一个线程使用连接通信，可重入；
+ * 连接空闲时按照优先级从高到低、同一优先级先到先得的顺序放行等待的线程。
+ * 多个报文组成的操作每个报文单独获取通信权，因此高优先级的请求可以在两个报文之间插队。
+ * 请求的优先级通过{@link #runWithPriority(ERequestPriority, Runnable)}或{@link #callWithPriority(ERequestPriority, Supplier)}
+ * 绑定到当前线程，默认为{@link ERequestPriority#HMI}
+ *
+ * @author xingshuang
+ */
+public class RequestScheduler {
+
+    /**
+     * 当前线程的请求优先级
+     */
+    private static final ThreadLocal<ERequestPriority> PRIORITY = ThreadLocal.withInitial(() -> ERequestPriority.HMI);
+
+    /**
+     * 等待顺序，优先级高的在前，同一优先级先到的在前
+     */
+    private static final Comparator<Waiter> ORDER = Comparator.<Waiter>comparingInt(x -> x.priority.getLevel())
+            .thenComparingLong(x -> x.sequence);
+
+    /**
+     * 等待通信的线程
+     */
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(ORDER);
+
+    /**
+     * 当前持有通信权的线程
+     */
+    private Thread owner;
+
+    /**
+     * 重入次数
+     */
+    private int holdCount = 0;
+
+    /**
+     * 到达序号
+     */
+    private long sequence = 0;
+
+    /**
+     * 最大等待队列长度，0表示不限制
+     */
+    private int maxQueueDepth = 0;
+
+    /**
+     * 等待队列已满时的拒绝策略
+     */
+    private ERejectPolicy rejectPolicy = ERejectPolicy.REJECT_NEW;
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * 设置最大等待队列长度
+     *
+     * @param maxQueueDepth 最大等待队列长度，0表示不限制
+     */
+    public synchronized void setMaxQueueDepth(int maxQueueDepth) {
+        if (maxQueueDepth < 0) {
+            throw new IllegalArgumentException("maxQueueDepth<0");
+        }
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    public synchronized ERejectPolicy getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    public synchronized void setRejectPolicy(ERejectPolicy rejectPolicy) {
+        if (rejectPolicy == null) {
+            throw new IllegalArgumentException("rejectPolicy不能为null");
+        }
+        this.rejectPolicy = rejectPolicy;
+    }
+
+    /**
+     * 当前等待通信的请求数量
+     *
+     * @return 数量
+     */
+    public synchronized int getQueueDepth() {
+        return this.waiters.size();
+    }
+
+    //region 优先级
+
+    /**
+     * 当前线程的请求优先级
+     *
+     * @return 优先级
+     */
+    public static ERequestPriority currentPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * 以指定优先级执行操作，操作中的所有请求都使用该优先级
+     *
+     * @param priority 优先级
+     * @param action   操作
+     */
+    public static void runWithPriority(ERequestPriority priority, Runnable action) {
+        callWithPriority(priority, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 以指定优先级执行操作，操作中的所有请求都使用该优先级
+     *
+     * @param priority 优先级
+     * @param action   操作
+     * @param <T>      返回值类型
+     * @return 操作结果
+     */
+    public static <T> T callWithPriority(ERequestPriority priority, Supplier<T> action) {
+        if (priority == null) {
+            throw new IllegalArgumentException("priority不能为null");
+        }
+        ERequestPriority old = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return action.get();
+        } finally {
+            PRIORITY.set(old);
+        }
+    }
+
+    //endregion
+
+    //region 通信权
+
+    /**
+     * 获取通信权，连接被占用时按照优先级排队等待
+     */
+    public synchronized void acquire() {
+        Thread current = Thread.currentThread();
+        if (this.owner == current) {
+            this.holdCount++;
+            return;
+        }
+        if (this.owner == null && this.waiters.isEmpty()) {
+            this.owner = current;
+            this.holdCount = 1;
+            return;
+        }
+        Waiter waiter = new Waiter(PRIORITY.get(), this.sequence++);
+        if (this.maxQueueDepth > 0 && this.waiters.size() >= this.maxQueueDepth) {
+            this.reject(waiter);
+        }
+        this.waiters.add(waiter);
+        try {
+            while (!waiter.rejected && !(this.owner == null && this.waiters.peek() == waiter)) {
+                this.wait();
+            }
+        } catch (InterruptedException e) {
+            this.waiters.remove(waiter);
+            this.notifyAll();
+            Thread.currentThread().interrupt();
+            throw new RequestRejectedException("等待通信的过程中被中断", e);
+        }
+        if (waiter.rejected) {
+            throw new RequestRejectedException(String.format("请求等待队列已满[%d]，被更高优先级的请求挤出，优先级[%s]",
+                    this.maxQueueDepth, waiter.priority));
+        }
+        this.waiters.poll();
+        this.owner = current;
+        this.holdCount = 1;
+    }
+
+    /**
+     * 释放通信权
+     */
+    public synchronized void release() {
+        if (this.owner != Thread.currentThread()) {
+            throw new IllegalStateException("当前线程没有持有通信权");
+        }
+        if (--this.holdCount == 0) {
+            this.owner = null;
+            this.notifyAll();
+        }
+    }
+
+    //endregion
+
+    /**
+     * 等待队列已满时按照拒绝策略处理，拒绝新请求时抛出异常
+     *
+     * @param waiter 新请求
+     */
+    private void reject(Waiter waiter) {
+        if (this.rejectPolicy == ERejectPolicy.REJECT_LOWEST) {
+            Waiter lowest = this.waiters.stream().max(ORDER).orElse(null);
+            if (lowest != null && lowest.priority.getLevel() > waiter.priority.getLevel()) {
+                this.waiters.remove(lowest);
+                lowest.rejected = true;
+                this.notifyAll();
+                return;
+            }
+        }
+        throw new RequestRejectedException(String.format("请求等待队列已满[%d]，优先级[%s]", this.maxQueueDepth, waiter.priority));
+    }
+
+    /**
+     * 等待通信的线程
+     */
+    private static class Waiter {
+
+        private final ERequestPriority priority;
+
+        private final long sequence;
+
+        /**
+         * 是否已经被拒绝
+         */
+        private boolean rejected = false;
+
+        private Waiter(ERequestPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
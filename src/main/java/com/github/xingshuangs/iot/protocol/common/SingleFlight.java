@@ -0,0 +1,191 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 并发读取去重，某个请求正在通信的时候，其他线程完全相同或者被它覆盖的请求不再重复发送，直接等待并共享它的结果；
+ * 不能被覆盖的请求由当前线程作为新的一组发送，发送失败的异常同样传递给所有等待的线程；
+ * 写操作完成之后需要调用{@link #invalidate()}，之前开始的请求组可能读到写之前的数据，不再被新的请求依附
+ *
+ * @param <Q> 请求类型
+ * @param <V> 结果类型
+ * @author xingshuang
+ */
+public class SingleFlight<Q, V> {
+
+    /**
+     * 覆盖判断，参数依次为正在通信的请求、新的请求
+     */
+    private final BiPredicate<Q, Q> covers;
+
+    /**
+     * 结果提取，从覆盖请求的结果中提取新请求的结果，请求完全相同时也需要复制一份
+     */
+    private final IExtractor<Q, V> extractor;
+
+    /**
+     * 正在通信的请求组
+     */
+    private final List<Flight<Q, V>> flights = new ArrayList<>();
+
+    /**
+     * 写操作代数，每完成一次写操作加1，使用flights同步
+     */
+    private long generation = 0;
+
+    public SingleFlight(BiPredicate<Q, Q> covers, IExtractor<Q, V> extractor) {
+        this.covers = covers;
+        this.extractor = extractor;
+    }
+
+    /**
+     * 写操作完成之后调用，此前开始的请求组不再被新的请求依附
+     */
+    public void invalidate() {
+        synchronized (this.flights) {
+            this.generation++;
+        }
+    }
+
+    /**
+     * 执行请求
+     *
+     * @param reqs   请求列表
+     * @param loader 实际通信的方法，结果和请求一一对应
+     * @return 结果列表，和请求一一对应
+     */
+    public List<V> execute(List<Q> reqs, Function<List<Q>, List<V>> loader) {
+        // 每个请求所依附的请求组以及在组内的索引，没有依附的由自己发送
+        List<Flight<Q, V>> attachedFlights = new ArrayList<>(reqs.size());
+        List<Integer> attachedIndexes = new ArrayList<>(reqs.size());
+        List<Q> remain = new ArrayList<>();
+        Flight<Q, V> own = null;
+        synchronized (this.flights) {
+            for (Q req : reqs) {
+                Flight<Q, V> attached = null;
+                int index = -1;
+                for (int i = 0; i < this.flights.size() && attached == null; i++) {
+                    Flight<Q, V> flight = this.flights.get(i);
+                    // 最近一次写操作完成之前开始的请求组不能依附
+                    if (flight.generation != this.generation) {
+                        continue;
+                    }
+                    index = this.indexOfCovered(flight.reqs, req);
+                    if (index >= 0) {
+                        attached = flight;
+                    }
+                }
+                attachedFlights.add(attached);
+                attachedIndexes.add(attached == null ? remain.size() : index);
+                if (attached == null) {
+                    remain.add(req);
+                }
+            }
+            if (!remain.isEmpty()) {
+                own = new Flight<>(remain, this.generation);
+                this.flights.add(own);
+            }
+        }
+
+        // 先完成自己的请求组，再等待依附的请求组，不会相互等待
+        List<V> ownValues = null;
+        if (own != null) {
+            try {
+                ownValues = loader.apply(remain);
+                own.future.complete(ownValues);
+            } catch (Throwable e) {
+                // Error也要完成，否则依附的调用者会一直等待
+                own.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (this.flights) {
+                    this.flights.remove(own);
+                }
+            }
+        }
+
+        List<V> res = new ArrayList<>(reqs.size());
+        for (int i = 0; i < reqs.size(); i++) {
+            Flight<Q, V> flight = attachedFlights.get(i);
+            int index = attachedIndexes.get(i);
+            if (flight == null) {
+                res.add(ownValues.get(index));
+                continue;
+            }
+            List<V> values;
+            try {
+                values = flight.future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            // 共享的结果需要提取一份新的，避免多个调用者持有同一个对象
+            res.add(this.extractor.extract(flight.reqs.get(index), values.get(index), reqs.get(i)));
+        }
+        return res;
+    }
+
+    /**
+     * 查找覆盖新请求的请求索引
+     *
+     * @param flightReqs 正在通信的请求列表
+     * @param req        新请求
+     * @return 索引，没有返回-1
+     */
+    private int indexOfCovered(List<Q> flightReqs, Q req) {
+        for (int i = 0; i < flightReqs.size(); i++) {
+            if (this.covers.test(flightReqs.get(i), req)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 结果提取
+     *
+     * @param <Q> 请求类型
+     * @param <V> 结果类型
+     */
+    @FunctionalInterface
+    public interface IExtractor<Q, V> {
+
+        /**
+         * 从覆盖请求的结果中提取新请求的结果
+         *
+         * @param flightReq   覆盖的请求
+         * @param flightValue 覆盖请求的结果
+         * @param req         新请求
+         * @return 新请求的结果
+         */
+        V extract(Q flightReq, V flightValue, Q req);
+    }
+
+    /**
+     * 正在通信的请求组
+     */
+    private static class Flight<Q, V> {
+
+        private final List<Q> reqs;
+
+        private final CompletableFuture<List<V>> future = new CompletableFuture<>();
+
+        /**
+         * 开始时的写操作代数
+         */
+        private final long generation;
+
+        private Flight(List<Q> reqs, long generation) {
+            this.reqs = reqs;
+            this.generation = generation;
+        }
+    }
+}
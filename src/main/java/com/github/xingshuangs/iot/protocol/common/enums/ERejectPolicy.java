@@ -0,0 +1,20 @@
+package com.github.xingshuangs.iot.protocol.common.enums;
+
+
+/**
+ * 请求等待队列已满时的拒绝策略
+ *
+ * @author xingshuang
+ */
+public enum ERejectPolicy {
+
+    /**
+     * 拒绝新的请求
+     */
+    REJECT_NEW,
+
+    /**
+     * 新请求的优先级更高时，拒绝队列中优先级最低、最晚到达的请求，否则拒绝新的请求
+     */
+    REJECT_LOWEST
+}
@@ -0,0 +1,40 @@
+package com.github.xingshuangs.iot.protocol.common.enums;
+
+
+/**
+ * 请求优先级，数值越小优先级越高
+ *
+ * @author xingshuang
+ */
+public enum ERequestPriority {
+
+    /**
+     * 控制写入，例如操作员的命令
+     */
+    CONTROL(0),
+
+    /**
+     * 报警和联锁读取
+     */
+    ALARM(1),
+
+    /**
+     * 人机界面读取，默认优先级
+     */
+    HMI(2),
+
+    /**
+     * 批量读写和历史数据采集
+     */
+    BULK(3);
+
+    private final int level;
+
+    ERequestPriority(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
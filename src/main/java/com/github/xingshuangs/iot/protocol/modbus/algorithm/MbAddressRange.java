@@ -0,0 +1,46 @@
+package com.github.xingshuangs.iot.protocol.modbus.algorithm;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 地址范围，寄存器或者线圈的起始地址和数量
+ *
+ * @author xingshuang
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MbAddressRange {
+
+    /**
+     * 起始地址
+     */
+    private int address;
+
+    /**
+     * 数量
+     */
+    private int quantity;
+
+    /**
+     * 结束地址，不包含
+     *
+     * @return 结束地址
+     */
+    public int getEnd() {
+        return this.address + this.quantity;
+    }
+
+    /**
+     * 是否包含指定地址
+     *
+     * @param address 地址
+     * @return true：包含，false：不包含
+     */
+    public boolean contains(int address) {
+        return address >= this.address && address < this.getEnd();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.xingshuangs.iot.protocol.modbus.algorithm;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 地址范围的读取规划算法
+ * <p>
+ * 按照地址排序之后，间隔不超过阀值的相邻范围合并为一个请求，合并后的数量不超过协议允许的最大值，
+ * 超过最大值的单个范围进行分割
+ *
+ * @author xingshuang
+ */
+public class MbRangePlanner {
+
+    /**
+     * 单次读取寄存器的最大数量
+     */
+    public static final int MAX_REGISTER_QUANTITY = 125;
+
+    /**
+     * 单次读取线圈或离散量输入的最大数量
+     */
+    public static final int MAX_BIT_QUANTITY = 2000;
+
+    private MbRangePlanner() {
+        // NOOP
+    }
+
+    /**
+     * 规划读取请求
+     * 示例：
+     * 最大数量：125，间隔阀值：10
+     * [0,10) [15,20) [100,110) [200,500)
+     * |[0,20)|[100,110)|[200,325)|[325,450)|[450,500)|
+     * 第一    第二       第三      第四      第五
+     *
+     * @param src         地址范围列表，可以无序、可以重叠
+     * @param maxQuantity 单次请求的最大数量
+     * @param maxGap      相邻范围合并的最大间隔，间隔部分会被一起读取
+     * @return 请求的地址范围列表，按照地址排序
+     */
+    public static List<MbAddressRange> plan(List<MbAddressRange> src, int maxQuantity, int maxGap) {
+        if (maxQuantity < 1) {
+            throw new IllegalArgumentException("maxQuantity<1");
+        }
+        if (maxGap < 0) {
+            throw new IllegalArgumentException("maxGap<0");
+        }
+        List<MbAddressRange> sorted = new ArrayList<>(src);
+        sorted.sort(Comparator.comparingInt(MbAddressRange::getAddress));
+        List<MbAddressRange> res = new ArrayList<>();
+        MbAddressRange current = null;
+        for (MbAddressRange range : sorted) {
+            if (range.getQuantity() < 1) {
+                throw new IllegalArgumentException("quantity<1");
+            }
+            if (current != null && range.getEnd() <= current.getEnd()) {
+                // 已被当前请求完全覆盖
+                continue;
+            }
+            if (current != null && range.getAddress() <= current.getEnd() + maxGap
+                    && range.getEnd() - current.getAddress() <= maxQuantity) {
+                current.setQuantity(range.getEnd() - current.getAddress());
+                continue;
+            }
+            // 与当前请求重叠的部分不再重复读取
+            int address = current == null ? range.getAddress() : Math.max(range.getAddress(), current.getEnd());
+            if (current != null) {
+                res.add(current);
+            }
+            int end = range.getEnd();
+            while (end - address > maxQuantity) {
+                res.add(new MbAddressRange(address, maxQuantity));
+                address += maxQuantity;
+            }
+            current = new MbAddressRange(address, end - address);
+        }
+        if (current != null) {
+            res.add(current);
+        }
+        return res;
+    }
+}
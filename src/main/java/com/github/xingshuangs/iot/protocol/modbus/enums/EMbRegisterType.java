@@ -0,0 +1,30 @@
+package com.github.xingshuangs.iot.protocol.modbus.enums;
+
+
+/**
+ * modbus数据区类型
+ *
+ * @author xingshuang
+ */
+public enum EMbRegisterType {
+
+    /**
+     * 线圈，可读写的位
+     */
+    COIL,
+
+    /**
+     * 离散量输入，只读的位
+     */
+    DISCRETE_INPUT,
+
+    /**
+     * 保持寄存器，可读写的寄存器
+     */
+    HOLD_REGISTER,
+
+    /**
+     * 输入寄存器，只读的寄存器
+     */
+    INPUT_REGISTER
+}
@@ -71,6 +71,8 @@ public class MbPdu implements IObjectByteArray {
                 return MbWriteMultipleCoilResponse.fromBytes(data, offset);
             case WRITE_MULTIPLE_REGISTER:
                 return MbWriteMultipleRegisterResponse.fromBytes(data, offset);
+            case READ_WRITE_MULTIPLE_REGISTER:
+                return MbReadWriteMultipleRegisterResponse.fromBytes(data, offset);
             case ERROR_READ_COIL:
             case ERROR_READ_DISCRETE_INPUT:
             case ERROR_READ_HOLD_REGISTER:
@@ -79,9 +81,58 @@ public class MbPdu implements IObjectByteArray {
             case ERROR_WRITE_SINGLE_REGISTER:
             case ERROR_WRITE_MULTIPLE_COIL:
             case ERROR_WRITE_MULTIPLE_REGISTER:
+            case ERROR_READ_WRITE_MULTIPLE_REGISTER:
                 return MbErrorResponse.fromBytes(data, offset);
             default:
                 throw new ModbusCommException("无法识别功能码：" + functionCode.getDescription());
         }
     }
+
+    /**
+     * 解析请求的字节数组数据
+     *
+     * @param data 字节数组数据
+     * @return 请求的mbpdu对象
+     */
+    public static MbPdu fromBytesToRequest(final byte[] data) {
+        return fromBytesToRequest(data, 0);
+    }
+
+    /**
+     * 解析请求的字节数组数据，服务端使用
+     *
+     * @param data   字节数组数据
+     * @param offset 偏移量
+     * @return 请求的mbpdu对象
+     */
+    public static MbPdu fromBytesToRequest(final byte[] data, final int offset) {
+        ByteReadBuff buff = new ByteReadBuff(data, offset);
+        EMbFunctionCode functionCode = EMbFunctionCode.from(buff.getByte());
+        if (functionCode == null) {
+            throw new ModbusCommException("无法识别功能码：" + data[offset]);
+        }
+
+        switch (functionCode) {
+            case READ_COIL:
+                return MbReadCoilRequest.fromBytes(data, offset);
+            case READ_DISCRETE_INPUT:
+                return MbReadDiscreteInputRequest.fromBytes(data, offset);
+            case READ_HOLD_REGISTER:
+                return MbReadHoldRegisterRequest.fromBytes(data, offset);
+            case READ_INPUT_REGISTER:
+                return MbReadInputRegisterRequest.fromBytes(data, offset);
+            case WRITE_SINGLE_COIL:
+                return MbWriteSingleCoilRequest.fromBytes(data, offset);
+            case WRITE_SINGLE_REGISTER:
+                return MbWriteSingleRegisterRequest.fromBytes(data, offset);
+            case WRITE_MULTIPLE_COIL:
+                return MbWriteMultipleCoilRequest.fromBytes(data, offset);
+            case WRITE_MULTIPLE_REGISTER:
+                return MbWriteMultipleRegisterRequest.fromBytes(data, offset);
+            case READ_WRITE_MULTIPLE_REGISTER:
+                return MbReadWriteMultipleRegisterRequest.fromBytes(data, offset);
+            default:
+                throw new ModbusCommException("无法识别功能码：" + functionCode.getDescription());
+        }
+    }
 }
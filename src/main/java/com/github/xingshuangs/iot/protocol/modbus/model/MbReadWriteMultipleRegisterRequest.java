@@ -0,0 +1,116 @@
+package com.github.xingshuangs.iot.protocol.modbus.model;
+
+
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 请求读/写多个寄存器，服务端先执行写操作再执行读操作
+ *
+ * @author xingshuang
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public final class MbReadWriteMultipleRegisterRequest extends MbPdu {
+
+    /**
+     * 读的起始地址 <br>
+     * 字节大小：2个字节
+     */
+    private int readAddress;
+
+    /**
+     * 读的寄存器数量 0x0001 至 0x007D <br>
+     * 字节大小：2个字节
+     */
+    private int readQuantity;
+
+    /**
+     * 写的起始地址 <br>
+     * 字节大小：2个字节
+     */
+    private int writeAddress;
+
+    /**
+     * 写的寄存器数量 0x0001 至 0x0079 <br>
+     * 字节大小：2个字节
+     */
+    private int writeQuantity;
+
+    /**
+     * 写的字节数 N* <br>
+     * 字节大小：1个字节
+     */
+    private int count;
+
+    /**
+     * 写的寄存器值
+     * 字节大小：N*×1 个字节
+     */
+    private byte[] value;
+
+    public MbReadWriteMultipleRegisterRequest() {
+        this.functionCode = EMbFunctionCode.READ_WRITE_MULTIPLE_REGISTER;
+    }
+
+    public MbReadWriteMultipleRegisterRequest(int readAddress, int readQuantity, int writeAddress, byte[] value) {
+        this.functionCode = EMbFunctionCode.READ_WRITE_MULTIPLE_REGISTER;
+        this.readAddress = readAddress;
+        this.readQuantity = readQuantity;
+        this.writeAddress = writeAddress;
+        this.writeQuantity = value.length / 2;
+        this.count = value.length;
+        this.value = value;
+    }
+
+    @Override
+    public int byteArrayLength() {
+        return super.byteArrayLength() + 9 + this.value.length;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return ByteWriteBuff.newInstance(this.byteArrayLength())
+                .putByte(this.functionCode.getCode())
+                .putShort(this.readAddress)
+                .putShort(this.readQuantity)
+                .putShort(this.writeAddress)
+                .putShort(this.writeQuantity)
+                .putByte(this.count)
+                .putBytes(this.value)
+                .getData();
+    }
+
+    /**
+     * 解析字节数组数据
+     *
+     * @param data 字节数组数据
+     * @return MbReadWriteMultipleRegisterRequest
+     */
+    public static MbReadWriteMultipleRegisterRequest fromBytes(final byte[] data) {
+        return fromBytes(data, 0);
+    }
+
+    /**
+     * 解析字节数组数据
+     *
+     * @param data   字节数组数据
+     * @param offset 偏移量
+     * @return MbReadWriteMultipleRegisterRequest
+     */
+    public static MbReadWriteMultipleRegisterRequest fromBytes(final byte[] data, final int offset) {
+        ByteReadBuff buff = new ByteReadBuff(data, offset);
+        MbReadWriteMultipleRegisterRequest res = new MbReadWriteMultipleRegisterRequest();
+        res.functionCode = EMbFunctionCode.from(buff.getByte());
+        res.readAddress = buff.getUInt16();
+        res.readQuantity = buff.getUInt16();
+        res.writeAddress = buff.getUInt16();
+        res.writeQuantity = buff.getUInt16();
+        res.count = buff.getByteToInt();
+        res.value = buff.getBytes(res.count);
+        return res;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.xingshuangs.iot.protocol.modbus.model;
+
+
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 响应读/写多个寄存器，返回写操作之后读取的寄存器值
+ *
+ * @author xingshuang
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public final class MbReadWriteMultipleRegisterResponse extends MbPdu {
+
+    /**
+     * 字节数<br>
+     * 字节大小：1个字节
+     */
+    private int count;
+
+    /**
+     * 寄存器值，N＝寄存器的数量，N*×2 个字节
+     * 字节大小：N*×2 个字节
+     */
+    private byte[] register;
+
+    @Override
+    public int byteArrayLength() {
+        return super.byteArrayLength() + 1 + this.register.length;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return ByteWriteBuff.newInstance(this.byteArrayLength())
+                .putByte(this.functionCode.getCode())
+                .putByte(this.count)
+                .putBytes(this.register)
+                .getData();
+    }
+
+    /**
+     * 解析字节数组数据
+     *
+     * @param data 字节数组数据
+     * @return MbReadWriteMultipleRegisterResponse
+     */
+    public static MbReadWriteMultipleRegisterResponse fromBytes(final byte[] data) {
+        return fromBytes(data, 0);
+    }
+
+    /**
+     * 解析字节数组数据
+     *
+     * @param data   字节数组数据
+     * @param offset 偏移量
+     * @return MbReadWriteMultipleRegisterResponse
+     */
+    public static MbReadWriteMultipleRegisterResponse fromBytes(final byte[] data, final int offset) {
+        ByteReadBuff buff = new ByteReadBuff(data, offset);
+        MbReadWriteMultipleRegisterResponse res = new MbReadWriteMultipleRegisterResponse();
+        res.functionCode = EMbFunctionCode.from(buff.getByte());
+        res.count = buff.getByteToInt();
+        res.register = buff.getBytes(res.count);
+        return res;
+    }
+}
@@ -60,4 +60,17 @@ public class MbTcpRequest implements IObjectByteArray {
         request.header = new MbapHeader();
         return request;
     }
+
+    /**
+     * 解析字节数组数据，服务端使用
+     *
+     * @param data 字节数组数据
+     * @return MbTcpRequest
+     */
+    public static MbTcpRequest fromBytes(final byte[] data) {
+        MbTcpRequest request = new MbTcpRequest();
+        request.header = MbapHeader.fromBytes(data);
+        request.pdu = MbPdu.fromBytesToRequest(data, MbapHeader.BYTE_LENGTH);
+        return request;
+    }
 }
@@ -0,0 +1,68 @@
+package com.github.xingshuangs.iot.protocol.modbus.serializer;
+
+
+import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.common.enums.EDataType;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbRegisterType;
+import lombok.Data;
+
+import java.lang.reflect.Field;
+
+/**
+ * modbus解析数据
+ *
+ * @author xingshuang
+ */
+@Data
+public class ModbusParseData {
+
+    /**
+     * 数据区类型
+     */
+    private EMbRegisterType area;
+
+    /**
+     * 数据类型
+     */
+    private EDataType dataType;
+
+    /**
+     * 数据个数
+     */
+    private int count;
+
+    /**
+     * 寄存器中的位索引
+     */
+    private int bitIndex;
+
+    /**
+     * 字节格式
+     */
+    private EByteBuffFormat format;
+
+    /**
+     * 字段参数
+     */
+    private Field field;
+
+    /**
+     * 地址
+     */
+    private int address;
+
+    /**
+     * 占用的线圈或寄存器数量
+     */
+    private int quantity;
+
+    /**
+     * 所在请求块的索引
+     */
+    private int blockIndex;
+
+    /**
+     * 在请求块中的偏移量，单位为线圈或寄存器的个数
+     */
+    private int blockOffset;
+}
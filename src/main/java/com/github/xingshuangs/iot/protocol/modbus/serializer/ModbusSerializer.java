@@ -0,0 +1,432 @@
+package com.github.xingshuangs.iot.protocol.modbus.serializer;
+
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
+import com.github.xingshuangs.iot.protocol.common.enums.EDataType;
+import com.github.xingshuangs.iot.protocol.common.serializer.IPLCSerializable;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbAddressRange;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbRangePlanner;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbRegisterType;
+import com.github.xingshuangs.iot.protocol.modbus.service.ModbusTcp;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * modbus序列化工具
+ * <p>
+ * 每个类只在第一次使用时解析一次注解，按照数据区分组，用客户端的合并间隔把字段的地址范围规划为请求块并缓存；
+ * 读取时每个数据区按照请求块批量读取，流水线模式下并发发送；写入时只合并地址紧密相邻的字段，不会覆盖字段之间的数据，
+ * 只读的离散量输入和输入寄存器在写入时忽略
+ *
+ * @author xingshuang
+ */
+public class ModbusSerializer implements IPLCSerializable {
+
+    /**
+     * 单次写入寄存器的最大数量
+     */
+    private static final int MAX_WRITE_REGISTER = 123;
+
+    /**
+     * 单次写入线圈的最大数量
+     */
+    private static final int MAX_WRITE_COIL = 1968;
+
+    private final ModbusTcp modbusTcp;
+
+    /**
+     * 类对应的请求计划
+     */
+    private final Map<Class<?>, Plan> plans = new ConcurrentHashMap<>();
+
+    public ModbusSerializer(ModbusTcp modbusTcp) {
+        this.modbusTcp = modbusTcp;
+    }
+
+    /**
+     * 静态方法实例对象
+     *
+     * @param modbusTcp modbus客户端
+     * @return 对象实例
+     */
+    public static ModbusSerializer newInstance(ModbusTcp modbusTcp) {
+        return new ModbusSerializer(modbusTcp);
+    }
+
+    @Override
+    public <T> T read(Class<T> targetClass) {
+        Plan plan = this.plans.computeIfAbsent(targetClass, this::compile);
+        Map<EMbRegisterType, List<?>> data = new EnumMap<>(EMbRegisterType.class);
+        plan.blocks.forEach((area, blocks) -> {
+            switch (area) {
+                case COIL:
+                    data.put(area, this.modbusTcp.readCoil(blocks));
+                    break;
+                case DISCRETE_INPUT:
+                    data.put(area, this.modbusTcp.readDiscreteInput(blocks));
+                    break;
+                case HOLD_REGISTER:
+                    data.put(area, this.modbusTcp.readHoldRegister(blocks));
+                    break;
+                case INPUT_REGISTER:
+                    data.put(area, this.modbusTcp.readInputRegister(blocks));
+                    break;
+                default:
+                    throw new ModbusCommException("无法识别数据区类型");
+            }
+        });
+        return this.extractData(targetClass, plan, data);
+    }
+
+    @Override
+    public <T> void write(T targetBean) {
+        Plan plan = this.plans.computeIfAbsent(targetBean.getClass(), this::compile);
+        try {
+            this.writeCoil(targetBean, plan.items.getOrDefault(EMbRegisterType.COIL, new ArrayList<>()));
+            this.writeHoldRegister(targetBean, plan.items.getOrDefault(EMbRegisterType.HOLD_REGISTER, new ArrayList<>()));
+        } catch (IllegalAccessException e) {
+            throw new ModbusCommException("序列化填充字节数据错误:" + e.getMessage(), e);
+        }
+    }
+
+    //region 解析
+
+    /**
+     * 将类根据ModbusVariable注解解析为请求计划
+     *
+     * @param targetClass 目标类型
+     * @return 请求计划
+     */
+    private Plan compile(Class<?> targetClass) {
+        Plan plan = new Plan();
+        for (final Field field : targetClass.getDeclaredFields()) {
+            final ModbusVariable variable = field.getAnnotation(ModbusVariable.class);
+            if (variable == null) {
+                continue;
+            }
+            this.checkModbusVariable(variable);
+            field.setAccessible(true);
+
+            ModbusParseData item = new ModbusParseData();
+            item.setArea(variable.area());
+            item.setDataType(variable.type());
+            item.setCount(variable.count());
+            item.setBitIndex(variable.bitIndex());
+            item.setFormat(variable.format());
+            item.setField(field);
+            item.setAddress(variable.address());
+            item.setQuantity(quantityOf(variable));
+            if (item.getAddress() + item.getQuantity() > 65536) {
+                throw new ModbusCommException("modbus参数注解中[address]超过范围，字段：" + field.getName());
+            }
+            plan.items.computeIfAbsent(item.getArea(), x -> new ArrayList<>()).add(item);
+        }
+        if (plan.items.isEmpty()) {
+            throw new ModbusCommException("解析出的注解数据个数为空，无法读取数据");
+        }
+
+        plan.items.forEach((area, items) -> {
+            items.sort(Comparator.comparingInt(ModbusParseData::getAddress));
+            List<MbAddressRange> ranges = new ArrayList<>(items.size());
+            items.forEach(x -> ranges.add(new MbAddressRange(x.getAddress(), x.getQuantity())));
+            int maxQuantity = area == EMbRegisterType.COIL || area == EMbRegisterType.DISCRETE_INPUT
+                    ? MbRangePlanner.MAX_BIT_QUANTITY : MbRangePlanner.MAX_REGISTER_QUANTITY;
+            List<MbAddressRange> blocks = MbRangePlanner.plan(ranges, maxQuantity, this.modbusTcp.getMergeGap());
+            int blockIndex = 0;
+            for (ModbusParseData item : items) {
+                while (blocks.get(blockIndex).getEnd() <= item.getAddress()) {
+                    blockIndex++;
+                }
+                item.setBlockIndex(blockIndex);
+                item.setBlockOffset(item.getAddress() - blocks.get(blockIndex).getAddress());
+            }
+            plan.blocks.put(area, blocks);
+        });
+        return plan;
+    }
+
+    /**
+     * 校验ModbusVariable的数据是否满足规则要求
+     *
+     * @param variable ModbusVariable
+     */
+    private void checkModbusVariable(ModbusVariable variable) {
+        if (variable.address() < 0 || variable.address() > 65535) {
+            throw new ModbusCommException("modbus参数注解中[address]范围[0-65535]");
+        }
+        if (variable.count() < 1) {
+            throw new ModbusCommException("modbus参数注解中[count]必须大于0");
+        }
+        if (variable.type() != EDataType.BYTE && variable.type() != EDataType.STRING && variable.count() > 1) {
+            throw new ModbusCommException("modbus参数注解中只有[type]=字节和字符串类型数据的[count]才能大于1，其他必须等于1");
+        }
+        boolean bitArea = variable.area() == EMbRegisterType.COIL || variable.area() == EMbRegisterType.DISCRETE_INPUT;
+        if (bitArea && variable.type() != EDataType.BOOL) {
+            throw new ModbusCommException("modbus参数注解中线圈和离散量输入的[type]只能是BOOL");
+        }
+        if (variable.type() == EDataType.BOOL && (variable.bitIndex() < 0 || variable.bitIndex() > 15)) {
+            throw new ModbusCommException("modbus参数注解中[bitIndex]范围[0-15]");
+        }
+    }
+
+    /**
+     * 计算占用的线圈或寄存器数量
+     *
+     * @param variable ModbusVariable
+     * @return 数量
+     */
+    private static int quantityOf(ModbusVariable variable) {
+        switch (variable.type()) {
+            case BYTE:
+            case STRING:
+                return (variable.count() + 1) / 2;
+            case BOOL:
+                return 1;
+            default:
+                return variable.type().getByteLength() / 2;
+        }
+    }
+
+    //endregion
+
+    //region 读取
+
+    /**
+     * 提取数据
+     *
+     * @param targetClass 目标类型
+     * @param plan        请求计划
+     * @param data        每个数据区的请求块数据
+     * @param <T>         类型
+     * @return 目标类型的实体对象
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T extractData(Class<T> targetClass, Plan plan, Map<EMbRegisterType, List<?>> data) {
+        try {
+            final T result = targetClass.newInstance();
+            for (Map.Entry<EMbRegisterType, List<ModbusParseData>> entry : plan.items.entrySet()) {
+                List<?> blockData = data.get(entry.getKey());
+                for (ModbusParseData item : entry.getValue()) {
+                    Object value;
+                    if (entry.getKey() == EMbRegisterType.COIL || entry.getKey() == EMbRegisterType.DISCRETE_INPUT) {
+                        value = ((List<Boolean>) blockData.get(item.getBlockIndex())).get(item.getBlockOffset());
+                    } else {
+                        byte[] bytes = copyRegisters(plan.blocks.get(entry.getKey()), (List<byte[]>) blockData, item);
+                        value = this.decode(item, bytes);
+                    }
+                    item.getField().set(result, value);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            throw new ModbusCommException("序列化提取数据错误:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从请求块中拷贝字段对应的寄存器数据，字段超过单个请求块的时候跨块拷贝
+     *
+     * @param blocks 请求块
+     * @param data   请求块数据
+     * @param item   解析数据
+     * @return 字段对应的字节数组
+     */
+    private static byte[] copyRegisters(List<MbAddressRange> blocks, List<byte[]> data, ModbusParseData item) {
+        byte[] res = new byte[item.getQuantity() * 2];
+        int index = 0;
+        int blockIndex = item.getBlockIndex();
+        int offset = item.getBlockOffset();
+        while (index < res.length) {
+            byte[] src = data.get(blockIndex);
+            int length = Math.min(res.length - index, src.length - offset * 2);
+            System.arraycopy(src, offset * 2, res, index, length);
+            index += length;
+            blockIndex++;
+            offset = 0;
+        }
+        return res;
+    }
+
+    /**
+     * 按照数据类型解析寄存器数据
+     *
+     * @param item  解析数据
+     * @param bytes 寄存器数据
+     * @return 字段值
+     */
+    private Object decode(ModbusParseData item, byte[] bytes) {
+        ByteReadBuff buff = ByteReadBuff.newInstance(bytes, item.getFormat());
+        switch (item.getDataType()) {
+            case BOOL:
+                // 位索引和ModbusTcp.readBoolean一致
+                return buff.getBoolean(item.getBitIndex() / 8, item.getBitIndex() % 8);
+            case BYTE:
+                return buff.getBytes(item.getCount());
+            case UINT16:
+                return buff.getUInt16();
+            case INT16:
+                return buff.getInt16();
+            case UINT32:
+                return buff.getUInt32();
+            case INT32:
+                return buff.getInt32();
+            case FLOAT32:
+                return buff.getFloat32();
+            case FLOAT64:
+                return buff.getFloat64();
+            case STRING:
+                int length = 0;
+                while (length < item.getCount() && bytes[length] != 0) {
+                    length++;
+                }
+                return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+            default:
+                throw new ModbusCommException("无法识别数据类型");
+        }
+    }
+
+    //endregion
+
+    //region 写入
+
+    /**
+     * 写入线圈，地址紧密相邻的字段合并为一次请求
+     *
+     * @param targetBean 目标对象
+     * @param items      按照地址排序的解析数据
+     * @throws IllegalAccessException 字段访问异常
+     */
+    private void writeCoil(Object targetBean, List<ModbusParseData> items) throws IllegalAccessException {
+        int address = -1;
+        List<Boolean> values = new ArrayList<>();
+        for (ModbusParseData item : items) {
+            Object data = item.getField().get(targetBean);
+            if (data == null) {
+                continue;
+            }
+            if (address + values.size() != item.getAddress() || values.size() >= MAX_WRITE_COIL) {
+                this.flushCoil(address, values);
+                address = item.getAddress();
+            }
+            values.add((Boolean) data);
+        }
+        this.flushCoil(address, values);
+    }
+
+    private void flushCoil(int address, List<Boolean> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (values.size() == 1) {
+            this.modbusTcp.writeCoil(address, values.get(0));
+        } else {
+            this.modbusTcp.writeCoil(address, new ArrayList<>(values));
+        }
+        values.clear();
+    }
+
+    /**
+     * 写入保持寄存器，地址紧密相邻的字段合并为一次请求，超过单次写入的最大数量自动分割
+     *
+     * @param targetBean 目标对象
+     * @param items      按照地址排序的解析数据
+     * @throws IllegalAccessException 字段访问异常
+     */
+    private void writeHoldRegister(Object targetBean, List<ModbusParseData> items) throws IllegalAccessException {
+        int address = -1;
+        int quantity = 0;
+        List<byte[]> values = new ArrayList<>();
+        for (ModbusParseData item : items) {
+            Object data = item.getField().get(targetBean);
+            if (data == null) {
+                continue;
+            }
+            if (item.getDataType() == EDataType.BOOL) {
+                throw new ModbusCommException("保持寄存器中的位数据不支持写入，字段：" + item.getField().getName());
+            }
+            if (address + quantity != item.getAddress()) {
+                this.flushHoldRegister(address, quantity, values);
+                address = item.getAddress();
+                quantity = 0;
+            }
+            values.add(this.encode(item, data));
+            quantity += item.getQuantity();
+        }
+        this.flushHoldRegister(address, quantity, values);
+    }
+
+    private void flushHoldRegister(int address, int quantity, List<byte[]> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        ByteWriteBuff buff = ByteWriteBuff.newInstance(quantity * 2);
+        values.forEach(buff::putBytes);
+        byte[] bytes = buff.getData();
+        for (int offset = 0; offset < bytes.length; offset += MAX_WRITE_REGISTER * 2) {
+            this.modbusTcp.writeHoldRegister(address + offset / 2,
+                    Arrays.copyOfRange(bytes, offset, Math.min(offset + MAX_WRITE_REGISTER * 2, bytes.length)));
+        }
+        values.clear();
+    }
+
+    /**
+     * 按照数据类型转换为寄存器数据
+     *
+     * @param item 解析数据
+     * @param data 字段值
+     * @return 寄存器数据，长度为寄存器数量的2倍
+     */
+    private byte[] encode(ModbusParseData item, Object data) {
+        ByteWriteBuff buff = ByteWriteBuff.newInstance(item.getQuantity() * 2, item.getFormat());
+        switch (item.getDataType()) {
+            case BYTE:
+                byte[] src = (byte[]) data;
+                return Arrays.copyOf(Arrays.copyOf(src, Math.min(src.length, item.getCount())), item.getQuantity() * 2);
+            case UINT16:
+                return buff.putShort((Integer) data).getData();
+            case INT16:
+                return buff.putShort((Short) data).getData();
+            case UINT32:
+                return buff.putInteger((Long) data).getData();
+            case INT32:
+                return buff.putInteger((Integer) data).getData();
+            case FLOAT32:
+                return buff.putFloat((Float) data).getData();
+            case FLOAT64:
+                return buff.putDouble((Double) data).getData();
+            case STRING:
+                byte[] bytes = ((String) data).getBytes(StandardCharsets.US_ASCII);
+                return Arrays.copyOf(Arrays.copyOf(bytes, Math.min(bytes.length, item.getCount())), item.getQuantity() * 2);
+            default:
+                throw new ModbusCommException("无法识别数据类型");
+        }
+    }
+
+    //endregion
+
+    /**
+     * 请求计划
+     */
+    private static class Plan {
+
+        /**
+         * 每个数据区的解析数据，按照地址排序
+         */
+        final Map<EMbRegisterType, List<ModbusParseData>> items = new EnumMap<>(EMbRegisterType.class);
+
+        /**
+         * 每个数据区的请求块，按照地址排序
+         */
+        final Map<EMbRegisterType, List<MbAddressRange>> blocks = new EnumMap<>(EMbRegisterType.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.xingshuangs.iot.protocol.modbus.serializer;
+
+
+import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.common.enums.EDataType;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbRegisterType;
+
+import java.lang.annotation.*;
+
+/**
+ * modbus变量参数
+ *
+ * @author xingshuang
+ */
+@Target(value = {ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ModbusVariable {
+
+    /**
+     * 数据区类型
+     *
+     * @return 数据区类型
+     */
+    EMbRegisterType area() default EMbRegisterType.HOLD_REGISTER;
+
+    /**
+     * 地址，线圈和离散量输入为位地址，寄存器为寄存器地址
+     *
+     * @return 地址
+     */
+    int address();
+
+    /**
+     * 类型
+     * 线圈和离散量输入只能是BOOL；寄存器中的BOOL为寄存器的某一位，由bitIndex指定，只支持读取
+     *
+     * @return 类型
+     */
+    EDataType type() default EDataType.UINT16;
+
+    /**
+     * 数量
+     * 除字节Byte和String类型外，其他类型对应的count必须为1
+     *
+     * @return 数量
+     */
+    int count() default 1;
+
+    /**
+     * 寄存器中的位索引[0,15]，只对寄存器中的BOOL类型有效
+     *
+     * @return 位索引
+     */
+    int bitIndex() default 0;
+
+    /**
+     * 4字节和8字节数据的字节格式，默认和ModbusTcp单个数据的读写一致
+     *
+     * @return 字节格式
+     */
+    EByteBuffFormat format() default EByteBuffFormat.BA_DC;
+}
@@ -0,0 +1,32 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+
+import java.util.List;
+
+/**
+ * 多个从站客户端共享的modbus通信通道，负责组包、发送和按照事务元标识符匹配响应
+ *
+ * @author xingshuang
+ */
+interface IMbTransport {
+
+    /**
+     * 发送请求并等待响应
+     *
+     * @param unitId 从站编号
+     * @param reqPdu 请求对象
+     * @return 响应结果
+     */
+    MbPdu readModbusData(int unitId, MbPdu reqPdu);
+
+    /**
+     * 批量发送请求并等待响应
+     *
+     * @param unitId  从站编号
+     * @param reqPdus 请求对象列表
+     * @return 响应结果列表，和请求一一对应
+     */
+    List<MbPdu> readModbusData(int unitId, List<MbPdu> reqPdus);
+}
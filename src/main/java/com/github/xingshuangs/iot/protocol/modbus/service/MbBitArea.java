@@ -0,0 +1,152 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * modbus服务端的位数据区，线圈或离散量输入
+ * <p>
+ * 每一位占用long数组中的一个比特，65536个位只占8K内存；读取优先使用乐观读，校验失败退化为读锁重新读取
+ *
+ * @author xingshuang
+ */
+class MbBitArea {
+
+    /**
+     * 位的数量
+     */
+    static final int SIZE = 65536;
+
+    /**
+     * 位数据
+     */
+    private final long[] words = new long[SIZE >>> 6];
+
+    /**
+     * 锁
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * 是否包含指定的地址范围
+     *
+     * @param address  起始地址
+     * @param quantity 数量
+     * @return true：包含，false：超出范围
+     */
+    public boolean contains(int address, int quantity) {
+        return address >= 0 && quantity >= 0 && address + quantity <= SIZE;
+    }
+
+    /**
+     * 读取单个位
+     *
+     * @param address 地址
+     * @return 位数据
+     */
+    public boolean get(int address) {
+        long stamp = this.lock.tryOptimisticRead();
+        long word = this.words[address >>> 6];
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                word = this.words[address >>> 6];
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return (word & (1L << address)) != 0;
+    }
+
+    /**
+     * 写入单个位
+     *
+     * @param address 地址
+     * @param value   位数据
+     */
+    public void set(int address, boolean value) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.setBit(address, value);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 读取多个位，按照modbus的格式打包，第一个位在第一个字节的最低位
+     *
+     * @param address  起始地址
+     * @param quantity 数量
+     * @return 打包后的字节数组
+     */
+    public byte[] read(int address, int quantity) {
+        byte[] res = new byte[(quantity + 7) / 8];
+        long stamp = this.lock.tryOptimisticRead();
+        this.pack(address, quantity, res);
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                this.pack(address, quantity, res);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 写入多个位，数据按照modbus的格式打包，第一个位在第一个字节的最低位
+     *
+     * @param address  起始地址
+     * @param quantity 数量
+     * @param src      打包后的字节数组
+     */
+    public void write(int address, int quantity, byte[] src) {
+        long stamp = this.lock.writeLock();
+        try {
+            for (int i = 0; i < quantity; i++) {
+                this.setBit(address + i, (src[i >>> 3] & (1 << (i & 7))) != 0);
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    //region 存储，需要在锁的保护下调用
+
+    /**
+     * 打包位数据
+     *
+     * @param address  起始地址
+     * @param quantity 数量
+     * @param dst      目标字节数组
+     */
+    private void pack(int address, int quantity, byte[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = 0;
+        }
+        for (int i = 0; i < quantity; i++) {
+            int position = address + i;
+            if ((this.words[position >>> 6] & (1L << position)) != 0) {
+                dst[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+    }
+
+    /**
+     * 设置单个位
+     *
+     * @param address 地址
+     * @param value   位数据
+     */
+    private void setBit(int address, boolean value) {
+        if (value) {
+            this.words[address >>> 6] |= 1L << address;
+        } else {
+            this.words[address >>> 6] &= ~(1L << address);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,48 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+/**
+ * modbus服务端一个从站的数据，包括线圈、离散量输入、保持寄存器和输入寄存器
+ * <p>
+ * 四个数据区独立加锁，互不阻塞
+ *
+ * @author xingshuang
+ */
+class MbDataBank {
+
+    /**
+     * 线圈
+     */
+    private final MbBitArea coils = new MbBitArea();
+
+    /**
+     * 离散量输入
+     */
+    private final MbBitArea discreteInputs = new MbBitArea();
+
+    /**
+     * 保持寄存器
+     */
+    private final MbRegisterArea holdRegisters = new MbRegisterArea();
+
+    /**
+     * 输入寄存器
+     */
+    private final MbRegisterArea inputRegisters = new MbRegisterArea();
+
+    public MbBitArea getCoils() {
+        return coils;
+    }
+
+    public MbBitArea getDiscreteInputs() {
+        return discreteInputs;
+    }
+
+    public MbRegisterArea getHoldRegisters() {
+        return holdRegisters;
+    }
+
+    public MbRegisterArea getInputRegisters() {
+        return inputRegisters;
+    }
+}
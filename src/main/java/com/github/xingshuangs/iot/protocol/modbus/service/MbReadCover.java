@@ -0,0 +1,138 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.protocol.modbus.model.*;
+
+/**
+ * 读请求的覆盖判断和结果提取，用于并发读取去重，只处理线圈、离散输入、保持寄存器和输入寄存器的读取
+ *
+ * @author xingshuang
+ */
+final class MbReadCover {
+
+    private MbReadCover() {
+        // NOOP
+    }
+
+    /**
+     * 正在读取的请求是否覆盖新的请求，要求功能码相同并且地址范围包含在内
+     *
+     * @param flight 正在读取的请求
+     * @param req    新的请求
+     * @return true：覆盖，false：不覆盖
+     */
+    static boolean covers(MbPdu flight, MbPdu req) {
+        int[] flightRange = range(flight);
+        int[] reqRange = range(req);
+        return flightRange != null && reqRange != null && flight.getFunctionCode() == req.getFunctionCode()
+                && reqRange[0] >= flightRange[0] && reqRange[0] + reqRange[1] <= flightRange[0] + flightRange[1];
+    }
+
+    /**
+     * 是否为读请求，其他请求都会修改从站的数据
+     *
+     * @param pdu 请求
+     * @return true：读请求，false：写请求
+     */
+    static boolean isRead(MbPdu pdu) {
+        return range(pdu) != null;
+    }
+
+    /**
+     * 从覆盖请求的响应中提取新请求的响应
+     *
+     * @param flight    正在读取的请求
+     * @param flightAck 正在读取的响应
+     * @param req       新的请求
+     * @return 响应
+     */
+    static MbPdu extract(MbPdu flight, MbPdu flightAck, MbPdu req) {
+        int[] reqRange = range(req);
+        int offset = reqRange[0] - range(flight)[0];
+        int quantity = reqRange[1];
+        if (flightAck instanceof MbReadCoilResponse) {
+            MbReadCoilResponse ack = new MbReadCoilResponse();
+            ack.setFunctionCode(flightAck.getFunctionCode());
+            ack.setCoilStatus(extractBits(((MbReadCoilResponse) flightAck).getCoilStatus(), offset, quantity));
+            ack.setCount(ack.getCoilStatus().length);
+            return ack;
+        }
+        if (flightAck instanceof MbReadDiscreteInputResponse) {
+            MbReadDiscreteInputResponse ack = new MbReadDiscreteInputResponse();
+            ack.setFunctionCode(flightAck.getFunctionCode());
+            ack.setInputStatus(extractBits(((MbReadDiscreteInputResponse) flightAck).getInputStatus(), offset, quantity));
+            ack.setCount(ack.getInputStatus().length);
+            return ack;
+        }
+        if (flightAck instanceof MbReadHoldRegisterResponse) {
+            MbReadHoldRegisterResponse ack = new MbReadHoldRegisterResponse();
+            ack.setFunctionCode(flightAck.getFunctionCode());
+            ack.setRegister(extractRegisters(((MbReadHoldRegisterResponse) flightAck).getRegister(), offset, quantity));
+            ack.setCount(ack.getRegister().length);
+            return ack;
+        }
+        if (flightAck instanceof MbReadInputRegisterResponse) {
+            MbReadInputRegisterResponse ack = new MbReadInputRegisterResponse();
+            ack.setFunctionCode(flightAck.getFunctionCode());
+            ack.setRegister(extractRegisters(((MbReadInputRegisterResponse) flightAck).getRegister(), offset, quantity));
+            ack.setCount(ack.getRegister().length);
+            return ack;
+        }
+        throw new IllegalArgumentException("不支持的响应类型：" + flightAck.getClass().getSimpleName());
+    }
+
+    /**
+     * 读请求的地址范围
+     *
+     * @param pdu 请求
+     * @return [地址, 数量]，非读请求返回null
+     */
+    private static int[] range(MbPdu pdu) {
+        if (pdu instanceof MbReadCoilRequest) {
+            return new int[]{((MbReadCoilRequest) pdu).getAddress(), ((MbReadCoilRequest) pdu).getQuantity()};
+        }
+        if (pdu instanceof MbReadDiscreteInputRequest) {
+            return new int[]{((MbReadDiscreteInputRequest) pdu).getAddress(), ((MbReadDiscreteInputRequest) pdu).getQuantity()};
+        }
+        if (pdu instanceof MbReadHoldRegisterRequest) {
+            return new int[]{((MbReadHoldRegisterRequest) pdu).getAddress(), ((MbReadHoldRegisterRequest) pdu).getQuantity()};
+        }
+        if (pdu instanceof MbReadInputRegisterRequest) {
+            return new int[]{((MbReadInputRegisterRequest) pdu).getAddress(), ((MbReadInputRegisterRequest) pdu).getQuantity()};
+        }
+        return null;
+    }
+
+    /**
+     * 提取寄存器，每个寄存器2个字节
+     *
+     * @param src      源数据
+     * @param offset   寄存器偏移量
+     * @param quantity 寄存器数量
+     * @return 字节数组
+     */
+    private static byte[] extractRegisters(byte[] src, int offset, int quantity) {
+        byte[] res = new byte[quantity * 2];
+        System.arraycopy(src, offset * 2, res, 0, res.length);
+        return res;
+    }
+
+    /**
+     * 提取位数据，低位在前
+     *
+     * @param src      源数据
+     * @param offset   位偏移量
+     * @param quantity 位数量
+     * @return 字节数组
+     */
+    private static byte[] extractBits(byte[] src, int offset, int quantity) {
+        byte[] res = new byte[(quantity + 7) / 8];
+        for (int i = 0; i < quantity; i++) {
+            int index = offset + i;
+            if ((src[index / 8] >> (index % 8) & 0x01) == 1) {
+                res[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        return res;
+    }
+}
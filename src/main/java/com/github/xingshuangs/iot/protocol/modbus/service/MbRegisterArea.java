@@ -0,0 +1,163 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * modbus服务端的寄存器数据区，保持寄存器或输入寄存器
+ * <p>
+ * 每个寄存器占用short数组中的一个元素，对外按照大端格式读写字节；读取优先使用乐观读，校验失败退化为读锁重新读取
+ *
+ * @author xingshuang
+ */
+class MbRegisterArea {
+
+    /**
+     * 寄存器的数量
+     */
+    static final int SIZE = 65536;
+
+    /**
+     * 寄存器数据
+     */
+    private final short[] registers = new short[SIZE];
+
+    /**
+     * 锁
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * 是否包含指定的地址范围
+     *
+     * @param address  起始地址
+     * @param quantity 寄存器数量
+     * @return true：包含，false：超出范围
+     */
+    public boolean contains(int address, int quantity) {
+        return address >= 0 && quantity >= 0 && address + quantity <= SIZE;
+    }
+
+    /**
+     * 读取单个寄存器
+     *
+     * @param address 地址
+     * @return 无符号的寄存器值
+     */
+    public int get(int address) {
+        long stamp = this.lock.tryOptimisticRead();
+        short value = this.registers[address];
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                value = this.registers[address];
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return value & 0xFFFF;
+    }
+
+    /**
+     * 写入单个寄存器
+     *
+     * @param address 地址
+     * @param value   寄存器值，只取低16位
+     */
+    public void set(int address, int value) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.registers[address] = (short) value;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 读取多个寄存器
+     *
+     * @param address  起始地址
+     * @param quantity 寄存器数量
+     * @return 大端格式的字节数组，长度为quantity*2
+     */
+    public byte[] read(int address, int quantity) {
+        byte[] res = new byte[quantity * 2];
+        long stamp = this.lock.tryOptimisticRead();
+        this.copyTo(address, res);
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                this.copyTo(address, res);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 写入多个寄存器
+     *
+     * @param address 起始地址
+     * @param src     大端格式的字节数组，长度为寄存器数量*2
+     */
+    public void write(int address, byte[] src) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.putBytes(address, src);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 在同一个写锁中先写入再读取，期间不会插入其他写入
+     *
+     * @param writeAddress 写的起始地址
+     * @param src          写的字节数组，大端格式
+     * @param readAddress  读的起始地址
+     * @param readQuantity 读的寄存器数量
+     * @return 写入之后读取的字节数组
+     */
+    public byte[] writeAndRead(int writeAddress, byte[] src, int readAddress, int readQuantity) {
+        byte[] res = new byte[readQuantity * 2];
+        long stamp = this.lock.writeLock();
+        try {
+            this.putBytes(writeAddress, src);
+            this.copyTo(readAddress, res);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        return res;
+    }
+
+    //region 存储，需要在锁的保护下调用
+
+    /**
+     * 按照大端格式拷贝寄存器数据
+     *
+     * @param address 起始地址
+     * @param dst     目标字节数组
+     */
+    private void copyTo(int address, byte[] dst) {
+        for (int i = 0; i < dst.length / 2; i++) {
+            short value = this.registers[address + i];
+            dst[i * 2] = (byte) (value >> 8);
+            dst[i * 2 + 1] = (byte) value;
+        }
+    }
+
+    /**
+     * 按照大端格式写入寄存器数据
+     *
+     * @param address 起始地址
+     * @param src     字节数组
+     */
+    private void putBytes(int address, byte[] src) {
+        for (int i = 0; i < src.length / 2; i++) {
+            this.registers[address + i] = (short) (((src[i * 2] & 0xFF) << 8) | (src[i * 2 + 1] & 0xFF));
+        }
+    }
+
+    //endregion
+}
@@ -2,10 +2,26 @@ package com.github.xingshuangs.iot.protocol.modbus.service;
 
 
 import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
+import com.github.xingshuangs.iot.net.SocketUtils;
 import com.github.xingshuangs.iot.net.client.TcpClientBasic;
+import com.github.xingshuangs.iot.protocol.common.PriorityWindow;
+import com.github.xingshuangs.iot.protocol.common.RequestScheduler;
+import com.github.xingshuangs.iot.protocol.common.SingleFlight;
 import com.github.xingshuangs.iot.protocol.modbus.model.*;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
@@ -22,9 +38,19 @@ public class ModbusNetwork extends TcpClientBasic {
     private int unitId = 0;
 
     /**
-     * 锁
+     * 请求调度器，按照优先级使用连接
      */
-    private final Object objLock = new Object();
+    private final RequestScheduler scheduler = new RequestScheduler();
+
+    /**
+     * 多个从站共享的通信通道，例如网关连接或者UDP，不为null的时候所有请求通过共享通道发送
+     */
+    private IMbTransport transport;
+
+    /**
+     * 并发读取去重，为null表示不开启
+     */
+    private volatile SingleFlight<MbPdu, MbPdu> singleFlight;
 
     /**
      * 通信回调
@@ -36,10 +62,39 @@ public class ModbusNetwork extends TcpClientBasic {
      */
     private boolean persistence = true;
 
+    /**
+     * 流水线窗口，单个连接上允许同时等待响应的请求数量，1表示不使用流水线，请求和响应逐个往返
+     */
+    private int pipelineWindow = 1;
+
+    /**
+     * 流水线窗口的许可，按照请求优先级分配
+     */
+    private volatile PriorityWindow window = new PriorityWindow(this.scheduler, 1);
+
+    /**
+     * 等待响应的请求，key为事务元标识符
+     */
+    private final Map<Integer, PendingRequest> pendingMap = new ConcurrentHashMap<>();
+
+    /**
+     * 流水线模式的读取者监视器，同一时刻只有一个等待响应的线程负责从socket读取数据
+     */
+    private final Object readerMonitor = new Object();
+
+    /**
+     * 是否有线程正在读取响应
+     */
+    private boolean readerActive = false;
+
     public void setComCallback(Consumer<byte[]> comCallback) {
         this.comCallback = comCallback;
     }
 
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
     public boolean isPersistence() {
         return persistence;
     }
@@ -48,6 +103,47 @@ public class ModbusNetwork extends TcpClientBasic {
         this.persistence = persistence;
     }
 
+    public boolean isSingleFlight() {
+        return this.singleFlight != null;
+    }
+
+    /**
+     * 设置是否开启并发读取去重，开启后多个线程同时读取相同或者被覆盖的线圈、寄存器时只通信一次，共享结果；
+     * 覆盖指同一功能码的地址范围包含在内，写请求不去重；写请求完成之后，此前开始的读取不再被新的读取共享
+     *
+     * @param singleFlight true：开启，false：关闭
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight ? new SingleFlight<>(MbReadCover::covers, MbReadCover::extract) : null;
+    }
+
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    /**
+     * 设置流水线窗口，大于1时多个请求不等待响应连续发送，响应按照事务元标识符匹配，可以乱序返回；
+     * 窗口已满时按照{@link RequestScheduler}的优先级分配许可；只在长连接下生效，建议在通信之前设置
+     *
+     * @param pipelineWindow 流水线窗口，范围[1-256]
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        if (pipelineWindow < 1 || pipelineWindow > 256) {
+            throw new IllegalArgumentException("pipelineWindow范围[1-256]");
+        }
+        this.pipelineWindow = pipelineWindow;
+        this.window = new PriorityWindow(this.scheduler, pipelineWindow);
+    }
+
+    /**
+     * 是否使用流水线模式
+     *
+     * @return true：使用，false：不使用
+     */
+    private boolean isPipelined() {
+        return this.pipelineWindow > 1 && this.persistence;
+    }
+
     public ModbusNetwork() {
         super();
     }
@@ -57,6 +153,12 @@ public class ModbusNetwork extends TcpClientBasic {
         this.unitId = unitId;
     }
 
+    ModbusNetwork(int unitId, InetSocketAddress address, IMbTransport transport) {
+        super(address.getHostString(), address.getPort());
+        this.unitId = unitId;
+        this.transport = transport;
+    }
+
     //region 底层数据通信部分
 
     /**
@@ -66,33 +168,45 @@ public class ModbusNetwork extends TcpClientBasic {
      * @return modbus协议数据
      */
     protected MbTcpResponse readFromServer(MbTcpRequest req) {
-        if (this.comCallback != null) {
-            this.comCallback.accept(req.toByteArray());
-        }
-        MbapHeader header;
-        int len;
-        byte[] remain;
-        synchronized (this.objLock) {
-            this.write(req.toByteArray());
-
-            byte[] data = new byte[MbapHeader.BYTE_LENGTH];
-            len = this.read(data);
-            if (len < MbapHeader.BYTE_LENGTH) {
-                throw new ModbusCommException(" MbapHeader 无效，读取长度不一致");
+        CommEvent event = CommEvent.modbusRequest().address(this.socketAddress)
+                .functionCode(req.getPdu().getFunctionCode()).itemCount(1).pduCount(1);
+        try {
+            byte[] sendData = req.toByteArray();
+            if (this.comCallback != null) {
+                this.comCallback.accept(sendData);
             }
-            header = MbapHeader.fromBytes(data);
-            remain = new byte[header.getLength() - 1];
-            len = this.read(remain);
-        }
-        if (len < remain.length) {
-            throw new ModbusCommException(" MbapHeader后面的数据长度，长度不一致");
-        }
-        MbTcpResponse ack = MbTcpResponse.fromBytes(header, remain);
-        if (this.comCallback != null) {
-            this.comCallback.accept(ack.toByteArray());
+            MbapHeader header;
+            int len;
+            byte[] remain;
+            this.scheduler.acquire();
+            try {
+                this.write(sendData);
+
+                byte[] data = new byte[MbapHeader.BYTE_LENGTH];
+                len = this.read(data);
+                if (len < MbapHeader.BYTE_LENGTH) {
+                    throw new ModbusCommException(" MbapHeader 无效，读取长度不一致");
+                }
+                header = MbapHeader.fromBytes(data);
+                remain = new byte[header.getLength() - 1];
+                len = this.read(remain);
+            } finally {
+                this.scheduler.release();
+            }
+            if (len < remain.length) {
+                throw new ModbusCommException(" MbapHeader后面的数据长度，长度不一致");
+            }
+            event.bytes(sendData.length).bytes(MbapHeader.BYTE_LENGTH + remain.length);
+            MbTcpResponse ack = MbTcpResponse.fromBytes(header, remain);
+            if (this.comCallback != null) {
+                this.comCallback.accept(ack.toByteArray());
+            }
+            this.checkResult(req, ack);
+            event.success();
+            return ack;
+        } finally {
+            event.commit();
         }
-        this.checkResult(req, ack);
-        return ack;
     }
 
     /**
@@ -101,7 +215,7 @@ public class ModbusNetwork extends TcpClientBasic {
      * @param req 请求数据
      * @param ack 响应数据
      */
-    private void checkResult(MbTcpRequest req, MbTcpResponse ack) {
+    static void checkResult(MbTcpRequest req, MbTcpResponse ack) {
         if (ack.getPdu() == null) {
             throw new ModbusCommException("PDU数据为null");
         }
@@ -120,6 +234,240 @@ public class ModbusNetwork extends TcpClientBasic {
 
     //endregion
 
+    //region 流水线通信部分
+
+    /**
+     * 流水线方式从服务器读取数据，在窗口允许的范围内连续发送请求，再按照事务元标识符匹配响应
+     *
+     * @param reqs modbus协议数据列表
+     * @return 响应数据列表，和请求一一对应
+     */
+    protected List<MbTcpResponse> readFromServer(List<MbTcpRequest> reqs) {
+        List<PendingRequest> pendings = new ArrayList<>(reqs.size());
+        for (MbTcpRequest req : reqs) {
+            this.acquireWindow(pendings);
+            pendings.add(this.sendPipelined(req));
+        }
+        // 所有响应都返回之后再校验，避免遗留未等待的请求
+        List<MbTcpResponse> res = new ArrayList<>(reqs.size());
+        RuntimeException exception = null;
+        for (PendingRequest pending : pendings) {
+            try {
+                res.add(this.awaitResponse(pending));
+            } catch (RuntimeException e) {
+                exception = exception == null ? e : exception;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        for (int i = 0; i < reqs.size(); i++) {
+            this.checkResult(reqs.get(i), res.get(i));
+        }
+        return res;
+    }
+
+    /**
+     * 获取窗口许可，按照当前线程的优先级排队，排队期间先等待自己发出的请求的响应，
+     * 没有自己的请求时由其他线程读取响应释放许可
+     *
+     * @param pendings 自己发出的请求
+     */
+    private void acquireWindow(List<PendingRequest> pendings) {
+        PriorityWindow current = this.window;
+        PriorityWindow.Ticket ticket = current.request();
+        try {
+            while (!current.isGranted(ticket)) {
+                PendingRequest own = pendings.stream().filter(x -> !x.future.isDone()).findFirst().orElse(null);
+                if (own == null) {
+                    if (!current.await(ticket, this.getReceiveTimeout())) {
+                        throw new ModbusCommException("等待流水线窗口超时");
+                    }
+                    return;
+                }
+                try {
+                    this.awaitResponse(own);
+                } catch (RuntimeException e) {
+                    // 异常在最后统一抛出
+                }
+            }
+        } catch (RuntimeException e) {
+            current.cancel(ticket);
+            throw e;
+        }
+    }
+
+    /**
+     * 发送请求，登记到等待表中，响应返回或者失败的时候释放窗口许可
+     *
+     * @param req 请求
+     * @return 等待响应的请求
+     */
+    private PendingRequest sendPipelined(MbTcpRequest req) {
+        PriorityWindow current = this.window;
+        CommEvent event = CommEvent.modbusRequest().address(this.socketAddress)
+                .functionCode(req.getPdu().getFunctionCode()).itemCount(1).pduCount(1);
+        PendingRequest pending = new PendingRequest();
+        CompletableFuture<MbTcpResponse> future = pending.future;
+        future.whenComplete((ack, e) -> {
+            current.release();
+            if (ack != null) {
+                event.bytes(MbapHeader.BYTE_LENGTH + ack.getHeader().getLength() - 1).success();
+            }
+            event.commit();
+        });
+        int transactionId = req.getHeader().getTransactionId();
+        if (this.pendingMap.putIfAbsent(transactionId, pending) != null) {
+            future.completeExceptionally(new ModbusCommException("事务元标识符Id重复：" + transactionId));
+            return pending;
+        }
+        byte[] sendData = req.toByteArray();
+        if (this.comCallback != null) {
+            this.comCallback.accept(sendData);
+        }
+        event.bytes(sendData.length);
+        // 发送同样按照优先级排队，被拒绝的只让当前请求失败
+        try {
+            this.scheduler.acquire();
+        } catch (RuntimeException e) {
+            this.pendingMap.remove(transactionId, pending);
+            future.completeExceptionally(e);
+            return pending;
+        }
+        try {
+            pending.socket = this.getAvailableSocket();
+            SocketUtils.write(pending.socket, sendData);
+        } catch (IOException e) {
+            this.failPending(new SocketRuntimeException(e), pending.socket);
+        } catch (RuntimeException e) {
+            // 连接失败，请求还没有发出，只让当前请求失败
+            this.pendingMap.remove(transactionId, pending);
+            future.completeExceptionally(e);
+        } finally {
+            this.scheduler.release();
+        }
+        return pending;
+    }
+
+    /**
+     * 等待响应，没有线程读取的时候自己从发送请求的socket读取，读到的其他请求的响应也一并完成
+     *
+     * @param pending 等待响应的请求
+     * @return 响应数据
+     */
+    private MbTcpResponse awaitResponse(PendingRequest pending) {
+        CompletableFuture<MbTcpResponse> future = pending.future;
+        while (!future.isDone()) {
+            synchronized (this.readerMonitor) {
+                while (!future.isDone() && this.readerActive) {
+                    try {
+                        this.readerMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ModbusCommException(e);
+                    }
+                }
+                if (future.isDone()) {
+                    break;
+                }
+                this.readerActive = true;
+            }
+            try {
+                while (!future.isDone()) {
+                    this.readPipelined(pending.socket);
+                }
+            } catch (IOException e) {
+                this.failPending(new SocketRuntimeException(e), pending.socket);
+            } catch (RuntimeException e) {
+                this.failPending(e, pending.socket);
+            } finally {
+                synchronized (this.readerMonitor) {
+                    this.readerActive = false;
+                    this.readerMonitor.notifyAll();
+                }
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ModbusCommException(e.getCause());
+        }
+    }
+
+    /**
+     * 读取一个响应，完成对应事务元标识符的请求
+     *
+     * @param socket 读取的socket
+     * @throws IOException IO异常
+     */
+    private void readPipelined(Socket socket) throws IOException {
+        byte[] data = new byte[MbapHeader.BYTE_LENGTH];
+        int len = SocketUtils.read(socket, data, 0, data.length, -1, this.getReceiveTimeout());
+        if (len < MbapHeader.BYTE_LENGTH) {
+            throw new ModbusCommException(" MbapHeader 无效，读取长度不一致");
+        }
+        MbapHeader header = MbapHeader.fromBytes(data);
+        byte[] remain = new byte[header.getLength() - 1];
+        len = SocketUtils.read(socket, remain, 0, remain.length, -1, this.getReceiveTimeout());
+        if (len < remain.length) {
+            throw new ModbusCommException(" MbapHeader后面的数据长度，长度不一致");
+        }
+        MbTcpResponse ack = MbTcpResponse.fromBytes(header, remain);
+        if (this.comCallback != null) {
+            this.comCallback.accept(ack.toByteArray());
+        }
+        PendingRequest pending = this.pendingMap.get(header.getTransactionId());
+        if (pending == null || pending.socket != socket || !this.pendingMap.remove(header.getTransactionId(), pending)) {
+            log.warn("丢弃未知事务元标识符[{}]的响应", header.getTransactionId());
+            return;
+        }
+        pending.future.complete(ack);
+        synchronized (this.readerMonitor) {
+            this.readerMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 连接异常，在该socket上等待的请求失败，关闭该socket，下次通信重新连接，
+     * 其他线程已经重新连接的新socket以及在上面发送的请求不受影响
+     *
+     * @param e      异常
+     * @param socket 发生异常的socket
+     */
+    private void failPending(RuntimeException e, Socket socket) {
+        this.close(socket);
+        for (Map.Entry<Integer, PendingRequest> entry : this.pendingMap.entrySet()) {
+            PendingRequest pending = entry.getValue();
+            if (pending.socket == socket && this.pendingMap.remove(entry.getKey(), pending)) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+        synchronized (this.readerMonitor) {
+            this.readerMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * 流水线中等待响应的请求
+     */
+    private static class PendingRequest {
+
+        /**
+         * 响应
+         */
+        private final CompletableFuture<MbTcpResponse> future = new CompletableFuture<>();
+
+        /**
+         * 发送请求所用的socket，还没有发出的时候为null
+         */
+        private volatile Socket socket;
+    }
+
+    //endregion
+
     /**
      * 读取modbus数据
      *
@@ -127,10 +475,54 @@ public class ModbusNetwork extends TcpClientBasic {
      * @return 响应结果
      */
     protected MbPdu readModbusData(MbPdu reqPdu) {
-        MbTcpRequest request = MbTcpRequest.createDefault();
-        request.getHeader().setUnitId(this.unitId);
-        request.setPdu(reqPdu);
-        request.selfCheck();
+        SingleFlight<MbPdu, MbPdu> flight = this.singleFlight;
+        if (flight == null) {
+            return this.doReadModbusData(reqPdu);
+        }
+        try {
+            return flight.execute(Collections.singletonList(reqPdu), this::doReadModbusData).get(0);
+        } finally {
+            if (!MbReadCover.isRead(reqPdu)) {
+                flight.invalidate();
+            }
+        }
+    }
+
+    /**
+     * 批量读取modbus数据
+     *
+     * @param reqPdus 请求对象列表
+     * @return 响应结果列表，和请求一一对应
+     */
+    protected List<MbPdu> readModbusData(List<MbPdu> reqPdus) {
+        SingleFlight<MbPdu, MbPdu> flight = this.singleFlight;
+        if (flight == null) {
+            return this.doReadModbusData(reqPdus);
+        }
+        try {
+            return flight.execute(reqPdus, this::doReadModbusData);
+        } finally {
+            // 写操作完成之后，此前开始的读取不再被共享，写失败的时候部分数据可能已经写入，同样需要失效
+            if (!reqPdus.stream().allMatch(MbReadCover::isRead)) {
+                flight.invalidate();
+            }
+        }
+    }
+
+    /**
+     * 实际通信读取modbus数据
+     *
+     * @param reqPdu 请求对象
+     * @return 响应结果
+     */
+    protected MbPdu doReadModbusData(MbPdu reqPdu) {
+        if (this.transport != null) {
+            return this.transport.readModbusData(this.unitId, reqPdu);
+        }
+        if (this.isPipelined()) {
+            return this.doReadModbusData(Collections.singletonList(reqPdu)).get(0);
+        }
+        MbTcpRequest request = this.createRequest(reqPdu);
         try {
             MbTcpResponse response = this.readFromServer(request);
             return response.getPdu();
@@ -141,4 +533,39 @@ public class ModbusNetwork extends TcpClientBasic {
             }
         }
     }
+
+    /**
+     * 实际通信批量读取modbus数据，流水线模式下在窗口范围内连续发送，否则逐个往返
+     *
+     * @param reqPdus 请求对象列表
+     * @return 响应结果列表，和请求一一对应
+     */
+    protected List<MbPdu> doReadModbusData(List<MbPdu> reqPdus) {
+        if (this.transport != null) {
+            return this.transport.readModbusData(this.unitId, reqPdus);
+        }
+        List<MbPdu> res = new ArrayList<>(reqPdus.size());
+        if (!this.isPipelined()) {
+            reqPdus.forEach(x -> res.add(this.doReadModbusData(x)));
+            return res;
+        }
+        List<MbTcpRequest> requests = new ArrayList<>(reqPdus.size());
+        reqPdus.forEach(x -> requests.add(this.createRequest(x)));
+        this.readFromServer(requests).forEach(x -> res.add(x.getPdu()));
+        return res;
+    }
+
+    /**
+     * 创建请求
+     *
+     * @param reqPdu 请求的pdu
+     * @return 请求
+     */
+    private MbTcpRequest createRequest(MbPdu reqPdu) {
+        MbTcpRequest request = MbTcpRequest.createDefault();
+        request.getHeader().setUnitId(this.unitId);
+        request.setPdu(reqPdu);
+        request.selfCheck();
+        return request;
+    }
 }
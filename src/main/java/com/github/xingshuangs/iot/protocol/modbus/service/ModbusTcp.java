@@ -4,10 +4,16 @@ package com.github.xingshuangs.iot.protocol.modbus.service;
 import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
 import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
 import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbAddressRange;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbRangePlanner;
 import com.github.xingshuangs.iot.protocol.modbus.model.*;
 import com.github.xingshuangs.iot.utils.*;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -21,6 +27,27 @@ public class ModbusTcp extends ModbusNetwork {
 
     public static final String IP = "127.0.0.1";
 
+    /**
+     * 单次写入寄存器的最大数量
+     */
+    private static final int MAX_WRITE_REGISTER_QUANTITY = 123;
+
+    /**
+     * 多个地址范围读取时，相邻范围合并的最大间隔，单位为寄存器或线圈的个数，间隔部分会被一起读取
+     */
+    private int mergeGap = 10;
+
+    public int getMergeGap() {
+        return mergeGap;
+    }
+
+    public void setMergeGap(int mergeGap) {
+        if (mergeGap < 0) {
+            throw new IllegalArgumentException("mergeGap<0");
+        }
+        this.mergeGap = mergeGap;
+    }
+
     public ModbusTcp() {
         this(0, IP, PORT);
     }
@@ -37,6 +64,14 @@ public class ModbusTcp extends ModbusNetwork {
         super(unitId, ip, port);
     }
 
+    public ModbusTcp(int unitId, ModbusTcpGatewayConnection gateway) {
+        super(unitId, gateway.getSocketAddress(), gateway);
+    }
+
+    public ModbusTcp(int unitId, ModbusUdp udp) {
+        super(unitId, udp.getServerAddress(), udp);
+    }
+
     //region 线圈和寄存器的读取
 
     /**
@@ -50,8 +85,8 @@ public class ModbusTcp extends ModbusNetwork {
         if (address < 0) {
             throw new IllegalArgumentException("address<0");
         }
-        if (quantity < 1 || quantity > 200) {
-            throw new IllegalArgumentException("quantity<1||quantity>200");
+        if (quantity < 1 || quantity > MbRangePlanner.MAX_BIT_QUANTITY) {
+            throw new IllegalArgumentException("quantity<1||quantity>2000");
         }
         MbReadCoilRequest reqPdu = new MbReadCoilRequest(address, quantity);
         MbReadCoilResponse resPdu = (MbReadCoilResponse) this.readModbusData(reqPdu);
@@ -102,8 +137,8 @@ public class ModbusTcp extends ModbusNetwork {
         if (address < 0) {
             throw new IllegalArgumentException("address<0");
         }
-        if (quantity < 1 || quantity > 200) {
-            throw new IllegalArgumentException("quantity<1||quantity>200");
+        if (quantity < 1 || quantity > MbRangePlanner.MAX_BIT_QUANTITY) {
+            throw new IllegalArgumentException("quantity<1||quantity>2000");
         }
         MbReadDiscreteInputRequest reqPdu = new MbReadDiscreteInputRequest(address, quantity);
         MbReadDiscreteInputResponse resPdu = (MbReadDiscreteInputResponse) this.readModbusData(reqPdu);
@@ -121,7 +156,7 @@ public class ModbusTcp extends ModbusNetwork {
         if (address < 0) {
             throw new IllegalArgumentException("address<0");
         }
-        if (quantity <= 0 || quantity > 125) {
+        if (quantity <= 0 || quantity > MbRangePlanner.MAX_REGISTER_QUANTITY) {
             throw new IllegalArgumentException("quantity<=0||quantity>125");
         }
         MbReadHoldRegisterRequest reqPdu = new MbReadHoldRegisterRequest(address, quantity);
@@ -194,13 +229,304 @@ public class ModbusTcp extends ModbusNetwork {
         if (address < 0) {
             throw new IllegalArgumentException("address<0");
         }
-        if (quantity <= 0 || quantity > 125) {
+        if (quantity <= 0 || quantity > MbRangePlanner.MAX_REGISTER_QUANTITY) {
             throw new IllegalArgumentException("quantity<=0||quantity>125");
         }
         MbReadInputRegisterRequest reqPdu = new MbReadInputRegisterRequest(address, quantity);
         MbReadInputRegisterResponse resPdu = (MbReadInputRegisterResponse) this.readModbusData(reqPdu);
         return resPdu.getRegister();
     }
+
+    /**
+     * 在一次请求中写入并读取保持寄存器，服务端先写后读，功能码0x17
+     *
+     * @param readAddress  读的起始地址
+     * @param readQuantity 读的寄存器数量
+     * @param writeAddress 写的起始地址
+     * @param values       写的数据，长度为偶数
+     * @return 写入之后读取的字节数组
+     */
+    public byte[] readWriteHoldRegister(int readAddress, int readQuantity, int writeAddress, byte[] values) {
+        if (readAddress < 0 || writeAddress < 0) {
+            throw new IllegalArgumentException("readAddress<0||writeAddress<0");
+        }
+        if (readQuantity <= 0 || readQuantity > MbRangePlanner.MAX_REGISTER_QUANTITY) {
+            throw new IllegalArgumentException("readQuantity<=0||readQuantity>125");
+        }
+        if (values.length == 0 || values.length % 2 != 0 || values.length > 242) {
+            throw new IllegalArgumentException("values长度必须是偶数，且写的寄存器数量范围[1-121]");
+        }
+        MbReadWriteMultipleRegisterRequest reqPdu = new MbReadWriteMultipleRegisterRequest(readAddress, readQuantity, writeAddress, values);
+        MbReadWriteMultipleRegisterResponse resPdu = (MbReadWriteMultipleRegisterResponse) this.readModbusData(reqPdu);
+        return resPdu.getRegister();
+    }
+    //endregion
+
+    //region 线圈和离散输入 按位读写
+
+    /**
+     * 读取线圈，结果按位存储，第i位对应address+i
+     *
+     * @param address  地址
+     * @param quantity 线圈数量
+     * @return 位集合
+     */
+    public BitSet readCoilBitSet(int address, int quantity) {
+        return BitSet.valueOf(this.readCoilLongArray(address, quantity));
+    }
+
+    /**
+     * 读取线圈，结果按位存储在long数组中，第i位位于第i/64个long的第i%64位，可以直接按位异或比较变化
+     *
+     * @param address  地址
+     * @param quantity 线圈数量
+     * @return long数组，长度为(quantity+63)/64
+     */
+    public long[] readCoilLongArray(int address, int quantity) {
+        checkBitRequest(address, quantity);
+        MbReadCoilRequest reqPdu = new MbReadCoilRequest(address, quantity);
+        MbReadCoilResponse resPdu = (MbReadCoilResponse) this.readModbusData(reqPdu);
+        return BooleanUtil.byteArrayToLongArray(quantity, resPdu.getCoilStatus());
+    }
+
+    /**
+     * 读取离散输入，结果按位存储，第i位对应address+i
+     *
+     * @param address  地址
+     * @param quantity 离散输入数量
+     * @return 位集合
+     */
+    public BitSet readDiscreteInputBitSet(int address, int quantity) {
+        return BitSet.valueOf(this.readDiscreteInputLongArray(address, quantity));
+    }
+
+    /**
+     * 读取离散输入，结果按位存储在long数组中，第i位位于第i/64个long的第i%64位，可以直接按位异或比较变化
+     *
+     * @param address  地址
+     * @param quantity 离散输入数量
+     * @return long数组，长度为(quantity+63)/64
+     */
+    public long[] readDiscreteInputLongArray(int address, int quantity) {
+        checkBitRequest(address, quantity);
+        MbReadDiscreteInputRequest reqPdu = new MbReadDiscreteInputRequest(address, quantity);
+        MbReadDiscreteInputResponse resPdu = (MbReadDiscreteInputResponse) this.readModbusData(reqPdu);
+        return BooleanUtil.byteArrayToLongArray(quantity, resPdu.getInputStatus());
+    }
+
+    /**
+     * 写多线圈，第i位对应address+i
+     *
+     * @param address    地址
+     * @param quantity   线圈数量
+     * @param coilStatus 线圈状态
+     */
+    public void writeCoil(int address, int quantity, BitSet coilStatus) {
+        this.writeCoil(address, quantity, coilStatus.toLongArray());
+    }
+
+    /**
+     * 写多线圈，第i位位于第i/64个long的第i%64位，对应address+i
+     *
+     * @param address    地址
+     * @param quantity   线圈数量
+     * @param coilStatus 线圈状态，长度不足的部分按0处理
+     */
+    public void writeCoil(int address, int quantity, long[] coilStatus) {
+        if (address < 0) {
+            throw new IllegalArgumentException("address<0");
+        }
+        if (quantity < 1 || quantity > 1968) {
+            throw new IllegalArgumentException("quantity<1||quantity>1968");
+        }
+        byte[] values = BooleanUtil.longArrayToByteArray(quantity, coilStatus);
+        MbWriteMultipleCoilRequest reqPdu = new MbWriteMultipleCoilRequest(address, quantity, values);
+        this.readModbusData(reqPdu);
+    }
+
+    private static void checkBitRequest(int address, int quantity) {
+        if (address < 0) {
+            throw new IllegalArgumentException("address<0");
+        }
+        if (quantity < 1 || quantity > MbRangePlanner.MAX_BIT_QUANTITY) {
+            throw new IllegalArgumentException("quantity<1||quantity>2000");
+        }
+    }
+
+    //endregion
+
+    //region 多个地址范围的读取
+
+    /**
+     * 读取多个范围的线圈，相邻范围自动合并，超过协议最大数量自动分割，流水线模式下并发发送
+     *
+     * @param ranges 地址范围列表
+     * @return boolean列表，和地址范围一一对应
+     */
+    public List<List<Boolean>> readCoil(List<MbAddressRange> ranges) {
+        List<MbAddressRange> blocks = this.planRanges(ranges, MbRangePlanner.MAX_BIT_QUANTITY);
+        List<MbPdu> reqPdus = new ArrayList<>(blocks.size());
+        blocks.forEach(x -> reqPdus.add(new MbReadCoilRequest(x.getAddress(), x.getQuantity())));
+        List<MbPdu> resPdus = this.readModbusData(reqPdus);
+        List<byte[]> data = new ArrayList<>(resPdus.size());
+        resPdus.forEach(x -> data.add(((MbReadCoilResponse) x).getCoilStatus()));
+        return stitchBits(ranges, blocks, data);
+    }
+
+    /**
+     * 读取多个范围的离散输入，相邻范围自动合并，超过协议最大数量自动分割，流水线模式下并发发送
+     *
+     * @param ranges 地址范围列表
+     * @return boolean列表，和地址范围一一对应
+     */
+    public List<List<Boolean>> readDiscreteInput(List<MbAddressRange> ranges) {
+        List<MbAddressRange> blocks = this.planRanges(ranges, MbRangePlanner.MAX_BIT_QUANTITY);
+        List<MbPdu> reqPdus = new ArrayList<>(blocks.size());
+        blocks.forEach(x -> reqPdus.add(new MbReadDiscreteInputRequest(x.getAddress(), x.getQuantity())));
+        List<MbPdu> resPdus = this.readModbusData(reqPdus);
+        List<byte[]> data = new ArrayList<>(resPdus.size());
+        resPdus.forEach(x -> data.add(((MbReadDiscreteInputResponse) x).getInputStatus()));
+        return stitchBits(ranges, blocks, data);
+    }
+
+    /**
+     * 读取多个范围的保持寄存器，相邻范围自动合并，超过协议最大数量自动分割，流水线模式下并发发送
+     *
+     * @param ranges 地址范围列表
+     * @return 字节数组列表，和地址范围一一对应
+     */
+    public List<byte[]> readHoldRegister(List<MbAddressRange> ranges) {
+        return this.readHoldRegister(ranges, MbRangePlanner.MAX_REGISTER_QUANTITY);
+    }
+
+    /**
+     * 读取多个范围的保持寄存器
+     *
+     * @param ranges      地址范围列表
+     * @param maxQuantity 单次请求的最大寄存器数量
+     * @return 字节数组列表，和地址范围一一对应
+     */
+    private List<byte[]> readHoldRegister(List<MbAddressRange> ranges, int maxQuantity) {
+        List<MbAddressRange> blocks = this.planRanges(ranges, maxQuantity);
+        List<MbPdu> reqPdus = new ArrayList<>(blocks.size());
+        blocks.forEach(x -> reqPdus.add(new MbReadHoldRegisterRequest(x.getAddress(), x.getQuantity())));
+        List<MbPdu> resPdus = this.readModbusData(reqPdus);
+        List<byte[]> data = new ArrayList<>(resPdus.size());
+        resPdus.forEach(x -> data.add(((MbReadHoldRegisterResponse) x).getRegister()));
+        return stitchRegisters(ranges, blocks, data);
+    }
+
+    /**
+     * 读取多个范围的输入寄存器，相邻范围自动合并，超过协议最大数量自动分割，流水线模式下并发发送
+     *
+     * @param ranges 地址范围列表
+     * @return 字节数组列表，和地址范围一一对应
+     */
+    public List<byte[]> readInputRegister(List<MbAddressRange> ranges) {
+        List<MbAddressRange> blocks = this.planRanges(ranges, MbRangePlanner.MAX_REGISTER_QUANTITY);
+        List<MbPdu> reqPdus = new ArrayList<>(blocks.size());
+        blocks.forEach(x -> reqPdus.add(new MbReadInputRegisterRequest(x.getAddress(), x.getQuantity())));
+        List<MbPdu> resPdus = this.readModbusData(reqPdus);
+        List<byte[]> data = new ArrayList<>(resPdus.size());
+        resPdus.forEach(x -> data.add(((MbReadInputRegisterResponse) x).getRegister()));
+        return stitchRegisters(ranges, blocks, data);
+    }
+
+    /**
+     * 校验并规划地址范围
+     *
+     * @param ranges      地址范围列表
+     * @param maxQuantity 单次请求的最大数量
+     * @return 请求的地址范围列表
+     */
+    private List<MbAddressRange> planRanges(List<MbAddressRange> ranges, int maxQuantity) {
+        if (ranges == null || ranges.isEmpty()) {
+            throw new IllegalArgumentException("ranges不能为空");
+        }
+        for (MbAddressRange range : ranges) {
+            if (range.getAddress() < 0 || range.getQuantity() < 1 || range.getEnd() > 65536) {
+                throw new IllegalArgumentException("address<0||quantity<1||address+quantity>65536");
+            }
+        }
+        return MbRangePlanner.plan(ranges, maxQuantity, this.mergeGap);
+    }
+
+    /**
+     * 按照地址范围从请求结果中提取寄存器数据
+     *
+     * @param ranges 地址范围列表
+     * @param blocks 请求的地址范围列表，按照地址排序
+     * @param data   请求结果
+     * @return 字节数组列表，和地址范围一一对应
+     */
+    private static List<byte[]> stitchRegisters(List<MbAddressRange> ranges, List<MbAddressRange> blocks, List<byte[]> data) {
+        List<byte[]> res = new ArrayList<>(ranges.size());
+        for (MbAddressRange range : ranges) {
+            byte[] values = new byte[range.getQuantity() * 2];
+            for (int i = findBlock(blocks, range.getAddress()); i < blocks.size(); i++) {
+                MbAddressRange block = blocks.get(i);
+                if (block.getAddress() >= range.getEnd()) {
+                    break;
+                }
+                int start = Math.max(block.getAddress(), range.getAddress());
+                int end = Math.min(block.getEnd(), range.getEnd());
+                System.arraycopy(data.get(i), (start - block.getAddress()) * 2, values, (start - range.getAddress()) * 2, (end - start) * 2);
+            }
+            res.add(values);
+        }
+        return res;
+    }
+
+    /**
+     * 按照地址范围从请求结果中提取位数据
+     *
+     * @param ranges 地址范围列表
+     * @param blocks 请求的地址范围列表，按照地址排序
+     * @param data   请求结果
+     * @return boolean列表，和地址范围一一对应
+     */
+    private static List<List<Boolean>> stitchBits(List<MbAddressRange> ranges, List<MbAddressRange> blocks, List<byte[]> data) {
+        List<List<Boolean>> res = new ArrayList<>(ranges.size());
+        for (MbAddressRange range : ranges) {
+            List<Boolean> values = new ArrayList<>(range.getQuantity());
+            for (int i = findBlock(blocks, range.getAddress()); i < blocks.size(); i++) {
+                MbAddressRange block = blocks.get(i);
+                if (block.getAddress() >= range.getEnd()) {
+                    break;
+                }
+                int start = Math.max(block.getAddress(), range.getAddress());
+                int end = Math.min(block.getEnd(), range.getEnd());
+                byte[] bytes = data.get(i);
+                for (int j = start - block.getAddress(); j < end - block.getAddress(); j++) {
+                    values.add(BooleanUtil.getValue(bytes[j / 8], j % 8));
+                }
+            }
+            res.add(values);
+        }
+        return res;
+    }
+
+    /**
+     * 查找包含指定地址的请求
+     *
+     * @param blocks  请求的地址范围列表，按照地址排序
+     * @param address 地址
+     * @return 请求索引
+     */
+    private static int findBlock(List<MbAddressRange> blocks, int address) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks.get(mid).getAddress() <= address) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
     //endregion
 
     //region 通用保持寄存器 读取数据
@@ -393,4 +719,389 @@ public class ModbusTcp extends ModbusNetwork {
         this.writeHoldRegister(address, bytes);
     }
     //endregion
+
+    //region 保持寄存器 批量读写
+
+    /**
+     * 批量读取Int16数据，超过125个寄存器自动分割
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return Int16数组
+     */
+    public short[] readInt16Array(int address, int count) {
+        byte[] src = this.readHoldRegisterArray(address, count, 1);
+        short[] res = new short[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = (short) ((src[i * 2] & 0xFF) << 8 | src[i * 2 + 1] & 0xFF);
+        }
+        return res;
+    }
+
+    /**
+     * 批量读取UInt16数据，超过125个寄存器自动分割
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return UInt16数组
+     */
+    public int[] readUInt16Array(int address, int count) {
+        byte[] src = this.readHoldRegisterArray(address, count, 1);
+        int[] res = new int[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = (src[i * 2] & 0xFF) << 8 | src[i * 2 + 1] & 0xFF;
+        }
+        return res;
+    }
+
+    /**
+     * 批量读取Int32数据，默认格式BA_DC，和readInt32一致
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return Int32数组
+     */
+    public int[] readInt32Array(int address, int count) {
+        return this.readInt32Array(address, count, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量读取Int32数据，超过124个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @param format  字节格式
+     * @return Int32数组
+     */
+    public int[] readInt32Array(int address, int count, EByteBuffFormat format) {
+        byte[] src = this.readHoldRegisterArray(address, count, 2);
+        int[] order = byteOrder(format, 4);
+        int[] res = new int[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = toInt32(src, i * 4, order);
+        }
+        return res;
+    }
+
+    /**
+     * 批量读取UInt32数据，默认格式BA_DC，和readUInt32一致
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return UInt32数组
+     */
+    public long[] readUInt32Array(int address, int count) {
+        return this.readUInt32Array(address, count, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量读取UInt32数据，超过124个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @param format  字节格式
+     * @return UInt32数组
+     */
+    public long[] readUInt32Array(int address, int count, EByteBuffFormat format) {
+        byte[] src = this.readHoldRegisterArray(address, count, 2);
+        int[] order = byteOrder(format, 4);
+        long[] res = new long[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = toInt32(src, i * 4, order) & 0xFFFFFFFFL;
+        }
+        return res;
+    }
+
+    /**
+     * 批量读取Float32数据，默认格式BA_DC，和readFloat32一致
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return Float32数组
+     */
+    public float[] readFloat32Array(int address, int count) {
+        return this.readFloat32Array(address, count, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量读取Float32数据，超过124个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @param format  字节格式
+     * @return Float32数组
+     */
+    public float[] readFloat32Array(int address, int count, EByteBuffFormat format) {
+        byte[] src = this.readHoldRegisterArray(address, count, 2);
+        int[] order = byteOrder(format, 4);
+        float[] res = new float[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = Float.intBitsToFloat(toInt32(src, i * 4, order));
+        }
+        return res;
+    }
+
+    /**
+     * 批量读取Float64数据，默认格式BA_DC，和readFloat64一致
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @return Float64数组
+     */
+    public double[] readFloat64Array(int address, int count) {
+        return this.readFloat64Array(address, count, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量读取Float64数据，超过124个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @param format  字节格式
+     * @return Float64数组
+     */
+    public double[] readFloat64Array(int address, int count, EByteBuffFormat format) {
+        byte[] src = this.readHoldRegisterArray(address, count, 4);
+        int[] order = byteOrder(format, 8);
+        double[] res = new double[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = Double.longBitsToDouble(toInt64(src, i * 8, order));
+        }
+        return res;
+    }
+
+    /**
+     * 批量写入Int16数据，超过123个寄存器自动分割
+     *
+     * @param address 地址
+     * @param data    数据
+     */
+    public void writeInt16Array(int address, short[] data) {
+        byte[] bytes = new byte[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            bytes[i * 2] = (byte) (data[i] >> 8);
+            bytes[i * 2 + 1] = (byte) data[i];
+        }
+        this.writeHoldRegisterArray(address, bytes, 1);
+    }
+
+    /**
+     * 批量写入UInt16数据，超过123个寄存器自动分割
+     *
+     * @param address 地址
+     * @param data    数据，范围[0-65535]
+     */
+    public void writeUInt16Array(int address, int[] data) {
+        byte[] bytes = new byte[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] < 0 || data[i] > 65535) {
+                throw new IllegalArgumentException("value<0||value>65535");
+            }
+            bytes[i * 2] = (byte) (data[i] >> 8);
+            bytes[i * 2 + 1] = (byte) data[i];
+        }
+        this.writeHoldRegisterArray(address, bytes, 1);
+    }
+
+    /**
+     * 批量写入Int32数据，默认格式BA_DC，和writeInt32一致
+     *
+     * @param address 地址
+     * @param data    数据
+     */
+    public void writeInt32Array(int address, int[] data) {
+        this.writeInt32Array(address, data, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量写入Int32数据，超过122个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param data    数据
+     * @param format  字节格式
+     */
+    public void writeInt32Array(int address, int[] data, EByteBuffFormat format) {
+        int[] order = byteOrder(format, 4);
+        byte[] bytes = new byte[data.length * 4];
+        for (int i = 0; i < data.length; i++) {
+            putInt32(bytes, i * 4, data[i], order);
+        }
+        this.writeHoldRegisterArray(address, bytes, 2);
+    }
+
+    /**
+     * 批量写入UInt32数据，默认格式BA_DC，和writeUInt32一致
+     *
+     * @param address 地址
+     * @param data    数据
+     */
+    public void writeUInt32Array(int address, long[] data) {
+        this.writeUInt32Array(address, data, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量写入UInt32数据，超过122个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param data    数据
+     * @param format  字节格式
+     */
+    public void writeUInt32Array(int address, long[] data, EByteBuffFormat format) {
+        int[] order = byteOrder(format, 4);
+        byte[] bytes = new byte[data.length * 4];
+        for (int i = 0; i < data.length; i++) {
+            putInt32(bytes, i * 4, (int) data[i], order);
+        }
+        this.writeHoldRegisterArray(address, bytes, 2);
+    }
+
+    /**
+     * 批量写入Float32数据，默认格式BA_DC，和writeFloat32一致
+     *
+     * @param address 地址
+     * @param data    数据
+     */
+    public void writeFloat32Array(int address, float[] data) {
+        this.writeFloat32Array(address, data, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量写入Float32数据，超过122个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param data    数据
+     * @param format  字节格式
+     */
+    public void writeFloat32Array(int address, float[] data, EByteBuffFormat format) {
+        int[] order = byteOrder(format, 4);
+        byte[] bytes = new byte[data.length * 4];
+        for (int i = 0; i < data.length; i++) {
+            putInt32(bytes, i * 4, Float.floatToRawIntBits(data[i]), order);
+        }
+        this.writeHoldRegisterArray(address, bytes, 2);
+    }
+
+    /**
+     * 批量写入Float64数据，默认格式BA_DC，和writeFloat64一致
+     *
+     * @param address 地址
+     * @param data    数据
+     */
+    public void writeFloat64Array(int address, double[] data) {
+        this.writeFloat64Array(address, data, EByteBuffFormat.BA_DC);
+    }
+
+    /**
+     * 批量写入Float64数据，超过120个寄存器自动分割，单个数据不会被拆到两次请求中
+     *
+     * @param address 地址
+     * @param data    数据
+     * @param format  字节格式
+     */
+    public void writeFloat64Array(int address, double[] data, EByteBuffFormat format) {
+        int[] order = byteOrder(format, 8);
+        byte[] bytes = new byte[data.length * 8];
+        for (int i = 0; i < data.length; i++) {
+            putInt64(bytes, i * 8, Double.doubleToRawLongBits(data[i]), order);
+        }
+        this.writeHoldRegisterArray(address, bytes, 4);
+    }
+
+    /**
+     * 读取连续的保持寄存器，按照单个数据占用的寄存器数量对齐分割，流水线模式下并发发送
+     *
+     * @param address 地址
+     * @param count   数据个数
+     * @param words   单个数据占用的寄存器数量
+     * @return 字节数组
+     */
+    private byte[] readHoldRegisterArray(int address, int count, int words) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count<1");
+        }
+        int maxQuantity = MbRangePlanner.MAX_REGISTER_QUANTITY / words * words;
+        if (count * words <= maxQuantity) {
+            return this.readHoldRegister(address, count * words);
+        }
+        return this.readHoldRegister(Collections.singletonList(new MbAddressRange(address, count * words)), maxQuantity).get(0);
+    }
+
+    /**
+     * 写入连续的保持寄存器，按照单个数据占用的寄存器数量对齐分割，流水线模式下并发发送
+     *
+     * @param address 地址
+     * @param values  字节数组
+     * @param words   单个数据占用的寄存器数量
+     */
+    private void writeHoldRegisterArray(int address, byte[] values, int words) {
+        if (address < 0 || values.length == 0 || address + values.length / 2 > 65536) {
+            throw new IllegalArgumentException("address<0||data为空||address+quantity>65536");
+        }
+        int maxBytes = MAX_WRITE_REGISTER_QUANTITY / words * words * 2;
+        List<MbPdu> reqPdus = new ArrayList<>(values.length / maxBytes + 1);
+        for (int offset = 0; offset < values.length; offset += maxBytes) {
+            byte[] chunk = Arrays.copyOfRange(values, offset, Math.min(offset + maxBytes, values.length));
+            reqPdus.add(new MbWriteMultipleRegisterRequest(address + offset / 2, chunk.length / 2, chunk));
+        }
+        this.readModbusData(reqPdus);
+    }
+
+    /**
+     * 获取字节格式对应的字节排列，第i个大端字节位于数据中的第order[i]个字节，和ByteBuffBase的排列一致
+     *
+     * @param format 字节格式
+     * @param size   数据字节数，4或8
+     * @return 字节排列
+     */
+    private static int[] byteOrder(EByteBuffFormat format, int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            switch (format) {
+                case AB_CD:
+                    order[i] = size - 1 - i;
+                    break;
+                case BA_DC:
+                    order[i] = size - 2 - i / 2 * 2 + i % 2;
+                    break;
+                case CD_AB:
+                    order[i] = i ^ 1;
+                    break;
+                case DC_BA:
+                    order[i] = i;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未实现该数据格式");
+            }
+        }
+        return order;
+    }
+
+    private static int toInt32(byte[] src, int index, int[] order) {
+        return (src[index + order[0]] & 0xFF) << 24
+                | (src[index + order[1]] & 0xFF) << 16
+                | (src[index + order[2]] & 0xFF) << 8
+                | src[index + order[3]] & 0xFF;
+    }
+
+    private static long toInt64(byte[] src, int index, int[] order) {
+        long res = 0;
+        for (int i = 0; i < 8; i++) {
+            res = res << 8 | src[index + order[i]] & 0xFF;
+        }
+        return res;
+    }
+
+    private static void putInt32(byte[] dst, int index, int value, int[] order) {
+        for (int i = 0; i < 4; i++) {
+            dst[index + order[i]] = (byte) (value >>> (24 - i * 8));
+        }
+    }
+
+    private static void putInt64(byte[] dst, int index, long value, int[] order) {
+        for (int i = 0; i < 8; i++) {
+            dst[index + order[i]] = (byte) (value >>> (56 - i * 8));
+        }
+    }
+
+    //endregion
 }
@@ -0,0 +1,447 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
+import com.github.xingshuangs.iot.net.SocketUtils;
+import com.github.xingshuangs.iot.net.client.TcpClientBasic;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbTcpRequest;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbTcpResponse;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbapHeader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个从站共享的modbus TCP连接，用于TCP转RTU的网关
+ * <p>
+ * 所有从站的请求通过同一个socket发送，响应由独立的读取线程按照事务元标识符匹配；
+ * 每个从站的请求排队，从站之间轮询发送，每个从站同一时刻只有一个请求在等待响应，整个连接的等待数量不超过窗口；
+ * 某个从站响应超时只让该请求失败，释放窗口，不会断开共享的连接，超时之后到达的响应直接丢弃；
+ * 超时由定时器从发送开始计时，与等待的线程无关，等待的线程被中断时同样撤回它的请求并释放从站
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class ModbusTcpGatewayConnection extends TcpClientBasic implements IMbTransport {
+
+    /**
+     * 所有共享连接公用的超时定时器
+     */
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    /**
+     * 锁
+     */
+    private final Object objLock = new Object();
+
+    /**
+     * 每个从站的请求队列
+     */
+    private final Map<Integer, ArrayDeque<Pending>> queues = new HashMap<>();
+
+    /**
+     * 有请求待发送且没有请求在等待响应的从站，按照轮询顺序排列
+     */
+    private final ArrayDeque<Integer> readyUnits = new ArrayDeque<>();
+
+    /**
+     * 有请求在等待响应的从站
+     */
+    private final Set<Integer> busyUnits = new HashSet<>();
+
+    /**
+     * 等待响应的请求，key为事务元标识符
+     */
+    private final Map<Integer, Pending> inFlight = new HashMap<>();
+
+    /**
+     * 当前读取线程对应的socket
+     */
+    private Socket readerSocket;
+
+    /**
+     * 整个连接同时等待响应的最大请求数量
+     */
+    private int window = 4;
+
+    /**
+     * 单个请求从发送开始的响应超时时间，单位毫秒
+     */
+    private int unitTimeout = 3000;
+
+    public ModbusTcpGatewayConnection(String host) {
+        this(host, ModbusTcp.PORT);
+    }
+
+    public ModbusTcpGatewayConnection(String host, int port) {
+        super(host, port);
+    }
+
+    InetSocketAddress getSocketAddress() {
+        return socketAddress;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        if (window < 1 || window > 256) {
+            throw new IllegalArgumentException("window范围[1-256]");
+        }
+        this.window = window;
+    }
+
+    public int getUnitTimeout() {
+        return unitTimeout;
+    }
+
+    public void setUnitTimeout(int unitTimeout) {
+        if (unitTimeout <= 0) {
+            throw new IllegalArgumentException("unitTimeout<=0");
+        }
+        this.unitTimeout = unitTimeout;
+    }
+
+    /**
+     * 创建超时定时器，取消的任务立即移除，避免大量已响应的请求堆积在定时器中
+     *
+     * @return 定时器
+     */
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "iot-modbus-gateway-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * 创建指定从站的客户端，客户端的所有请求都通过该共享连接发送
+     *
+     * @param unitId 从站编号
+     * @return 客户端
+     */
+    public ModbusTcp createClient(int unitId) {
+        return new ModbusTcp(unitId, this);
+    }
+
+    /**
+     * 发送请求并等待响应
+     *
+     * @param unitId 从站编号
+     * @param reqPdu 请求对象
+     * @return 响应结果
+     */
+    @Override
+    public MbPdu readModbusData(int unitId, MbPdu reqPdu) {
+        return this.readModbusData(unitId, Collections.singletonList(reqPdu)).get(0);
+    }
+
+    /**
+     * 批量发送请求并等待响应，同一个从站的请求依次排队
+     *
+     * @param unitId  从站编号
+     * @param reqPdus 请求对象列表
+     * @return 响应结果列表，和请求一一对应
+     */
+    @Override
+    public List<MbPdu> readModbusData(int unitId, List<MbPdu> reqPdus) {
+        if (unitId < 0 || unitId > 255) {
+            throw new IllegalArgumentException("unitId范围[0-255]");
+        }
+        List<Pending> pendings = new ArrayList<>(reqPdus.size());
+        for (MbPdu reqPdu : reqPdus) {
+            MbTcpRequest request = MbTcpRequest.createDefault();
+            request.getHeader().setUnitId(unitId);
+            request.setPdu(reqPdu);
+            request.selfCheck();
+            CommEvent event = CommEvent.modbusRequest().address(this.socketAddress)
+                    .functionCode(reqPdu.getFunctionCode()).itemCount(1).pduCount(1);
+            pendings.add(new Pending(unitId, request, event));
+        }
+        synchronized (this.objLock) {
+            this.queues.computeIfAbsent(unitId, x -> new ArrayDeque<>()).addAll(pendings);
+            if (!this.busyUnits.contains(unitId) && !this.readyUnits.contains(unitId)) {
+                this.readyUnits.add(unitId);
+            }
+            this.dispatch();
+        }
+        // 每个请求都要等待，被中断时剩余的请求同样被撤回，不会占用从站和窗口
+        List<MbPdu> res = new ArrayList<>(pendings.size());
+        RuntimeException exception = null;
+        for (Pending pending : pendings) {
+            try {
+                MbTcpResponse ack = this.await(pending);
+                ModbusNetwork.checkResult(pending.request, ack);
+                res.add(ack.getPdu());
+            } catch (RuntimeException e) {
+                exception = exception == null ? e : exception;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        return res;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this.objLock) {
+            this.readerSocket = null;
+            super.close();
+            ModbusCommException exception = new ModbusCommException("共享连接已关闭");
+            this.failInFlight(exception);
+            this.failQueued(exception);
+        }
+    }
+
+    //region 发送和接收，需要在锁的保护下调用
+
+    /**
+     * 在窗口允许的范围内，轮询各个从站发送请求
+     */
+    private void dispatch() {
+        while (this.inFlight.size() < this.window && !this.readyUnits.isEmpty()) {
+            Integer unitId = this.readyUnits.poll();
+            ArrayDeque<Pending> queue = this.queues.get(unitId);
+            Pending pending = queue.poll();
+            if (queue.isEmpty()) {
+                this.queues.remove(unitId);
+            }
+            if (pending == null || pending.future.isDone()) {
+                this.releaseUnit(unitId);
+                continue;
+            }
+            byte[] sendData = pending.request.toByteArray();
+            try {
+                Socket socket = this.getAvailableSocket();
+                if (socket != this.readerSocket) {
+                    this.startReader(socket);
+                }
+                this.write(sendData);
+            } catch (Exception e) {
+                log.error("共享连接[{}]发送失败，{}", this.socketAddress, e.getMessage());
+                pending.future.completeExceptionally(e);
+                // 连接建立或者发送失败，排队的请求全部失败，避免一直等待
+                this.onLinkError(e);
+                this.failQueued(e);
+                return;
+            }
+            pending.event.bytes(sendData.length);
+            this.busyUnits.add(unitId);
+            this.inFlight.put(pending.request.getHeader().getTransactionId(), pending);
+            pending.timeout = TIMER.schedule(() -> this.abandon(pending,
+                            new ModbusCommException(String.format("从站[%d]响应超时", pending.unitId))),
+                    this.unitTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 从站的请求完成之后，有剩余请求的从站排到轮询队尾
+     *
+     * @param unitId 从站编号
+     */
+    private void releaseUnit(int unitId) {
+        this.busyUnits.remove(unitId);
+        if (this.queues.containsKey(unitId) && !this.readyUnits.contains(unitId)) {
+            this.readyUnits.add(unitId);
+        }
+    }
+
+    /**
+     * 启动读取线程
+     *
+     * @param socket socket对象
+     */
+    private void startReader(Socket socket) {
+        this.readerSocket = socket;
+        Thread thread = new Thread(() -> this.readLoop(socket), "iot-modbus-gateway-" + this.socketAddress.getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 连接异常，等待响应的请求全部失败，排队的请求在重新连接之后继续发送
+     *
+     * @param e 异常
+     */
+    private void onLinkError(Exception e) {
+        this.readerSocket = null;
+        super.close();
+        this.failInFlight(e);
+    }
+
+    /**
+     * 排队的请求全部失败
+     *
+     * @param e 异常
+     */
+    private void failQueued(Exception e) {
+        this.queues.values().forEach(x -> x.forEach(p -> p.future.completeExceptionally(e)));
+        this.queues.clear();
+        this.readyUnits.clear();
+    }
+
+    /**
+     * 等待响应的请求全部失败
+     *
+     * @param e 异常
+     */
+    private void failInFlight(Exception e) {
+        for (Pending pending : this.inFlight.values()) {
+            pending.cancelTimeout();
+            pending.future.completeExceptionally(e);
+            this.busyUnits.remove(pending.unitId);
+        }
+        this.inFlight.clear();
+        List<Integer> units = new ArrayList<>(this.queues.keySet());
+        units.stream().filter(x -> !this.busyUnits.contains(x) && !this.readyUnits.contains(x)).forEach(this.readyUnits::add);
+    }
+
+    //endregion
+
+    /**
+     * 撤回请求，已发送的从等待响应中移除并释放从站和窗口，排队中的从队列中移除，请求以指定异常失败；
+     * 请求已经收到响应或者已经失败的不做处理
+     *
+     * @param pending 请求
+     * @param e       异常
+     */
+    private void abandon(Pending pending, Exception e) {
+        synchronized (this.objLock) {
+            pending.cancelTimeout();
+            if (this.inFlight.remove(pending.request.getHeader().getTransactionId(), pending)) {
+                this.releaseUnit(pending.unitId);
+                this.dispatch();
+            } else {
+                ArrayDeque<Pending> queue = this.queues.get(pending.unitId);
+                if (queue == null || !queue.remove(pending)) {
+                    return;
+                }
+                if (queue.isEmpty()) {
+                    this.queues.remove(pending.unitId);
+                    this.readyUnits.remove(pending.unitId);
+                }
+            }
+        }
+        pending.future.completeExceptionally(e);
+    }
+
+    /**
+     * 读取线程，持续读取响应并按照事务元标识符匹配
+     *
+     * @param socket socket对象
+     */
+    private void readLoop(Socket socket) {
+        try {
+            while (true) {
+                byte[] data = new byte[MbapHeader.BYTE_LENGTH];
+                // 超时时间为0，一直等待，单个请求的超时由定时器处理
+                SocketUtils.read(socket, data, 0, data.length, -1, 0);
+                MbapHeader header = MbapHeader.fromBytes(data);
+                byte[] remain = new byte[header.getLength() - 1];
+                SocketUtils.read(socket, remain, 0, remain.length, -1, 0);
+                MbTcpResponse ack = MbTcpResponse.fromBytes(header, remain);
+                Pending pending;
+                synchronized (this.objLock) {
+                    pending = this.inFlight.remove(header.getTransactionId());
+                    if (pending == null) {
+                        log.warn("共享连接[{}]丢弃从站[{}]超时或未知的响应，事务元标识符[{}]",
+                                this.socketAddress, header.getUnitId(), header.getTransactionId());
+                        continue;
+                    }
+                    pending.cancelTimeout();
+                    this.releaseUnit(pending.unitId);
+                    this.dispatch();
+                }
+                pending.event.bytes(MbapHeader.BYTE_LENGTH + remain.length);
+                pending.future.complete(ack);
+            }
+        } catch (Exception e) {
+            synchronized (this.objLock) {
+                if (socket == this.readerSocket) {
+                    log.error("共享连接[{}]读取失败，{}", this.socketAddress, e.getMessage());
+                    this.onLinkError(e);
+                    this.dispatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * 等待响应，超时由定时器处理，被中断时撤回请求
+     *
+     * @param pending 请求
+     * @return 响应
+     */
+    private MbTcpResponse await(Pending pending) {
+        try {
+            MbTcpResponse ack = pending.future.get();
+            pending.event.success();
+            return ack;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ModbusCommException exception = new ModbusCommException(e);
+            this.abandon(pending, exception);
+            throw exception;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ModbusCommException(e.getCause());
+        } finally {
+            pending.event.commit();
+        }
+    }
+
+    /**
+     * 请求
+     */
+    private static class Pending {
+
+        final int unitId;
+
+        final MbTcpRequest request;
+
+        final CompletableFuture<MbTcpResponse> future = new CompletableFuture<>();
+
+        final CommEvent event;
+
+        /**
+         * 响应超时任务，发送之后才有，使用objLock同步
+         */
+        ScheduledFuture<?> timeout;
+
+        Pending(int unitId, MbTcpRequest request, CommEvent event) {
+            this.unitId = unitId;
+            this.request = request;
+            this.event = event;
+        }
+
+        void cancelTimeout() {
+            if (this.timeout != null) {
+                this.timeout.cancel(false);
+                this.timeout = null;
+            }
+        }
+    }
+}
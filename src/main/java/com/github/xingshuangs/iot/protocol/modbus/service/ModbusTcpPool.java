@@ -0,0 +1,81 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.net.client.TcpClientPool;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+
+import java.util.List;
+
+/**
+ * 连接池方式的modbus tcp客户端，和{@link ModbusTcp}的读写接口完全一致；
+ * 每次请求从池中租借一个独立连接，不同线程的请求分别占用不同的socket并行执行，互不等待
+ *
+ * @author xingshuang
+ */
+public class ModbusTcpPool extends ModbusTcp {
+
+    /**
+     * 默认最小连接数
+     */
+    public static final int DEFAULT_MIN_SIZE = 1;
+
+    /**
+     * 默认最大连接数
+     */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /**
+     * 从站编号
+     */
+    private final int poolUnitId;
+
+    /**
+     * 连接池
+     */
+    private final TcpClientPool<ModbusTcp> pool;
+
+    public TcpClientPool<ModbusTcp> getPool() {
+        return pool;
+    }
+
+    public ModbusTcpPool(int unitId, String ip) {
+        this(unitId, ip, PORT, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    public ModbusTcpPool(int unitId, String ip, int port, int minSize, int maxSize) {
+        super(unitId, ip, port);
+        this.poolUnitId = unitId;
+        this.pool = new TcpClientPool<>(this::createClient, minSize, maxSize);
+    }
+
+    /**
+     * 创建池中的连接，沿用当前对象的超时和流水线配置，均为长连接
+     *
+     * @return ModbusTcp
+     */
+    private ModbusTcp createClient() {
+        ModbusTcp client = new ModbusTcp(this.poolUnitId, this.socketAddress.getHostString(), this.socketAddress.getPort());
+        client.setConnectTimeout(this.getConnectTimeout());
+        client.setReceiveTimeout(this.getReceiveTimeout());
+        client.setPipelineWindow(this.getPipelineWindow());
+        return client;
+    }
+
+    @Override
+    protected MbPdu doReadModbusData(MbPdu reqPdu) {
+        return this.pool.execute(x -> x.doReadModbusData(reqPdu));
+    }
+
+    @Override
+    protected List<MbPdu> doReadModbusData(List<MbPdu> reqPdus) {
+        return this.pool.execute(x -> x.doReadModbusData(reqPdus));
+    }
+
+    /**
+     * 关闭连接池以及池中所有的连接
+     */
+    @Override
+    public void close() {
+        this.pool.close();
+    }
+}
@@ -0,0 +1,714 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
+import com.github.xingshuangs.iot.net.server.LengthFieldFrameDecoder;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.net.server.NioReactor;
+import com.github.xingshuangs.iot.net.server.NioTcpServerBasic;
+import com.github.xingshuangs.iot.net.server.UdpServerBasic;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbExceptionCode;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import com.github.xingshuangs.iot.protocol.modbus.model.*;
+import com.github.xingshuangs.iot.utils.BooleanUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * modbus TCP的服务端（从站）
+ * <p>
+ * 基于NIO实现，按照MBAP头中的长度拆包；每个从站编号对应一份独立的数据，包括线圈、离散量输入、保持寄存器和输入寄存器，
+ * 各65536个，位数据用long数组按位存储，寄存器用short数组存储，不同从站、不同数据区的读写互不阻塞
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class ModbusTcpServer extends NioTcpServerBasic {
+
+    /**
+     * 从站编号的数量
+     */
+    private static final int UNIT_COUNT = 256;
+
+    /**
+     * 单次读取线圈或离散量输入的最大数量
+     */
+    private static final int MAX_READ_BIT = 2000;
+
+    /**
+     * 单次读取寄存器的最大数量
+     */
+    private static final int MAX_READ_REGISTER = 125;
+
+    /**
+     * 单次写入线圈的最大数量
+     */
+    private static final int MAX_WRITE_BIT = 1968;
+
+    /**
+     * 单次写入寄存器的最大数量
+     */
+    private static final int MAX_WRITE_REGISTER = 123;
+
+    /**
+     * 读/写多个寄存器时单次写入寄存器的最大数量
+     */
+    private static final int MAX_READ_WRITE_REGISTER = 121;
+
+    /**
+     * 添加从站的操作锁
+     */
+    private final Object objLock = new Object();
+
+    /**
+     * 从站数据，按照从站编号索引
+     */
+    private final AtomicReferenceArray<MbDataBank> banks = new AtomicReferenceArray<>(UNIT_COUNT);
+
+    /**
+     * UDP服务端，null表示未启动
+     */
+    private volatile UdpServerBasic udpServer;
+
+    /**
+     * UDP接收线程
+     */
+    private Thread udpThread;
+
+    /**
+     * 是否自动创建从站，true：任意从站编号的请求都会创建对应的数据，false：只响应已添加的从站，其他从站的请求不响应
+     */
+    private boolean autoCreateUnit = true;
+
+    public boolean isAutoCreateUnit() {
+        return autoCreateUnit;
+    }
+
+    public void setAutoCreateUnit(boolean autoCreateUnit) {
+        this.autoCreateUnit = autoCreateUnit;
+    }
+
+    public ModbusTcpServer() {
+        this(ModbusTcp.PORT);
+    }
+
+    public ModbusTcpServer(int port) {
+        this.port = port;
+        this.frameDecoder = LengthFieldFrameDecoder.createMbap();
+    }
+
+    public ModbusTcpServer(int port, NioReactor reactor) {
+        this(null, port, reactor);
+    }
+
+    public ModbusTcpServer(String host, int port, NioReactor reactor) {
+        super(reactor);
+        this.host = host;
+        this.port = port;
+        this.frameDecoder = LengthFieldFrameDecoder.createMbap();
+    }
+
+    //region 从站
+
+    /**
+     * 添加从站
+     *
+     * @param unitIds 从站编号
+     */
+    public void addUnit(int... unitIds) {
+        for (int unitId : unitIds) {
+            this.getBank(unitId);
+        }
+    }
+
+    /**
+     * 移除从站及其数据
+     *
+     * @param unitId 从站编号
+     */
+    public void removeUnit(int unitId) {
+        checkUnitId(unitId);
+        this.banks.set(unitId, null);
+    }
+
+    /**
+     * 获取已添加的从站编号
+     *
+     * @return 从站编号列表
+     */
+    public List<Integer> getUnits() {
+        List<Integer> res = new ArrayList<>();
+        for (int i = 0; i < UNIT_COUNT; i++) {
+            if (this.banks.get(i) != null) {
+                res.add(i);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 获取从站数据，不存在则创建
+     *
+     * @param unitId 从站编号
+     * @return 从站数据
+     */
+    private MbDataBank getBank(int unitId) {
+        checkUnitId(unitId);
+        MbDataBank bank = this.banks.get(unitId);
+        if (bank != null) {
+            return bank;
+        }
+        synchronized (this.objLock) {
+            bank = this.banks.get(unitId);
+            if (bank == null) {
+                log.debug("服务端添加从站[{}]", unitId);
+                bank = new MbDataBank();
+                this.banks.set(unitId, bank);
+            }
+            return bank;
+        }
+    }
+
+    private static void checkUnitId(int unitId) {
+        if (unitId < 0 || unitId >= UNIT_COUNT) {
+            throw new IllegalArgumentException("unitId范围[0-255]");
+        }
+    }
+
+    private static void checkRange(MbBitArea area, int address, int quantity) {
+        if (!area.contains(address, quantity)) {
+            throw new IllegalArgumentException("地址范围[0-65535]，address+quantity不能超过65536");
+        }
+    }
+
+    private static void checkRange(MbRegisterArea area, int address, int quantity) {
+        if (!area.contains(address, quantity)) {
+            throw new IllegalArgumentException("地址范围[0-65535]，address+quantity不能超过65536");
+        }
+    }
+
+    //endregion
+
+    //region 本地读写数据
+
+    /**
+     * 读取线圈
+     *
+     * @param unitId   从站编号
+     * @param address  地址
+     * @param quantity 线圈数量
+     * @return boolean列表
+     */
+    public List<Boolean> readCoil(int unitId, int address, int quantity) {
+        MbBitArea area = this.getBank(unitId).getCoils();
+        checkRange(area, address, quantity);
+        return BooleanUtil.byteArrayToList(quantity, area.read(address, quantity));
+    }
+
+    /**
+     * 写单线圈
+     *
+     * @param unitId     从站编号
+     * @param address    地址
+     * @param coilStatus 线圈状态
+     */
+    public void writeCoil(int unitId, int address, boolean coilStatus) {
+        MbBitArea area = this.getBank(unitId).getCoils();
+        checkRange(area, address, 1);
+        area.set(address, coilStatus);
+    }
+
+    /**
+     * 写多线圈
+     *
+     * @param unitId     从站编号
+     * @param address    地址
+     * @param coilStatus 线圈状态列表
+     */
+    public void writeCoil(int unitId, int address, List<Boolean> coilStatus) {
+        MbBitArea area = this.getBank(unitId).getCoils();
+        checkRange(area, address, coilStatus.size());
+        area.write(address, coilStatus.size(), toBitBytes(coilStatus));
+    }
+
+    /**
+     * 读取离散量输入
+     *
+     * @param unitId   从站编号
+     * @param address  地址
+     * @param quantity 数量
+     * @return boolean列表
+     */
+    public List<Boolean> readDiscreteInput(int unitId, int address, int quantity) {
+        MbBitArea area = this.getBank(unitId).getDiscreteInputs();
+        checkRange(area, address, quantity);
+        return BooleanUtil.byteArrayToList(quantity, area.read(address, quantity));
+    }
+
+    /**
+     * 写单个离散量输入，客户端只能读取
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param status  状态
+     */
+    public void writeDiscreteInput(int unitId, int address, boolean status) {
+        MbBitArea area = this.getBank(unitId).getDiscreteInputs();
+        checkRange(area, address, 1);
+        area.set(address, status);
+    }
+
+    /**
+     * 写多个离散量输入，客户端只能读取
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param status  状态列表
+     */
+    public void writeDiscreteInput(int unitId, int address, List<Boolean> status) {
+        MbBitArea area = this.getBank(unitId).getDiscreteInputs();
+        checkRange(area, address, status.size());
+        area.write(address, status.size(), toBitBytes(status));
+    }
+
+    /**
+     * 读取保持寄存器
+     *
+     * @param unitId   从站编号
+     * @param address  地址
+     * @param quantity 寄存器数量
+     * @return 字节数组，大端格式
+     */
+    public byte[] readHoldRegister(int unitId, int address, int quantity) {
+        MbRegisterArea area = this.getBank(unitId).getHoldRegisters();
+        checkRange(area, address, quantity);
+        return area.read(address, quantity);
+    }
+
+    /**
+     * 写单个保持寄存器
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param value   数值，只取低16位
+     */
+    public void writeHoldRegister(int unitId, int address, int value) {
+        MbRegisterArea area = this.getBank(unitId).getHoldRegisters();
+        checkRange(area, address, 1);
+        area.set(address, value);
+    }
+
+    /**
+     * 写多个保持寄存器
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param values  字节数组，大端格式，长度为偶数
+     */
+    public void writeHoldRegister(int unitId, int address, byte[] values) {
+        MbRegisterArea area = this.getBank(unitId).getHoldRegisters();
+        checkRegisterBytes(values);
+        checkRange(area, address, values.length / 2);
+        area.write(address, values);
+    }
+
+    /**
+     * 读取输入寄存器
+     *
+     * @param unitId   从站编号
+     * @param address  地址
+     * @param quantity 寄存器数量
+     * @return 字节数组，大端格式
+     */
+    public byte[] readInputRegister(int unitId, int address, int quantity) {
+        MbRegisterArea area = this.getBank(unitId).getInputRegisters();
+        checkRange(area, address, quantity);
+        return area.read(address, quantity);
+    }
+
+    /**
+     * 写单个输入寄存器，客户端只能读取
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param value   数值，只取低16位
+     */
+    public void writeInputRegister(int unitId, int address, int value) {
+        MbRegisterArea area = this.getBank(unitId).getInputRegisters();
+        checkRange(area, address, 1);
+        area.set(address, value);
+    }
+
+    /**
+     * 写多个输入寄存器，客户端只能读取
+     *
+     * @param unitId  从站编号
+     * @param address 地址
+     * @param values  字节数组，大端格式，长度为偶数
+     */
+    public void writeInputRegister(int unitId, int address, byte[] values) {
+        MbRegisterArea area = this.getBank(unitId).getInputRegisters();
+        checkRegisterBytes(values);
+        checkRange(area, address, values.length / 2);
+        area.write(address, values);
+    }
+
+    private static void checkRegisterBytes(byte[] values) {
+        if (values == null || values.length == 0 || values.length % 2 != 0) {
+            throw new IllegalArgumentException("寄存器数据的字节长度必须为大于0的偶数");
+        }
+    }
+
+    /**
+     * boolean列表按照modbus的格式打包，第一个位在第一个字节的最低位
+     *
+     * @param list boolean列表
+     * @return 字节数组
+     */
+    private static byte[] toBitBytes(List<Boolean> list) {
+        byte[] res = new byte[(list.size() + 7) / 8];
+        for (int i = 0; i < list.size(); i++) {
+            if (Boolean.TRUE.equals(list.get(i))) {
+                res[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        return res;
+    }
+
+    //endregion
+
+    //region UDP
+
+    /**
+     * 在默认端口启动UDP服务，和TCP服务共用从站数据，独立于TCP服务的启动和停止
+     */
+    public void startUdp() {
+        this.startUdp(ModbusTcp.PORT);
+    }
+
+    /**
+     * 启动UDP服务，和TCP服务共用从站数据，独立于TCP服务的启动和停止
+     *
+     * @param port 端口号
+     */
+    public synchronized void startUdp(int port) {
+        this.stopUdp();
+        UdpServerBasic server = new UdpServerBasic(port);
+        server.getAvailableSocket();
+        this.udpServer = server;
+        this.udpThread = new Thread(() -> this.udpLoop(server), "iot-modbus-udp-server-" + port);
+        this.udpThread.setDaemon(true);
+        this.udpThread.start();
+        log.debug("开启modbus UDP服务端，端口号[{}]", port);
+    }
+
+    /**
+     * 停止UDP服务
+     */
+    public synchronized void stopUdp() {
+        UdpServerBasic server = this.udpServer;
+        this.udpServer = null;
+        if (server != null) {
+            server.close();
+            // 阻塞在接收上的线程退出之后端口才真正释放
+            try {
+                this.udpThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.udpThread = null;
+            log.debug("关闭modbus UDP服务端，端口号[{}]", server.getPort());
+        }
+    }
+
+    /**
+     * UDP服务是否在运行
+     *
+     * @return true：运行，false：停止
+     */
+    public boolean isUdpAlive() {
+        return this.udpServer != null;
+    }
+
+    /**
+     * UDP接收线程，每个数据报是一个完整的MBAP报文，在接收线程中直接处理并回复到来源地址
+     *
+     * @param server UDP服务端
+     */
+    private void udpLoop(UdpServerBasic server) {
+        byte[] buffer = new byte[MbapHeader.BYTE_LENGTH + 253];
+        while (server == this.udpServer) {
+            try {
+                DatagramPacket packet = server.read(buffer);
+                int length = packet.getLength();
+                if (length <= MbapHeader.BYTE_LENGTH) {
+                    continue;
+                }
+                MbapHeader header = MbapHeader.fromBytes(buffer);
+                if (header.getProtocolId() != 0 || header.getLength() + 6 != length) {
+                    log.warn("客户端[{}]的UDP数据报无效，丢弃", packet.getSocketAddress());
+                    continue;
+                }
+                byte[] response = this.handleFrame(packet.getSocketAddress(), header, Arrays.copyOf(buffer, length));
+                if (response != null) {
+                    server.write(response, packet.getSocketAddress());
+                }
+            } catch (Exception e) {
+                if (server == this.udpServer) {
+                    log.error("modbus UDP服务端处理异常，{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    //endregion
+
+    //region 客户端请求处理
+
+    @Override
+    protected void onFrame(NioConnection connection, byte[] frame) {
+        MbapHeader header = MbapHeader.fromBytes(frame);
+        if (header.getProtocolId() != 0) {
+            log.error("客户端[{}]的协议标识符[{}]不是modbus，断开连接", connection.getRemoteAddress(), header.getProtocolId());
+            connection.close();
+            return;
+        }
+        byte[] response = this.handleFrame(connection.getRemoteAddress(), header, frame);
+        if (response != null) {
+            this.write(connection, response);
+        }
+    }
+
+    /**
+     * 处理一个完整的MBAP报文，TCP和UDP共用
+     *
+     * @param remote 客户端地址
+     * @param header MBAP头
+     * @param frame  原始报文
+     * @return 响应报文，null表示不响应
+     */
+    private byte[] handleFrame(SocketAddress remote, MbapHeader header, byte[] frame) {
+        MbDataBank bank = this.autoCreateUnit ? this.getBank(header.getUnitId()) : this.banks.get(header.getUnitId());
+        if (bank == null) {
+            log.warn("客户端[{}]访问的从站[{}]不存在，不响应", remote, header.getUnitId());
+            return null;
+        }
+        byte code = frame.length > MbapHeader.BYTE_LENGTH ? frame[MbapHeader.BYTE_LENGTH] : 0;
+        CommEvent event = CommEvent.serverRequest().address(remote).pduCount(1).itemCount(1)
+                .functionCode(EMbFunctionCode.from(code)).bytes(frame.length);
+        try {
+            byte[] pdu;
+            try {
+                MbPdu req = MbPdu.fromBytesToRequest(frame, MbapHeader.BYTE_LENGTH);
+                pdu = this.doRequestHandle(bank, req, frame);
+            } catch (ModbusCommException e) {
+                pdu = createErrorPdu(code, EMbExceptionCode.ILLEGAL_FUNCTION);
+            } catch (IndexOutOfBoundsException e) {
+                pdu = createErrorPdu(code, EMbExceptionCode.ILLEGAL_DATA_VALUE);
+            } catch (Exception e) {
+                log.error("客户端[{}]请求处理异常，{}", remote, e.getMessage(), e);
+                pdu = createErrorPdu(code, EMbExceptionCode.SLAVE_DEVICE_FAILURE);
+            }
+            byte[] response = ByteWriteBuff.newInstance(MbapHeader.BYTE_LENGTH + pdu.length)
+                    .putShort(header.getTransactionId())
+                    .putShort(0)
+                    .putShort(pdu.length + 1)
+                    .putByte(header.getUnitId())
+                    .putBytes(pdu)
+                    .getData();
+            event.bytes(response.length);
+            if ((pdu[0] & 0x80) == 0) {
+                event.success();
+            }
+            return response;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 处理请求
+     *
+     * @param bank  从站数据
+     * @param req   请求
+     * @param frame 原始报文
+     * @return 响应的pdu
+     */
+    private byte[] doRequestHandle(MbDataBank bank, MbPdu req, byte[] frame) {
+        byte code = req.getFunctionCode().getCode();
+        switch (req.getFunctionCode()) {
+            case READ_COIL: {
+                MbReadCoilRequest p = (MbReadCoilRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getCoils().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_READ_BIT);
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                MbReadCoilResponse res = new MbReadCoilResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setCoilStatus(bank.getCoils().read(p.getAddress(), p.getQuantity()));
+                res.setCount(res.getCoilStatus().length);
+                return res.toByteArray();
+            }
+            case READ_DISCRETE_INPUT: {
+                MbReadDiscreteInputRequest p = (MbReadDiscreteInputRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getDiscreteInputs().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_READ_BIT);
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                MbReadDiscreteInputResponse res = new MbReadDiscreteInputResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setInputStatus(bank.getDiscreteInputs().read(p.getAddress(), p.getQuantity()));
+                res.setCount(res.getInputStatus().length);
+                return res.toByteArray();
+            }
+            case READ_HOLD_REGISTER: {
+                MbReadHoldRegisterRequest p = (MbReadHoldRegisterRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getHoldRegisters().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_READ_REGISTER);
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                MbReadHoldRegisterResponse res = new MbReadHoldRegisterResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setRegister(bank.getHoldRegisters().read(p.getAddress(), p.getQuantity()));
+                res.setCount(res.getRegister().length);
+                return res.toByteArray();
+            }
+            case READ_INPUT_REGISTER: {
+                MbReadInputRegisterRequest p = (MbReadInputRegisterRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getInputRegisters().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_READ_REGISTER);
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                MbReadInputRegisterResponse res = new MbReadInputRegisterResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setRegister(bank.getInputRegisters().read(p.getAddress(), p.getQuantity()));
+                res.setCount(res.getRegister().length);
+                return res.toByteArray();
+            }
+            case WRITE_SINGLE_COIL: {
+                MbWriteSingleCoilRequest p = (MbWriteSingleCoilRequest) req;
+                // 输出值只能是0x0000或0xFF00
+                int value = ((frame[MbapHeader.BYTE_LENGTH + 3] & 0xFF) << 8) | (frame[MbapHeader.BYTE_LENGTH + 4] & 0xFF);
+                if (value != 0x0000 && value != 0xFF00) {
+                    return createErrorPdu(code, EMbExceptionCode.ILLEGAL_DATA_VALUE);
+                }
+                bank.getCoils().set(p.getAddress(), p.isValue());
+                MbWriteSingleCoilResponse res = new MbWriteSingleCoilResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setAddress(p.getAddress());
+                res.setValue(p.isValue() ? MbWriteSingleCoilRequest.ON : MbWriteSingleCoilRequest.OFF);
+                return res.toByteArray();
+            }
+            case WRITE_SINGLE_REGISTER: {
+                MbWriteSingleRegisterRequest p = (MbWriteSingleRegisterRequest) req;
+                bank.getHoldRegisters().set(p.getAddress(), p.getValue());
+                MbWriteSingleRegisterResponse res = new MbWriteSingleRegisterResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setAddress(p.getAddress());
+                res.setValue(new byte[]{(byte) (p.getValue() >> 8), (byte) p.getValue()});
+                return res.toByteArray();
+            }
+            case WRITE_MULTIPLE_COIL: {
+                MbWriteMultipleCoilRequest p = (MbWriteMultipleCoilRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getCoils().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_WRITE_BIT);
+                if (error == null && p.getCount() != (p.getQuantity() + 7) / 8) {
+                    error = EMbExceptionCode.ILLEGAL_DATA_VALUE;
+                }
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                bank.getCoils().write(p.getAddress(), p.getQuantity(), p.getValue());
+                MbWriteMultipleCoilResponse res = new MbWriteMultipleCoilResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setAddress(p.getAddress());
+                res.setQuantity(p.getQuantity());
+                return res.toByteArray();
+            }
+            case WRITE_MULTIPLE_REGISTER: {
+                MbWriteMultipleRegisterRequest p = (MbWriteMultipleRegisterRequest) req;
+                EMbExceptionCode error = checkRequest(bank.getHoldRegisters().contains(p.getAddress(), p.getQuantity()), p.getQuantity(), MAX_WRITE_REGISTER);
+                if (error == null && p.getCount() != p.getQuantity() * 2) {
+                    error = EMbExceptionCode.ILLEGAL_DATA_VALUE;
+                }
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                bank.getHoldRegisters().write(p.getAddress(), p.getValue());
+                MbWriteMultipleRegisterResponse res = new MbWriteMultipleRegisterResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setAddress(p.getAddress());
+                res.setQuantity(p.getQuantity());
+                return res.toByteArray();
+            }
+            case READ_WRITE_MULTIPLE_REGISTER: {
+                MbReadWriteMultipleRegisterRequest p = (MbReadWriteMultipleRegisterRequest) req;
+                MbRegisterArea area = bank.getHoldRegisters();
+                EMbExceptionCode error = checkRequest(area.contains(p.getReadAddress(), p.getReadQuantity()), p.getReadQuantity(), MAX_READ_REGISTER);
+                if (error == null) {
+                    error = checkRequest(area.contains(p.getWriteAddress(), p.getWriteQuantity()), p.getWriteQuantity(), MAX_READ_WRITE_REGISTER);
+                }
+                if (error == null && p.getCount() != p.getWriteQuantity() * 2) {
+                    error = EMbExceptionCode.ILLEGAL_DATA_VALUE;
+                }
+                if (error != null) {
+                    return createErrorPdu(code, error);
+                }
+                // 先写后读
+                MbReadWriteMultipleRegisterResponse res = new MbReadWriteMultipleRegisterResponse();
+                res.setFunctionCode(req.getFunctionCode());
+                res.setRegister(area.writeAndRead(p.getWriteAddress(), p.getValue(), p.getReadAddress(), p.getReadQuantity()));
+                res.setCount(res.getRegister().length);
+                return res.toByteArray();
+            }
+            default:
+                return createErrorPdu(code, EMbExceptionCode.ILLEGAL_FUNCTION);
+        }
+    }
+
+    /**
+     * 校验请求的数量和地址，先校验数量再校验地址
+     *
+     * @param inRange  地址是否在范围内
+     * @param quantity 数量
+     * @param max      最大数量
+     * @return 异常码，校验通过返回null
+     */
+    private static EMbExceptionCode checkRequest(boolean inRange, int quantity, int max) {
+        if (quantity < 1 || quantity > max) {
+            return EMbExceptionCode.ILLEGAL_DATA_VALUE;
+        }
+        if (!inRange) {
+            return EMbExceptionCode.ILLEGAL_DATA_ADDRESS;
+        }
+        return null;
+    }
+
+    /**
+     * 创建异常响应的pdu，功能码的最高位置1
+     *
+     * @param functionCode 请求的功能码
+     * @param errorCode    异常码
+     * @return 异常响应的pdu
+     */
+    private static byte[] createErrorPdu(byte functionCode, EMbExceptionCode errorCode) {
+        EMbFunctionCode errorFunctionCode = EMbFunctionCode.from((byte) (functionCode | 0x80));
+        if (errorFunctionCode == null) {
+            // 未定义的功能码没有对应的异常枚举，直接组装字节
+            return new byte[]{(byte) (functionCode | 0x80), errorCode.getCode()};
+        }
+        MbErrorResponse res = new MbErrorResponse();
+        res.setFunctionCode(errorFunctionCode);
+        res.setErrorCode(errorCode);
+        return res.toByteArray();
+    }
+
+    //endregion
+}
@@ -0,0 +1,290 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
+import com.github.xingshuangs.iot.net.client.UdpClientBasic;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbTcpRequest;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbTcpResponse;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbapHeader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * modbus UDP通信通道
+ * <p>
+ * 每个数据报是一个完整的MBAP头加PDU，没有建立连接的过程，也没有TCP的队头阻塞；
+ * 所有请求通过同一个socket发送，独立的读取线程按照事务元标识符匹配响应，多个请求可以同时等待响应；
+ * 超时之后用相同的事务元标识符重发，重复的响应直接丢弃
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class ModbusUdp extends UdpClientBasic implements IMbTransport {
+
+    /**
+     * 单个数据报的最大长度，MBAP头7个字节加PDU最大253个字节
+     */
+    private static final int MAX_ADU_LENGTH = 260;
+
+    /**
+     * 锁
+     */
+    private final Object objLock = new Object();
+
+    /**
+     * 等待响应的请求，key为事务元标识符
+     */
+    private final Map<Integer, CompletableFuture<MbTcpResponse>> pendingMap = new ConcurrentHashMap<>();
+
+    /**
+     * 当前读取线程对应的socket
+     */
+    private volatile DatagramSocket readerSocket;
+
+    /**
+     * 单次发送的响应超时时间，单位毫秒
+     */
+    private int timeout = 1000;
+
+    /**
+     * 超时之后的重发次数
+     */
+    private int retries = 2;
+
+    public ModbusUdp() {
+        this(ModbusTcp.IP, ModbusTcp.PORT);
+    }
+
+    public ModbusUdp(String host) {
+        this(host, ModbusTcp.PORT);
+    }
+
+    public ModbusUdp(String host, int port) {
+        super(host, port);
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout<=0");
+        }
+        this.timeout = timeout;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries<0");
+        }
+        this.retries = retries;
+    }
+
+    /**
+     * 创建指定从站的客户端，客户端的所有请求都通过该UDP通道发送
+     *
+     * @param unitId 从站编号
+     * @return 客户端
+     */
+    public ModbusTcp createClient(int unitId) {
+        return new ModbusTcp(unitId, this);
+    }
+
+    /**
+     * 发送请求并等待响应
+     *
+     * @param unitId 从站编号
+     * @param reqPdu 请求对象
+     * @return 响应结果
+     */
+    @Override
+    public MbPdu readModbusData(int unitId, MbPdu reqPdu) {
+        return this.readModbusData(unitId, Collections.singletonList(reqPdu)).get(0);
+    }
+
+    /**
+     * 批量发送请求并等待响应，所有请求先连续发送，再逐个等待
+     *
+     * @param unitId  从站编号
+     * @param reqPdus 请求对象列表
+     * @return 响应结果列表，和请求一一对应
+     */
+    @Override
+    public List<MbPdu> readModbusData(int unitId, List<MbPdu> reqPdus) {
+        if (unitId < 0 || unitId > 255) {
+            throw new IllegalArgumentException("unitId范围[0-255]");
+        }
+        List<MbTcpRequest> requests = new ArrayList<>(reqPdus.size());
+        List<CompletableFuture<MbTcpResponse>> futures = new ArrayList<>(reqPdus.size());
+        try {
+            for (MbPdu reqPdu : reqPdus) {
+                MbTcpRequest request = MbTcpRequest.createDefault();
+                request.getHeader().setUnitId(unitId);
+                request.setPdu(reqPdu);
+                request.selfCheck();
+                CompletableFuture<MbTcpResponse> future = new CompletableFuture<>();
+                this.pendingMap.put(request.getHeader().getTransactionId(), future);
+                requests.add(request);
+                futures.add(future);
+                this.send(request.toByteArray());
+            }
+            List<MbPdu> res = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                MbTcpResponse ack = this.await(requests.get(i), futures.get(i));
+                ModbusNetwork.checkResult(requests.get(i), ack);
+                res.add(ack.getPdu());
+            }
+            return res;
+        } finally {
+            requests.forEach(x -> this.pendingMap.remove(x.getHeader().getTransactionId()));
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this.objLock) {
+            this.readerSocket = null;
+            super.close();
+        }
+        this.failPending(new ModbusCommException("UDP通道已关闭"));
+    }
+
+    /**
+     * 发送数据，socket变化的时候启动新的读取线程，在锁内写入启动了读取线程的socket，
+     * 避免期间被关闭之后写入到没有读取线程的新socket
+     *
+     * @param data 数据报
+     */
+    private void send(byte[] data) {
+        synchronized (this.objLock) {
+            DatagramSocket socket = this.getAvailableSocket();
+            if (socket != this.readerSocket) {
+                this.readerSocket = socket;
+                Thread thread = new Thread(() -> this.readLoop(socket), "iot-modbus-udp-" + this.serverAddress.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+            try {
+                socket.send(new DatagramPacket(data, data.length, this.serverAddress));
+            } catch (IOException e) {
+                throw new SocketRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * 等待响应，超时之后重发
+     *
+     * @param request 请求
+     * @param future  响应
+     * @return 响应
+     */
+    private MbTcpResponse await(MbTcpRequest request, CompletableFuture<MbTcpResponse> future) {
+        CommEvent event = CommEvent.modbusRequest().address(this.serverAddress)
+                .functionCode(request.getPdu().getFunctionCode()).itemCount(1).pduCount(1);
+        try {
+            byte[] sendData = request.toByteArray();
+            event.bytes(sendData.length);
+            for (int i = 0; ; i++) {
+                try {
+                    MbTcpResponse ack = future.get(this.timeout, TimeUnit.MILLISECONDS);
+                    event.bytes(MbapHeader.BYTE_LENGTH + ack.getHeader().getLength() - 1).success();
+                    return ack;
+                } catch (TimeoutException e) {
+                    if (i >= this.retries) {
+                        throw new ModbusCommException(String.format("从站[%d]响应超时，已重发%d次",
+                                request.getHeader().getUnitId(), this.retries));
+                    }
+                    log.debug("UDP[{}]事务元标识符[{}]响应超时，重发", this.serverAddress, request.getHeader().getTransactionId());
+                    this.send(sendData);
+                    event.bytes(sendData.length);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModbusCommException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ModbusCommException(e.getCause());
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 读取线程，持续读取数据报并按照事务元标识符匹配
+     *
+     * @param socket socket对象
+     */
+    private void readLoop(DatagramSocket socket) {
+        byte[] buffer = new byte[MAX_ADU_LENGTH];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        try {
+            while (true) {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                int length = packet.getLength();
+                if (!this.serverAddress.equals(packet.getSocketAddress()) || length <= MbapHeader.BYTE_LENGTH) {
+                    continue;
+                }
+                MbapHeader header = MbapHeader.fromBytes(buffer);
+                if (header.getProtocolId() != 0 || header.getLength() + 6 != length) {
+                    log.warn("UDP[{}]丢弃无效的数据报，长度[{}]", this.serverAddress, length);
+                    continue;
+                }
+                CompletableFuture<MbTcpResponse> future = this.pendingMap.remove(header.getTransactionId());
+                if (future == null) {
+                    log.debug("UDP[{}]丢弃重复或超时的响应，事务元标识符[{}]", this.serverAddress, header.getTransactionId());
+                    continue;
+                }
+                try {
+                    future.complete(MbTcpResponse.fromBytes(header, Arrays.copyOfRange(buffer, MbapHeader.BYTE_LENGTH, length)));
+                } catch (Exception e) {
+                    future.completeExceptionally(new ModbusCommException("响应数据解析失败，" + e.getMessage()));
+                }
+            }
+        } catch (Exception e) {
+            if (socket == this.readerSocket) {
+                log.error("UDP[{}]读取失败，{}", this.serverAddress, e.getMessage());
+                synchronized (this.objLock) {
+                    this.readerSocket = null;
+                    socket.close();
+                }
+                this.failPending(new ModbusCommException(e));
+            }
+        }
+    }
+
+    /**
+     * 等待响应的请求全部失败
+     *
+     * @param e 异常
+     */
+    private void failPending(RuntimeException e) {
+        this.pendingMap.values().forEach(x -> x.completeExceptionally(e));
+        this.pendingMap.clear();
+    }
+}
@@ -54,6 +54,10 @@ public class S7SequentialGroupAlg {
                 }
             }
         }
+        // 最后一个数据刚好填满分组时会多出一个空分组，去掉，否则会发送没有数据项的请求
+        if (group.getItems().isEmpty()) {
+            groupList.remove(groupList.size() - 1);
+        }
         return groupList;
     }
 
@@ -96,6 +100,10 @@ public class S7SequentialGroupAlg {
                 }
             }
         }
+        // 最后一个数据刚好填满分组时会多出一个空分组，去掉，否则会发送没有数据项的请求
+        if (group.getItems().isEmpty()) {
+            groupList.remove(groupList.size() - 1);
+        }
         return groupList;
     }
 }
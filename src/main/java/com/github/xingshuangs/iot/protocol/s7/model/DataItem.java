@@ -71,6 +71,17 @@ public class DataItem extends ReturnItem implements IObjectByteArray {
         return dataItem;
     }
 
+    /**
+     * 截取数据内容的一部分，生成新的数据项，和当前数据项共享同一个字节数组，不复制数据，序列化的时候直接从原数组写入报文
+     *
+     * @param offset 数据内容的偏移量
+     * @param length 截取长度
+     * @return DataItem
+     */
+    public DataItem slice(int offset, int length) {
+        return new DataItemSlice(this, this.data, offset, length);
+    }
+
     /**
      * 字节数组数据解析
      *
@@ -165,4 +176,17 @@ public class DataItem extends ReturnItem implements IObjectByteArray {
         dataItem.setData(data);
         return dataItem;
     }
+
+    /**
+     * 根据返回码创建失败的响应数据项，没有数据内容
+     *
+     * @param returnCode 返回码
+     * @return 数据项目
+     */
+    public static DataItem createAckBy(EReturnCode returnCode) {
+        DataItem dataItem = new DataItem();
+        dataItem.setReturnCode(returnCode);
+        dataItem.setVariableType(EDataVariableType.NULL);
+        return dataItem;
+    }
 }
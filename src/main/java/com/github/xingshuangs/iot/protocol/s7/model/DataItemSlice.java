@@ -0,0 +1,78 @@
+package com.github.xingshuangs.iot.protocol.s7.model;
+
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Arrays;
+
+/**
+ * 数据项的切片，引用源字节数组的一段，不复制数据，大块数据分组写入时使用
+ *
+ * @author xingshuang
+ */
+@EqualsAndHashCode(callSuper = true)
+final class DataItemSlice extends DataItem {
+
+    /**
+     * 源字节数组
+     */
+    private final byte[] source;
+
+    /**
+     * 源字节数组中的偏移量
+     */
+    private final int sourceOffset;
+
+    DataItemSlice(DataItem origin, byte[] source, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > source.length) {
+            throw new IllegalArgumentException(String.format("切片范围越界，偏移量[%d]，长度[%d]，数据长度[%d]", offset, length, source.length));
+        }
+        this.source = source;
+        this.sourceOffset = offset;
+        this.setReturnCode(origin.getReturnCode());
+        this.setVariableType(origin.getVariableType());
+        this.setCount(length);
+    }
+
+    /**
+     * 切片的数据内容，需要复制，尽量只在必要的时候调用
+     *
+     * @return 字节数组
+     */
+    @Override
+    public byte[] getData() {
+        return Arrays.copyOfRange(this.source, this.sourceOffset, this.sourceOffset + this.getCount());
+    }
+
+    @Override
+    public void setData(byte[] data) {
+        throw new UnsupportedOperationException("切片的数据内容不能修改");
+    }
+
+    @Override
+    public int byteArrayLength() {
+        int length = this.getCount();
+        return 4 + length + (length % 2 == 0 ? 0 : 1);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] res = new byte[this.byteArrayLength()];
+        System.arraycopy(super.toByteArray(), 0, res, 0, 4);
+        System.arraycopy(this.source, this.sourceOffset, res, 4, this.getCount());
+        return res;
+    }
+
+    @Override
+    public DataItem copy() {
+        return new DataItemSlice(this, this.source, this.sourceOffset, this.getCount());
+    }
+
+    @Override
+    public DataItem slice(int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > this.getCount()) {
+            throw new IllegalArgumentException(String.format("切片范围越界，偏移量[%d]，长度[%d]，数据长度[%d]", offset, length, this.getCount()));
+        }
+        return new DataItemSlice(this, this.source, this.sourceOffset + offset, length);
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import java.util.List;
+
+/**
+ * S7服务端数据变化的监听器，在独立的分发线程中回调，不阻塞服务端的读写；
+ * 处理太慢导致事件队列满的时候，新的事件会被丢弃，见{@link S7PLCServer#getDroppedChangeEventCount()}
+ *
+ * @author xingshuang
+ */
+@FunctionalInterface
+public interface IS7DataChangeListener {
+
+    /**
+     * 数据变化，同一批次的事件按照写入的顺序排列
+     *
+     * @param events 与监听范围有重叠的变化事件
+     */
+    void onChanged(List<S7DataChangeEvent> events);
+}
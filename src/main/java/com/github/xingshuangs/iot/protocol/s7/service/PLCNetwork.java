@@ -2,8 +2,10 @@ package com.github.xingshuangs.iot.protocol.s7.service;
 
 
 import com.github.xingshuangs.iot.exceptions.S7CommException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
 import com.github.xingshuangs.iot.net.client.TcpClientBasic;
-import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.protocol.common.RequestScheduler;
+import com.github.xingshuangs.iot.protocol.common.SingleFlight;
 import com.github.xingshuangs.iot.protocol.s7.algorithm.S7ComGroup;
 import com.github.xingshuangs.iot.protocol.s7.algorithm.S7ComItem;
 import com.github.xingshuangs.iot.protocol.s7.algorithm.S7SequentialGroupAlg;
@@ -34,9 +36,9 @@ import java.util.stream.Collectors;
 public class PLCNetwork extends TcpClientBasic {
 
     /**
-     * 锁
+     * 请求调度器，按照优先级使用连接
      */
-    private final Object objLock = new Object();
+    private final RequestScheduler scheduler = new RequestScheduler();
 
     /**
      * PLC的类型
@@ -63,6 +65,11 @@ public class PLCNetwork extends TcpClientBasic {
      */
     private boolean persistence = true;
 
+    /**
+     * 并发读取去重，为null表示不开启
+     */
+    private volatile SingleFlight<RequestItem, DataItem> singleFlight;
+
     /**
      * 通信回调
      */
@@ -72,6 +79,14 @@ public class PLCNetwork extends TcpClientBasic {
         this.comCallback = comCallback;
     }
 
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public int getPduLength() {
+        return pduLength;
+    }
+
     public boolean isPersistence() {
         return persistence;
     }
@@ -80,6 +95,20 @@ public class PLCNetwork extends TcpClientBasic {
         this.persistence = persistence;
     }
 
+    public boolean isSingleFlight() {
+        return this.singleFlight != null;
+    }
+
+    /**
+     * 设置是否开启并发读取去重，开启后多个线程同时读取相同或者被覆盖的地址时只通信一次，共享结果；
+     * 覆盖指同一区域同一DB块字节地址范围包含在内，位读取也可以被字节读取覆盖；写操作完成之后，此前开始的读取不再被新的读取共享
+     *
+     * @param singleFlight true：开启，false：关闭
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight ? new SingleFlight<>(PLCNetwork::covers, PLCNetwork::extract) : null;
+    }
+
     public PLCNetwork() {
         super();
     }
@@ -95,8 +124,15 @@ public class PLCNetwork extends TcpClientBasic {
      */
     @Override
     protected void doAfterConnected() {
-        this.connectionRequest();
-        this.connectDtData();
+        CommEvent event = CommEvent.handshake().address(this.socketAddress).functionCode(this.plcType);
+        try {
+            this.connectionRequest();
+            // 采用PLC协商后的PDU长度，协商值不会大于请求值
+            this.pduLength = this.connectDtData();
+            event.success();
+        } finally {
+            event.commit();
+        }
         log.debug("PLC[{}]握手成功，机架号[{}]，槽号[{}]，PDU长度[{}]", this.plcType, this.rack, this.slot, this.pduLength);
     }
 
@@ -159,6 +195,18 @@ public class PLCNetwork extends TcpClientBasic {
 
     //region 底层数据通信部分
 
+    /**
+     * 确保已经连接并完成握手，分组计算需要使用协商后的PDU长度
+     */
+    private void ensureConnected() {
+        this.scheduler.acquire();
+        try {
+            this.getAvailableSocket();
+        } finally {
+            this.scheduler.release();
+        }
+    }
+
     /**
      * 从服务器读取数据
      *
@@ -166,41 +214,59 @@ public class PLCNetwork extends TcpClientBasic {
      * @return S7协议数据
      */
     private S7Data readFromServer(S7Data req) {
-        byte[] sendData = req.toByteArray();
-        if (this.comCallback != null) {
-            this.comCallback.accept(sendData);
-        }
-
-        // 将报文中的TPKT和COTP减掉，剩下PDU的内容，7=4(tpkt)+3(cotp)
-        if (this.pduLength > 0 && sendData.length - 7 > this.pduLength) {
-            throw new S7CommException(String.format("发送请求的字节数过长[%d]，已经大于最大的PDU长度[%d]", sendData.length, this.pduLength));
-        }
+        CommEvent event = CommEvent.s7Request().address(this.socketAddress).pduCount(1);
+        try {
+            byte[] sendData = req.toByteArray();
+            if (this.comCallback != null) {
+                this.comCallback.accept(sendData);
+            }
 
-        TPKT tpkt;
-        int len;
-        byte[] remain;
-        synchronized (this.objLock) {
-            this.write(sendData);
+            // 将报文中的TPKT和COTP减掉，剩下PDU的内容，7=4(tpkt)+3(cotp)
+            if (this.pduLength > 0 && sendData.length - 7 > this.pduLength) {
+                throw new S7CommException(String.format("发送请求的字节数过长[%d]，已经大于最大的PDU长度[%d]", sendData.length, this.pduLength));
+            }
+            if (req.getParameter() != null) {
+                event.functionCode(req.getParameter().getFunctionCode());
+            } else {
+                event.functionCode(req.getCotp().getPduType());
+            }
+            if (req.getParameter() instanceof ReadWriteParameter) {
+                event.itemCount(((ReadWriteParameter) req.getParameter()).getItemCount());
+            }
 
-            byte[] data = new byte[TPKT.BYTE_LENGTH];
-            len = this.read(data);
-            if (len < TPKT.BYTE_LENGTH) {
-                throw new S7CommException(" TPKT 无效，长度不一致");
+            TPKT tpkt;
+            int len;
+            byte[] remain;
+            this.scheduler.acquire();
+            try {
+                this.write(sendData);
+
+                byte[] data = new byte[TPKT.BYTE_LENGTH];
+                len = this.read(data);
+                if (len < TPKT.BYTE_LENGTH) {
+                    throw new S7CommException(" TPKT 无效，长度不一致");
+                }
+                tpkt = TPKT.fromBytes(data);
+                remain = new byte[tpkt.getLength() - TPKT.BYTE_LENGTH];
+                len = this.read(remain);
+            } finally {
+                this.scheduler.release();
             }
-            tpkt = TPKT.fromBytes(data);
-            remain = new byte[tpkt.getLength() - TPKT.BYTE_LENGTH];
-            len = this.read(remain);
-        }
-        if (len < remain.length) {
-            throw new S7CommException(" TPKT后面的数据长度，长度不一致");
-        }
-        S7Data ack = S7Data.fromBytes(tpkt, remain);
+            if (len < remain.length) {
+                throw new S7CommException(" TPKT后面的数据长度，长度不一致");
+            }
+            event.bytes(sendData.length).bytes(tpkt.getLength());
+            S7Data ack = S7Data.fromBytes(tpkt, remain);
 
-        if (this.comCallback != null) {
-            this.comCallback.accept(ack.toByteArray());
+            if (this.comCallback != null) {
+                this.comCallback.accept(ack.toByteArray());
+            }
+            this.checkPostedCom(req, ack);
+            event.success();
+            return ack;
+        } finally {
+            event.commit();
         }
-        this.checkPostedCom(req, ack);
-        return ack;
     }
 
     /**
@@ -270,6 +336,18 @@ public class PLCNetwork extends TcpClientBasic {
         if (requestItems == null || requestItems.isEmpty()) {
             throw new S7CommException("请求项缺失，无法获取数据");
         }
+        SingleFlight<RequestItem, DataItem> flight = this.singleFlight;
+        return flight == null ? this.doReadS7Data(requestItems) : flight.execute(requestItems, this::doReadS7Data);
+    }
+
+    /**
+     * 实际通信读取S7协议数据，按照PDU长度分组后逐个发送
+     *
+     * @param requestItems 请求项列表
+     * @return 数据项列表
+     */
+    protected List<DataItem> doReadS7Data(List<RequestItem> requestItems) {
+        this.ensureConnected();
         // 根据原始请求列表提取每个请求数据大小
         List<Integer> rawNumbers = requestItems.stream().map(RequestItem::getCount).collect(Collectors.toList());
         // 根据原始请求列表构建最终结果列表
@@ -281,6 +359,8 @@ public class PLCNetwork extends TcpClientBasic {
         // 发送： 12=10(header)+2(parameter前),12(parameter后) （采用)
         // 接收： 14=12(header)+2(parameter),5(DataItem)，dataItem可能4或5，统一采用5  (不采用)
         List<S7ComGroup> s7ComGroups = S7SequentialGroupAlg.readRecombination(rawNumbers, this.pduLength - 14, 5, 12);
+        CommEvent event = CommEvent.s7Batch().address(this.socketAddress).functionCode(EFunctionCode.READ_VARIABLE)
+                .itemCount(requestItems.size()).pduCount(s7ComGroups.size());
         try {
             s7ComGroups.forEach(x -> {
                 // 根据分组构建对应的请求列表
@@ -303,16 +383,64 @@ public class PLCNetwork extends TcpClientBasic {
                     byte[] src = dataItems.get(i).getData();
                     byte[] des = resultList.get(comItem.getIndex()).getData();
                     System.arraycopy(src, 0, des, comItem.getSplitOffset(), src.length);
+                    event.bytes(src.length);
                 }
             });
+            event.success();
             return resultList;
         } finally {
+            event.commit();
             if (!this.persistence) {
                 this.close();
             }
         }
     }
 
+    /**
+     * 正在读取的请求项是否覆盖新的请求项
+     *
+     * @param flight 正在读取的请求项
+     * @param req    新的请求项
+     * @return true：覆盖，false：不覆盖
+     */
+    private static boolean covers(RequestItem flight, RequestItem req) {
+        if (flight.getArea() != req.getArea() || flight.getDbNumber() != req.getDbNumber()) {
+            return false;
+        }
+        if (flight.getVariableType() == EParamVariableType.BYTE
+                && (req.getVariableType() == EParamVariableType.BYTE || req.getVariableType() == EParamVariableType.BIT)) {
+            return req.getByteAddress() >= flight.getByteAddress()
+                    && req.getByteAddress() + (req.getVariableType() == EParamVariableType.BIT ? 1 : req.getCount())
+                    <= flight.getByteAddress() + flight.getCount();
+        }
+        return flight.getVariableType() == req.getVariableType() && flight.getCount() == req.getCount()
+                && flight.getByteAddress() == req.getByteAddress() && flight.getBitAddress() == req.getBitAddress();
+    }
+
+    /**
+     * 从覆盖请求的数据中提取新请求的数据
+     *
+     * @param flight     正在读取的请求项
+     * @param flightData 正在读取的数据项
+     * @param req        新的请求项
+     * @return 数据项
+     */
+    private static DataItem extract(RequestItem flight, DataItem flightData, RequestItem req) {
+        byte[] src = flightData.getData();
+        int offset = req.getByteAddress() - flight.getByteAddress();
+        if (flight.getVariableType() == EParamVariableType.BYTE && req.getVariableType() == EParamVariableType.BIT) {
+            byte bit = (byte) ((src[offset] >> req.getBitAddress()) & 0x01);
+            return DataItem.createReq(new byte[]{bit}, EDataVariableType.BIT);
+        }
+        if (flight.getVariableType() != EParamVariableType.BYTE) {
+            // 完全相同的请求
+            return DataItem.createReq(src.clone(), flightData.getVariableType());
+        }
+        byte[] data = new byte[req.getCount()];
+        System.arraycopy(src, offset, data, 0, data.length);
+        return DataItem.createReq(data, flightData.getVariableType());
+    }
+
     /**
      * 读取S7协议数据
      *
@@ -343,6 +471,32 @@ public class PLCNetwork extends TcpClientBasic {
         if (requestItems.size() != dataItems.size()) {
             throw new S7CommException("写操作过程中，requestItems和dataItems数据个数不一致");
         }
+        try {
+            this.doWriteS7Data(requestItems, dataItems);
+        } finally {
+            // 写失败的时候部分数据可能已经写入，同样需要失效
+            this.invalidateReads();
+        }
+    }
+
+    /**
+     * 写操作完成之后，正在通信的读取不再被新的读取共享，避免写之后的读取拿到写之前的数据
+     */
+    protected void invalidateReads() {
+        SingleFlight<RequestItem, DataItem> flight = this.singleFlight;
+        if (flight != null) {
+            flight.invalidate();
+        }
+    }
+
+    /**
+     * 实际通信写S7协议，按照PDU长度分组后逐个发送
+     *
+     * @param requestItems 请求项列表
+     * @param dataItems    数据项列表
+     */
+    protected void doWriteS7Data(List<RequestItem> requestItems, List<DataItem> dataItems) {
+        this.ensureConnected();
 
         // 根据原始请求列表提取每个请求数据大小
         List<Integer> rawNumbers = requestItems.stream().map(RequestItem::getCount).collect(Collectors.toList());
@@ -351,6 +505,8 @@ public class PLCNetwork extends TcpClientBasic {
         // 发送：12=10(header)+2(parameter前),17=12(parameter后)+5(dataItem)，dataItem可能4或5，统一采用5 （采用)
         // 接收：14=12(header)+2(parameter),1(DataItem)  (不采用)
         List<S7ComGroup> s7ComGroups = S7SequentialGroupAlg.writeRecombination(rawNumbers, this.pduLength - 12, 17);
+        CommEvent event = CommEvent.s7Batch().address(this.socketAddress).functionCode(EFunctionCode.WRITE_VARIABLE)
+                .itemCount(requestItems.size()).pduCount(s7ComGroups.size());
         try {
             s7ComGroups.forEach(x -> {
                 // 根据分组构建对应的请求列表
@@ -361,19 +517,19 @@ public class PLCNetwork extends TcpClientBasic {
                     item.setByteAddress(item.getByteAddress() + i.getSplitOffset());
                     return item;
                 }).collect(Collectors.toList());
-                // 根据分组构建对应的数据列表
-                List<DataItem> newDataItems = comItemList.stream().map(i -> {
-                    DataItem item = dataItems.get(i.getIndex()).copy();
-                    item.setCount(i.getRipeSize());
-                    item.setData(ByteReadBuff.newInstance(item.getData()).getBytes(i.getSplitOffset(), i.getRipeSize()));
-                    return item;
-                }).collect(Collectors.toList());
+                // 根据分组构建对应的数据列表，切片和原数据共享字节数组，不复制数据
+                List<DataItem> newDataItems = comItemList.stream()
+                        .map(i -> dataItems.get(i.getIndex()).slice(i.getSplitOffset(), i.getRipeSize()))
+                        .collect(Collectors.toList());
 
                 // S7数据请求
                 S7Data req = S7Data.createWriteRequest(newRequestItems, newDataItems);
                 this.readFromServer(req);
+                newDataItems.forEach(i -> event.bytes(i.getCount()));
             });
+            event.success();
         } finally {
+            event.commit();
             if (!this.persistence) {
                 this.close();
             }
@@ -0,0 +1,36 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import lombok.Data;
+
+/**
+ * 批量写入的分片，写入失败时记录失败原因，可以只针对失败的分片重试
+ *
+ * @author xingshuang
+ */
+@Data
+public class S7BulkChunk {
+
+    /**
+     * 相对批量写入起始地址的字节偏移量
+     */
+    private int offset;
+
+    /**
+     * 字节长度
+     */
+    private int length;
+
+    /**
+     * 失败原因，成功为null
+     */
+    private RuntimeException cause;
+
+    public S7BulkChunk() {
+    }
+
+    public S7BulkChunk(int offset, int length) {
+        this.offset = offset;
+        this.length = length;
+    }
+}
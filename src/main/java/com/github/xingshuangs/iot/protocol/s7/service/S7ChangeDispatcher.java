@@ -0,0 +1,367 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.protocol.s7.enums.EArea;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 数据变化事件的分发器
+ * <p>
+ * 业务线程把事件写入无锁环形队列后立即返回，独立的分发线程批量取出事件，按照监听的地址范围分发给监听器；
+ * 写入方是处理客户端请求的IO线程，不能被监听器拖慢，队列满的时候丢弃新事件并计数，通过{@link #getDroppedCount()}查看；
+ * 分发线程随服务端启动和停止，停止时先分发完队列中已有的事件，监听注册信息保留，再次启动后继续分发；
+ * 任何时候只有一个分发线程，停止超时的线程在重新启动时继续作为分发线程使用
+ *
+ * @author xingshuang
+ */
+@Slf4j
+class S7ChangeDispatcher implements Runnable {
+
+    /**
+     * 环形队列的容量，2的幂
+     */
+    private static final int CAPACITY = 4096;
+
+    /**
+     * 单批次最大的事件数量
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * 默认的停止时等待分发完剩余事件的最长时间，单位毫秒
+     */
+    private static final long DRAIN_TIMEOUT = 3000;
+
+    /**
+     * 环形队列
+     */
+    private final AtomicReferenceArray<S7DataChangeEvent> buffer = new AtomicReferenceArray<>(CAPACITY);
+
+    /**
+     * 写入序号，多个写入方竞争
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 读取序号，只有分发线程修改
+     */
+    private volatile long head = 0;
+
+    /**
+     * 队列满被丢弃的事件数量
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 分发线程是否在等待新事件
+     */
+    private volatile boolean waiting = false;
+
+    /**
+     * 是否运行
+     */
+    private volatile boolean running = false;
+
+    /**
+     * 监听注册信息
+     */
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * 线程名称
+     */
+    private final String name;
+
+    /**
+     * 停止时等待分发完剩余事件的最长时间，单位毫秒
+     */
+    private final long drainTimeout;
+
+    /**
+     * 分发线程，null表示没有启动或者已经退出，使用当前对象同步
+     */
+    private Thread thread;
+
+    /**
+     * 唤醒用的分发线程引用，写入方读取
+     */
+    private volatile Thread consumer;
+
+    S7ChangeDispatcher(String name) {
+        this(name, DRAIN_TIMEOUT);
+    }
+
+    S7ChangeDispatcher(String name, long drainTimeout) {
+        this.name = name;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * 启动分发线程，已经启动的不重复启动
+     */
+    synchronized void start() {
+        this.running = true;
+        if (this.thread != null) {
+            // 上次停止超时的线程还没有退出，由它继续分发，不能再创建第二个分发线程
+            LockSupport.unpark(this.thread);
+            return;
+        }
+        this.thread = new Thread(this, this.name);
+        this.thread.setDaemon(true);
+        this.consumer = this.thread;
+        this.thread.start();
+    }
+
+    /**
+     * 队列满被丢弃的事件数量
+     *
+     * @return 数量
+     */
+    long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * 添加监听
+     *
+     * @param area     区域
+     * @param dbNumber DB块编号
+     * @param offset   字节索引
+     * @param length   字节长度
+     * @param listener 监听器
+     */
+    void addListener(EArea area, int dbNumber, int offset, int length, IS7DataChangeListener listener) {
+        this.registrations.add(new Registration(area, dbNumber, offset, length, listener));
+    }
+
+    /**
+     * 移除监听器的所有注册
+     *
+     * @param listener 监听器
+     * @return 剩余的注册数量
+     */
+    int removeListener(IS7DataChangeListener listener) {
+        this.registrations.removeIf(x -> x.listener == listener);
+        return this.registrations.size();
+    }
+
+    /**
+     * 是否有监听关注该地址范围
+     *
+     * @param area     区域
+     * @param dbNumber DB块编号
+     * @param offset   字节索引
+     * @param length   字节长度
+     * @return true：有，false：没有
+     */
+    boolean isWatched(EArea area, int dbNumber, int offset, int length) {
+        for (Registration registration : this.registrations) {
+            if (registration.overlaps(area, dbNumber, offset, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 发布事件，不阻塞，队列满的时候丢弃该事件
+     *
+     * @param event 事件
+     * @return true：写入队列，false：队列满被丢弃
+     */
+    boolean publish(S7DataChangeEvent event) {
+        // 确认有空位之后才占用序号，占用的位置一定会写入，分发线程不会卡在空位上
+        long sequence;
+        do {
+            sequence = this.tail.get();
+            if (sequence - this.head >= CAPACITY) {
+                long count = this.dropped.incrementAndGet();
+                if ((count & (count - 1)) == 0) {
+                    log.warn("数据变化事件队列已满，累计丢弃[{}]个事件", count);
+                }
+                return false;
+            }
+        } while (!this.tail.compareAndSet(sequence, sequence + 1));
+        this.buffer.set((int) (sequence & (CAPACITY - 1)), event);
+        Thread current = this.consumer;
+        if (this.waiting && current != null) {
+            LockSupport.unpark(current);
+        }
+        return true;
+    }
+
+    /**
+     * 停止分发线程，等待队列中已有的事件分发完成；
+     * 超时的时候保留线程引用，线程处理完之后自行退出，期间重新启动会继续使用该线程
+     */
+    synchronized void shutdown() {
+        Thread current = this.thread;
+        if (current == null) {
+            return;
+        }
+        this.running = false;
+        LockSupport.unpark(current);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.drainTimeout);
+        try {
+            while (this.thread == current && !this.running) {
+                long remain = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remain <= 0) {
+                    log.warn("数据变化事件分发线程[{}]停止超时", this.name);
+                    return;
+                }
+                this.wait(remain);
+            }
+            if (this.thread != current) {
+                // 线程已经交还引用，等待它真正结束
+                current.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<S7DataChangeEvent> batch = new ArrayList<>();
+        do {
+            this.consume(batch);
+            this.drain(batch);
+        } while (!this.exit());
+    }
+
+    /**
+     * 没有重新启动的时候退出线程
+     *
+     * @return true：退出，false：已经重新启动，继续分发
+     */
+    private synchronized boolean exit() {
+        if (this.running) {
+            return false;
+        }
+        this.thread = null;
+        this.consumer = null;
+        this.notifyAll();
+        return true;
+    }
+
+    /**
+     * 运行期间循环分发事件
+     *
+     * @param batch 事件
+     */
+    private void consume(List<S7DataChangeEvent> batch) {
+        while (this.running) {
+            int index = (int) (this.head & (CAPACITY - 1));
+            S7DataChangeEvent event = this.buffer.get(index);
+            if (event != null) {
+                this.buffer.lazySet(index, null);
+                this.head++;
+                batch.add(event);
+                if (batch.size() >= MAX_BATCH) {
+                    this.dispatch(batch);
+                }
+                continue;
+            }
+            if (!batch.isEmpty()) {
+                this.dispatch(batch);
+                continue;
+            }
+            // 先声明等待再检查一次，避免写入方错过唤醒
+            this.waiting = true;
+            if (this.buffer.get(index) == null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+            this.waiting = false;
+        }
+    }
+
+    /**
+     * 停止之后分发队列中剩余的事件，写入方已经占位但还没有写入的事件最多等待到超时
+     *
+     * @param batch 事件
+     */
+    private void drain(List<S7DataChangeEvent> batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.drainTimeout);
+        while (this.head < this.tail.get() && System.nanoTime() < deadline) {
+            int index = (int) (this.head & (CAPACITY - 1));
+            S7DataChangeEvent event = this.buffer.get(index);
+            if (event == null) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                continue;
+            }
+            this.buffer.lazySet(index, null);
+            this.head++;
+            batch.add(event);
+            if (batch.size() >= MAX_BATCH) {
+                this.dispatch(batch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            this.dispatch(batch);
+        }
+    }
+
+    /**
+     * 按照监听范围分发一批事件
+     *
+     * @param batch 事件
+     */
+    private void dispatch(List<S7DataChangeEvent> batch) {
+        for (Registration registration : this.registrations) {
+            List<S7DataChangeEvent> events = new ArrayList<>();
+            for (S7DataChangeEvent event : batch) {
+                if (registration.overlaps(event.getArea(), event.getDbNumber(), event.getOffset(), event.getNewData().length)) {
+                    events.add(event);
+                }
+            }
+            if (events.isEmpty()) {
+                continue;
+            }
+            try {
+                registration.listener.onChanged(events);
+            } catch (Exception e) {
+                log.error("数据变化监听器处理异常，{}", e.getMessage(), e);
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * 监听注册信息
+     */
+    private static class Registration {
+
+        final EArea area;
+
+        final int dbNumber;
+
+        final int offset;
+
+        final int length;
+
+        final IS7DataChangeListener listener;
+
+        Registration(EArea area, int dbNumber, int offset, int length, IS7DataChangeListener listener) {
+            this.area = area;
+            this.dbNumber = dbNumber;
+            this.offset = offset;
+            this.length = length;
+            this.listener = listener;
+        }
+
+        boolean overlaps(EArea area, int dbNumber, int offset, int length) {
+            return this.area == area
+                    && (area != EArea.DATA_BLOCKS || this.dbNumber == dbNumber)
+                    && offset < this.offset + this.length
+                    && this.offset < offset + length;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * S7服务端的一个数据区，例如I、Q、M、DB1
+ * <p>
+ * 数据按照4K分页，页在第一次写入时才分配，读取未分配的页返回0，只用到少量字节的数据区几乎不占内存；
+ * 每个数据区独立加锁，不同数据区的读写互不阻塞；读取优先使用乐观读，拷贝完成后校验期间没有写入才返回，
+ * 否则退化为读锁重新拷贝
+ *
+ * @author xingshuang
+ */
+class S7DataArea {
+
+    /**
+     * 页大小的位数
+     */
+    private static final int PAGE_SHIFT = 12;
+
+    /**
+     * 页大小，4K
+     */
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /**
+     * 页内偏移的掩码
+     */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * 名称
+     */
+    private final String name;
+
+    /**
+     * 数据区大小
+     */
+    private final int size;
+
+    /**
+     * 数据页，未写入过的页为null
+     */
+    private final byte[][] pages;
+
+    /**
+     * 锁
+     */
+    private final StampedLock lock = new StampedLock();
+
+    S7DataArea(String name, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("数据区大小必须大于0");
+        }
+        this.name = name;
+        this.size = size;
+        this.pages = new byte[(size + PAGE_MASK) >>> PAGE_SHIFT][];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 获取已分配的堆内存字节数
+     *
+     * @return 已分配的字节数
+     */
+    public int getAllocatedBytes() {
+        long stamp = this.lock.readLock();
+        try {
+            int count = 0;
+            for (byte[] page : this.pages) {
+                if (page != null) {
+                    count += page.length;
+                }
+            }
+            return count;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 是否包含指定的地址范围
+     *
+     * @param offset 字节索引
+     * @param length 字节长度
+     * @return true：包含，false：超出范围
+     */
+    public boolean contains(int offset, int length) {
+        return offset >= 0 && length >= 0 && offset + length <= this.size;
+    }
+
+    /**
+     * 读取字节数据
+     *
+     * @param offset 字节索引
+     * @param length 字节长度
+     * @return 字节数组
+     */
+    public byte[] read(int offset, int length) {
+        byte[] res = new byte[length];
+        long stamp = this.isOptimisticReadSupported() ? this.lock.tryOptimisticRead() : 0;
+        if (stamp != 0) {
+            this.copyTo(offset, res);
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                this.copyTo(offset, res);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 读取位数据
+     *
+     * @param offset 字节索引
+     * @param bit    位索引
+     * @return 位数据
+     */
+    public boolean readBit(int offset, int bit) {
+        long stamp = this.isOptimisticReadSupported() ? this.lock.tryOptimisticRead() : 0;
+        byte value = stamp != 0 ? this.getByte(offset) : 0;
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                value = this.getByte(offset);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return (value & (1 << bit)) != 0;
+    }
+
+    /**
+     * 写入字节数据
+     *
+     * @param offset 字节索引
+     * @param src    字节数组
+     */
+    public void write(int offset, byte[] src) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.putBytes(offset, src);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 写入位数据
+     *
+     * @param offset 字节索引
+     * @param bit    位索引
+     * @param value  位数据
+     */
+    public void writeBit(int offset, int bit, boolean value) {
+        this.exchangeBit(offset, bit, value);
+    }
+
+    /**
+     * 写入字节数据并返回写入之前的数据
+     *
+     * @param offset 字节索引
+     * @param src    字节数组
+     * @return 写入之前的数据
+     */
+    public byte[] exchange(int offset, byte[] src) {
+        byte[] old = new byte[src.length];
+        long stamp = this.lock.writeLock();
+        try {
+            this.copyTo(offset, old);
+            this.putBytes(offset, src);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        return old;
+    }
+
+    /**
+     * 写入位数据并返回写入之前所在字节的数据
+     *
+     * @param offset 字节索引
+     * @param bit    位索引
+     * @param value  位数据
+     * @return 写入之前所在字节的数据
+     */
+    public byte exchangeBit(int offset, int bit, boolean value) {
+        long stamp = this.lock.writeLock();
+        try {
+            byte oldValue = this.getByte(offset);
+            this.putByte(offset, (byte) (value ? oldValue | (1 << bit) : oldValue & ~(1 << bit)));
+            return oldValue;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 持久化数据，内存数据区无需处理
+     */
+    public void flush() {
+        // NOOP
+    }
+
+    /**
+     * 关闭数据区，释放占用的资源，等待正在进行的读写完成，关闭之后不能再读写
+     */
+    public void close() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.release();
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 是否允许不加锁的乐观读，读取过程中存储可能被释放的数据区不能使用
+     *
+     * @return true：允许，false：不允许
+     */
+    protected boolean isOptimisticReadSupported() {
+        return true;
+    }
+
+    //region 存储，需要在锁的保护下调用
+
+    /**
+     * 释放存储，内存数据区由GC回收，无需处理
+     */
+    protected void release() {
+        // NOOP
+    }
+
+    /**
+     * 拷贝数据，未分配的页填充0
+     *
+     * @param offset 字节索引
+     * @param dst    目标字节数组
+     */
+    protected void copyTo(int offset, byte[] dst) {
+        int index = 0;
+        while (index < dst.length) {
+            int position = offset + index;
+            int length = Math.min(dst.length - index, PAGE_SIZE - (position & PAGE_MASK));
+            byte[] page = this.pages[position >>> PAGE_SHIFT];
+            if (page == null) {
+                for (int i = index; i < index + length; i++) {
+                    dst[i] = 0;
+                }
+            } else {
+                System.arraycopy(page, position & PAGE_MASK, dst, index, length);
+            }
+            index += length;
+        }
+    }
+
+    /**
+     * 读取一个字节
+     *
+     * @param offset 字节索引
+     * @return 字节
+     */
+    protected byte getByte(int offset) {
+        byte[] page = this.pages[offset >>> PAGE_SHIFT];
+        return page == null ? 0 : page[offset & PAGE_MASK];
+    }
+
+    /**
+     * 写入字节数组
+     *
+     * @param offset 字节索引
+     * @param src    字节数组
+     */
+    protected void putBytes(int offset, byte[] src) {
+        int index = 0;
+        while (index < src.length) {
+            int position = offset + index;
+            int length = Math.min(src.length - index, PAGE_SIZE - (position & PAGE_MASK));
+            System.arraycopy(src, index, this.page(position), position & PAGE_MASK, length);
+            index += length;
+        }
+    }
+
+    /**
+     * 写入一个字节
+     *
+     * @param offset 字节索引
+     * @param value  字节
+     */
+    protected void putByte(int offset, byte value) {
+        this.page(offset)[offset & PAGE_MASK] = value;
+    }
+
+    /**
+     * 获取地址所在的页，没有则分配
+     *
+     * @param offset 字节索引
+     * @return 页
+     */
+    private byte[] page(int offset) {
+        int index = offset >>> PAGE_SHIFT;
+        byte[] page = this.pages[index];
+        if (page == null) {
+            // 最后一页只分配到数据区末尾
+            page = new byte[Math.min(PAGE_SIZE, this.size - (index << PAGE_SHIFT))];
+            this.pages[index] = page;
+        }
+        return page;
+    }
+
+    //endregion
+}
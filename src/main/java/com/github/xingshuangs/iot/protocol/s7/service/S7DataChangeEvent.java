@@ -0,0 +1,56 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.protocol.s7.enums.EArea;
+import lombok.Data;
+
+/**
+ * S7服务端数据区的变化事件，客户端写入导致数据变化时产生
+ *
+ * @author xingshuang
+ */
+@Data
+public class S7DataChangeEvent {
+
+    /**
+     * 区域
+     */
+    private EArea area;
+
+    /**
+     * DB块编号，非DB区域为0
+     */
+    private int dbNumber;
+
+    /**
+     * 字节索引
+     */
+    private int offset;
+
+    /**
+     * 写入之前的数据
+     */
+    private byte[] oldData;
+
+    /**
+     * 写入之后的数据
+     */
+    private byte[] newData;
+
+    /**
+     * 事件产生的时间，毫秒
+     */
+    private long timestamp;
+
+    public S7DataChangeEvent() {
+    }
+
+    public S7DataChangeEvent(EArea area, int dbNumber, int offset, byte[] oldData, byte[] newData) {
+        this.area = area;
+        this.dbNumber = dbNumber;
+        this.offset = offset;
+        this.oldData = oldData;
+        this.newData = newData;
+        this.timestamp = System.currentTimeMillis();
+    }
+}
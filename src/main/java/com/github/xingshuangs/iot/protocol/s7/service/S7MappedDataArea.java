@@ -0,0 +1,130 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.exceptions.S7CommException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射文件的S7数据区
+ * <p>
+ * 数据直接保存在映射文件中，服务端重启之后数据保留，外部工具也可以直接读写该文件修改过程映像；
+ * 读取时从映射内存直接拷贝到响应数据中，不经过中间缓存；
+ * 关闭时立即解除映射，不等GC回收，否则文件一直被占用（Windows下无法删除或者再次映射），
+ * 解除映射之后再访问会导致JVM崩溃，因此读取也必须加锁，不使用乐观读
+ *
+ * @author xingshuang
+ */
+@Slf4j
+class S7MappedDataArea extends S7DataArea {
+
+    /**
+     * 映射的内存，关闭之后为null，在锁的保护下访问
+     */
+    private MappedByteBuffer buffer;
+
+    S7MappedDataArea(String name, int size, Path file) {
+        super(name, size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new S7CommException(String.format("数据区[%s]映射文件[%s]失败", name, file), e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        MappedByteBuffer current = this.buffer;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    @Override
+    protected boolean isOptimisticReadSupported() {
+        return false;
+    }
+
+    @Override
+    protected void release() {
+        if (this.buffer == null) {
+            return;
+        }
+        this.buffer.force();
+        unmap(this.buffer);
+        this.buffer = null;
+    }
+
+    /**
+     * 获取映射的内存
+     *
+     * @return 映射的内存
+     */
+    private MappedByteBuffer buffer() {
+        if (this.buffer == null) {
+            throw new S7CommException(String.format("数据区[%s]已关闭", this.getName()));
+        }
+        return this.buffer;
+    }
+
+    @Override
+    protected void copyTo(int offset, byte[] dst) {
+        ByteBuffer view = this.buffer().duplicate();
+        view.position(offset);
+        view.get(dst, 0, dst.length);
+    }
+
+    @Override
+    protected byte getByte(int offset) {
+        return this.buffer().get(offset);
+    }
+
+    @Override
+    protected void putBytes(int offset, byte[] src) {
+        ByteBuffer view = this.buffer().duplicate();
+        view.position(offset);
+        view.put(src);
+    }
+
+    @Override
+    protected void putByte(int offset, byte value) {
+        this.buffer().put(offset, value);
+    }
+
+    /**
+     * 解除内存映射，JDK9及以上通过Unsafe.invokeCleaner，JDK8通过DirectBuffer的cleaner，失败时只能等GC回收
+     *
+     * @param buffer 映射的内存
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("解除内存映射失败，等待GC回收，{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.exceptions.S7CommException;
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.net.client.TcpClientPool;
+import com.github.xingshuangs.iot.protocol.s7.enums.EPlcType;
+import com.github.xingshuangs.iot.protocol.s7.model.DataItem;
+import com.github.xingshuangs.iot.protocol.s7.model.RequestItem;
+import com.github.xingshuangs.iot.protocol.s7.model.S7Data;
+import com.github.xingshuangs.iot.protocol.s7.utils.AddressUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 连接池方式的S7 PLC客户端，和{@link S7PLC}的读写接口完全一致；
+ * 每次请求从池中租借一个独立连接，慢的大块读取和快的报警轮询分别占用不同的socket并行执行，互不等待。
+ * 连接池中每个连接都会单独握手，最大连接数不能超过PLC允许的连接数
+ *
+ * @author xingshuang
+ */
+public class S7PLCPool extends S7PLC {
+
+    /**
+     * 默认最小连接数
+     */
+    public static final int DEFAULT_MIN_SIZE = 1;
+
+    /**
+     * 默认最大连接数
+     */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /**
+     * 连接池
+     */
+    private final TcpClientPool<S7PLC> pool;
+
+    /**
+     * 批量读写的后台线程
+     */
+    private final ExecutorService bulkExecutor;
+
+    /**
+     * 批量读写的并行连接数，默认等于最大连接数
+     */
+    private int bulkParallelism;
+
+    public TcpClientPool<S7PLC> getPool() {
+        return pool;
+    }
+
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+
+    /**
+     * 设置批量读写的并行连接数，不能超过连接池的最大连接数
+     *
+     * @param bulkParallelism 并行连接数
+     */
+    public void setBulkParallelism(int bulkParallelism) {
+        if (bulkParallelism < 1 || bulkParallelism > this.pool.getMaxSize()) {
+            throw new IllegalArgumentException(String.format("bulkParallelism范围[1-%d]", this.pool.getMaxSize()));
+        }
+        this.bulkParallelism = bulkParallelism;
+    }
+
+    public S7PLCPool(EPlcType plcType, String ip) {
+        this(plcType, ip, PORT, 0, 0, DEFAULT_PDU_LENGTH, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    public S7PLCPool(EPlcType plcType, String ip, int minSize, int maxSize) {
+        this(plcType, ip, PORT, 0, 0, DEFAULT_PDU_LENGTH, minSize, maxSize);
+    }
+
+    public S7PLCPool(EPlcType plcType, String ip, int port, int rack, int slot, int pduLength, int minSize, int maxSize) {
+        super(plcType, ip, port, rack, slot, pduLength);
+        this.pool = new TcpClientPool<>(this::createClient, minSize, maxSize);
+        this.bulkParallelism = maxSize;
+        this.bulkExecutor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "iot-s7-bulk-" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 创建池中的连接，沿用当前对象的超时配置，均为长连接
+     *
+     * @return S7PLC
+     */
+    private S7PLC createClient() {
+        S7PLC client = new S7PLC(this.plcType, this.socketAddress.getHostString(), this.socketAddress.getPort(),
+                this.rack, this.slot, this.pduLength);
+        client.setConnectTimeout(this.getConnectTimeout());
+        client.setReceiveTimeout(this.getReceiveTimeout());
+        return client;
+    }
+
+    @Override
+    protected List<DataItem> doReadS7Data(List<RequestItem> requestItems) {
+        return this.pool.execute(x -> x.doReadS7Data(requestItems));
+    }
+
+    @Override
+    protected void doWriteS7Data(List<RequestItem> requestItems, List<DataItem> dataItems) {
+        this.pool.execute(x -> {
+            x.doWriteS7Data(requestItems, dataItems);
+            return null;
+        });
+    }
+
+    @Override
+    protected S7Data readFromServerWithPersistence(S7Data req) {
+        return this.pool.execute(x -> x.readFromServerWithPersistence(req));
+    }
+
+    //region 批量读写
+
+    /**
+     * 并行分片读取大块连续数据，例如整个DB块的备份
+     *
+     * @param address 起始地址，例如DB1.0
+     * @param length  字节长度
+     * @return 字节数组
+     */
+    public byte[] readBulk(String address, int length) {
+        byte[] buffer = new byte[length];
+        this.readBulk(address, buffer, 0, length);
+        return buffer;
+    }
+
+    /**
+     * 并行分片读取大块连续数据到预先分配的缓存中；
+     * 数据按照每个连接协商后的PDU长度切分成单个报文可以容纳的分片，多个连接并行领取分片，
+     * 读取结果直接拷贝到缓存的对应位置，任意分片失败则整体失败
+     *
+     * @param address 起始地址，例如DB1.0
+     * @param buffer  缓存
+     * @param offset  缓存的偏移量
+     * @param length  字节长度
+     */
+    public void readBulk(String address, byte[] buffer, int offset, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("length<=0");
+        }
+        if (offset < 0 || offset + length > buffer.length) {
+            throw new IllegalArgumentException("缓存长度不足");
+        }
+        RequestItem start = AddressUtil.parseByte(address, length);
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean(false);
+        Runnable worker = () -> this.pool.execute(client -> {
+            // 先完成握手，分片大小取决于协商后的PDU长度，14=12(header)+2(parameter)，5(dataItem)
+            client.getAvailableSocket();
+            int chunkSize = client.getPduLength() - 14 - 5;
+            int begin;
+            while (!failed.get() && (begin = cursor.getAndAdd(chunkSize)) < length) {
+                RequestItem item = start.copy();
+                item.setByteAddress(start.getByteAddress() + begin);
+                item.setCount(Math.min(chunkSize, length - begin));
+                try {
+                    byte[] data = client.readS7Data(item).getData();
+                    System.arraycopy(data, 0, buffer, offset + begin, data.length);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    throw e;
+                }
+            }
+            return null;
+        });
+        // 协商后的PDU长度不会大于请求值，按照请求值估算分片数量，避免启动多余的连接
+        int estimateSize = this.pduLength - 14 - 5;
+        this.runParallel(worker, Math.min(this.bulkParallelism, (length + estimateSize - 1) / estimateSize));
+    }
+
+    /**
+     * 并行分片写入大块连续数据，例如配方下载
+     *
+     * @param address 起始地址，例如DB1.0
+     * @param data    数据
+     * @return 失败的分片，空列表表示全部成功
+     */
+    public List<S7BulkChunk> writeBulk(String address, byte[] data) {
+        return this.writeBulk(address, data, 0, data.length);
+    }
+
+    /**
+     * 并行分片写入大块连续数据；
+     * 数据按照协商后的PDU长度切分成单个报文可以容纳的分片，多个连接并行领取分片，分片直接引用源数组，不复制数据；
+     * 单个分片失败不影响其他分片，返回所有失败的分片，可以通过{@link #retryBulk(String, byte[], int, List)}只重试失败的部分
+     *
+     * @param address 起始地址，例如DB1.0
+     * @param data    数据
+     * @param offset  数据的偏移量
+     * @param length  字节长度
+     * @return 失败的分片，空列表表示全部成功
+     */
+    public List<S7BulkChunk> writeBulk(String address, byte[] data, int offset, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("length<=0");
+        }
+        if (offset < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException("数据长度不足");
+        }
+        // 17=12(parameter)+5(dataItem)，12(header)
+        int chunkSize = this.pool.execute(x -> {
+            x.getAvailableSocket();
+            return x.getPduLength();
+        }) - 12 - 17;
+        List<S7BulkChunk> chunks = new ArrayList<>((length + chunkSize - 1) / chunkSize);
+        for (int i = 0; i < length; i += chunkSize) {
+            chunks.add(new S7BulkChunk(i, Math.min(chunkSize, length - i)));
+        }
+        return this.writeChunks(address, data, offset, chunks);
+    }
+
+    /**
+     * 重试批量写入失败的分片
+     *
+     * @param address 批量写入的起始地址
+     * @param data    批量写入的数据
+     * @param offset  批量写入的数据偏移量
+     * @param chunks  失败的分片
+     * @return 仍然失败的分片，空列表表示全部成功
+     */
+    public List<S7BulkChunk> retryBulk(String address, byte[] data, int offset, List<S7BulkChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        chunks.forEach(x -> {
+            if (x.getOffset() < 0 || offset + x.getOffset() + x.getLength() > data.length) {
+                throw new IllegalArgumentException("分片超出数据范围");
+            }
+        });
+        return this.writeChunks(address, data, offset, chunks);
+    }
+
+    /**
+     * 多个连接并行写入分片，连接发生socket异常之后不再领取分片，没有执行的分片以最后一个异常作为失败原因
+     *
+     * @param address 起始地址
+     * @param data    数据
+     * @param offset  数据的偏移量
+     * @param chunks  分片
+     * @return 失败的分片
+     */
+    private List<S7BulkChunk> writeChunks(String address, byte[] data, int offset, List<S7BulkChunk> chunks) {
+        RequestItem start = AddressUtil.parseByte(address, 1);
+        DataItem source = DataItem.createReqByByte(data);
+        Queue<S7BulkChunk> pending = new ConcurrentLinkedQueue<>(chunks);
+        Queue<S7BulkChunk> failures = new ConcurrentLinkedQueue<>();
+        AtomicReference<RuntimeException> lastError = new AtomicReference<>();
+        Runnable worker = () -> {
+            try {
+                this.pool.execute(client -> {
+                    S7BulkChunk chunk;
+                    while ((chunk = pending.poll()) != null) {
+                        RequestItem item = start.copy();
+                        item.setByteAddress(start.getByteAddress() + chunk.getOffset());
+                        item.setCount(chunk.getLength());
+                        try {
+                            client.writeS7Data(item, source.slice(offset + chunk.getOffset(), chunk.getLength()));
+                            chunk.setCause(null);
+                        } catch (RuntimeException e) {
+                            chunk.setCause(e);
+                            failures.add(chunk);
+                            // 连接已经损坏，交给连接池丢弃，剩余分片由其他连接处理
+                            if (e instanceof SocketRuntimeException) {
+                                throw e;
+                            }
+                        }
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                lastError.set(e);
+            }
+        };
+        try {
+            this.runParallel(worker, Math.min(this.bulkParallelism, chunks.size()));
+        } finally {
+            this.invalidateReads();
+        }
+        S7BulkChunk chunk;
+        while ((chunk = pending.poll()) != null) {
+            chunk.setCause(lastError.get() != null ? lastError.get() : new S7CommException("分片没有执行"));
+            failures.add(chunk);
+        }
+        List<S7BulkChunk> res = new ArrayList<>(failures);
+        res.sort((a, b) -> Integer.compare(a.getOffset(), b.getOffset()));
+        return res;
+    }
+
+    /**
+     * 并行执行任务，当前线程也执行其中一个，所有任务结束之后抛出第一个异常
+     *
+     * @param worker      任务
+     * @param parallelism 并行数量
+     */
+    private void runParallel(Runnable worker, int parallelism) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(parallelism);
+        for (int i = 1; i < parallelism; i++) {
+            futures.add(CompletableFuture.runAsync(worker, this.bulkExecutor));
+        }
+        RuntimeException exception = null;
+        try {
+            worker.run();
+        } catch (RuntimeException e) {
+            exception = e;
+        }
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new S7CommException(e.getCause());
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    //endregion
+
+    /**
+     * 关闭连接池以及池中所有的连接
+     */
+    @Override
+    public void close() {
+        this.pool.close();
+        this.bulkExecutor.shutdown();
+    }
+}
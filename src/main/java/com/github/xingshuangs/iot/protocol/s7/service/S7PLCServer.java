@@ -1,45 +1,208 @@
 package com.github.xingshuangs.iot.protocol.s7.service;
 
 
-import com.github.xingshuangs.iot.net.server.TcpServerBasic;
-import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.exceptions.S7CommException;
+import com.github.xingshuangs.iot.monitor.CommEvent;
+import com.github.xingshuangs.iot.net.server.LengthFieldFrameDecoder;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.net.server.NioReactor;
+import com.github.xingshuangs.iot.net.server.NioTcpServerBasic;
 import com.github.xingshuangs.iot.protocol.s7.enums.*;
 import com.github.xingshuangs.iot.protocol.s7.model.*;
 import com.github.xingshuangs.iot.protocol.s7.utils.AddressUtil;
-import com.github.xingshuangs.iot.utils.BooleanUtil;
 import lombok.extern.slf4j.Slf4j;
 
-import java.net.Socket;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * S7的PLC服务端
+ * <p>
+ * 基于NIO实现，所有客户端共享IO线程和业务线程，按照TPKT头中的长度拆包
  *
  * @author xingshuang
  */
 @Slf4j
-public class S7PLCServer extends TcpServerBasic {
+public class S7PLCServer extends NioTcpServerBasic {
 
     /**
-     * 数据Map操作锁
+     * 数据区的最大大小
+     */
+    private static final int AREA_SIZE = 65536;
+
+    /**
+     * DB块编号的最大值
+     */
+    private static final int MAX_DB_NUMBER = 65535;
+
+    /**
+     * 运行中的服务端正在使用的数据目录，同一目录同时只能被一个服务端使用，否则多个服务端会映射同一组文件
+     */
+    private static final Set<Path> DIRECTORIES_IN_USE = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 添加数据区的操作锁
      */
     private final Object objLock = new Object();
 
     /**
-     * 读写锁
+     * 非DB块的数据区，按照EArea的序号索引
+     */
+    private volatile S7DataArea[] areas = new S7DataArea[EArea.values().length];
+
+    /**
+     * DB块数据区，按照DB块编号索引，数组长度为最大DB块编号+1，添加时整体替换
+     */
+    private volatile S7DataArea[] dbAreas = new S7DataArea[0];
+
+    /**
+     * 默认的DB块大小
+     */
+    private int dbSize = AREA_SIZE;
+
+    /**
+     * 数据区映射文件的目录，null表示数据只保存在内存中
+     */
+    private String dataDirectory;
+
+    /**
+     * 当前服务端占用的数据目录，启动时占用，停止时释放，使用objLock同步
+     */
+    private Path claimedDirectory;
+
+    /**
+     * 数据变化事件的分发器，添加监听时创建，分发线程随服务端启动和停止
+     */
+    private volatile S7ChangeDispatcher changeDispatcher;
+
+    /**
+     * 机架号，握手时校验客户端连接请求中的机架号，-1表示不校验
+     */
+    private int rack = -1;
+
+    /**
+     * 槽号，握手时校验客户端连接请求中的槽号，-1表示不校验
+     */
+    private int slot = -1;
+
+    /**
+     * 服务端通告的最大PDU长度，握手时取客户端请求值和该值中的较小值，0表示与客户端请求值一致
+     */
+    private int pduLength = 0;
+
+    public int getPduLength() {
+        return pduLength;
+    }
+
+    public void setPduLength(int pduLength) {
+        if (pduLength < 0) {
+            throw new IllegalArgumentException("pduLength<0");
+        }
+        this.pduLength = pduLength;
+    }
+
+    public int getDbSize() {
+        return dbSize;
+    }
+
+    public void setDbSize(int dbSize) {
+        if (dbSize <= 0 || dbSize > AREA_SIZE) {
+            throw new IllegalArgumentException("dbSize范围[1-65536]");
+        }
+        this.dbSize = dbSize;
+    }
+
+    public int getRack() {
+        return rack;
+    }
+
+    public void setRack(int rack) {
+        if (rack < -1 || rack > 7) {
+            throw new IllegalArgumentException("rack范围[-1-7]");
+        }
+        this.rack = rack;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        if (slot < -1 || slot > 31) {
+            throw new IllegalArgumentException("slot范围[-1-31]");
+        }
+        this.slot = slot;
+    }
+
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * 设置数据区映射文件的目录，每个数据区对应目录下的一个文件，例如DB1.dat，null表示数据只保存在内存中；
+     * 已有的数据区会重新创建，原数据区的映射立即释放，映射文件中已有的数据保留，内存中原有的数据不保留，建议在启动之前设置；
+     * 同一目录同时只能被一个运行中的服务端使用，多个服务端需要使用不同的目录
+     *
+     * @param dataDirectory 目录
      */
-    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    public void setDataDirectory(String dataDirectory) {
+        synchronized (this.objLock) {
+            if (dataDirectory != null) {
+                try {
+                    Files.createDirectories(Paths.get(dataDirectory));
+                } catch (IOException e) {
+                    throw new S7CommException(String.format("创建数据目录[%s]失败", dataDirectory), e);
+                }
+            }
+            if (this.isAlive()) {
+                this.claimDirectory(dataDirectory);
+            }
+            this.dataDirectory = dataDirectory;
+            S7DataArea[] oldAreas = this.areas;
+            S7DataArea[] oldDbAreas = this.dbAreas;
+            this.areas = this.recreateAreas(oldAreas);
+            this.dbAreas = this.recreateAreas(oldDbAreas);
+            // 先切换到新数据区再关闭原数据区，关闭时等待正在进行的读写完成
+            closeAreas(oldAreas);
+            closeAreas(oldDbAreas);
+        }
+    }
 
     /**
-     * 所有数据
+     * 占用数据目录，释放原来占用的目录
+     *
+     * @param dataDirectory 目录，null表示不占用
      */
-    protected final HashMap<String, byte[]> dataMap = new HashMap<>();
+    private void claimDirectory(String dataDirectory) {
+        Path dir = dataDirectory == null ? null : Paths.get(dataDirectory).toAbsolutePath().normalize();
+        if (Objects.equals(dir, this.claimedDirectory)) {
+            return;
+        }
+        if (dir != null && !DIRECTORIES_IN_USE.add(dir)) {
+            throw new S7CommException(String.format("数据目录[%s]已被其他服务端使用", dir));
+        }
+        this.releaseDirectory();
+        this.claimedDirectory = dir;
+    }
+
+    /**
+     * 释放占用的数据目录
+     */
+    private void releaseDirectory() {
+        if (this.claimedDirectory != null) {
+            DIRECTORIES_IN_USE.remove(this.claimedDirectory);
+            this.claimedDirectory = null;
+        }
+    }
 
     public S7PLCServer() {
         this(102);
@@ -47,12 +210,28 @@ public class S7PLCServer extends TcpServerBasic {
 
     public S7PLCServer(int port) {
         this.port = port;
-        this.dataMap.put("DB1", new byte[65536]);
-        this.dataMap.put("M", new byte[65536]);
-        this.dataMap.put("I", new byte[65536]);
-        this.dataMap.put("Q", new byte[65536]);
-        this.dataMap.put("T", new byte[65536]);
-        this.dataMap.put("C", new byte[65536]);
+        this.initialize();
+    }
+
+    public S7PLCServer(int port, NioReactor reactor) {
+        this(null, port, reactor);
+    }
+
+    public S7PLCServer(String host, int port, NioReactor reactor) {
+        super(reactor);
+        this.host = host;
+        this.port = port;
+        this.initialize();
+    }
+
+    private void initialize() {
+        this.frameDecoder = LengthFieldFrameDecoder.createTpkt();
+        this.areas[EArea.INPUTS.ordinal()] = this.createArea("I", AREA_SIZE);
+        this.areas[EArea.OUTPUTS.ordinal()] = this.createArea("Q", AREA_SIZE);
+        this.areas[EArea.FLAGS.ordinal()] = this.createArea("M", AREA_SIZE);
+        this.areas[EArea.S7_TIMERS.ordinal()] = this.createArea("T", AREA_SIZE);
+        this.areas[EArea.S7_COUNTERS.ordinal()] = this.createArea("C", AREA_SIZE);
+        this.addDBArea(1);
     }
 
     /**
@@ -61,173 +240,506 @@ public class S7PLCServer extends TcpServerBasic {
      * @return 数据区
      */
     public Set<String> getAvailableAreas() {
-        synchronized (this.objLock) {
-            return this.dataMap.keySet();
+        Set<String> res = new LinkedHashSet<>();
+        for (S7DataArea area : this.areas) {
+            if (area != null) {
+                res.add(area.getName());
+            }
         }
+        for (S7DataArea area : this.dbAreas) {
+            if (area != null) {
+                res.add(area.getName());
+            }
+        }
+        return res;
     }
 
     /**
-     * 添加所需的DB块
+     * 添加所需的DB块，大小为默认的DB块大小
      *
      * @param dbNumbers db块编号
      */
     public void addDBArea(int... dbNumbers) {
-        log.debug("服务端数据区添加DB[{}]", dbNumbers);
+        this.addDBAreaWithSize(this.dbSize, dbNumbers);
+    }
+
+    /**
+     * 添加指定大小的DB块，数据按页在第一次写入时分配
+     *
+     * @param size      DB块大小，字节数
+     * @param dbNumbers db块编号
+     */
+    public void addDBAreaWithSize(int size, int... dbNumbers) {
+        if (size <= 0 || size > AREA_SIZE) {
+            throw new IllegalArgumentException("DB块大小范围[1-65536]");
+        }
+        log.debug("服务端数据区添加DB[{}]，大小[{}]", dbNumbers, size);
         synchronized (this.objLock) {
+            S7DataArea[] res = this.dbAreas;
             for (int x : dbNumbers) {
-                String name = String.format("DB%s", x);
-                this.dataMap.computeIfAbsent(name, key -> new byte[65536]);
+                if (x < 0 || x > MAX_DB_NUMBER) {
+                    throw new IllegalArgumentException("DB块编号超出范围[0-65535]");
+                }
+                if (x >= res.length) {
+                    res = Arrays.copyOf(res, x + 1);
+                } else if (res[x] != null) {
+                    continue;
+                } else if (res == this.dbAreas) {
+                    res = res.clone();
+                }
+                res[x] = this.createArea("DB" + x, size);
             }
+            this.dbAreas = res;
         }
     }
 
+    /**
+     * 添加数据变化监听，客户端写入导致监听范围内的数据变化时回调
+     *
+     * @param address  起始地址，例如DB1.0、M10
+     * @param length   字节长度
+     * @param listener 监听器
+     */
+    public void addChangeListener(String address, int length, IS7DataChangeListener listener) {
+        RequestItem item = AddressUtil.parseByte(address, length);
+        this.addChangeListener(item.getArea(), item.getDbNumber(), item.getByteAddress(), length, listener);
+    }
+
+    /**
+     * 添加数据变化监听，客户端写入导致监听范围内的数据变化时回调
+     *
+     * @param area     区域
+     * @param dbNumber DB块编号，非DB区域忽略
+     * @param offset   字节索引
+     * @param length   字节长度
+     * @param listener 监听器
+     */
+    public void addChangeListener(EArea area, int dbNumber, int offset, int length, IS7DataChangeListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener不能为null");
+        }
+        if (offset < 0 || length <= 0) {
+            throw new IllegalArgumentException("offset<0或length<=0");
+        }
+        synchronized (this.objLock) {
+            if (this.changeDispatcher == null) {
+                this.changeDispatcher = new S7ChangeDispatcher("iot-s7-change-" + this.port);
+            }
+            this.changeDispatcher.addListener(area, dbNumber, offset, length, listener);
+            if (this.isAlive()) {
+                this.changeDispatcher.start();
+            }
+        }
+    }
+
+    /**
+     * 移除数据变化监听器
+     *
+     * @param listener 监听器
+     */
+    public void removeChangeListener(IS7DataChangeListener listener) {
+        synchronized (this.objLock) {
+            if (this.changeDispatcher != null && this.changeDispatcher.removeListener(listener) == 0) {
+                this.changeDispatcher.shutdown();
+                this.changeDispatcher = null;
+            }
+        }
+    }
+
+    /**
+     * 分发跟不上时被丢弃的数据变化事件数量，监听器处理太慢导致事件队列满的时候新事件直接丢弃，不阻塞客户端的写请求
+     *
+     * @return 数量
+     */
+    public long getDroppedChangeEventCount() {
+        S7ChangeDispatcher dispatcher = this.changeDispatcher;
+        return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+    }
+
+    /**
+     * 创建数据区，设置了数据目录的时候映射到文件
+     *
+     * @param name 名称
+     * @param size 大小
+     * @return 数据区
+     */
+    private S7DataArea createArea(String name, int size) {
+        if (this.dataDirectory == null) {
+            return new S7DataArea(name, size);
+        }
+        return new S7MappedDataArea(name, size, Paths.get(this.dataDirectory, name + ".dat"));
+    }
+
+    /**
+     * 按照当前的数据目录重新创建数据区
+     *
+     * @param src 原数据区
+     * @return 新数据区
+     */
+    private S7DataArea[] recreateAreas(S7DataArea[] src) {
+        S7DataArea[] res = new S7DataArea[src.length];
+        for (int i = 0; i < src.length; i++) {
+            if (src[i] != null) {
+                src[i].flush();
+                res[i] = this.createArea(src[i].getName(), src[i].getSize());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 关闭数据区，释放映射文件
+     *
+     * @param src 数据区
+     */
+    private static void closeAreas(S7DataArea[] src) {
+        for (S7DataArea area : src) {
+            if (area != null) {
+                area.close();
+            }
+        }
+    }
+
+    /**
+     * 将所有数据区的数据持久化到映射文件
+     */
+    public void flush() {
+        // 与切换数据目录互斥，避免持久化已经解除映射的数据区
+        synchronized (this.objLock) {
+            for (S7DataArea area : this.areas) {
+                if (area != null) {
+                    area.flush();
+                }
+            }
+            for (S7DataArea area : this.dbAreas) {
+                if (area != null) {
+                    area.flush();
+                }
+            }
+        }
+    }
 
     @Override
-    protected boolean checkHandshake(Socket socket) {
-        // 校验connect request
-        S7Data s7Data = this.readS7DataFromClient(socket);
-        if (!(s7Data.getCotp() instanceof COTPConnection)
-                || s7Data.getCotp().getPduType() != EPduType.CONNECT_REQUEST) {
-            log.error("客户端[{}]握手失败，不是连接请求", socket.getRemoteSocketAddress());
-            return false;
+    public void start(String host, int port) {
+        super.start(host, port);
+        synchronized (this.objLock) {
+            try {
+                this.claimDirectory(this.dataDirectory);
+            } catch (S7CommException e) {
+                super.stop();
+                throw e;
+            }
+            if (this.changeDispatcher != null) {
+                this.changeDispatcher.start();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            // 分发完已经产生的事件再停止分发线程，监听保留到下次启动
+            synchronized (this.objLock) {
+                if (this.changeDispatcher != null) {
+                    this.changeDispatcher.shutdown();
+                }
+                this.releaseDirectory();
+            }
+            this.flush();
+        }
+    }
+
+    /**
+     * 查找请求项对应的数据区
+     *
+     * @param item 请求项
+     * @return 数据区，不存在则返回null
+     */
+    private S7DataArea findArea(RequestItem item) {
+        if (item.getArea() == EArea.DATA_BLOCKS) {
+            S7DataArea[] res = this.dbAreas;
+            int dbNumber = item.getDbNumber();
+            return dbNumber >= 0 && dbNumber < res.length ? res[dbNumber] : null;
+        }
+        return this.areas[item.getArea().ordinal()];
+    }
+
+
+    @Override
+    protected void onConnected(NioConnection connection) {
+        connection.setAttachment(new Session(CommEvent.handshake().address(connection.getRemoteAddress())));
+    }
+
+    @Override
+    protected void onDisconnected(NioConnection connection) {
+        Session session = (Session) connection.getAttachment();
+        // 握手未完成就断开的，提交失败的握手事件
+        if (session != null && session.stage != Session.READY) {
+            session.stage = Session.READY;
+            session.event.commit();
+        }
+    }
+
+    @Override
+    protected void onFrame(NioConnection connection, byte[] frame) {
+        Session session = (Session) connection.getAttachment();
+        S7Data req = S7Data.fromBytes(frame);
+        if (session.stage != Session.READY) {
+            if (!this.checkHandshake(connection, session, req)) {
+                connection.close();
+            }
+            return;
+        }
+        CommEvent event = CommEvent.serverRequest().address(connection.getRemoteAddress()).pduCount(1)
+                .bytes(req.getTpkt().getLength());
+        try {
+            this.doRequestHandle(connection, req, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * 握手校验，依次为connect request和setup
+     *
+     * @param connection 客户端连接
+     * @param session    会话
+     * @param s7Data     请求数据
+     * @return 校验结果，true：成功，false：失败
+     */
+    private boolean checkHandshake(NioConnection connection, Session session, S7Data s7Data) {
+        if (session.stage == Session.CONNECT) {
+            // 校验connect request
+            if (!(s7Data.getCotp() instanceof COTPConnection)
+                    || s7Data.getCotp().getPduType() != EPduType.CONNECT_REQUEST) {
+                log.error("客户端[{}]握手失败，不是连接请求", connection.getRemoteAddress());
+                return false;
+            }
+            // 目标TSAP的低字节为机架号*0x20+槽号
+            int rackSlot = ((COTPConnection) s7Data.getCotp()).getDestinationTsap() & 0xFF;
+            if ((this.rack >= 0 && this.rack != rackSlot >> 5) || (this.slot >= 0 && this.slot != (rackSlot & 0x1F))) {
+                log.error("客户端[{}]握手失败，机架号[{}]槽号[{}]不匹配", connection.getRemoteAddress(), rackSlot >> 5, rackSlot & 0x1F);
+                return false;
+            }
+            S7Data connectConfirm = S7Data.createConnectConfirm(s7Data);
+            this.write(connection, connectConfirm.toByteArray());
+            session.stage = Session.SETUP;
+            return true;
         }
-        S7Data connectConfirm = S7Data.createConnectConfirm(s7Data);
-        this.write(socket, connectConfirm.toByteArray());
 
         // 校验setup
-        s7Data = this.readS7DataFromClient(socket);
         if (!(s7Data.getCotp() instanceof COTPData)
                 || s7Data.getCotp().getPduType() != EPduType.DT_DATA) {
-            log.error("客户端[{}]握手失败，不是参数设置", socket.getRemoteSocketAddress());
+            log.error("客户端[{}]握手失败，不是参数设置", connection.getRemoteAddress());
             return false;
         }
         S7Data connectAckDtData = S7Data.createConnectAckDtData(s7Data);
-        this.write(socket, connectAckDtData.toByteArray());
-        log.debug("客户端[{}]握手成功", socket.getRemoteSocketAddress());
+        SetupComParameter parameter = (SetupComParameter) connectAckDtData.getParameter();
+        if (this.pduLength > 0 && this.pduLength < parameter.getPduLength()) {
+            parameter.setPduLength(this.pduLength);
+        }
+        this.write(connection, connectAckDtData.toByteArray());
+        log.debug("客户端[{}]握手成功", connection.getRemoteAddress());
+        session.stage = Session.READY;
+        session.event.success();
+        session.event.commit();
         return true;
     }
 
-    @Override
-    protected void doClientHandle(Socket socket) {
-        S7Data req = this.readS7DataFromClient(socket);
+    /**
+     * 处理客户端的请求
+     *
+     * @param connection 客户端连接
+     * @param req        请求数据
+     * @param event      通信事件
+     */
+    private void doRequestHandle(NioConnection connection, S7Data req, CommEvent event) {
         if (!(req.getCotp() instanceof COTPData)
                 || req.getCotp().getPduType() != EPduType.DT_DATA
                 || req.getHeader().getMessageType() != EMessageType.JOB) {
             S7Data response = S7Data.createErrorResponse(req, EErrorClass.ERROR_ON_SUPPLIES, 0x8500);
-            this.write(socket, response.toByteArray());
+            this.write(connection, response.toByteArray());
+            return;
         }
 
         try {
+            event.functionCode(req.getParameter().getFunctionCode());
             switch (req.getParameter().getFunctionCode()) {
                 case READ_VARIABLE:
-                    this.readVariableHandle(socket, req);
+                    event.itemCount(((ReadWriteParameter) req.getParameter()).getItemCount());
+                    event.bytes(this.readVariableHandle(connection, req));
+                    event.success();
                     return;
                 case WRITE_VARIABLE:
-                    this.writeVariableHandle(socket, req);
+                    event.itemCount(((ReadWriteParameter) req.getParameter()).getItemCount());
+                    event.bytes(this.writeVariableHandle(connection, req));
+                    event.success();
                     return;
                 default:
                     S7Data response = S7Data.createErrorResponse(req, EErrorClass.ERROR_ON_SUPPLIES, 0x8500);
-                    this.write(socket, response.toByteArray());
+                    this.write(connection, response.toByteArray());
             }
         } catch (Exception e) {
             S7Data response = S7Data.createErrorResponse(req, EErrorClass.ERROR_ON_SERVICE_PROCESSING, 0x8404);
-            this.write(socket, response.toByteArray());
+            this.write(connection, response.toByteArray());
         }
     }
 
     /**
      * 读数据处理
      *
-     * @param socket socket对象
-     * @param req    请求数据
+     * @param connection 客户端连接
+     * @param req        请求数据
+     * @return 响应的字节数
      */
-    private void readVariableHandle(Socket socket, S7Data req) {
+    private int readVariableHandle(NioConnection connection, S7Data req) {
         ReadWriteParameter parameter = (ReadWriteParameter) req.getParameter();
-        List<ReturnItem> returnItems = new ArrayList<>();
-        try {
-            this.rwLock.readLock().lock();
-            parameter.getRequestItems().forEach(p -> {
-                // 判定该区域的数据是否存在
-                String area = AddressUtil.parseArea(p);
-                if (!this.dataMap.containsKey(area)) {
-                    log.error("客户端[{}]读取[{}]数据，区域[{}]，字节索引[{}]，位索引[{}]，长度[{}]，无该区域地址数据",
-                            socket.getRemoteSocketAddress(), p.getVariableType(), area, p.getByteAddress(), p.getBitAddress(), p.getCount());
-                    returnItems.add(ReturnItem.createDefault(EReturnCode.OBJECT_DOES_NOT_EXIST));
-                    return;
-                }
-                // 提取指定地址的字节数据
-                byte[] bytes = this.dataMap.get(area);
-                ByteReadBuff buff = new ByteReadBuff(bytes);
-                byte[] data;
-                if (p.getVariableType() == EParamVariableType.BYTE) {
-                    data = buff.getBytes(p.getByteAddress(), p.getCount());
-                } else {
-                    byte oldData = buff.getByte(p.getByteAddress());
-                    data = BooleanUtil.getValue(oldData, p.getBitAddress()) ? new byte[]{(byte) 0x01} : new byte[]{(byte) 0x00};
-                }
+        List<ReturnItem> returnItems = new ArrayList<>(parameter.getItemCount());
+        for (RequestItem p : parameter.getRequestItems()) {
+            // 判定该区域的数据是否存在
+            S7DataArea area = this.findArea(p);
+            if (area == null) {
+                log.error("客户端[{}]读取[{}]数据，区域[{}]，DB块[{}]，字节索引[{}]，位索引[{}]，长度[{}]，无该区域地址数据",
+                        connection.getRemoteAddress(), p.getVariableType(), p.getArea(), p.getDbNumber(), p.getByteAddress(), p.getBitAddress(), p.getCount());
+                returnItems.add(DataItem.createAckBy(EReturnCode.OBJECT_DOES_NOT_EXIST));
+                continue;
+            }
+            boolean isByte = p.getVariableType() == EParamVariableType.BYTE;
+            if (!area.contains(p.getByteAddress(), isByte ? p.getCount() : 1)) {
+                log.error("客户端[{}]读取[{}]数据，区域[{}]，字节索引[{}]，长度[{}]，超出地址范围",
+                        connection.getRemoteAddress(), p.getVariableType(), area.getName(), p.getByteAddress(), p.getCount());
+                returnItems.add(DataItem.createAckBy(EReturnCode.INVALID_ADDRESS));
+                continue;
+            }
+            // 提取指定地址的字节数据
+            byte[] data;
+            if (isByte) {
+                data = area.read(p.getByteAddress(), p.getCount());
+            } else {
+                data = area.readBit(p.getByteAddress(), p.getBitAddress()) ? new byte[]{(byte) 0x01} : new byte[]{(byte) 0x00};
+            }
+            if (log.isDebugEnabled()) {
                 log.debug("客户端[{}]读取[{}]数据，区域[{}]，字节索引[{}]，位索引[{}]，长度[{}]，区域地址数据{}",
-                        socket.getRemoteSocketAddress(), p.getVariableType(), area, p.getByteAddress(), p.getBitAddress(), p.getCount(), data);
-                DataItem dataItem = DataItem.createAckBy(data, p.getVariableType() == EParamVariableType.BYTE ? EDataVariableType.BYTE_WORD_DWORD : EDataVariableType.BIT);
-                returnItems.add(dataItem);
-            });
-        } finally {
-            this.rwLock.readLock().unlock();
+                        connection.getRemoteAddress(), p.getVariableType(), area.getName(), p.getByteAddress(), p.getBitAddress(), p.getCount(), data);
+            }
+            returnItems.add(DataItem.createAckBy(data, isByte ? EDataVariableType.BYTE_WORD_DWORD : EDataVariableType.BIT));
         }
         S7Data ack = S7Data.createReadWriteResponse(req, returnItems);
-        this.write(socket, ack.toByteArray());
+        byte[] ackBytes = ack.toByteArray();
+        this.write(connection, ackBytes);
+        return ackBytes.length;
     }
 
     /**
      * 写入数据处理
      *
-     * @param socket socket对象
-     * @param req    请求数据
+     * @param connection 客户端连接
+     * @param req        请求数据
+     * @return 响应的字节数
      */
-    private void writeVariableHandle(Socket socket, S7Data req) {
+    private int writeVariableHandle(NioConnection connection, S7Data req) {
         ReadWriteParameter parameter = (ReadWriteParameter) req.getParameter();
-        List<DataItem> dataItems = req.getDatum().getReturnItems().stream().map(DataItem.class::cast).collect(Collectors.toList());
-        List<ReturnItem> returnItems = new ArrayList<>();
-        try {
-            this.rwLock.writeLock().lock();
-            for (int i = 0; i < parameter.getItemCount(); i++) {
-                RequestItem p = parameter.getRequestItems().get(i);
-                DataItem d = dataItems.get(i);
-                // 判定该区域的数据是否存在
-                String area = AddressUtil.parseArea(p);
-                if (!this.dataMap.containsKey(area)) {
-                    log.error("客户端[{}]写入[{}]数据，区域[{}]，字节索引[{}]，位索引[{}]，长度[{}]，无该区域地址",
-                            socket.getRemoteSocketAddress(), p.getVariableType(), area, p.getByteAddress(), p.getBitAddress(), p.getCount());
-                    returnItems.add(ReturnItem.createDefault(EReturnCode.OBJECT_DOES_NOT_EXIST));
-                    continue;
-                }
-                // 写入指定地址的数据
-                byte[] bytes = this.dataMap.get(area);
-                if (p.getVariableType() == EParamVariableType.BYTE) {
-                    System.arraycopy(d.getData(), 0, bytes, p.getByteAddress(), d.getData().length);
-                } else {
-                    byte newData = BooleanUtil.setBit(bytes[p.getByteAddress()], p.getBitAddress(), d.getData()[0] == 1);
-                    System.arraycopy(new byte[]{newData}, 0, bytes, p.getByteAddress(), 1);
-                }
+        List<ReturnItem> dataItems = req.getDatum().getReturnItems();
+        List<ReturnItem> returnItems = new ArrayList<>(parameter.getItemCount());
+        for (int i = 0; i < parameter.getItemCount(); i++) {
+            RequestItem p = parameter.getRequestItems().get(i);
+            DataItem d = (DataItem) dataItems.get(i);
+            // 判定该区域的数据是否存在
+            S7DataArea area = this.findArea(p);
+            if (area == null) {
+                log.error("客户端[{}]写入[{}]数据，区域[{}]，DB块[{}]，字节索引[{}]，位索引[{}]，长度[{}]，无该区域地址",
+                        connection.getRemoteAddress(), p.getVariableType(), p.getArea(), p.getDbNumber(), p.getByteAddress(), p.getBitAddress(), p.getCount());
+                returnItems.add(ReturnItem.createDefault(EReturnCode.OBJECT_DOES_NOT_EXIST));
+                continue;
+            }
+            boolean isByte = p.getVariableType() == EParamVariableType.BYTE;
+            if (!area.contains(p.getByteAddress(), isByte ? d.getData().length : 1)) {
+                log.error("客户端[{}]写入[{}]数据，区域[{}]，字节索引[{}]，长度[{}]，超出地址范围",
+                        connection.getRemoteAddress(), p.getVariableType(), area.getName(), p.getByteAddress(), p.getCount());
+                returnItems.add(ReturnItem.createDefault(EReturnCode.INVALID_ADDRESS));
+                continue;
+            }
+            // 写入指定地址的数据
+            S7ChangeDispatcher dispatcher = this.changeDispatcher;
+            if (dispatcher != null && dispatcher.isWatched(p.getArea(), p.getDbNumber(), p.getByteAddress(), isByte ? d.getData().length : 1)) {
+                this.writeAndNotify(dispatcher, area, p, d.getData());
+            } else if (isByte) {
+                area.write(p.getByteAddress(), d.getData());
+            } else {
+                area.writeBit(p.getByteAddress(), p.getBitAddress(), d.getData()[0] == 1);
+            }
+            if (log.isDebugEnabled()) {
                 log.debug("客户端[{}]写入[{}]数据，区域[{}]，字节索引[{}]，位索引[{}]，长度[{}]，区域地址数据{}",
-                        socket.getRemoteSocketAddress(), p.getVariableType(), area, p.getByteAddress(), p.getBitAddress(), p.getCount(), d.getData());
-                returnItems.add(ReturnItem.createDefault(EReturnCode.SUCCESS));
+                        connection.getRemoteAddress(), p.getVariableType(), area.getName(), p.getByteAddress(), p.getBitAddress(), p.getCount(), d.getData());
             }
-        } finally {
-            this.rwLock.writeLock().unlock();
+            returnItems.add(ReturnItem.createDefault(EReturnCode.SUCCESS));
         }
 
         S7Data ack = S7Data.createReadWriteResponse(req, returnItems);
-        this.write(socket, ack.toByteArray());
+        byte[] ackBytes = ack.toByteArray();
+        this.write(connection, ackBytes);
+        return ackBytes.length;
     }
 
     /**
-     * 读取S7协议的数据
+     * 写入数据，数据有变化时发布变化事件
      *
-     * @param socket socket对象
-     * @return S7Data
+     * @param dispatcher 分发器
+     * @param area       数据区
+     * @param p          请求项
+     * @param data       写入的数据
+     */
+    private void writeAndNotify(S7ChangeDispatcher dispatcher, S7DataArea area, RequestItem p, byte[] data) {
+        byte[] oldData;
+        byte[] newData;
+        if (p.getVariableType() == EParamVariableType.BYTE) {
+            oldData = area.exchange(p.getByteAddress(), data);
+            newData = data;
+        } else {
+            byte old = area.exchangeBit(p.getByteAddress(), p.getBitAddress(), data[0] == 1);
+            oldData = new byte[]{old};
+            newData = new byte[]{(byte) (data[0] == 1 ? old | (1 << p.getBitAddress()) : old & ~(1 << p.getBitAddress()))};
+        }
+        if (!Arrays.equals(oldData, newData)) {
+            int dbNumber = p.getArea() == EArea.DATA_BLOCKS ? p.getDbNumber() : 0;
+            dispatcher.publish(new S7DataChangeEvent(p.getArea(), dbNumber, p.getByteAddress(), oldData, newData));
+        }
+    }
+
+    /**
+     * 客户端会话
      */
-    private S7Data readS7DataFromClient(Socket socket) {
-        byte[] data = this.readClientData(socket);
-        return S7Data.fromBytes(data);
+    private static class Session {
+
+        /**
+         * 等待连接请求
+         */
+        static final int CONNECT = 0;
+
+        /**
+         * 等待参数设置
+         */
+        static final int SETUP = 1;
+
+        /**
+         * 握手完成
+         */
+        static final int READY = 2;
+
+        /**
+         * 握手阶段，只在处理报文的业务线程中修改
+         */
+        volatile int stage = CONNECT;
+
+        /**
+         * 握手事件
+         */
+        final CommEvent event;
+
+        Session(CommEvent event) {
+            this.event = event;
+        }
     }
 }
@@ -0,0 +1,157 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+
+import com.github.xingshuangs.iot.net.server.NioReactor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多个虚拟S7 PLC服务端的组合
+ * <p>
+ * 每个监听地址对应一个独立的虚拟PLC，拥有自己的数据区、PDU长度、机架号和槽号，
+ * 所有虚拟PLC共享同一个反应器的IO线程和业务线程，一个进程可以模拟成百上千台PLC
+ *
+ * @author xingshuang
+ */
+@Slf4j
+public class S7PLCServerGroup {
+
+    /**
+     * 共享的反应器
+     */
+    private final NioReactor reactor;
+
+    /**
+     * 虚拟PLC，key为监听地址
+     */
+    private final Map<String, S7PLCServer> servers = new ConcurrentHashMap<>();
+
+    public S7PLCServerGroup() {
+        this(NioReactor.newInstance());
+    }
+
+    public S7PLCServerGroup(int ioThreads, int workerThreads) {
+        this(NioReactor.newInstance(ioThreads, workerThreads));
+    }
+
+    private S7PLCServerGroup(NioReactor reactor) {
+        this.reactor = reactor;
+    }
+
+    public NioReactor getReactor() {
+        return reactor;
+    }
+
+    /**
+     * 添加监听所有本地地址的虚拟PLC
+     *
+     * @param port 端口号
+     * @return 虚拟PLC
+     */
+    public S7PLCServer addServer(int port) {
+        return this.addServer(null, port);
+    }
+
+    /**
+     * 添加虚拟PLC
+     *
+     * @param host 绑定的本地地址，null表示所有地址
+     * @param port 端口号
+     * @return 虚拟PLC
+     */
+    public S7PLCServer addServer(String host, int port) {
+        String key = toKey(host, port);
+        S7PLCServer server = new S7PLCServer(host, port, this.reactor);
+        // 检查和添加必须是一个原子操作，否则并发添加同一地址时后者会覆盖前者
+        if (this.servers.putIfAbsent(key, server) != null) {
+            throw new IllegalArgumentException(String.format("监听地址[%s]已存在", key));
+        }
+        return server;
+    }
+
+    /**
+     * 获取虚拟PLC
+     *
+     * @param host 绑定的本地地址，null表示所有地址
+     * @param port 端口号
+     * @return 虚拟PLC，不存在返回null
+     */
+    public S7PLCServer getServer(String host, int port) {
+        return this.servers.get(toKey(host, port));
+    }
+
+    /**
+     * 获取监听所有本地地址的虚拟PLC
+     *
+     * @param port 端口号
+     * @return 虚拟PLC，不存在返回null
+     */
+    public S7PLCServer getServer(int port) {
+        return this.getServer(null, port);
+    }
+
+    /**
+     * 获取所有虚拟PLC
+     *
+     * @return 虚拟PLC列表
+     */
+    public List<S7PLCServer> getServers() {
+        return new ArrayList<>(this.servers.values());
+    }
+
+    /**
+     * 移除并停止虚拟PLC
+     *
+     * @param host 绑定的本地地址，null表示所有地址
+     * @param port 端口号
+     */
+    public void removeServer(String host, int port) {
+        S7PLCServer server = this.servers.remove(toKey(host, port));
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * 启动所有虚拟PLC
+     */
+    public void start() {
+        this.servers.values().forEach(S7PLCServer::start);
+        log.debug("启动[{}]个虚拟PLC", this.servers.size());
+    }
+
+    /**
+     * 停止所有虚拟PLC，反应器继续保留，可以再次启动
+     */
+    public void stop() {
+        this.servers.values().forEach(S7PLCServer::stop);
+    }
+
+    /**
+     * 停止所有虚拟PLC并关闭反应器，之后不能再使用
+     */
+    public void shutdown() {
+        try {
+            this.stop();
+        } finally {
+            this.reactor.shutdown();
+        }
+    }
+
+    /**
+     * 获取所有虚拟PLC的客户端连入数量
+     *
+     * @return 客户端连入数量
+     */
+    public int getClientSum() {
+        return this.servers.values().stream().mapToInt(S7PLCServer::getClientSum).sum();
+    }
+
+    private static String toKey(String host, int port) {
+        return (host == null ? "*" : host) + ":" + port;
+    }
+}
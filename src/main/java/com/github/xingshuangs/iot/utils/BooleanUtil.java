@@ -95,7 +95,7 @@ public class BooleanUtil {
             throw new IllegalArgumentException("list为空");
         }
         int index = 0;
-        byte[] values = new byte[list.size() / 8 + list.size() % 8 == 0 ? 0 : 1];
+        byte[] values = new byte[(list.size() + 7) / 8];
         for (int i = 0; i < values.length; i++) {
             for (int j = 0; j < 8; j++) {
                 if (index < list.size()) {
@@ -106,4 +106,95 @@ public class BooleanUtil {
         }
         return values;
     }
+
+    /**
+     * 将按位打包的字节数组转换为long数组，低位在前，第i位位于第i/64个long的第i%64位，超出数量的位清零
+     *
+     * @param quantity 位数量
+     * @param src      数据源，低位在前
+     * @return long数组，长度为(quantity+63)/64
+     */
+    public static long[] byteArrayToLongArray(int quantity, byte[] src) {
+        if (src == null) {
+            throw new NullPointerException("src");
+        }
+        if (quantity < 0 || src.length * 8 < quantity) {
+            throw new IllegalArgumentException("quantity数量超过字节数组的位总和");
+        }
+        long[] res = new long[(quantity + 63) / 64];
+        int byteCount = (quantity + 7) / 8;
+        for (int i = 0; i < byteCount; i++) {
+            res[i >> 3] |= (src[i] & 0xFFL) << ((i & 7) * 8);
+        }
+        if (quantity % 64 != 0) {
+            res[res.length - 1] &= (1L << (quantity % 64)) - 1;
+        }
+        return res;
+    }
+
+    /**
+     * 将long数组转换为按位打包的字节数组，低位在前，src长度不足的部分按0处理，超出数量的位清零
+     *
+     * @param quantity 位数量
+     * @param src      数据源，第i位位于第i/64个long的第i%64位
+     * @return 字节数组，长度为(quantity+7)/8
+     */
+    public static byte[] longArrayToByteArray(int quantity, long[] src) {
+        if (src == null) {
+            throw new NullPointerException("src");
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("quantity<0");
+        }
+        byte[] res = new byte[(quantity + 7) / 8];
+        for (int i = 0; i < res.length && (i >> 3) < src.length; i++) {
+            res[i] = (byte) (src[i >> 3] >>> ((i & 7) * 8));
+        }
+        if (quantity % 8 != 0) {
+            res[res.length - 1] &= (byte) ((1 << (quantity % 8)) - 1);
+        }
+        return res;
+    }
+
+    /**
+     * 两组位数据按位异或，结果中为1的位表示发生了变化
+     *
+     * @param previous 之前的数据
+     * @param current  当前的数据
+     * @return 变化的位，长度取两者中较长的
+     */
+    public static long[] xor(long[] previous, long[] current) {
+        long[] res = new long[Math.max(previous.length, current.length)];
+        for (int i = 0; i < res.length; i++) {
+            long a = i < previous.length ? previous[i] : 0;
+            long b = i < current.length ? current[i] : 0;
+            res[i] = a ^ b;
+        }
+        return res;
+    }
+
+    /**
+     * 获取两组位数据中发生变化的位索引，按照从小到大排列
+     *
+     * @param previous 之前的数据
+     * @param current  当前的数据
+     * @return 变化的位索引
+     */
+    public static int[] changedIndexes(long[] previous, long[] current) {
+        long[] diff = xor(previous, current);
+        int count = 0;
+        for (long word : diff) {
+            count += Long.bitCount(word);
+        }
+        int[] res = new int[count];
+        int index = 0;
+        for (int i = 0; i < diff.length; i++) {
+            long word = diff[i];
+            while (word != 0) {
+                res[index++] = i * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return res;
+    }
 }
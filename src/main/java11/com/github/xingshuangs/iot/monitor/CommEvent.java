@@ -0,0 +1,203 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+/**
+ * 通信事件，用于Java Flight Recorder(JFR)的自定义事件记录
+ * 该类为Java11及以上版本的实现，通过多版本JAR替换Java8的空实现，事件未开启时不产生额外的对象分配
+ *
+ * @author xingshuang
+ */
+public final class CommEvent {
+
+    /**
+     * 空事件，JFR未开启对应事件时使用
+     */
+    private static final CommEvent NOOP = new CommEvent(null);
+
+    /**
+     * JFR事件
+     */
+    private final CommJfrEvent event;
+
+    /**
+     * 地址
+     */
+    private Object address;
+
+    /**
+     * 功能码
+     */
+    private Object functionCode;
+
+    private CommEvent(CommJfrEvent event) {
+        this.event = event;
+    }
+
+    /**
+     * 开始事件
+     *
+     * @param event JFR事件
+     * @return 事件
+     */
+    private static CommEvent begin(CommJfrEvent event) {
+        if (!event.isEnabled()) {
+            return NOOP;
+        }
+        event.begin();
+        return new CommEvent(event);
+    }
+
+    //region 事件创建
+
+    /**
+     * S7协议单次请求响应事件，一次PDU的交互
+     *
+     * @return 事件
+     */
+    public static CommEvent s7Request() {
+        return begin(new S7RequestEvent());
+    }
+
+    /**
+     * S7协议批量读写事件，一次读写可能被拆分为多个PDU
+     *
+     * @return 事件
+     */
+    public static CommEvent s7Batch() {
+        return begin(new S7BatchEvent());
+    }
+
+    /**
+     * Modbus协议单次请求响应事件
+     *
+     * @return 事件
+     */
+    public static CommEvent modbusRequest() {
+        return begin(new ModbusRequestEvent());
+    }
+
+    /**
+     * 握手事件
+     *
+     * @return 事件
+     */
+    public static CommEvent handshake() {
+        return begin(new HandshakeEvent());
+    }
+
+    /**
+     * 客户端重新创建socket并连接的事件
+     *
+     * @return 事件
+     */
+    public static CommEvent reconnect() {
+        return begin(new ReconnectEvent());
+    }
+
+    /**
+     * 服务端处理客户端请求的事件
+     *
+     * @return 事件
+     */
+    public static CommEvent serverRequest() {
+        return begin(new ServerRequestEvent());
+    }
+
+    //endregion
+
+    //region 事件参数
+
+    /**
+     * 设置通信地址，在提交的时候才转换为字符串
+     *
+     * @param address 地址
+     * @return 事件本身
+     */
+    public CommEvent address(Object address) {
+        if (this.event != null) {
+            this.address = address;
+        }
+        return this;
+    }
+
+    /**
+     * 设置功能码
+     *
+     * @param functionCode 功能码
+     * @return 事件本身
+     */
+    public CommEvent functionCode(Object functionCode) {
+        if (this.event != null) {
+            this.functionCode = functionCode;
+        }
+        return this;
+    }
+
+    /**
+     * 设置数据项个数
+     *
+     * @param itemCount 数据项个数
+     * @return 事件本身
+     */
+    public CommEvent itemCount(int itemCount) {
+        if (this.event != null) {
+            this.event.itemCount = itemCount;
+        }
+        return this;
+    }
+
+    /**
+     * 设置PDU个数
+     *
+     * @param pduCount PDU个数
+     * @return 事件本身
+     */
+    public CommEvent pduCount(int pduCount) {
+        if (this.event != null) {
+            this.event.pduCount = pduCount;
+        }
+        return this;
+    }
+
+    /**
+     * 累加字节数
+     *
+     * @param bytes 字节数
+     * @return 事件本身
+     */
+    public CommEvent bytes(int bytes) {
+        if (this.event != null) {
+            this.event.bytes += bytes;
+        }
+        return this;
+    }
+
+    /**
+     * 标记成功
+     *
+     * @return 事件本身
+     */
+    public CommEvent success() {
+        if (this.event != null) {
+            this.event.success = true;
+        }
+        return this;
+    }
+
+    /**
+     * 提交事件，持续时间为创建事件到提交事件的时间
+     */
+    public void commit() {
+        if (this.event == null) {
+            return;
+        }
+        this.event.end();
+        if (this.event.shouldCommit()) {
+            this.event.address = this.address == null ? null : this.address.toString();
+            this.event.functionCode = this.functionCode == null ? null : this.functionCode.toString();
+            this.event.commit();
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,55 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 通信JFR事件的基类，所有通信事件共用的字段
+ *
+ * @author xingshuang
+ */
+@Category({"IoT Communication"})
+@StackTrace(false)
+abstract class CommJfrEvent extends Event {
+
+    /**
+     * 通信地址，客户端为PLC的地址，服务端为客户端的地址
+     */
+    @Label("Address")
+    String address;
+
+    /**
+     * 功能码
+     */
+    @Label("Function Code")
+    String functionCode;
+
+    /**
+     * 数据项个数
+     */
+    @Label("Item Count")
+    int itemCount;
+
+    /**
+     * PDU个数
+     */
+    @Label("PDU Count")
+    int pduCount;
+
+    /**
+     * 发送和接收的字节总数
+     */
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+
+    /**
+     * 是否成功
+     */
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 握手事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.Handshake")
+@Label("Handshake")
+@Description("Protocol handshake after the TCP connection is established")
+final class HandshakeEvent extends CommJfrEvent {
+}
@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Modbus单次请求响应事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.modbus.Request")
+@Label("Modbus Request")
+@Description("One Modbus request/response exchange")
+final class ModbusRequestEvent extends CommJfrEvent {
+}
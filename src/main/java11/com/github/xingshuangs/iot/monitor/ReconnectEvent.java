@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 客户端重新连接事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.Reconnect")
+@Label("Reconnect")
+@Description("Client creates and connects a new socket")
+final class ReconnectEvent extends CommJfrEvent {
+}
@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * S7批量读写事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.s7.Batch")
+@Label("S7 Batch")
+@Description("S7 read/write of several items, possibly split into several PDUs")
+final class S7BatchEvent extends CommJfrEvent {
+}
@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * S7单次请求响应事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.s7.Request")
+@Label("S7 Request")
+@Description("One S7 PDU request/response exchange")
+final class S7RequestEvent extends CommJfrEvent {
+}
@@ -0,0 +1,17 @@
+package com.github.xingshuangs.iot.monitor;
+
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 服务端处理请求事件
+ *
+ * @author xingshuang
+ */
+@Name("iot.ServerRequest")
+@Label("Server Request")
+@Description("Server handles one client request")
+final class ServerRequestEvent extends CommJfrEvent {
+}
@@ -0,0 +1,135 @@
+package com.github.xingshuangs.iot.net.server;
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+public class FrameReaderTest {
+
+    /**
+     * 每次最多只返回指定字节数的输入流，模拟TCP拆包
+     */
+    private static class SplitInputStream extends ByteArrayInputStream {
+
+        private final int step;
+
+        SplitInputStream(byte[] buf, int step) {
+            super(buf);
+            this.step = step;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, this.step));
+        }
+    }
+
+    private static byte[] tpkt(int length, byte value) {
+        byte[] data = new byte[length];
+        data[0] = 0x03;
+        data[2] = (byte) (length >> 8);
+        data[3] = (byte) length;
+        for (int i = 4; i < length; i++) {
+            data[i] = value;
+        }
+        return data;
+    }
+
+    private static byte[] concat(byte[]... items) {
+        int length = 0;
+        for (byte[] item : items) {
+            length += item.length;
+        }
+        byte[] res = new byte[length];
+        int offset = 0;
+        for (byte[] item : items) {
+            System.arraycopy(item, 0, res, offset, item.length);
+            offset += item.length;
+        }
+        return res;
+    }
+
+    @Test
+    public void coalescedFrames() throws IOException {
+        byte[] first = tpkt(22, (byte) 1);
+        byte[] second = tpkt(7, (byte) 2);
+        byte[] third = tpkt(3000, (byte) 3);
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(concat(first, second, third)),
+                LengthFieldFrameDecoder.createTpkt(), 65536);
+        assertArrayEquals(first, reader.readFrame());
+        assertArrayEquals(second, reader.readFrame());
+        assertArrayEquals(third, reader.readFrame());
+    }
+
+    @Test
+    public void splitFrames() throws IOException {
+        byte[] first = tpkt(1500, (byte) 1);
+        byte[] second = tpkt(31, (byte) 2);
+        FrameReader reader = new FrameReader(new SplitInputStream(concat(first, second), 3),
+                LengthFieldFrameDecoder.createTpkt(), 65536);
+        assertArrayEquals(first, reader.readFrame());
+        assertArrayEquals(second, reader.readFrame());
+    }
+
+    @Test
+    public void mbapFrame() throws IOException {
+        byte[] frame = new byte[]{0x00, 0x01, 0x00, 0x00, 0x00, 0x06, 0x01, 0x03, 0x00, 0x00, 0x00, 0x0A};
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(concat(frame, frame)),
+                LengthFieldFrameDecoder.createMbap(), 65536);
+        assertArrayEquals(frame, reader.readFrame());
+        assertArrayEquals(frame, reader.readFrame());
+    }
+
+    @Test(expected = SocketRuntimeException.class)
+    public void invalidLength() throws IOException {
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(tpkt(300, (byte) 1)),
+                LengthFieldFrameDecoder.createTpkt(), 200);
+        reader.readFrame();
+    }
+
+    @Test(expected = SocketRuntimeException.class)
+    public void incompleteFrame() throws IOException {
+        byte[] frame = tpkt(30, (byte) 1);
+        byte[] half = new byte[15];
+        System.arraycopy(frame, 0, half, 0, half.length);
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(half), LengthFieldFrameDecoder.createTpkt(), 65536);
+        reader.readFrame();
+    }
+
+    @Test
+    public void pipelinedClient() throws Exception {
+        TcpServerBasic server = new TcpServerBasic() {
+            @Override
+            protected void doClientHandle(Socket socket) {
+                this.write(socket, this.readClientData(socket));
+            }
+        };
+        server.setFrameDecoder(LengthFieldFrameDecoder.createTpkt());
+        server.start(8098);
+        try (Socket socket = new Socket("127.0.0.1", 8098)) {
+            socket.setSoTimeout(3000);
+            byte[] all = concat(tpkt(10, (byte) 1), tpkt(500, (byte) 2), tpkt(4, (byte) 3), tpkt(2000, (byte) 4));
+            OutputStream out = socket.getOutputStream();
+            out.write(all);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] actual = new byte[all.length];
+            int count = 0;
+            while (count < actual.length) {
+                int num = in.read(actual, count, actual.length - count);
+                assertTrue(num > 0);
+                count += num;
+            }
+            assertArrayEquals(all, actual);
+        } finally {
+            server.stop();
+        }
+    }
+}
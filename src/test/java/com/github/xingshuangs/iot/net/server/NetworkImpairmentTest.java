@@ -0,0 +1,81 @@
+package com.github.xingshuangs.iot.net.server;
+
+import com.github.xingshuangs.iot.net.enums.EJitterDistribution;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class NetworkImpairmentTest {
+
+    @Test
+    public void defaultNoImpairment() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        assertFalse(impairment.isEnabled());
+        assertFalse(impairment.shouldDrop());
+        assertEquals(0, impairment.delayNanos(1000));
+    }
+
+    @Test
+    public void latencyAndBandwidth() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(10);
+        impairment.setBandwidth(1000);
+        assertTrue(impairment.isEnabled());
+        // 10ms + 500字节/1000字节每秒
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(510), impairment.delayNanos(500));
+    }
+
+    @Test
+    public void sharedLink() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setBandwidth(1000);
+        // 两个响应同时到达，第二个要等第一个发送完，链路总共用时1秒
+        long first = impairment.delayNanos(500);
+        long second = impairment.delayNanos(500);
+        assertTrue(first <= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(second > TimeUnit.MILLISECONDS.toNanos(900));
+        assertTrue(second <= TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+
+    @Test
+    public void jitter() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(5);
+        impairment.setJitter(10);
+        for (EJitterDistribution distribution : EJitterDistribution.values()) {
+            impairment.setJitterDistribution(distribution);
+            for (int i = 0; i < 1000; i++) {
+                long nanos = impairment.delayNanos(0);
+                assertTrue(nanos >= TimeUnit.MILLISECONDS.toNanos(5));
+                if (distribution == EJitterDistribution.UNIFORM) {
+                    assertTrue(nanos <= TimeUnit.MILLISECONDS.toNanos(15));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void scanWait() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setScanTime(10);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(10), impairment.scanWaitNanos(TimeUnit.MILLISECONDS.toNanos(20)));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(7), impairment.scanWaitNanos(TimeUnit.MILLISECONDS.toNanos(23)));
+    }
+
+    @Test
+    public void dropRate() {
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setDropRate(1);
+        assertTrue(impairment.shouldDrop());
+        impairment.setDropRate(0);
+        assertFalse(impairment.shouldDrop());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalDropRate() {
+        new NetworkImpairment().setDropRate(1.5);
+    }
+}
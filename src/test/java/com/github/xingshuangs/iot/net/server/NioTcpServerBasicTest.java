@@ -0,0 +1,207 @@
+package com.github.xingshuangs.iot.net.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class NioTcpServerBasicTest {
+
+    private static final int PORT = 8099;
+
+    private NioTcpServerBasic server;
+
+    /**
+     * 带2字节长度头的回显服务端
+     */
+    private static class EchoServer extends NioTcpServerBasic {
+
+        EchoServer() {
+            this.frameDecoder = new LengthFieldFrameDecoder(2, 0, 2, 2);
+            this.setIoThreads(2);
+            this.setWorkerThreads(4);
+        }
+
+        @Override
+        protected void onFrame(NioConnection connection, byte[] frame) {
+            this.write(connection, frame);
+        }
+    }
+
+    @Before
+    public void init() {
+        this.server = new EchoServer();
+        this.server.start(PORT);
+    }
+
+    @After
+    public void destroy() {
+        this.server.stop();
+    }
+
+    private static byte[] frame(int length, int seed) {
+        byte[] data = new byte[length + 2];
+        data[0] = (byte) (length >> 8);
+        data[1] = (byte) length;
+        for (int i = 2; i < data.length; i++) {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void splitAndCoalescedFrames() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", PORT)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] first = frame(10, 1);
+            byte[] second = frame(3000, 2);
+            byte[] third = frame(0, 3);
+
+            // 一个报文分多次发送
+            out.write(first, 0, 1);
+            out.flush();
+            TimeUnit.MILLISECONDS.sleep(20);
+            out.write(first, 1, first.length - 1);
+            // 多个报文合并发送，且第二个报文超过初始读缓存
+            byte[] merged = new byte[second.length + third.length];
+            System.arraycopy(second, 0, merged, 0, second.length);
+            System.arraycopy(third, 0, merged, second.length, third.length);
+            out.write(merged);
+            out.flush();
+
+            for (byte[] expect : new byte[][]{first, second, third}) {
+                byte[] actual = new byte[expect.length];
+                in.readFully(actual);
+                assertArrayEquals(expect, actual);
+            }
+        }
+    }
+
+    @Test
+    public void manyClients() throws Exception {
+        int clientCount = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++) {
+            final int seed = i;
+            futures.add(executor.submit(() -> {
+                try (Socket socket = new Socket("127.0.0.1", PORT)) {
+                    socket.setSoTimeout(5000);
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    for (int j = 0; j < 10; j++) {
+                        byte[] expect = frame(16 + j, seed);
+                        socket.getOutputStream().write(expect);
+                        byte[] actual = new byte[expect.length];
+                        in.readFully(actual);
+                        if (!Arrays.equals(expect, actual)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void sessionReadyBeforeFirstFrame() throws Exception {
+        // 连入时初始化会话，报文处理依赖会话，会话为空时抛出异常并断开连接
+        NioTcpServerBasic sessionServer = new EchoServer() {
+            {
+                this.setIoThreads(4);
+            }
+
+            @Override
+            protected void onConnected(NioConnection connection) {
+                connection.setAttachment(new byte[]{0x01});
+            }
+
+            @Override
+            protected void onFrame(NioConnection connection, byte[] frame) {
+                byte[] session = (byte[]) connection.getAttachment();
+                frame[2] = session[0];
+                this.write(connection, frame);
+            }
+        };
+        sessionServer.start(PORT + 3);
+        int clientCount = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(clientCount);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                futures.add(executor.submit(() -> {
+                    latch.await();
+                    try (Socket socket = new Socket("127.0.0.1", PORT + 3)) {
+                        socket.setSoTimeout(5000);
+                        // 连接之后立即发送
+                        socket.getOutputStream().write(frame(4, 0));
+                        byte[] actual = new byte[6];
+                        new DataInputStream(socket.getInputStream()).readFully(actual);
+                        return actual[2] == 0x01;
+                    }
+                }));
+            }
+            latch.countDown();
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+            sessionServer.stop();
+        }
+    }
+
+    @Test
+    public void invalidFrameClosed() throws Exception {
+        this.server.setMaxFrameLength(100);
+        try (Socket socket = new Socket("127.0.0.1", PORT)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write(frame(200, 0));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertEquals(0, this.server.getClientSum());
+    }
+
+    @Test
+    public void restartAndSharedReactor() throws IOException {
+        this.server.stop();
+        assertFalse(this.server.isAlive());
+        this.server.start(PORT);
+        assertTrue(this.server.isAlive());
+
+        NioReactor reactor = NioReactor.newInstance();
+        NioTcpServerBasic first = new NioTcpServerBasic(reactor);
+        NioTcpServerBasic second = new NioTcpServerBasic(reactor);
+        try {
+            first.start(PORT + 1);
+            second.start(PORT + 2);
+            first.stop();
+            assertFalse(reactor.isShutdown());
+            new Socket("127.0.0.1", PORT + 2).close();
+            first.start(PORT + 1);
+            assertTrue(first.isAlive());
+        } finally {
+            first.stop();
+            second.stop();
+            reactor.shutdown();
+        }
+    }
+}
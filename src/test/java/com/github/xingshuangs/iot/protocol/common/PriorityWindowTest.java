@@ -0,0 +1,71 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+import com.github.xingshuangs.iot.exceptions.RequestRejectedException;
+import com.github.xingshuangs.iot.protocol.common.enums.ERejectPolicy;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PriorityWindowTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler();
+
+    private final PriorityWindow window = new PriorityWindow(this.scheduler, 2);
+
+    private PriorityWindow.Ticket request(ERequestPriority priority) {
+        return RequestScheduler.callWithPriority(priority, this.window::request);
+    }
+
+    @Test
+    public void handoffInPriorityOrder() {
+        PriorityWindow.Ticket first = this.request(ERequestPriority.BULK);
+        PriorityWindow.Ticket second = this.request(ERequestPriority.BULK);
+        assertTrue(this.window.isGranted(first));
+        assertTrue(this.window.isGranted(second));
+
+        PriorityWindow.Ticket bulk = this.request(ERequestPriority.BULK);
+        PriorityWindow.Ticket control = this.request(ERequestPriority.CONTROL);
+        assertEquals(2, this.window.getQueueDepth());
+        // 释放的许可直接交给优先级最高的请求，新的申请不能插队
+        this.window.release();
+        assertTrue(this.window.isGranted(control));
+        assertFalse(this.window.isGranted(bulk));
+        PriorityWindow.Ticket late = this.request(ERequestPriority.BULK);
+        assertFalse(this.window.isGranted(late));
+
+        this.window.release();
+        assertTrue(this.window.await(bulk, 100));
+        this.window.cancel(late);
+        this.window.release();
+        this.window.release();
+        assertTrue(this.window.isGranted(this.request(ERequestPriority.HMI)));
+        assertEquals(0, this.window.getQueueDepth());
+    }
+
+    @Test
+    public void awaitTimeoutAndReject() {
+        this.request(ERequestPriority.HMI);
+        this.request(ERequestPriority.HMI);
+        PriorityWindow.Ticket waiting = this.request(ERequestPriority.BULK);
+        assertFalse(this.window.await(waiting, 50));
+
+        this.scheduler.setMaxQueueDepth(1);
+        this.scheduler.setRejectPolicy(ERejectPolicy.REJECT_LOWEST);
+        PriorityWindow.Ticket alarm = this.request(ERequestPriority.ALARM);
+        try {
+            this.window.isGranted(waiting);
+            fail();
+        } catch (RequestRejectedException e) {
+            assertTrue(e.getMessage().length() > 0);
+        }
+        try {
+            this.request(ERequestPriority.BULK);
+            fail();
+        } catch (RequestRejectedException e) {
+            assertEquals(1, this.window.getQueueDepth());
+        }
+        this.window.release();
+        assertTrue(this.window.isGranted(alarm));
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+import com.github.xingshuangs.iot.exceptions.RequestRejectedException;
+import com.github.xingshuangs.iot.protocol.common.enums.ERejectPolicy;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestSchedulerTest {
+
+    private final RequestScheduler scheduler = new RequestScheduler();
+
+    private Future<?> submit(ExecutorService executor, ERequestPriority priority, List<ERequestPriority> order) throws InterruptedException {
+        int depth = this.scheduler.getQueueDepth();
+        Future<?> future = executor.submit(() -> RequestScheduler.runWithPriority(priority, () -> {
+            this.scheduler.acquire();
+            try {
+                order.add(RequestScheduler.currentPriority());
+            } finally {
+                this.scheduler.release();
+            }
+        }));
+        // 等待进入队列
+        while (this.scheduler.getQueueDepth() == depth && !future.isDone()) {
+            Thread.sleep(5);
+        }
+        return future;
+    }
+
+    @Test
+    public void priorityOrder() throws Exception {
+        List<ERequestPriority> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            this.scheduler.acquire();
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(this.submit(executor, ERequestPriority.BULK, order));
+            futures.add(this.submit(executor, ERequestPriority.HMI, order));
+            futures.add(this.submit(executor, ERequestPriority.CONTROL, order));
+            futures.add(this.submit(executor, ERequestPriority.ALARM, order));
+            futures.add(this.submit(executor, ERequestPriority.CONTROL, order));
+            assertEquals(5, this.scheduler.getQueueDepth());
+            this.scheduler.release();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(Arrays.asList(ERequestPriority.CONTROL, ERequestPriority.CONTROL, ERequestPriority.ALARM,
+                    ERequestPriority.HMI, ERequestPriority.BULK), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void reentrant() {
+        this.scheduler.acquire();
+        this.scheduler.acquire();
+        this.scheduler.release();
+        this.scheduler.release();
+        try {
+            this.scheduler.release();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("通信权"));
+        }
+    }
+
+    @Test
+    public void rejectNew() throws Exception {
+        List<ERequestPriority> order = Collections.synchronizedList(new ArrayList<>());
+        this.scheduler.setMaxQueueDepth(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            this.scheduler.acquire();
+            Future<?> bulk = this.submit(executor, ERequestPriority.BULK, order);
+            Future<?> control = executor.submit(() -> RequestScheduler.runWithPriority(ERequestPriority.CONTROL, this.scheduler::acquire));
+            try {
+                control.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof RequestRejectedException);
+            }
+            this.scheduler.release();
+            bulk.get(5, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList(ERequestPriority.BULK), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectLowest() throws Exception {
+        List<ERequestPriority> order = Collections.synchronizedList(new ArrayList<>());
+        this.scheduler.setMaxQueueDepth(1);
+        this.scheduler.setRejectPolicy(ERejectPolicy.REJECT_LOWEST);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            this.scheduler.acquire();
+            Future<?> bulk = this.submit(executor, ERequestPriority.BULK, order);
+            // 队列已满，优先级更高的请求挤出队列中的批量请求
+            Future<?> control = executor.submit(() -> RequestScheduler.runWithPriority(ERequestPriority.CONTROL, () -> {
+                this.scheduler.acquire();
+                try {
+                    order.add(RequestScheduler.currentPriority());
+                } finally {
+                    this.scheduler.release();
+                }
+            }));
+            try {
+                bulk.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof RequestRejectedException);
+            }
+            this.scheduler.release();
+            control.get(5, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList(ERequestPriority.CONTROL), order);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
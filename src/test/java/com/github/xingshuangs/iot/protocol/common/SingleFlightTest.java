@@ -0,0 +1,186 @@
+package com.github.xingshuangs.iot.protocol.common;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    /**
+     * 请求为[起始, 结束)的整数区间，结果为区间内的整数
+     */
+    private final SingleFlight<int[], int[]> singleFlight = new SingleFlight<>(
+            (flight, req) -> req[0] >= flight[0] && req[1] <= flight[1],
+            (flight, value, req) -> Arrays.copyOfRange(value, req[0] - flight[0], req[1] - flight[0]));
+
+    private static List<int[]> load(List<int[]> reqs) {
+        return reqs.stream().map(x -> {
+            int[] res = new int[x[1] - x[0]];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = x[0] + i;
+            }
+            return res;
+        }).collect(Collectors.toList());
+    }
+
+    @Test
+    public void coveredAndRemain() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<int[]>> leader = executor.submit(() -> this.singleFlight.execute(
+                    Collections.singletonList(new int[]{0, 10}), x -> {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return load(x);
+                    }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }).start();
+            // [2,5)被覆盖，[20,22)需要自己读取
+            List<int[]> res = this.singleFlight.execute(Arrays.asList(new int[]{2, 5}, new int[]{20, 22}), x -> {
+                loads.incrementAndGet();
+                assertEquals(1, x.size());
+                return load(x);
+            });
+            assertArrayEquals(new int[]{2, 3, 4}, res.get(0));
+            assertArrayEquals(new int[]{20, 21}, res.get(1));
+            assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}, leader.get(5, TimeUnit.SECONDS).get(0));
+            assertEquals(2, loads.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void exceptionShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<int[]>> leader = executor.submit(() -> this.singleFlight.execute(
+                    Collections.singletonList(new int[]{0, 10}), x -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new IllegalStateException("通信失败");
+                    }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            try {
+                this.singleFlight.execute(Collections.singletonList(new int[]{0, 10}), x -> {
+                    throw new AssertionError("不应该重复通信");
+                });
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("通信失败", e.getMessage());
+            }
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            // 失败之后不再共享
+            assertArrayEquals(new int[]{0, 1}, this.singleFlight.execute(Collections.singletonList(new int[]{0, 2}),
+                    SingleFlightTest::load).get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void errorShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<int[]>> leader = executor.submit(() -> this.singleFlight.execute(
+                    Collections.singletonList(new int[]{0, 10}), x -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new Error("加载失败");
+                    }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 加载方抛出Error，依附的调用者收到同一个Error，不会一直等待
+            try {
+                this.singleFlight.execute(Collections.singletonList(new int[]{0, 10}), x -> {
+                    throw new AssertionError("不应该重复通信");
+                });
+                fail();
+            } catch (Error e) {
+                assertEquals("加载失败", e.getMessage());
+            }
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (Exception e) {
+                assertEquals("加载失败", e.getCause().getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void invalidatedByWrite() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<int[]>> leader = executor.submit(() -> this.singleFlight.execute(
+                    Collections.singletonList(new int[]{0, 10}), x -> {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return load(x);
+                    }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 写操作完成之后，正在通信的请求组不能再被依附
+            this.singleFlight.invalidate();
+            List<int[]> res = this.singleFlight.execute(Collections.singletonList(new int[]{2, 5}), x -> {
+                loads.incrementAndGet();
+                return load(x);
+            });
+            assertArrayEquals(new int[]{2, 3, 4}, res.get(0));
+            assertEquals(2, loads.get());
+            release.countDown();
+            leader.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.xingshuangs.iot.protocol.modbus.algorithm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MbRangePlannerTest {
+
+    @Test
+    public void mergeAndSplit() {
+        List<MbAddressRange> src = Arrays.asList(
+                new MbAddressRange(200, 300),
+                new MbAddressRange(15, 5),
+                new MbAddressRange(0, 10),
+                new MbAddressRange(100, 10));
+        List<MbAddressRange> actual = MbRangePlanner.plan(src, 125, 10);
+        List<MbAddressRange> expect = Arrays.asList(
+                new MbAddressRange(0, 20),
+                new MbAddressRange(100, 10),
+                new MbAddressRange(200, 125),
+                new MbAddressRange(325, 125),
+                new MbAddressRange(450, 50));
+        assertEquals(expect, actual);
+    }
+
+    @Test
+    public void overlapAndCovered() {
+        List<MbAddressRange> src = Arrays.asList(
+                new MbAddressRange(0, 125),
+                new MbAddressRange(10, 5),
+                new MbAddressRange(120, 10));
+        List<MbAddressRange> actual = MbRangePlanner.plan(src, 125, 0);
+        assertEquals(Arrays.asList(new MbAddressRange(0, 125), new MbAddressRange(125, 5)), actual);
+    }
+
+    @Test
+    public void gapLimit() {
+        List<MbAddressRange> src = Arrays.asList(new MbAddressRange(0, 1), new MbAddressRange(3, 1));
+        assertEquals(1, MbRangePlanner.plan(src, 125, 2).size());
+        assertEquals(2, MbRangePlanner.plan(src, 125, 1).size());
+        // 合并后超过最大数量则不合并
+        assertEquals(2, MbRangePlanner.plan(src, 3, 10).size());
+        assertTrue(MbRangePlanner.plan(Collections.emptyList(), 125, 10).isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.xingshuangs.iot.protocol.modbus.model;
+
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class MbReadWriteMultipleRegisterRequestTest {
+
+    @Test
+    public void toByteArray() {
+        byte[] actual = new byte[]{(byte) 0x17, (byte) 0x00, (byte) 0x03, (byte) 0x00, (byte) 0x06, (byte) 0x00, (byte) 0x0E,
+                (byte) 0x00, (byte) 0x03, (byte) 0x06, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF};
+        MbReadWriteMultipleRegisterRequest mb = new MbReadWriteMultipleRegisterRequest(3, 6, 14,
+                new byte[]{(byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF});
+        assertEquals(16, mb.byteArrayLength());
+        assertArrayEquals(actual, mb.toByteArray());
+    }
+
+    @Test
+    public void fromBytes() {
+        byte[] data = new byte[]{(byte) 0x17, (byte) 0x00, (byte) 0x03, (byte) 0x00, (byte) 0x06, (byte) 0x00, (byte) 0x0E,
+                (byte) 0x00, (byte) 0x03, (byte) 0x06, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF};
+        MbReadWriteMultipleRegisterRequest mb = MbReadWriteMultipleRegisterRequest.fromBytes(data);
+        assertEquals(EMbFunctionCode.READ_WRITE_MULTIPLE_REGISTER, mb.functionCode);
+        assertEquals(3, mb.getReadAddress());
+        assertEquals(6, mb.getReadQuantity());
+        assertEquals(14, mb.getWriteAddress());
+        assertEquals(3, mb.getWriteQuantity());
+        assertEquals(6, mb.getCount());
+        assertArrayEquals(new byte[]{(byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF, (byte) 0x00, (byte) 0xFF}, mb.getValue());
+        assertEquals(mb, MbPdu.fromBytesToRequest(data));
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.xingshuangs.iot.protocol.modbus.model;
+
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class MbReadWriteMultipleRegisterResponseTest {
+
+    @Test
+    public void toByteArray() {
+        MbReadWriteMultipleRegisterResponse mb = new MbReadWriteMultipleRegisterResponse();
+        mb.setFunctionCode(EMbFunctionCode.READ_WRITE_MULTIPLE_REGISTER);
+        mb.setCount(4);
+        mb.setRegister(new byte[]{(byte) 0x00, (byte) 0xFE, (byte) 0x0A, (byte) 0xCD});
+        assertArrayEquals(new byte[]{(byte) 0x17, (byte) 0x04, (byte) 0x00, (byte) 0xFE, (byte) 0x0A, (byte) 0xCD}, mb.toByteArray());
+    }
+
+    @Test
+    public void fromBytes() {
+        byte[] data = new byte[]{(byte) 0x17, (byte) 0x04, (byte) 0x00, (byte) 0xFE, (byte) 0x0A, (byte) 0xCD};
+        MbPdu pdu = MbPdu.fromBytes(data);
+        assertTrue(pdu instanceof MbReadWriteMultipleRegisterResponse);
+        MbReadWriteMultipleRegisterResponse mb = (MbReadWriteMultipleRegisterResponse) pdu;
+        assertEquals(EMbFunctionCode.READ_WRITE_MULTIPLE_REGISTER, mb.functionCode);
+        assertEquals(4, mb.getCount());
+        assertArrayEquals(new byte[]{(byte) 0x00, (byte) 0xFE, (byte) 0x0A, (byte) 0xCD}, mb.getRegister());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.xingshuangs.iot.protocol.modbus.serializer;
+
+
+import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.common.enums.EDataType;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbRegisterType;
+import lombok.Data;
+
+/**
+ * 测试对象
+ *
+ * @author xingshuang
+ */
+@Data
+public class ModbusDemoBean {
+
+    @ModbusVariable(area = EMbRegisterType.COIL, address = 0, type = EDataType.BOOL)
+    private Boolean coil0;
+
+    @ModbusVariable(area = EMbRegisterType.COIL, address = 1, type = EDataType.BOOL)
+    private Boolean coil1;
+
+    @ModbusVariable(area = EMbRegisterType.COIL, address = 300, type = EDataType.BOOL)
+    private Boolean coil300;
+
+    @ModbusVariable(area = EMbRegisterType.DISCRETE_INPUT, address = 5, type = EDataType.BOOL)
+    private Boolean discrete5;
+
+    @ModbusVariable(address = 0, type = EDataType.UINT16)
+    private Integer uint16Data;
+
+    @ModbusVariable(address = 1, type = EDataType.INT16)
+    private Short int16Data;
+
+    @ModbusVariable(address = 2, type = EDataType.UINT32)
+    private Long uint32Data;
+
+    @ModbusVariable(address = 4, type = EDataType.INT32)
+    private Integer int32Data;
+
+    @ModbusVariable(address = 6, type = EDataType.FLOAT32)
+    private Float float32Data;
+
+    @ModbusVariable(address = 8, type = EDataType.FLOAT64)
+    private Double float64Data;
+
+    @ModbusVariable(address = 12, type = EDataType.BYTE, count = 3)
+    private byte[] byteData;
+
+    @ModbusVariable(address = 14, type = EDataType.STRING, count = 10)
+    private String stringData;
+
+    @ModbusVariable(address = 20, type = EDataType.BOOL, bitIndex = 3)
+    private Boolean statusBit;
+
+    @ModbusVariable(address = 200, type = EDataType.FLOAT32, format = EByteBuffFormat.CD_AB)
+    private Float swappedFloat;
+
+    @ModbusVariable(address = 500, type = EDataType.BYTE, count = 300)
+    private byte[] largeData;
+
+    @ModbusVariable(area = EMbRegisterType.INPUT_REGISTER, address = 10, type = EDataType.FLOAT32)
+    private Float inputFloat;
+}
@@ -0,0 +1,133 @@
+package com.github.xingshuangs.iot.protocol.modbus.serializer;
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteWriteBuff;
+import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.modbus.service.ModbusTcp;
+import com.github.xingshuangs.iot.protocol.modbus.service.ModbusTcpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModbusSerializerTest {
+
+    private static final int PORT = 10509;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private ModbusTcpServer server;
+
+    private ModbusTcp plc;
+
+    private ModbusSerializer serializer;
+
+    @Before
+    public void init() {
+        this.server = new ModbusTcpServer(PORT) {
+            @Override
+            protected void onFrame(NioConnection connection, byte[] frame) {
+                requests.incrementAndGet();
+                super.onFrame(connection, frame);
+            }
+        };
+        this.server.start();
+        this.plc = new ModbusTcp(1, ModbusTcp.IP, PORT);
+        this.serializer = ModbusSerializer.newInstance(this.plc);
+    }
+
+    @After
+    public void destroy() {
+        this.plc.close();
+        this.server.stop();
+    }
+
+    @Test
+    public void writeAndRead() {
+        byte[] large = new byte[300];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        ModbusDemoBean bean = new ModbusDemoBean();
+        bean.setCoil0(true);
+        bean.setCoil1(false);
+        bean.setCoil300(true);
+        bean.setDiscrete5(true);
+        bean.setUint16Data(42);
+        bean.setInt16Data((short) -42);
+        bean.setUint32Data(4000000000L);
+        bean.setInt32Data(-123456);
+        bean.setFloat32Data(3.5f);
+        bean.setFloat64Data(Math.PI);
+        bean.setByteData(new byte[]{1, 2, 3});
+        bean.setStringData("hello");
+        bean.setSwappedFloat(-7.25f);
+        bean.setLargeData(large);
+        bean.setInputFloat(1.0f);
+
+        this.serializer.write(bean);
+        // 线圈[0,2)、[300]，保持寄存器[0,19)、[200,202)、[500,650)分割为2次
+        assertEquals(6, this.requests.getAndSet(0));
+        // 只读数据区不写入
+        assertFalse(this.server.readDiscreteInput(1, 5, 1).get(0));
+
+        this.server.writeDiscreteInput(1, 5, true);
+        this.server.writeHoldRegister(1, 20, 0x0800);
+        this.server.writeInputRegister(1, 10, ByteWriteBuff.newInstance(4, EByteBuffFormat.BA_DC).putFloat(9.5f).getData());
+
+        ModbusDemoBean actual = this.serializer.read(ModbusDemoBean.class);
+        // 线圈2次、离散量输入1次、保持寄存器[0,21)、[200,202)、[500,625)、[625,650)共4次、输入寄存器1次
+        assertEquals(8, this.requests.getAndSet(0));
+        assertTrue(actual.getCoil0());
+        assertFalse(actual.getCoil1());
+        assertTrue(actual.getCoil300());
+        assertTrue(actual.getDiscrete5());
+        assertEquals(42, actual.getUint16Data().intValue());
+        assertEquals(-42, actual.getInt16Data().shortValue());
+        assertEquals(4000000000L, actual.getUint32Data().longValue());
+        assertEquals(-123456, actual.getInt32Data().intValue());
+        assertEquals(3.5f, actual.getFloat32Data(), 0.0f);
+        assertEquals(Math.PI, actual.getFloat64Data(), 0.0);
+        assertArrayEquals(new byte[]{1, 2, 3}, actual.getByteData());
+        assertEquals("hello", actual.getStringData());
+        assertTrue(actual.getStatusBit());
+        assertEquals(-7.25f, actual.getSwappedFloat(), 0.0f);
+        assertArrayEquals(large, actual.getLargeData());
+        assertEquals(9.5f, actual.getInputFloat(), 0.0f);
+
+        // 和ModbusTcp单个数据的读写一致
+        assertEquals(3.5f, this.plc.readFloat32(6), 0.0f);
+        assertEquals(-123456, this.plc.readInt32(4));
+        assertEquals(-7.25f, this.plc.readFloat32Array(200, 1, EByteBuffFormat.CD_AB)[0], 0.0f);
+    }
+
+    @Test
+    public void writeSkipNull() {
+        this.plc.writeUInt16(1, 99);
+        ModbusDemoBean bean = new ModbusDemoBean();
+        bean.setUint16Data(1);
+        bean.setUint32Data(2L);
+        this.serializer.write(bean);
+        // 字段之间不相邻，不合并，中间的数据不被覆盖
+        assertEquals(2 + 1, this.requests.get());
+        assertEquals(99, this.plc.readUInt16(1));
+        assertEquals(2L, this.plc.readUInt32(2));
+    }
+
+    @Test(expected = ModbusCommException.class)
+    public void writeRegisterBit() {
+        ModbusDemoBean bean = new ModbusDemoBean();
+        bean.setStatusBit(true);
+        this.serializer.write(bean);
+    }
+
+    @Test(expected = ModbusCommException.class)
+    public void invalidBean() {
+        this.serializer.read(Arrays.class);
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MbBitAreaTest {
+
+    @Test
+    public void readWrite() {
+        MbBitArea area = new MbBitArea();
+        area.set(63, true);
+        area.set(64, true);
+        assertTrue(area.get(63));
+        assertTrue(area.get(64));
+        assertFalse(area.get(65));
+        // 跨越long边界，第一个位在第一个字节的最低位
+        assertArrayEquals(new byte[]{0x03}, area.read(63, 2));
+        assertArrayEquals(new byte[]{0x06, 0x00}, area.read(62, 9));
+
+        area.write(100, 10, new byte[]{(byte) 0xCD, 0x01});
+        assertArrayEquals(new byte[]{(byte) 0xCD, 0x01}, area.read(100, 10));
+        assertFalse(area.get(110));
+        area.set(100, false);
+        assertArrayEquals(new byte[]{(byte) 0xCC}, area.read(100, 8));
+    }
+
+    @Test
+    public void contains() {
+        MbBitArea area = new MbBitArea();
+        assertTrue(area.contains(0, MbBitArea.SIZE));
+        assertTrue(area.contains(65535, 1));
+        assertFalse(area.contains(65535, 2));
+        assertFalse(area.contains(-1, 1));
+    }
+}
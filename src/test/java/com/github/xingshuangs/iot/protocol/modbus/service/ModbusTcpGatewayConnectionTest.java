@@ -0,0 +1,198 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbReadHoldRegisterRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ModbusTcpGatewayConnectionTest {
+
+    private static final int PORT = 10505;
+
+    /**
+     * 响应很慢的从站，响应由测试线程放行
+     */
+    private static final int SLOW_UNIT = 5;
+
+    /**
+     * 从不响应的从站
+     */
+    private static final int DEAD_UNIT = 40;
+
+    /**
+     * 慢从站被扣下的响应，执行即发送
+     */
+    private final BlockingQueue<Runnable> heldResponses = new LinkedBlockingQueue<>();
+    private ModbusTcpServer server;
+    private ModbusTcpGatewayConnection gateway;
+
+    @Before
+    public void init() {
+        this.server = new ModbusTcpServer(PORT) {
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                if (data[6] == DEAD_UNIT) {
+                    return;
+                }
+                if (data[6] == SLOW_UNIT) {
+                    heldResponses.add(() -> super.write(connection, data));
+                } else {
+                    super.write(connection, data);
+                }
+            }
+        };
+        this.server.start();
+        this.gateway = new ModbusTcpGatewayConnection(ModbusTcp.IP, PORT);
+        this.gateway.setWindow(8);
+        this.gateway.setUnitTimeout(500);
+    }
+
+    @After
+    public void destroy() {
+        this.gateway.close();
+        this.server.stop();
+    }
+
+    @Test
+    public void manyUnitsOneSocket() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                if (i == SLOW_UNIT) {
+                    continue;
+                }
+                ModbusTcp client = this.gateway.createClient(i);
+                int unitId = i;
+                futures.add(executor.submit(() -> {
+                    int sum = 0;
+                    for (int j = 0; j < 20; j++) {
+                        client.writeUInt16(j, unitId * 100 + j);
+                        sum += client.readUInt16(j);
+                    }
+                    return sum;
+                }));
+            }
+            int index = 0;
+            for (int i = 0; i < 32; i++) {
+                if (i == SLOW_UNIT) {
+                    continue;
+                }
+                assertEquals(i * 2000 + 190, futures.get(index++).get(30, TimeUnit.SECONDS).intValue());
+                byte[] actual = this.server.readHoldRegister(i, 19, 1);
+                assertEquals(i * 100 + 19, (actual[0] & 0xFF) << 8 | actual[1] & 0xFF);
+            }
+            assertEquals(1, this.server.getClientSum());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void slowUnitTimeout() throws Exception {
+        ModbusTcp fast = this.gateway.createClient(1);
+        ModbusTcp slow = this.gateway.createClient(SLOW_UNIT);
+        this.server.writeHoldRegister(1, 0, 11);
+        this.server.writeHoldRegister(SLOW_UNIT, 0, 55);
+        assertEquals(11, fast.readUInt16(0));
+
+        this.gateway.setUnitTimeout(10_000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> future = executor.submit(() -> slow.readUInt16(0));
+            Runnable held = this.heldResponses.poll(5, TimeUnit.SECONDS);
+            assertNotNull(held);
+            // 慢从站等待响应期间，其他从站不受影响，全部完成时慢从站仍在等待
+            for (int i = 0; i < 10; i++) {
+                assertEquals(11, fast.readUInt16(0));
+            }
+            assertFalse(future.isDone());
+            held.run();
+            assertEquals(55, future.get(5, TimeUnit.SECONDS).intValue());
+        } finally {
+            executor.shutdown();
+        }
+
+        this.gateway.setUnitTimeout(300);
+        try {
+            slow.readUInt16(0);
+            fail();
+        } catch (ModbusCommException e) {
+            assertTrue(e.getMessage().contains("超时"));
+        }
+        // 超时之后才到达的响应被丢弃，共享连接保持
+        Runnable late = this.heldResponses.poll(5, TimeUnit.SECONDS);
+        assertNotNull(late);
+        late.run();
+        assertEquals(11, fast.readUInt16(0));
+        assertEquals(1, this.server.getClientSum());
+    }
+
+    @Test
+    public void interruptReleasesUnit() throws Exception {
+        // 超时很长，只有中断才能释放从站和窗口
+        this.gateway.setWindow(1);
+        this.gateway.setUnitTimeout(60000);
+        this.server.writeHoldRegister(1, 0, 11);
+        List<MbPdu> reqs = Arrays.asList(new MbReadHoldRegisterRequest(0, 1),
+                new MbReadHoldRegisterRequest(1, 1), new MbReadHoldRegisterRequest(2, 1));
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                this.gateway.readModbusData(DEAD_UNIT, reqs);
+            } catch (Exception e) {
+                exception.set(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(200);
+        thread.interrupt();
+        thread.join(3000);
+        assertFalse(thread.isAlive());
+        assertTrue(exception.get() instanceof ModbusCommException);
+
+        // 批量请求全部撤回，唯一的窗口被释放，其他从站在60s的从站超时之前就能完成通信
+        ModbusTcp fast = this.gateway.createClient(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(11, executor.submit(() -> fast.readUInt16(0)).get(10, TimeUnit.SECONDS).intValue());
+        } finally {
+            executor.shutdown();
+        }
+
+        // 同一个从站后续的请求由定时器超时，不会一直等待
+        this.gateway.setUnitTimeout(300);
+        try {
+            this.gateway.createClient(DEAD_UNIT).readUInt16(0);
+            fail();
+        } catch (ModbusCommException e) {
+            assertTrue(e.getMessage().contains("超时"));
+        }
+        assertEquals(11, fast.readUInt16(0));
+        assertEquals(1, this.server.getClientSum());
+    }
+
+    @Test
+    public void reconnect() {
+        ModbusTcp client = this.gateway.createClient(2);
+        client.writeUInt16(0, 22);
+        this.gateway.close();
+        assertEquals(22, client.readUInt16(0));
+    }
+}
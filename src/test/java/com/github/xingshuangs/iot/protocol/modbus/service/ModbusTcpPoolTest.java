@@ -0,0 +1,90 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ModbusTcpPoolTest {
+
+    private static final int PORT = 10511;
+
+    private ScheduledExecutorService scheduler;
+    private ModbusTcpServer server;
+    private ModbusTcpPool pool;
+
+    @Before
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.server = new ModbusTcpServer(PORT) {
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                // 大块数据的响应很慢
+                if (data.length > 100) {
+                    scheduler.schedule(() -> super.write(connection, data), 500, TimeUnit.MILLISECONDS);
+                } else {
+                    super.write(connection, data);
+                }
+            }
+        };
+        this.server.start();
+        this.pool = new ModbusTcpPool(1, ModbusTcp.IP, PORT, 0, 3);
+    }
+
+    @After
+    public void destroy() {
+        this.pool.close();
+        this.server.stop();
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void slowReadNotBlockFast() throws Exception {
+        this.pool.writeUInt16(0, 11);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> future = executor.submit(() -> this.pool.readHoldRegister(100, 100));
+            Thread.sleep(100);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(11, this.pool.readUInt16(0));
+            }
+            assertTrue(System.currentTimeMillis() - start < 400);
+            assertEquals(200, future.get(10, TimeUnit.SECONDS).length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void maxSize() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                futures.add(executor.submit(() -> {
+                    this.pool.writeUInt16(value, value);
+                    return this.pool.readUInt16(value);
+                }));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, futures.get(i).get(30, TimeUnit.SECONDS).intValue());
+            }
+            assertTrue(this.pool.getPool().getTotalSize() <= 3);
+            assertTrue(this.server.getClientSum() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
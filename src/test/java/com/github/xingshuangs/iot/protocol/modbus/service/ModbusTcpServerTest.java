@@ -0,0 +1,504 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.net.server.NetworkImpairment;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.protocol.common.RequestScheduler;
+import com.github.xingshuangs.iot.protocol.common.buff.ByteReadBuff;
+import com.github.xingshuangs.iot.protocol.common.buff.EByteBuffFormat;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbAddressRange;
+import com.github.xingshuangs.iot.protocol.modbus.enums.EMbFunctionCode;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbPdu;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbReadHoldRegisterRequest;
+import com.github.xingshuangs.iot.protocol.modbus.model.MbReadHoldRegisterResponse;
+import com.github.xingshuangs.iot.utils.BooleanUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModbusTcpServerTest {
+
+    private ModbusTcpServer server;
+    private ModbusTcp plc;
+
+    @Before
+    public void init() {
+        this.server = new ModbusTcpServer();
+        this.server.start();
+        this.plc = new ModbusTcp(1);
+    }
+
+    @After
+    public void destroy() {
+        this.server.stop();
+        this.plc.close();
+    }
+
+    @Test
+    public void readWriteCoil() {
+        this.plc.writeCoil(0, true);
+        this.plc.writeCoil(2, Arrays.asList(true, false, true));
+        List<Boolean> booleans = this.plc.readCoil(0, 6);
+        assertArrayEquals(new Boolean[]{true, false, true, false, true, false}, booleans.toArray(new Boolean[0]));
+        assertEquals(booleans, this.server.readCoil(1, 0, 6));
+
+        this.server.writeCoil(1, 100, Arrays.asList(true, true, false, true));
+        assertEquals(Arrays.asList(true, true, false, true), this.plc.readCoil(100, 4));
+    }
+
+    @Test
+    public void readDiscreteInput() {
+        this.server.writeDiscreteInput(1, 65530, Arrays.asList(true, false, false, true, true, false));
+        List<Boolean> booleans = this.plc.readDiscreteInput(65530, 6);
+        assertArrayEquals(new Boolean[]{true, false, false, true, true, false}, booleans.toArray(new Boolean[0]));
+    }
+
+    @Test
+    public void readWriteHoldRegister() {
+        this.plc.writeInt16(2, (short) -10);
+        this.plc.writeUInt16(3, 20);
+        this.plc.writeInt32(4, 32);
+        this.plc.writeFloat32(6, 12.5f);
+        this.plc.writeString(10, "pppp");
+        assertEquals(-10, this.plc.readInt16(2));
+        assertEquals(20, this.plc.readUInt16(3));
+        assertEquals(32, this.plc.readInt32(4));
+        assertEquals(12.5f, this.plc.readFloat32(6), 0.001);
+        assertEquals("pppp", this.plc.readString(10, 4));
+
+        this.server.writeHoldRegister(1, 100, 0xFFFF);
+        assertEquals(65535, this.plc.readUInt16(100));
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFF, 0x00, 0x00}, this.server.readHoldRegister(1, 100, 2));
+    }
+
+    @Test
+    public void readInputRegister() {
+        this.server.writeInputRegister(1, 0, new byte[]{0x01, 0x02, 0x03, 0x04});
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x03, 0x04}, this.plc.readInputRegister(0, 2));
+        // 输入寄存器和保持寄存器互相独立
+        assertArrayEquals(new byte[4], this.plc.readHoldRegister(0, 2));
+    }
+
+    @Test
+    public void readWriteHoldRegister23() {
+        this.plc.writeHoldRegister(20, new byte[]{0x00, 0x05, 0x00, 0x06});
+        // 先写后读，读的范围包含写的范围
+        byte[] values = this.plc.readWriteHoldRegister(18, 4, 19, new byte[]{0x01, 0x02});
+        assertArrayEquals(new byte[]{0x00, 0x00, 0x01, 0x02, 0x00, 0x05, 0x00, 0x06}, values);
+        assertArrayEquals(new byte[]{0x01, 0x02}, this.server.readHoldRegister(1, 19, 1));
+        try {
+            this.plc.readWriteHoldRegister(0, 1, 65535, new byte[4]);
+            fail();
+        } catch (ModbusCommException e) {
+            assertTrue(e.getMessage().contains("非法数据地址"));
+        }
+    }
+
+    @Test
+    public void independentUnit() {
+        ModbusTcp other = new ModbusTcp(2);
+        try {
+            this.plc.writeUInt16(0, 11);
+            other.writeUInt16(0, 22);
+            assertEquals(11, this.plc.readUInt16(0));
+            assertEquals(22, other.readUInt16(0));
+            assertEquals(Arrays.asList(1, 2), this.server.getUnits());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void exceptionResponse() {
+        try {
+            this.plc.readHoldRegister(65530, 10);
+            fail();
+        } catch (ModbusCommException e) {
+            assertTrue(e.getMessage().contains("非法数据地址"));
+        }
+        MbPdu pdu = new MbPdu();
+        pdu.setFunctionCode(EMbFunctionCode.READ_DOCUMENT_RECORD);
+        try {
+            this.plc.readModbusData(pdu);
+            fail();
+        } catch (ModbusCommException e) {
+            // 异常响应之后连接可以继续使用
+            this.plc.writeUInt16(0, 1);
+            assertEquals(1, this.plc.readUInt16(0));
+        }
+    }
+
+    @Test
+    public void unitCheck() {
+        ModbusTcpServer tmp = new ModbusTcpServer();
+        tmp.setAutoCreateUnit(false);
+        tmp.addUnit(1, 3);
+        assertEquals(Arrays.asList(1, 3), tmp.getUnits());
+        tmp.removeUnit(3);
+        assertEquals(Arrays.asList(1), tmp.getUnits());
+        try {
+            tmp.writeHoldRegister(256, 0, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("unitId"));
+        }
+        try {
+            tmp.readHoldRegister(1, 65535, 2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("65536"));
+        }
+    }
+
+    @Test
+    public void manyClients() throws Exception {
+        this.plc.writeInt32(100, 12345);
+        List<ModbusTcp> clients = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                ModbusTcp client = new ModbusTcp(1);
+                clients.add(client);
+                futures.add(executor.submit(() -> client.readInt32(100)));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(12345, future.get(30, TimeUnit.SECONDS).intValue());
+            }
+            assertEquals(201, this.server.getClientSum());
+        } finally {
+            executor.shutdown();
+            clients.forEach(ModbusTcp::close);
+        }
+    }
+
+    @Test
+    public void pipelined() {
+        // 每个响应独立延时20ms，模拟网络往返时间，而不是设备逐个处理的时间
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        ModbusTcpServer delayed = new ModbusTcpServer(10504) {
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                scheduler.schedule(() -> super.write(connection, data), 20, TimeUnit.MILLISECONDS);
+            }
+        };
+        delayed.start();
+        ModbusTcp client = new ModbusTcp(1, ModbusTcp.IP, 10504);
+        try {
+            for (int i = 0; i < 50; i++) {
+                delayed.writeHoldRegister(1, i * 10, i);
+            }
+            List<MbPdu> reqs = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                reqs.add(new MbReadHoldRegisterRequest(i * 10, 1));
+            }
+            long start = System.currentTimeMillis();
+            List<MbPdu> serial = client.readModbusData(reqs);
+            long serialTime = System.currentTimeMillis() - start;
+
+            client.setPipelineWindow(10);
+            start = System.currentTimeMillis();
+            List<MbPdu> pipelined = client.readModbusData(reqs);
+            long pipelinedTime = System.currentTimeMillis() - start;
+
+            for (int i = 0; i < 50; i++) {
+                byte[] expect = new byte[]{0, (byte) i};
+                assertArrayEquals(expect, ((MbReadHoldRegisterResponse) serial.get(i)).getRegister());
+                assertArrayEquals(expect, ((MbReadHoldRegisterResponse) pipelined.get(i)).getRegister());
+            }
+            assertTrue(String.format("serial[%d] pipelined[%d]", serialTime, pipelinedTime), pipelinedTime * 3 < serialTime);
+        } finally {
+            client.close();
+            delayed.stop();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void pipelinedOutOfOrder() {
+        // 每收到4个请求，倒序返回响应
+        ModbusTcpServer reverse = new ModbusTcpServer(10503) {
+            private final List<byte[]> responses = new ArrayList<>();
+
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                this.responses.add(data);
+                if (this.responses.size() == 4) {
+                    for (int i = 3; i >= 0; i--) {
+                        super.write(connection, this.responses.get(i));
+                    }
+                    this.responses.clear();
+                }
+            }
+        };
+        reverse.start();
+        ModbusTcp client = new ModbusTcp(1, ModbusTcp.IP, 10503);
+        try {
+            reverse.writeHoldRegister(1, 0, new byte[]{0, 1, 0, 2, 0, 3, 0, 4});
+            client.setPipelineWindow(4);
+            List<MbPdu> reqs = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reqs.add(new MbReadHoldRegisterRequest(i % 4, 1));
+            }
+            List<MbPdu> res = client.readModbusData(reqs);
+            for (int i = 0; i < 8; i++) {
+                assertArrayEquals(new byte[]{0, (byte) (i % 4 + 1)}, ((MbReadHoldRegisterResponse) res.get(i)).getRegister());
+            }
+        } finally {
+            client.close();
+            reverse.stop();
+        }
+    }
+
+    @Test
+    public void pipelinedConcurrent() throws Exception {
+        this.plc.setPipelineWindow(8);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                int address = i;
+                futures.add(executor.submit(() -> {
+                    this.plc.writeUInt16(address, address);
+                    return this.plc.readUInt16(address);
+                }));
+            }
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, futures.get(i).get(30, TimeUnit.SECONDS).intValue());
+            }
+            assertEquals(1, this.server.getClientSum());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void pipelinedPriorityPreempt() throws Exception {
+        // 按照服务端处理的顺序记录请求的功能码，以顺序而不是耗时判断抢占
+        List<Byte> order = new CopyOnWriteArrayList<>();
+        this.server.stop();
+        this.server = new ModbusTcpServer() {
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                order.add(data[7]);
+                super.write(connection, data);
+            }
+        };
+        this.server.start();
+        this.plc.setPipelineWindow(2);
+        this.plc.readUInt16(0);
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(100);
+        this.server.setImpairment(impairment);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // 3个线程各自15个报文的批量读取，窗口一直被占满
+            List<MbPdu> reqs = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                reqs.add(new MbReadHoldRegisterRequest(i * 10, 10));
+            }
+            List<Future<?>> bulks = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                bulks.add(executor.submit(() -> RequestScheduler.runWithPriority(ERequestPriority.BULK,
+                        () -> this.plc.readModbusData(reqs))));
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (order.size() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // 控制命令拿到批量读取释放的下一个窗口许可，之前最多还有窗口内已发出的2个批量请求
+            int before = order.size();
+            RequestScheduler.runWithPriority(ERequestPriority.CONTROL, () -> this.plc.writeUInt16(1000, 1));
+            for (Future<?> bulk : bulks) {
+                assertFalse(bulk.isDone());
+            }
+            int control = order.indexOf(EMbFunctionCode.WRITE_MULTIPLE_REGISTER.getCode());
+            assertTrue(control >= before);
+            assertTrue(control - before <= 2);
+            for (Future<?> bulk : bulks) {
+                bulk.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(1 + 45 + 1, order.size());
+            assertEquals(1, this.plc.readUInt16(1000));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void readRanges() {
+        byte[] data = new byte[2000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        this.server.writeHoldRegister(1, 0, data);
+        // 40个分散的范围，共600多个寄存器
+        List<MbAddressRange> ranges = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            ranges.add(new MbAddressRange(i * 24 + i % 3, 16));
+        }
+        ranges.add(new MbAddressRange(5, 300));
+        this.plc.setPipelineWindow(4);
+        List<byte[]> values = this.plc.readHoldRegister(ranges);
+        assertEquals(ranges.size(), values.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            MbAddressRange range = ranges.get(i);
+            assertArrayEquals(Arrays.copyOfRange(data, range.getAddress() * 2, range.getEnd() * 2), values.get(i));
+        }
+
+        List<Boolean> coils = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            coils.add(i % 3 == 0);
+        }
+        for (int i = 0; i < 3000; i += 500) {
+            this.server.writeCoil(1, i, coils.subList(i, i + 500));
+        }
+        List<List<Boolean>> bits = this.plc.readCoil(Arrays.asList(new MbAddressRange(0, 2500), new MbAddressRange(2990, 10)));
+        assertEquals(coils.subList(0, 2500), bits.get(0));
+        assertEquals(coils.subList(2990, 3000), bits.get(1));
+        assertEquals(coils.subList(7, 2007), this.plc.readCoil(7, 2000));
+    }
+
+    @Test
+    public void readWriteArray() {
+        float[] floats = new float[300];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = i * 1.5f - 100;
+        }
+        this.plc.writeFloat32Array(1000, floats);
+        assertArrayEquals(floats, this.plc.readFloat32Array(1000, 300), 0.0f);
+        // 和单个数据的读写格式一致
+        assertEquals(floats[123], this.plc.readFloat32(1000 + 123 * 2), 0.0f);
+        this.plc.writeFloat32(1000 + 61 * 2, 7.25f);
+        assertEquals(7.25f, this.plc.readFloat32Array(1000, 300)[61], 0.0f);
+
+        short[] shorts = new short[200];
+        int[] uints = new int[200];
+        for (int i = 0; i < shorts.length; i++) {
+            shorts[i] = (short) (i * 300 - 30000);
+            uints[i] = i * 300;
+        }
+        this.plc.writeInt16Array(0, shorts);
+        assertArrayEquals(shorts, this.plc.readInt16Array(0, 200));
+        this.plc.writeUInt16Array(0, uints);
+        assertArrayEquals(uints, this.plc.readUInt16Array(0, 200));
+        assertEquals(uints[150], this.plc.readUInt16(150));
+
+        int[] ints = {Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE};
+        long[] ulongs = {0L, 1L, 0xFFFFFFFFL, 0x80000000L};
+        double[] doubles = new double[70];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = Math.PI * i;
+        }
+        this.plc.writeInt32Array(3000, ints);
+        assertArrayEquals(ints, this.plc.readInt32Array(3000, ints.length));
+        assertEquals(Integer.MIN_VALUE, this.plc.readInt32(3000));
+        this.plc.writeUInt32Array(3100, ulongs);
+        assertArrayEquals(ulongs, this.plc.readUInt32Array(3100, ulongs.length));
+        this.plc.writeFloat64Array(3200, doubles);
+        assertArrayEquals(doubles, this.plc.readFloat64Array(3200, doubles.length), 0.0);
+        assertEquals(doubles[33], this.plc.readFloat64(3200 + 33 * 4), 0.0);
+    }
+
+    @Test
+    public void readWriteArrayFormat() {
+        float[] floats = {1.5f, -2.25f, 1.0e10f};
+        double[] doubles = {Math.E, -1.0e100};
+        for (EByteBuffFormat format : EByteBuffFormat.values()) {
+            this.plc.writeFloat32Array(0, floats, format);
+            assertArrayEquals(floats, this.plc.readFloat32Array(0, floats.length, format), 0.0f);
+            byte[] bytes = this.server.readHoldRegister(1, 0, floats.length * 2);
+            for (int i = 0; i < floats.length; i++) {
+                assertEquals(floats[i], ByteReadBuff.newInstance(bytes, format).getFloat32(i * 4), 0.0f);
+            }
+
+            this.plc.writeInt32Array(100, new int[]{0x01020304}, format);
+            assertEquals(0x01020304, ByteReadBuff.newInstance(this.server.readHoldRegister(1, 100, 2), format).getInt32());
+
+            this.plc.writeFloat64Array(200, doubles, format);
+            assertArrayEquals(doubles, this.plc.readFloat64Array(200, doubles.length, format), 0.0);
+            bytes = this.server.readHoldRegister(1, 200, doubles.length * 4);
+            for (int i = 0; i < doubles.length; i++) {
+                assertEquals(doubles[i], ByteReadBuff.newInstance(bytes, format).getFloat64(i * 8), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void readWriteCoilBits() {
+        List<Boolean> list = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            list.add(i % 3 == 0);
+        }
+        this.plc.writeCoil(0, list);
+        assertEquals(list, this.server.readCoil(1, 0, 20));
+
+        long[] previous = this.plc.readCoilLongArray(0, 2000);
+        assertEquals(32, previous.length);
+        BitSet bits = this.plc.readCoilBitSet(0, 20);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(list.get(i), bits.get(i));
+        }
+
+        BitSet status = new BitSet();
+        status.set(5);
+        status.set(70);
+        status.set(1500);
+        this.plc.writeCoil(100, 1501, status);
+        assertTrue(this.server.readCoil(1, 1600, 1).get(0));
+        assertEquals(Arrays.asList(false, true, false), this.server.readCoil(1, 104, 3));
+        assertEquals(status, this.plc.readCoilBitSet(100, 1501));
+
+        long[] current = this.plc.readCoilLongArray(0, 2000);
+        assertArrayEquals(new int[]{105, 170, 1600}, BooleanUtil.changedIndexes(previous, current));
+
+        this.server.writeDiscreteInput(1, 10, Arrays.asList(true, false, true));
+        assertArrayEquals(new long[]{0x05L << 10}, this.plc.readDiscreteInputLongArray(0, 64));
+        assertEquals(BitSet.valueOf(new long[]{0x05L}), this.plc.readDiscreteInputBitSet(10, 3));
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        this.plc.writeUInt16(10, 1234);
+        AtomicInteger frames = new AtomicInteger();
+        this.plc.setComCallback(x -> frames.incrementAndGet());
+        this.plc.setSingleFlight(true);
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(300);
+        this.server.setImpairment(impairment);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<byte[]> all = executor.submit(() -> this.plc.readHoldRegister(0, 100));
+            Thread.sleep(100);
+            // 相同和被覆盖的读取共享正在通信的请求
+            Future<Integer> covered = executor.submit(() -> this.plc.readUInt16(10));
+            Future<byte[]> same = executor.submit(() -> this.plc.readHoldRegister(0, 100));
+            assertEquals(1234, covered.get(5, TimeUnit.SECONDS).intValue());
+            byte[] expect = all.get(5, TimeUnit.SECONDS);
+            assertArrayEquals(expect, same.get(5, TimeUnit.SECONDS));
+            assertNotSame(expect, same.get());
+            // 发送和接收各一次
+            assertEquals(2, frames.get());
+        } finally {
+            executor.shutdown();
+        }
+        this.plc.setSingleFlight(false);
+        this.plc.readUInt16(10);
+        assertEquals(4, frames.get());
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.xingshuangs.iot.protocol.modbus.service;
+
+import com.github.xingshuangs.iot.exceptions.ModbusCommException;
+import com.github.xingshuangs.iot.protocol.modbus.algorithm.MbAddressRange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModbusUdpTest {
+
+    private static final int PORT = 10506;
+
+    private static final int LOSSY_PORT = 10507;
+
+    private static final int REORDER_PORT = 10508;
+
+    private ModbusTcpServer server;
+
+    private ModbusUdp udp;
+
+    @Before
+    public void init() {
+        this.server = new ModbusTcpServer();
+        this.server.startUdp(PORT);
+        this.udp = new ModbusUdp(ModbusTcp.IP, PORT);
+    }
+
+    @After
+    public void destroy() {
+        this.udp.close();
+        this.server.stopUdp();
+    }
+
+    @Test
+    public void readWrite() {
+        ModbusTcp client = this.udp.createClient(1);
+        client.writeUInt16(2, 1234);
+        assertEquals(1234, client.readUInt16(2));
+        client.writeFloat32(4, 12.5f);
+        assertEquals(12.5f, client.readFloat32(4), 0.0001);
+        client.writeCoil(0, Arrays.asList(true, false, true));
+        assertEquals(Arrays.asList(true, false, true), client.readCoil(0, 3));
+        assertArrayEquals(new byte[]{0x04, (byte) 0xD2}, this.server.readHoldRegister(1, 2, 1));
+
+        // 本地修改的数据通过UDP可以读到
+        this.server.writeHoldRegister(2, 0, 77);
+        assertEquals(77, this.udp.createClient(2).readUInt16(0));
+    }
+
+    @Test
+    public void readRanges() {
+        ModbusTcp client = this.udp.createClient(1);
+        client.setMergeGap(0);
+        for (int i = 0; i < 300; i++) {
+            this.server.writeHoldRegister(1, i, i);
+        }
+        List<byte[]> res = client.readHoldRegister(Arrays.asList(new MbAddressRange(0, 2),
+                new MbAddressRange(100, 2), new MbAddressRange(200, 2)));
+        assertArrayEquals(new byte[]{0, 0, 0, 1}, res.get(0));
+        assertArrayEquals(new byte[]{0, 100, 0, 101}, res.get(1));
+        assertArrayEquals(new byte[]{0, (byte) 200, 0, (byte) 201}, res.get(2));
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                ModbusTcp client = this.udp.createClient(i);
+                int unitId = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        client.writeUInt16(j, unitId * 1000 + j);
+                        assertEquals(unitId * 1000 + j, client.readUInt16(j));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void retransmit() throws Exception {
+        try (FakeResponder responder = new FakeResponder(LOSSY_PORT, true, 1)) {
+            ModbusUdp lossy = new ModbusUdp(ModbusTcp.IP, LOSSY_PORT);
+            lossy.setTimeout(200);
+            lossy.setRetries(2);
+            try {
+                assertEquals(8, lossy.createClient(1).readUInt16(8));
+                assertEquals(2, responder.received.get());
+                lossy.setRetries(0);
+                try {
+                    lossy.createClient(1).readUInt16(8);
+                    fail();
+                } catch (ModbusCommException e) {
+                    assertTrue(e.getMessage().contains("超时"));
+                }
+            } finally {
+                lossy.close();
+            }
+        }
+    }
+
+    @Test
+    public void outOfOrder() throws Exception {
+        try (FakeResponder responder = new FakeResponder(REORDER_PORT, false, 3)) {
+            ModbusUdp udp = new ModbusUdp(ModbusTcp.IP, REORDER_PORT);
+            try {
+                ModbusTcp client = udp.createClient(1);
+                client.setMergeGap(0);
+                List<byte[]> res = client.readHoldRegister(Arrays.asList(new MbAddressRange(10, 1),
+                        new MbAddressRange(20, 1), new MbAddressRange(30, 1)));
+                assertArrayEquals(new byte[]{0, 10}, res.get(0));
+                assertArrayEquals(new byte[]{0, 20}, res.get(1));
+                assertArrayEquals(new byte[]{0, 30}, res.get(2));
+                assertEquals(3, responder.received.get());
+            } finally {
+                udp.close();
+            }
+        }
+    }
+
+    /**
+     * 只响应读取保持寄存器的模拟从站，寄存器的值等于地址；可以丢弃奇数个请求，或者凑齐一批之后倒序响应
+     */
+    private static class FakeResponder implements AutoCloseable {
+
+        final AtomicInteger received = new AtomicInteger();
+
+        final DatagramSocket socket;
+
+        FakeResponder(int port, boolean dropOdd, int batch) throws Exception {
+            this.socket = new DatagramSocket(port);
+            Thread thread = new Thread(() -> {
+                List<DatagramPacket> packets = new ArrayList<>();
+                try {
+                    while (true) {
+                        DatagramPacket packet = new DatagramPacket(new byte[260], 260);
+                        this.socket.receive(packet);
+                        if (dropOdd && this.received.incrementAndGet() % 2 == 1) {
+                            continue;
+                        } else if (!dropOdd) {
+                            this.received.incrementAndGet();
+                        }
+                        packets.add(packet);
+                        if (packets.size() < batch) {
+                            continue;
+                        }
+                        Collections.reverse(packets);
+                        for (DatagramPacket p : packets) {
+                            this.socket.send(this.respond(p));
+                        }
+                        packets.clear();
+                    }
+                } catch (Exception e) {
+                    // 关闭
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        DatagramPacket respond(DatagramPacket packet) {
+            byte[] req = packet.getData();
+            int address = (req[8] & 0xFF) << 8 | req[9] & 0xFF;
+            int quantity = (req[10] & 0xFF) << 8 | req[11] & 0xFF;
+            byte[] res = new byte[9 + quantity * 2];
+            System.arraycopy(req, 0, res, 0, 4);
+            res[5] = (byte) (3 + quantity * 2);
+            res[6] = req[6];
+            res[7] = 0x03;
+            res[8] = (byte) (quantity * 2);
+            for (int i = 0; i < quantity; i++) {
+                res[9 + i * 2] = (byte) ((address + i) >> 8);
+                res[10 + i * 2] = (byte) (address + i);
+            }
+            return new DatagramPacket(res, res.length, packet.getSocketAddress());
+        }
+
+        @Override
+        public void close() {
+            this.socket.close();
+        }
+    }
+}
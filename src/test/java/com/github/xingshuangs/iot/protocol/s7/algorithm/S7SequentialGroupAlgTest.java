@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 
 public class S7SequentialGroupAlgTest {
@@ -43,4 +44,15 @@ public class S7SequentialGroupAlgTest {
 //            System.out.println("----------------------------------------------------");
 //        });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void recombinationWithoutEmptyGroup() {
+        List<S7ComGroup> recombination = S7SequentialGroupAlg.readRecombination(Arrays.asList(220), 240 - 14, 5, 12);
+        assertEquals(1, recombination.size());
+        recombination = S7SequentialGroupAlg.readRecombination(Arrays.asList(200, 440), 240 - 14, 5, 12);
+        assertEquals(3, recombination.size());
+        recombination.forEach(x -> assertFalse(x.getItems().isEmpty()));
+        recombination = S7SequentialGroupAlg.writeRecombination(Arrays.asList(209), 240 - 12, 17);
+        assertEquals(1, recombination.size());
+    }
+}
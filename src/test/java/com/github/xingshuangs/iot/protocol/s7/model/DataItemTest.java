@@ -26,4 +26,24 @@ public class DataItemTest {
         byte[] expect = {(byte) 0xFF, (byte) 0x04, (byte) 0x00, (byte) 0x38, (byte) 0x00, (byte) 0x00};
         assertArrayEquals(expect, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void slice() {
+        byte[] data = {0x01, 0x02, 0x03, 0x04, 0x05, 0x06};
+        DataItem slice = DataItem.createReqByByte(data).slice(1, 3);
+        assertEquals(3, slice.getCount());
+        assertArrayEquals(new byte[]{0x02, 0x03, 0x04}, slice.getData());
+        assertEquals(8, slice.byteArrayLength());
+        byte[] expect = {(byte) 0x00, (byte) 0x04, (byte) 0x00, (byte) 0x18, 0x02, 0x03, 0x04, 0x00};
+        assertArrayEquals(expect, slice.toByteArray());
+        // 和原数组共享数据
+        data[2] = 0x33;
+        assertArrayEquals(new byte[]{0x33, 0x04}, slice.slice(1, 2).getData());
+        assertArrayEquals(slice.toByteArray(), slice.copy().toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sliceOutOfRange() {
+        DataItem.createReqByByte(new byte[4]).slice(2, 3);
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+import com.github.xingshuangs.iot.protocol.s7.enums.EArea;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class S7ChangeDispatcherTest {
+
+    private static final int EVENTS = 5000;
+
+    private S7ChangeDispatcher dispatcher;
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<S7DataChangeEvent> received = new CopyOnWriteArrayList<>();
+
+    private final Set<Thread> consumers = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    @After
+    public void destroy() {
+        this.release.countDown();
+        this.dispatcher.shutdown();
+    }
+
+    /**
+     * 第一次回调阻塞到放行为止的监听器
+     */
+    private void addBlockingListener() {
+        this.dispatcher.addListener(EArea.DATA_BLOCKS, 1, 0, EVENTS, events -> {
+            this.consumers.add(Thread.currentThread());
+            this.entered.countDown();
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.received.addAll(events);
+        });
+    }
+
+    private boolean publish(int offset) {
+        return this.dispatcher.publish(new S7DataChangeEvent(EArea.DATA_BLOCKS, 1, offset, new byte[]{0}, new byte[]{1}));
+    }
+
+    private void waitReceived(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (this.received.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, this.received.size());
+    }
+
+    @Test(timeout = 10000)
+    public void overflowDropsWithoutBlocking() throws InterruptedException {
+        this.dispatcher = new S7ChangeDispatcher("test-change");
+        this.addBlockingListener();
+        this.dispatcher.start();
+        this.publish(0);
+        assertTrue(this.entered.await(3, TimeUnit.SECONDS));
+
+        // 监听器卡住，队列满之后写入方立即返回，事件被丢弃并计数
+        int accepted = 1;
+        for (int i = 1; i < EVENTS; i++) {
+            if (this.publish(i)) {
+                accepted++;
+            }
+        }
+        assertTrue(this.dispatcher.getDroppedCount() > 0);
+        assertEquals(EVENTS, accepted + this.dispatcher.getDroppedCount());
+
+        this.release.countDown();
+        this.waitReceived(accepted);
+
+        // 停止之后再启动，队列中没有残留的空位，新事件正常分发
+        this.dispatcher.shutdown();
+        this.dispatcher.start();
+        assertTrue(this.publish(EVENTS - 1));
+        this.waitReceived(accepted + 1);
+    }
+
+    @Test(timeout = 10000)
+    public void restartAfterShutdownTimeoutKeepsOneConsumer() throws InterruptedException {
+        this.dispatcher = new S7ChangeDispatcher("test-change", 100);
+        this.addBlockingListener();
+        this.dispatcher.start();
+        this.publish(0);
+        assertTrue(this.entered.await(3, TimeUnit.SECONDS));
+
+        // 监听器卡住导致停止超时，重新启动不能创建第二个分发线程
+        this.dispatcher.shutdown();
+        this.dispatcher.start();
+        for (int i = 1; i < 1000; i++) {
+            assertTrue(this.publish(i));
+        }
+        this.release.countDown();
+        this.waitReceived(1000);
+
+        assertEquals(1, this.consumers.size());
+        boolean[] seen = new boolean[1000];
+        for (S7DataChangeEvent event : this.received) {
+            assertFalse(seen[event.getOffset()]);
+            seen[event.getOffset()] = true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class S7DataAreaTest {
+
+    @Test
+    public void readWrite() {
+        S7DataArea area = new S7DataArea("DB1", 100);
+        assertEquals("DB1", area.getName());
+        assertEquals(100, area.getSize());
+        area.write(10, new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{0, 1, 2, 3, 0}, area.read(9, 5));
+
+        area.writeBit(20, 3, true);
+        assertTrue(area.readBit(20, 3));
+        assertArrayEquals(new byte[]{0x08}, area.read(20, 1));
+        area.writeBit(20, 3, false);
+        assertFalse(area.readBit(20, 3));
+    }
+
+    @Test
+    public void lazyPages() {
+        S7DataArea area = new S7DataArea("DB1", 10000);
+        assertEquals(0, area.getAllocatedBytes());
+        assertArrayEquals(new byte[10000], area.read(0, 10000));
+        assertFalse(area.readBit(9999, 7));
+        assertEquals(0, area.getAllocatedBytes());
+
+        // 跨页写入，分配两页
+        byte[] data = new byte[10];
+        Arrays.fill(data, (byte) 0x11);
+        area.write(S7DataArea.PAGE_SIZE - 5, data);
+        assertEquals(2 * S7DataArea.PAGE_SIZE, area.getAllocatedBytes());
+        assertArrayEquals(data, area.read(S7DataArea.PAGE_SIZE - 5, 10));
+        assertArrayEquals(new byte[]{0, 0x11}, area.read(S7DataArea.PAGE_SIZE - 6, 2));
+
+        // 最后一页只分配到数据区末尾
+        area.writeBit(9999, 7, true);
+        assertEquals(10000, area.getAllocatedBytes());
+        assertTrue(area.readBit(9999, 7));
+    }
+
+    @Test
+    public void contains() {
+        S7DataArea area = new S7DataArea("M", 100);
+        assertTrue(area.contains(0, 100));
+        assertTrue(area.contains(99, 1));
+        assertFalse(area.contains(99, 2));
+        assertFalse(area.contains(-1, 1));
+    }
+
+    @Test
+    public void consistentRead() throws InterruptedException {
+        S7DataArea area = new S7DataArea("DB1", 1024);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            byte value = 0;
+            while (running.get()) {
+                byte[] data = new byte[1024];
+                Arrays.fill(data, value++);
+                area.write(0, data);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 10000; i++) {
+                byte[] data = area.read(0, 1024);
+                for (byte b : data) {
+                    assertEquals(data[0], b);
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+import com.github.xingshuangs.iot.exceptions.S7CommException;
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.net.server.NioConnection;
+import com.github.xingshuangs.iot.protocol.s7.enums.EPlcType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class S7PLCPoolTest {
+
+    private static final int PORT = 10510;
+
+    private ScheduledExecutorService scheduler;
+    private S7PLCServer server;
+    private S7PLCPool pool;
+
+    @Before
+    public void init() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.server = new S7PLCServer(PORT) {
+            @Override
+            protected void write(NioConnection connection, byte[] data) {
+                // 大块数据的响应很慢
+                if (data.length > 100) {
+                    scheduler.schedule(() -> super.write(connection, data), 500, TimeUnit.MILLISECONDS);
+                } else {
+                    super.write(connection, data);
+                }
+            }
+        };
+        this.server.addDBArea(1);
+        this.server.start();
+        this.pool = new S7PLCPool(EPlcType.S1200, "127.0.0.1", PORT, 0, 0, S7PLC.DEFAULT_PDU_LENGTH, 1, 3);
+    }
+
+    @After
+    public void destroy() {
+        this.pool.close();
+        this.server.stop();
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void slowReadNotBlockFast() throws Exception {
+        this.pool.writeInt16("DB1.0", (short) 11);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> future = executor.submit(() -> this.pool.readByte("DB1.100", 400));
+            Thread.sleep(100);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(11, this.pool.readInt16("DB1.0"));
+            }
+            assertTrue(System.currentTimeMillis() - start < 400);
+            assertEquals(400, future.get(10, TimeUnit.SECONDS).length);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void maxSize() throws Exception {
+        this.pool.writeInt32("DB1.100", 12345);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> this.pool.readInt32("DB1.100")));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(12345, future.get(30, TimeUnit.SECONDS).intValue());
+            }
+            assertTrue(this.pool.getPool().getTotalSize() <= 3);
+            assertTrue(this.server.getClientSum() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void idleEviction() throws Exception {
+        this.pool.getPool().setIdleTimeout(200);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> this.pool.readByte("DB1.0", 200)));
+            }
+            for (Future<byte[]> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(3, this.pool.getPool().getTotalSize());
+        // 后台维护任务按周期执行，等到空闲超时的连接关闭到只剩最小连接数
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((this.pool.getPool().getTotalSize() > 1 || this.server.getClientSum() > 1)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, this.pool.getPool().getTotalSize());
+        assertEquals(1, this.server.getClientSum());
+    }
+
+    @Test
+    public void healthCheckExclusive() throws Exception {
+        Set<S7PLC> checking = ConcurrentHashMap.newKeySet();
+        AtomicInteger checks = new AtomicInteger();
+        AtomicBoolean shared = new AtomicBoolean();
+        this.pool.getPool().setHealthCheck(x -> {
+            // 模拟探测读，检查期间独占该连接
+            checking.add(x);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checking.remove(x);
+            checks.incrementAndGet();
+            return true;
+        });
+        // 多个线程不停地租借，所有空闲连接都会被轮流使用
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> {
+                    while (checks.get() < 3 && System.currentTimeMillis() < deadline) {
+                        this.pool.getPool().execute(x -> {
+                            if (checking.contains(x)) {
+                                shared.set(true);
+                            }
+                            return x.readInt16("DB1.0");
+                        });
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(15, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(checks.get() >= 3);
+        assertFalse(shared.get());
+        assertTrue(this.pool.getPool().getTotalSize() <= 3);
+    }
+
+    @Test
+    public void readBulk() {
+        byte[] expect = new byte[2000];
+        for (int i = 0; i < expect.length; i++) {
+            expect[i] = (byte) (i * 7);
+        }
+        this.pool.writeByte("DB1.10", expect);
+        long start = System.currentTimeMillis();
+        byte[] actual = this.pool.readBulk("DB1.10", 2000);
+        // 10个慢分片，3个连接并行
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertArrayEquals(expect, actual);
+
+        byte[] buffer = new byte[1010];
+        this.pool.setBulkParallelism(2);
+        this.pool.readBulk("DB1.510", buffer, 10, 1000);
+        assertArrayEquals(Arrays.copyOfRange(expect, 500, 1500), Arrays.copyOfRange(buffer, 10, 1010));
+        assertTrue(this.pool.getPool().getTotalSize() <= 3);
+    }
+
+    @Test
+    public void readBulkOutOfRange() {
+        try {
+            this.pool.readBulk("DB1.65000", 2000);
+            fail();
+        } catch (S7CommException e) {
+            assertTrue(e.getMessage().length() > 0);
+        }
+    }
+
+    @Test
+    public void writeBulk() {
+        byte[] expect = new byte[20000];
+        for (int i = 0; i < expect.length; i++) {
+            expect[i] = (byte) (i * 13);
+        }
+        List<S7BulkChunk> failures = this.pool.writeBulk("DB1.100", expect);
+        assertTrue(failures.isEmpty());
+        assertArrayEquals(Arrays.copyOfRange(expect, 0, 80), this.pool.readByte("DB1.100", 80));
+        assertArrayEquals(Arrays.copyOfRange(expect, 19920, 20000), this.pool.readByte("DB1.20020", 80));
+
+        failures = this.pool.writeBulk("DB1.30000", expect, 100, 50);
+        assertTrue(failures.isEmpty());
+        assertArrayEquals(Arrays.copyOfRange(expect, 100, 150), this.pool.readByte("DB1.30000", 50));
+    }
+
+    @Test
+    public void writeBulkChunkFailure() {
+        byte[] data = new byte[1000];
+        Arrays.fill(data, (byte) 0x55);
+        // 超出DB块范围的分片失败，其他分片正常写入
+        List<S7BulkChunk> failures = this.pool.writeBulk("DB1.65000", data);
+        assertFalse(failures.isEmpty());
+        S7BulkChunk first = failures.get(0);
+        assertTrue(first.getOffset() > 0 && first.getOffset() <= 536);
+        assertTrue(first.getCause() instanceof S7CommException);
+        byte[] expect = new byte[first.getOffset()];
+        Arrays.fill(expect, (byte) 0x55);
+        assertArrayEquals(expect, this.pool.readByte("DB1.65000", first.getOffset()));
+
+        List<S7BulkChunk> retry = this.pool.retryBulk("DB1.65000", data, 0, failures);
+        assertEquals(failures.size(), retry.size());
+    }
+
+    @Test
+    public void serverRestart() {
+        this.pool.writeInt16("DB1.0", (short) 22);
+        this.server.stop();
+        this.server.start();
+        this.server.addDBArea(1);
+        try {
+            // 池中旧连接已经断开，第一次通信可能失败，失败的连接被丢弃
+            this.pool.writeInt16("DB1.0", (short) 23);
+        } catch (SocketRuntimeException e) {
+            this.pool.writeInt16("DB1.0", (short) 23);
+        }
+        assertEquals(23, this.pool.readInt16("DB1.0"));
+    }
+}
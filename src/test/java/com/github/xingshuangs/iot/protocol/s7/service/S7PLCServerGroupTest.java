@@ -0,0 +1,131 @@
+package com.github.xingshuangs.iot.protocol.s7.service;
+
+import com.github.xingshuangs.iot.exceptions.SocketRuntimeException;
+import com.github.xingshuangs.iot.protocol.s7.enums.EPlcType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class S7PLCServerGroupTest {
+
+    private static final int BASE_PORT = 10200;
+
+    private static final int PLC_COUNT = 50;
+
+    private S7PLCServerGroup group;
+
+    @Before
+    public void init() {
+        this.group = new S7PLCServerGroup(1, 4);
+        for (int i = 0; i < PLC_COUNT; i++) {
+            S7PLCServer server = this.group.addServer("127.0.0.1", BASE_PORT + i);
+            server.setPduLength(240 - i);
+        }
+        this.group.start();
+    }
+
+    @After
+    public void destroy() {
+        this.group.shutdown();
+    }
+
+    @Test
+    public void independentPlc() {
+        List<S7PLC> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < PLC_COUNT; i++) {
+                S7PLC client = new S7PLC(EPlcType.S1200, "127.0.0.1", BASE_PORT + i, 0, 1);
+                clients.add(client);
+                client.writeInt32("DB1.0", i);
+            }
+            for (int i = 0; i < PLC_COUNT; i++) {
+                assertEquals(i, clients.get(i).readInt32("DB1.0"));
+                assertEquals(240 - i, clients.get(i).getPduLength());
+            }
+            assertEquals(PLC_COUNT, this.group.getClientSum());
+        } finally {
+            clients.forEach(S7PLC::close);
+        }
+    }
+
+    @Test
+    public void rackSlotCheck() {
+        S7PLCServer server = this.group.getServer("127.0.0.1", BASE_PORT);
+        server.setRack(0);
+        server.setSlot(1);
+        S7PLC right = new S7PLC(EPlcType.S1200, "127.0.0.1", BASE_PORT, 0, 1);
+        S7PLC wrong = new S7PLC(EPlcType.S1200, "127.0.0.1", BASE_PORT, 0, 2);
+        try {
+            right.writeByte("DB1.0", (byte) 0x01);
+            assertEquals((byte) 0x01, right.readByte("DB1.0"));
+            wrong.readByte("DB1.0");
+            fail();
+        } catch (SocketRuntimeException e) {
+            assertTrue(right.checkConnected());
+        } finally {
+            right.close();
+            wrong.close();
+        }
+    }
+
+    @Test
+    public void duplicateAddress() {
+        assertNotNull(this.group.getServer("127.0.0.1", BASE_PORT));
+        assertNull(this.group.getServer(BASE_PORT));
+        try {
+            this.group.addServer("127.0.0.1", BASE_PORT);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(PLC_COUNT, this.group.getServers().size());
+        }
+        this.group.removeServer("127.0.0.1", BASE_PORT);
+        assertEquals(PLC_COUNT - 1, this.group.getServers().size());
+    }
+
+    @Test
+    public void concurrentAddSameAddress() throws Exception {
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                int port = BASE_PORT + PLC_COUNT + round;
+                CountDownLatch ready = new CountDownLatch(1);
+                List<Future<S7PLCServer>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        ready.await();
+                        try {
+                            return this.group.addServer("127.0.0.1", port);
+                        } catch (IllegalArgumentException e) {
+                            return null;
+                        }
+                    }));
+                }
+                ready.countDown();
+                // 只有一个线程添加成功，并且拿到的就是组中保存的虚拟PLC
+                List<S7PLCServer> added = new ArrayList<>();
+                for (Future<S7PLCServer> future : futures) {
+                    S7PLCServer server = future.get(5, TimeUnit.SECONDS);
+                    if (server != null) {
+                        added.add(server);
+                    }
+                }
+                assertEquals(1, added.size());
+                assertSame(added.get(0), this.group.getServer("127.0.0.1", port));
+            }
+            assertEquals(PLC_COUNT + 20, this.group.getServers().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
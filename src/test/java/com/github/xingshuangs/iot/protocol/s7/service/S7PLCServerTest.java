@@ -1,15 +1,37 @@
 package com.github.xingshuangs.iot.protocol.s7.service;
 
+import com.github.xingshuangs.iot.exceptions.S7CommException;
+import com.github.xingshuangs.iot.net.server.NetworkImpairment;
+import com.github.xingshuangs.iot.protocol.common.RequestScheduler;
+import com.github.xingshuangs.iot.protocol.common.enums.ERequestPriority;
+import com.github.xingshuangs.iot.protocol.s7.enums.EArea;
 import com.github.xingshuangs.iot.protocol.s7.enums.EPlcType;
 import com.github.xingshuangs.iot.protocol.s7.serializer.DemoBean;
 import com.github.xingshuangs.iot.protocol.s7.serializer.DemoLargeBean;
 import com.github.xingshuangs.iot.protocol.s7.serializer.S7Serializer;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -18,6 +40,9 @@ public class S7PLCServerTest {
     private S7PLCServer server;
     private S7PLC s7PLC;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void init() {
         this.server = new S7PLCServer();
@@ -110,4 +135,276 @@ public class S7PLCServerTest {
         String actual = this.s7PLC.readString("DB1.10", 6);
         assertEquals("123456", actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void advertisedPduLength() {
+        this.server.setPduLength(120);
+        this.s7PLC.writeByte("DB1.0", new byte[200]);
+        assertEquals(120, this.s7PLC.getPduLength());
+        assertArrayEquals(new byte[200], this.s7PLC.readByte("DB1.0", 200));
+    }
+
+    @Test
+    public void impairmentLatency() {
+        this.s7PLC.readByte("DB1.0");
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(50);
+        this.server.setImpairment(impairment);
+        long start = System.currentTimeMillis();
+        this.s7PLC.readByte("DB1.0");
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    @Test
+    public void manyClients() throws Exception {
+        this.s7PLC.writeInt32("DB1.100", 12345);
+        List<S7PLC> clients = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                S7PLC client = new S7PLC(EPlcType.S1200);
+                clients.add(client);
+                futures.add(executor.submit(() -> client.readInt32("DB1.100")));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(12345, future.get(30, TimeUnit.SECONDS).intValue());
+            }
+            assertEquals(201, this.server.getClientSum());
+        } finally {
+            executor.shutdown();
+            clients.forEach(S7PLC::close);
+        }
+    }
+
+    @Test
+    public void outOfRangeAddress() {
+        this.s7PLC.writeByte("DB2.65530", new byte[6]);
+        try {
+            this.s7PLC.readByte("DB2.65530", 7);
+            fail();
+        } catch (S7CommException e) {
+            assertTrue(e.getMessage().contains("无效地址"));
+        }
+        try {
+            this.s7PLC.readByte("DB99.0");
+            fail();
+        } catch (S7CommException e) {
+            assertTrue(e.getMessage().contains("对象不存在"));
+        }
+    }
+
+    @Test
+    public void dbAreaWithSize() {
+        this.server.addDBAreaWithSize(100, 400);
+        assertTrue(this.server.getAvailableAreas().contains("DB400"));
+        this.s7PLC.writeInt16("DB400.98", (short) 12);
+        assertEquals(12, this.s7PLC.readInt16("DB400.98"));
+        try {
+            this.s7PLC.readByte("DB400.99", 2);
+            fail();
+        } catch (S7CommException e) {
+            assertTrue(e.getMessage().contains("无效地址"));
+        }
+    }
+
+    @Test
+    public void persistentDataArea() throws IOException {
+        File dir = this.folder.newFolder("s7");
+        this.server.setDataDirectory(dir.getPath());
+        this.s7PLC.writeInt32("DB3.4", 0x11223344);
+        this.server.stop();
+
+        // 映射文件中可以直接看到数据
+        byte[] bytes = Files.readAllBytes(new File(dir, "DB3.dat").toPath());
+        assertEquals(65536, bytes.length);
+        assertArrayEquals(new byte[]{0x11, 0x22, 0x33, 0x44}, Arrays.copyOfRange(bytes, 4, 8));
+
+        // 重启之后数据保留
+        this.server = new S7PLCServer();
+        this.server.setDataDirectory(dir.getPath());
+        this.server.addDBArea(3);
+        this.server.start();
+        this.s7PLC.close();
+        assertEquals(0x11223344, this.s7PLC.readInt32("DB3.4"));
+    }
+
+    @Test
+    public void switchDataDirectoryReleasesMapping() throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        Assume.assumeTrue(Files.isReadable(maps));
+        File first = this.folder.newFolder("first");
+        File second = this.folder.newFolder("second");
+        this.server.setDataDirectory(first.getPath());
+        this.s7PLC.writeInt32("DB3.4", 0x11223344);
+        assertTrue(new String(Files.readAllBytes(maps)).contains(first.getPath()));
+
+        // 切换目录之后原映射立即释放，数据已经持久化
+        this.server.setDataDirectory(second.getPath());
+        assertFalse(new String(Files.readAllBytes(maps)).contains(first.getPath()));
+        byte[] bytes = Files.readAllBytes(new File(first, "DB3.dat").toPath());
+        assertArrayEquals(new byte[]{0x11, 0x22, 0x33, 0x44}, Arrays.copyOfRange(bytes, 4, 8));
+        assertEquals(0, this.s7PLC.readInt32("DB3.4"));
+    }
+
+    @Test
+    public void dataDirectoryInUse() throws IOException {
+        File dir = this.folder.newFolder("shared");
+        this.server.setDataDirectory(dir.getPath());
+        S7PLCServer other = new S7PLCServer(10300);
+        other.setDataDirectory(dir.getPath());
+        try {
+            other.start();
+            fail();
+        } catch (S7CommException e) {
+            assertFalse(other.isAlive());
+        }
+        // 运行中的服务端不能切换到被占用的目录
+        other.setDataDirectory(null);
+        other.start();
+        try {
+            other.setDataDirectory(dir.getPath());
+            fail();
+        } catch (S7CommException e) {
+            assertNull(other.getDataDirectory());
+        }
+        // 占用的服务端停止之后目录可以被使用
+        this.server.stop();
+        other.setDataDirectory(dir.getPath());
+        other.stop();
+    }
+
+    @Test
+    public void changeListener() throws InterruptedException {
+        BlockingQueue<S7DataChangeEvent> queue = new LinkedBlockingQueue<>();
+        IS7DataChangeListener listener = queue::addAll;
+        this.server.addChangeListener("DB1.0", 10, listener);
+        this.s7PLC.writeInt16("DB1.2", (short) 0x0102);
+        // 超出监听范围
+        this.s7PLC.writeInt16("DB1.20", (short) 0x0102);
+        // 数据没有变化
+        this.s7PLC.writeInt16("DB1.2", (short) 0x0102);
+        this.s7PLC.writeBoolean("DB1.5.1", true);
+
+        S7DataChangeEvent event = queue.poll(3, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(EArea.DATA_BLOCKS, event.getArea());
+        assertEquals(1, event.getDbNumber());
+        assertEquals(2, event.getOffset());
+        assertArrayEquals(new byte[]{0x00, 0x00}, event.getOldData());
+        assertArrayEquals(new byte[]{0x01, 0x02}, event.getNewData());
+        event = queue.poll(3, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(5, event.getOffset());
+        assertArrayEquals(new byte[]{0x00}, event.getOldData());
+        assertArrayEquals(new byte[]{0x02}, event.getNewData());
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+
+        this.server.removeChangeListener(listener);
+        this.s7PLC.writeInt16("DB1.2", (short) 0x0304);
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void changeListenerStopAndRestart() throws InterruptedException {
+        BlockingQueue<S7DataChangeEvent> queue = new LinkedBlockingQueue<>();
+        this.server.addChangeListener("DB1.0", 10, x -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            queue.addAll(x);
+        });
+        for (int i = 1; i <= 5; i++) {
+            this.s7PLC.writeInt16("DB1.2", (short) i);
+        }
+        // 停止时已经产生的事件全部分发完，分发线程退出
+        this.server.stop();
+        assertEquals(5, queue.size());
+        assertFalse(Thread.getAllStackTraces().keySet().stream().anyMatch(x -> x.getName().startsWith("iot-s7-change-")));
+
+        // 重新启动之后监听继续生效
+        queue.clear();
+        this.server.start();
+        this.s7PLC.close();
+        this.s7PLC.writeInt16("DB1.2", (short) 6);
+        S7DataChangeEvent event = queue.poll(3, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertArrayEquals(new byte[]{0x00, 0x06}, event.getNewData());
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        this.s7PLC.writeUInt16("DB1.10", 1234);
+        this.s7PLC.writeBoolean("DB1.12.3", true);
+        AtomicInteger frames = new AtomicInteger();
+        this.s7PLC.setComCallback(x -> frames.incrementAndGet());
+        this.s7PLC.setSingleFlight(true);
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(300);
+        this.server.setImpairment(impairment);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<byte[]> all = executor.submit(() -> this.s7PLC.readByte("DB1.0", 100));
+            Thread.sleep(100);
+            // 相同和被覆盖的读取共享正在通信的请求，位读取也可以被字节读取覆盖
+            Future<Integer> covered = executor.submit(() -> this.s7PLC.readUInt16("DB1.10"));
+            Future<Boolean> bit = executor.submit(() -> this.s7PLC.readBoolean("DB1.12.3"));
+            Future<byte[]> same = executor.submit(() -> this.s7PLC.readByte("DB1.0", 100));
+            assertEquals(1234, covered.get(5, TimeUnit.SECONDS).intValue());
+            assertTrue(bit.get(5, TimeUnit.SECONDS));
+            byte[] expect = all.get(5, TimeUnit.SECONDS);
+            assertArrayEquals(expect, same.get(5, TimeUnit.SECONDS));
+            assertNotSame(expect, same.get());
+            // 发送和接收各一次
+            assertEquals(2, frames.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void singleFlightReadAfterWrite() throws Exception {
+        this.s7PLC.writeByte("DB1.10", (byte) 0x00);
+        this.s7PLC.setSingleFlight(true);
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(100);
+        this.server.setImpairment(impairment);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 10个报文的批量读取，第一个报文已经读取了DB1.10
+            Future<byte[]> bulk = executor.submit(() -> this.s7PLC.readByte("DB1.0", 2000));
+            Thread.sleep(150);
+            // 写操作插入到批量读取的两个报文之间，之后的读取不能共享写之前的数据
+            this.s7PLC.writeByte("DB1.10", (byte) 0x55);
+            assertFalse(bulk.isDone());
+            assertEquals((byte) 0x55, this.s7PLC.readByte("DB1.10"));
+            assertEquals((byte) 0x00, bulk.get(10, TimeUnit.SECONDS)[10]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void priorityPreemptBetweenPdu() throws Exception {
+        this.s7PLC.readByte("DB1.0");
+        NetworkImpairment impairment = new NetworkImpairment();
+        impairment.setLatency(100);
+        this.server.setImpairment(impairment);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // 10个报文的批量读取
+            Future<Long> bulk = executor.submit(() -> RequestScheduler.callWithPriority(ERequestPriority.BULK, () -> {
+                this.s7PLC.readByte("DB1.0", 2000);
+                return System.currentTimeMillis();
+            }));
+            Thread.sleep(150);
+            RequestScheduler.runWithPriority(ERequestPriority.CONTROL, () -> this.s7PLC.writeByte("DB1.2100", (byte) 0x01));
+            long controlDone = System.currentTimeMillis();
+            assertTrue(controlDone < bulk.get(10, TimeUnit.SECONDS) - 300);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.github.xingshuangs.iot.utils;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 
@@ -46,4 +48,32 @@ public class BooleanUtilTest {
         b = BooleanUtil.getValue((byte) 0x80, 6);
         assertFalse(b);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void listToByteArray() {
+        byte[] actual = BooleanUtil.listToByteArray(Arrays.asList(true, false, false, false, false, false, false, true, true, true));
+        assertArrayEquals(new byte[]{(byte) 0x81, (byte) 0x03}, actual);
+        actual = BooleanUtil.listToByteArray(Arrays.asList(true, true, true, true, true, true, true, true));
+        assertArrayEquals(new byte[]{(byte) 0xFF}, actual);
+    }
+
+    @Test
+    public void byteArrayToLongArray() {
+        byte[] src = new byte[]{(byte) 0x81, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0x80, (byte) 0xFF};
+        long[] actual = BooleanUtil.byteArrayToLongArray(68, src);
+        assertArrayEquals(new long[]{0x8000000000000081L, 0x0FL}, actual);
+        assertArrayEquals(new byte[]{(byte) 0x81, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0x80, (byte) 0x0F},
+                BooleanUtil.longArrayToByteArray(68, actual));
+        assertArrayEquals(new byte[]{0x01, 0x00}, BooleanUtil.longArrayToByteArray(10, new long[]{0x401}));
+        assertArrayEquals(new byte[]{0x00, 0x00}, BooleanUtil.longArrayToByteArray(16, new long[0]));
+    }
+
+    @Test
+    public void changedIndexes() {
+        long[] previous = {0x05L, 0x00L};
+        long[] current = {0x06L, 0x8000000000000000L, 0x01L};
+        assertArrayEquals(new long[]{0x03L, 0x8000000000000000L, 0x01L}, BooleanUtil.xor(previous, current));
+        assertArrayEquals(new int[]{0, 1, 127, 128}, BooleanUtil.changedIndexes(previous, current));
+        assertEquals(0, BooleanUtil.changedIndexes(current, current).length);
+    }
+}